@@ -0,0 +1,284 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.authentication;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of attribute maps and the values they hold, used by the serialized forms of principals and
+ * assertions. Lengths and numbers are written as variable-length integers and strings as UTF-8. Attribute names
+ * commonly released by CAS servers are written as an index into a dictionary shared by all streams. Strings,
+ * lists, integers, longs and booleans get a compact encoding; other values fall back to Java serialization.
+ * <p>
+ * The dictionary is part of the format: names may only be appended to it.
+ * <p>
+ * The compact form is off by default, see {@link org.apereo.cas.client.validation.AssertionImpl#withCompactSerialization()}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class AttributeMapCodec {
+
+    /** Attribute names written as an index, the first at index 1. */
+    private static final String[] DICTIONARY = {
+        "uid", "cn", "sn", "givenName", "displayName", "mail", "email", "memberOf", "eduPersonAffiliation",
+        "eduPersonPrincipalName", "groupMembership", "employeeNumber", "isFromNewLogin", "authenticationDate",
+        "authenticationMethod", "longTermAuthenticationRequestTokenUsed", "successfulAuthenticationHandlers",
+        "credentialType", "samlAuthenticationStatementAuthMethod", "samlAuthenticationStatement::authMethod",
+        "clientIpAddress", "serverIpAddress", "userAgent"
+    };
+
+    private static final Map<String, Integer> DICTIONARY_INDEX = new HashMap<>();
+
+    private static final int NULL = 0;
+
+    private static final int STRING = 1;
+
+    private static final int LIST = 2;
+
+    private static final int INTEGER = 3;
+
+    private static final int LONG = 4;
+
+    private static final int TRUE = 5;
+
+    private static final int FALSE = 6;
+
+    private static final int OBJECT = 7;
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            DICTIONARY_INDEX.put(DICTIONARY[i], i + 1);
+        }
+    }
+
+    private AttributeMapCodec() {
+    }
+
+    /**
+     * Writes attributes, preserving their order.
+     *
+     * @param out the output.
+     * @param attributes the attributes.
+     * @throws IOException if the attributes cannot be written.
+     */
+    public static void writeAttributes(final ObjectOutput out, final Map<String, ?> attributes) throws IOException {
+        writeVarLong(out, attributes.size());
+        for (final Map.Entry<String, ?> entry : attributes.entrySet()) {
+            final Integer index = DICTIONARY_INDEX.get(entry.getKey());
+            if (index != null) {
+                writeVarLong(out, index);
+            } else {
+                writeVarLong(out, 0);
+                writeString(out, entry.getKey());
+            }
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads attributes written by {@link #writeAttributes(ObjectOutput, Map)}.
+     *
+     * @param in the input.
+     * @return the attributes, as a {@link CompactAttributeMap}.
+     * @throws IOException if the attributes cannot be read.
+     * @throws ClassNotFoundException if the class of a value cannot be found.
+     */
+    public static Map<String, Object> readAttributes(final ObjectInput in) throws IOException, ClassNotFoundException {
+        final int size = readLength(in);
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            final int index = readLength(in);
+            final String name;
+            if (index == 0) {
+                name = readString(in);
+            } else if (index <= DICTIONARY.length) {
+                name = DICTIONARY[index - 1];
+            } else {
+                throw new InvalidObjectException("Unknown attribute name index " + index);
+            }
+            attributes.put(name, readValue(in));
+        }
+        return CompactAttributeMap.of(attributes);
+    }
+
+    private static void writeValue(final ObjectOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof List) {
+            final List<?> values = (List<?>) value;
+            out.writeByte(LIST);
+            writeVarLong(out, values.size());
+            for (final Object item : values) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else {
+            out.writeByte(OBJECT);
+            out.writeObject(value);
+        }
+    }
+
+    private static Object readValue(final ObjectInput in) throws IOException, ClassNotFoundException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case LIST:
+                final int size = readLength(in);
+                final List<Object> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readValue(in));
+                }
+                return values;
+            case INTEGER:
+                return (int) unZigZag(readVarLong(in));
+            case LONG:
+                return unZigZag(readVarLong(in));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case OBJECT:
+                return in.readObject();
+            default:
+                throw new InvalidObjectException("Unknown attribute value tag " + tag);
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes.
+     *
+     * @param out the output.
+     * @param value the string, which may be null.
+     * @throws IOException if the string cannot be written.
+     */
+    public static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in the input.
+     * @return the string, which may be null.
+     * @throws IOException if the string cannot be read.
+     */
+    public static String readString(final DataInput in) throws IOException {
+        final int length = readLength(in);
+        if (length == 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a non-negative number in groups of seven bits, the least significant first.
+     *
+     * @param out the output.
+     * @param value the number.
+     * @throws IOException if the number cannot be written.
+     */
+    public static void writeVarLong(final DataOutput out, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.writeByte((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    /**
+     * Reads a number written by {@link #writeVarLong(DataOutput, long)}.
+     *
+     * @param in the input.
+     * @return the number.
+     * @throws IOException if the number cannot be read.
+     */
+    public static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Malformed variable-length number");
+    }
+
+    /**
+     * Maps signed numbers to unsigned ones, so that small negative numbers stay short.
+     *
+     * @param value the signed number.
+     * @return the unsigned number.
+     */
+    public static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses {@link #zigZag(long)}.
+     *
+     * @param value the unsigned number.
+     * @return the signed number.
+     */
+    public static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readLength(final DataInput in) throws IOException {
+        final long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new InvalidObjectException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+}
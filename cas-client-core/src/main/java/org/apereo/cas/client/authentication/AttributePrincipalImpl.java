@@ -24,6 +24,11 @@ import org.apereo.cas.client.util.CommonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Collections;
 import java.util.Map;
 
@@ -49,6 +54,9 @@ public class AttributePrincipalImpl extends SimplePrincipal implements Attribute
     /** The method to retrieve a proxy ticket from a CAS server. */
     private final ProxyRetriever proxyRetriever;
 
+    /** Whether the principal is written in the compact form of {@link SerializedForm}. */
+    private final transient boolean compactSerialization;
+
     /**
      * Constructs a new principal with an empty map of attributes.
      *
@@ -90,10 +98,29 @@ public class AttributePrincipalImpl extends SimplePrincipal implements Attribute
      */
     public AttributePrincipalImpl(final String name, final Map<String, Object> attributes,
                                   final String proxyGrantingTicket, final ProxyRetriever proxyRetriever) {
+        this(name, attributes, proxyGrantingTicket, proxyRetriever, false);
+    }
+
+    /**
+     * Copies the name and proxying capabilities of a principal.
+     *
+     * @param principal the principal to copy.
+     * @param attributes the key/value pairs for the new principal.
+     * @param compactSerialization whether the new principal is written in compact form.
+     */
+    AttributePrincipalImpl(final AttributePrincipalImpl principal, final Map<String, Object> attributes,
+                           final boolean compactSerialization) {
+        this(principal.getName(), attributes, principal.proxyGrantingTicket, principal.proxyRetriever,
+            compactSerialization);
+    }
+
+    AttributePrincipalImpl(final String name, final Map<String, Object> attributes, final String proxyGrantingTicket,
+                           final ProxyRetriever proxyRetriever, final boolean compactSerialization) {
         super(name);
         this.attributes = attributes;
         this.proxyGrantingTicket = proxyGrantingTicket;
         this.proxyRetriever = proxyRetriever;
+        this.compactSerialization = compactSerialization;
 
         CommonUtils.assertNotNull(this.attributes, "attributes cannot be null.");
     }
@@ -112,4 +139,101 @@ public class AttributePrincipalImpl extends SimplePrincipal implements Attribute
     public Map<String, Object> getAttributes() {
         return this.attributes;
     }
+
+    /**
+     * Creates a principal with the name and proxying capabilities of this one and the given attributes.
+     *
+     * @param attributes the key/value pairs for the new principal.
+     * @return the new principal.
+     */
+    final AttributePrincipalImpl withAttributes(final Map<String, Object> attributes) {
+        return new AttributePrincipalImpl(this, attributes, this.compactSerialization);
+    }
+
+    /**
+     * Creates a principal like this one that is written in the compact form of {@link SerializedForm} rather than
+     * by default serialization. Versions before 4.0.2 cannot read that form. Subclasses always use default
+     * serialization, so they return themselves.
+     *
+     * @return the principal written in compact form.
+     */
+    public AttributePrincipalImpl withCompactSerialization() {
+        if (getClass() != AttributePrincipalImpl.class || this.compactSerialization) {
+            return this;
+        }
+        return new AttributePrincipalImpl(this, this.attributes, true);
+    }
+
+    /**
+     * @return whether the principal is written in compact form, see {@link #withCompactSerialization()}.
+     */
+    public boolean isCompactSerialization() {
+        return this.compactSerialization;
+    }
+
+    /**
+     * Principals are written in the compact form of {@link SerializedForm} when created by
+     * {@link #withCompactSerialization()}, by default serialization otherwise.
+     */
+    private Object writeReplace() {
+        return this.compactSerialization ? new SerializedForm(this) : this;
+    }
+
+    /**
+     * Compacts the attributes of principals serialized as plain maps, i.e. by earlier versions.
+     */
+    private Object readResolve() {
+        if (this.attributes instanceof CompactAttributeMap) {
+            return this;
+        }
+        return new AttributePrincipalImpl(getName(), CompactAttributeMap.of(this.attributes),
+            this.proxyGrantingTicket, this.proxyRetriever);
+    }
+
+    /**
+     * Serialized form of a principal: a format version, the name and proxy granting ticket as UTF-8 strings,
+     * the proxy retriever and the attributes encoded by {@link AttributeMapCodec}.
+     */
+    private static final class SerializedForm implements Externalizable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int VERSION = 1;
+
+        private AttributePrincipalImpl principal;
+
+        public SerializedForm() {
+        }
+
+        SerializedForm(final AttributePrincipalImpl principal) {
+            this.principal = principal;
+        }
+
+        @Override
+        public void writeExternal(final ObjectOutput out) throws IOException {
+            out.writeByte(VERSION);
+            AttributeMapCodec.writeString(out, this.principal.getName());
+            AttributeMapCodec.writeString(out, this.principal.proxyGrantingTicket);
+            out.writeObject(this.principal.proxyRetriever);
+            AttributeMapCodec.writeAttributes(out, this.principal.attributes);
+        }
+
+        @Override
+        public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new InvalidObjectException("Unsupported principal format version " + version);
+            }
+            final String name = AttributeMapCodec.readString(in);
+            final String proxyGrantingTicket = AttributeMapCodec.readString(in);
+            final ProxyRetriever proxyRetriever = (ProxyRetriever) in.readObject();
+            // a principal read from the compact form is written in that form again
+            this.principal = new AttributePrincipalImpl(name, AttributeMapCodec.readAttributes(in),
+                proxyGrantingTicket, proxyRetriever, true);
+        }
+
+        private Object readResolve() {
+            return this.principal;
+        }
+    }
 }
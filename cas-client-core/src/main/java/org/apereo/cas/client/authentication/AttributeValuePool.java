@@ -0,0 +1,170 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.authentication;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Canonicalizes attribute values, so that principals of different sessions share a single instance of equal
+ * values, i.e. the role or group names most users have in common. Strings and the immutable value lists of
+ * {@link CompactAttributeMap} are pooled; other values are left alone since they may be mutable.
+ * <p>
+ * Pooled values are only weakly referenced: a value is dropped from the pool once no principal holds it any
+ * more. The pool is bounded, values arriving while it is full are kept as they are. It is split into stripes
+ * guarded by their own lock, so that concurrent validations seldom wait on each other.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class AttributeValuePool {
+
+    private static final int STRIPES = 16;
+
+    /** Approximate size of a String without its characters: object header, fields and array header. */
+    private static final int STRING_OVERHEAD = 40;
+
+    /** Approximate size of a value list without its values: object header, field and array header. */
+    private static final int LIST_OVERHEAD = 32;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxSize the maximum number of pooled values.
+     */
+    public AttributeValuePool(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        final int stripeSize = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * Returns the pooled instance equal to the given value, pooling the value if there is none.
+     *
+     * @param value the value.
+     * @return the pooled value, or the given value if it is not pooled.
+     */
+    Object canonicalize(final Object value) {
+        if (!(value instanceof String) && !(value instanceof CompactAttributeMap.ValueList)) {
+            return value;
+        }
+        final Stripe stripe = this.stripes[(value.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        final Object pooled;
+        synchronized (stripe) {
+            pooled = stripe.canonicalize(value);
+        }
+        if (pooled != value) {
+            this.hits.incrementAndGet();
+            this.bytesSaved.addAndGet(estimateSize(value));
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return pooled;
+    }
+
+    private static long estimateSize(final Object value) {
+        if (value instanceof String) {
+            return STRING_OVERHEAD + ((String) value).length();
+        }
+        return LIST_OVERHEAD + 4L * ((CompactAttributeMap.ValueList) value).size();
+    }
+
+    /**
+     * @return the number of values that were replaced by a pooled instance.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of values that were pooled or could not be pooled.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the share of values replaced by a pooled instance, between 0 and 1.
+     */
+    public double getHitRate() {
+        final long hitCount = getHitCount();
+        final long total = hitCount + getMissCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return an estimate of the bytes no longer held because duplicates were replaced by pooled values.
+     */
+    public long getEstimatedBytesSaved() {
+        return this.bytesSaved.get();
+    }
+
+    /**
+     * @return the number of values currently pooled.
+     */
+    public int size() {
+        int size = 0;
+        for (final Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.values.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Part of the pool guarded by its own lock.
+     */
+    private static final class Stripe {
+
+        private final Map<Object, WeakReference<Object>> values = new WeakHashMap<>();
+
+        private final int maxSize;
+
+        Stripe(final int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        Object canonicalize(final Object value) {
+            final WeakReference<Object> reference = this.values.get(value);
+            final Object pooled = reference != null ? reference.get() : null;
+            if (pooled != null) {
+                return pooled;
+            }
+            if (this.values.size() < this.maxSize) {
+                this.values.put(value, new WeakReference<>(value));
+            }
+            return value;
+        }
+    }
+}
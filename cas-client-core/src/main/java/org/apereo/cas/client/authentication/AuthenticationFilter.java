@@ -20,6 +20,7 @@ package org.apereo.cas.client.authentication;
 
 import org.apereo.cas.client.Protocol;
 import org.apereo.cas.client.configuration.ConfigurationKeys;
+import org.apereo.cas.client.ssl.CasServerLoadBalancer;
 import org.apereo.cas.client.util.AbstractCasFilter;
 import org.apereo.cas.client.util.CommonUtils;
 import org.apereo.cas.client.util.ReflectUtils;
@@ -36,6 +37,7 @@ import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,6 +47,8 @@ import java.util.Map;
  * This filter allows you to specify the following parameters (at either the context-level or the filter-level):
  * <ul>
  * <li><code>casServerLoginUrl</code> - the url to log into CAS, i.e. https://cas.rutgers.edu/login</li>
+ * <li><code>casServerUrlPrefixes</code> - url prefixes of the CAS server nodes, separated by whitespace or commas,
+ * used when <code>casServerLoginUrl</code> is not set. Users are sent to the login page of a healthy node.</li>
  * <li><code>renew</code> - true/false on whether to use renew or not.</li>
  * <li><code>gateway</code> - true/false on whether to use gateway or not.</li>
  * <li><code>method</code> - the method used by the CAS server to send the user back to the application (redirect or post).</li>
@@ -72,6 +76,16 @@ public class AuthenticationFilter extends AbstractCasFilter {
      */
     private String casServerLoginUrl;
 
+    /**
+     * Picks the CAS node to log into, when several are configured instead of a login url.
+     */
+    private CasServerLoadBalancer casServerLoadBalancer;
+
+    /**
+     * Shared balancer obtained during initialization, released when the filter is destroyed.
+     */
+    private CasServerLoadBalancer sharedCasServerLoadBalancer;
+
     /**
      * Whether to send the renew request or not.
      */
@@ -106,11 +120,12 @@ public class AuthenticationFilter extends AbstractCasFilter {
         super.init();
 
         final String message = String.format(
-            "one of %s and %s must not be null.",
+            "one of %s, %s and %s must not be null.",
             ConfigurationKeys.CAS_SERVER_LOGIN_URL.getName(),
+            ConfigurationKeys.CAS_SERVER_URL_PREFIXES.getName(),
             ConfigurationKeys.CAS_SERVER_URL_PREFIX.getName());
 
-        CommonUtils.assertNotNull(this.casServerLoginUrl, message);
+        CommonUtils.assertTrue(this.casServerLoginUrl != null || this.casServerLoadBalancer != null, message);
     }
 
     @Override
@@ -119,8 +134,12 @@ public class AuthenticationFilter extends AbstractCasFilter {
             super.initInternal(filterConfig);
 
             final String loginUrl = getString(ConfigurationKeys.CAS_SERVER_LOGIN_URL);
+            final List<String> prefixes = CasServerLoadBalancer.parsePrefixes(getString(ConfigurationKeys.CAS_SERVER_URL_PREFIXES));
             if (loginUrl != null) {
                 setCasServerLoginUrl(loginUrl);
+            } else if (!prefixes.isEmpty()) {
+                this.sharedCasServerLoadBalancer = CasServerLoadBalancer.shared(prefixes);
+                setCasServerLoadBalancer(this.sharedCasServerLoadBalancer);
             } else {
                 setCasServerUrlPrefix(getString(ConfigurationKeys.CAS_SERVER_URL_PREFIX));
             }
@@ -163,6 +182,15 @@ public class AuthenticationFilter extends AbstractCasFilter {
         }
     }
 
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (this.sharedCasServerLoadBalancer != null) {
+            this.sharedCasServerLoadBalancer.release();
+            this.sharedCasServerLoadBalancer = null;
+        }
+    }
+
     @Override
     public final void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
                                final FilterChain filterChain) throws IOException, ServletException {
@@ -205,7 +233,7 @@ public class AuthenticationFilter extends AbstractCasFilter {
 
         logger.debug("Constructed service url: {}", modifiedServiceUrl);
 
-        final String urlToRedirectTo = CommonUtils.constructRedirectUrl(this.casServerLoginUrl,
+        final String urlToRedirectTo = CommonUtils.constructRedirectUrl(resolveCasServerLoginUrl(),
             getProtocol().getServiceParameterName(), modifiedServiceUrl, this.renew, this.gateway, this.method);
 
         logger.debug("redirecting to \"{}\"", urlToRedirectTo);
@@ -230,6 +258,27 @@ public class AuthenticationFilter extends AbstractCasFilter {
 
     public final void setCasServerLoginUrl(final String casServerLoginUrl) {
         this.casServerLoginUrl = casServerLoginUrl;
+        this.casServerLoadBalancer = null;
+    }
+
+    /**
+     * Sends users to the login page of a node picked by the given balancer among the nodes it has not ejected.
+     * The filter cannot observe the login round trip, so node health comes from the calls recorded by the
+     * validation filter sharing the balancer, see {@link CasServerLoadBalancer#shared(List)}.
+     *
+     * @param casServerLoadBalancer the balancer holding the CAS server nodes.
+     */
+    public final void setCasServerLoadBalancer(final CasServerLoadBalancer casServerLoadBalancer) {
+        this.casServerLoadBalancer = casServerLoadBalancer;
+        this.casServerLoginUrl = null;
+    }
+
+    private String resolveCasServerLoginUrl() {
+        final CasServerLoadBalancer balancer = this.casServerLoadBalancer;
+        if (balancer == null) {
+            return this.casServerLoginUrl;
+        }
+        return balancer.selectAvailable().getPrefix() + "login";
     }
 
     public final void setGatewayStorage(final GatewayResolver gatewayStorage) {
@@ -0,0 +1,222 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.authentication;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Immutable map of principal or assertion attributes, backed by a single array of interned keys and values.
+ * Multi-valued attributes are held in immutable array-backed lists. Attribute maps live as long as the sessions
+ * holding the assertions, so they are kept as small as possible; lookups scan the array, which is faster than
+ * hashing for the handful of attributes a CAS server releases.
+ * <p>
+ * Maps and lists written to streams on their own are written as a {@link HashMap} and {@link ArrayList}, so that
+ * they remain readable without this class. {@link AttributePrincipalImpl} and
+ * {@link org.apereo.cas.client.validation.AssertionImpl} encode their attributes with {@link AttributeMapCodec}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class CompactAttributeMap extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 2497418396157128634L;
+
+    private static final CompactAttributeMap EMPTY = new CompactAttributeMap(new Object[0]);
+
+    /** Keys at even and values at odd indexes. */
+    private final Object[] entries;
+
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
+    private CompactAttributeMap(final Object[] entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Creates a compact copy of the given attributes; multi-valued attributes held in lists are copied into
+     * compact immutable lists.
+     *
+     * @param attributes the attributes to copy.
+     * @return the compact map, or the given map if it is compact already.
+     */
+    public static Map<String, Object> of(final Map<String, ?> attributes) {
+        return of(attributes, null);
+    }
+
+    /**
+     * Creates a compact copy of the given attributes, replacing values with equal instances of the pool.
+     *
+     * @param attributes the attributes to copy.
+     * @param pool the pool of shared values, or null not to share values.
+     * @return the compact map, or the given map if it is compact already.
+     */
+    public static Map<String, Object> of(final Map<String, ?> attributes, final AttributeValuePool pool) {
+        if (attributes instanceof CompactAttributeMap) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> compact = (Map<String, Object>) attributes;
+            return compact;
+        }
+        if (attributes.isEmpty()) {
+            return EMPTY;
+        }
+        final Object[] entries = new Object[attributes.size() * 2];
+        int i = 0;
+        for (final Map.Entry<String, ?> entry : attributes.entrySet()) {
+            entries[i++] = entry.getKey() != null ? entry.getKey().intern() : null;
+            entries[i++] = compactValue(entry.getValue(), pool);
+        }
+        return new CompactAttributeMap(entries);
+    }
+
+    private static Object compactValue(final Object value, final AttributeValuePool pool) {
+        if (pool == null) {
+            return value instanceof ValueList || !(value instanceof List) ? value : new ValueList(((Collection<?>) value).toArray());
+        }
+        if (value instanceof ValueList || !(value instanceof List)) {
+            return pool.canonicalize(value);
+        }
+        final Object[] values = ((Collection<?>) value).toArray();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = pool.canonicalize(values[i]);
+        }
+        return pool.canonicalize(new ValueList(values));
+    }
+
+    @Override
+    public int size() {
+        return this.entries.length / 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.entries.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        final int index = indexOf(key);
+        return index >= 0 ? this.entries[index + 1] : null;
+    }
+
+    private int indexOf(final Object key) {
+        for (int i = 0; i < this.entries.length; i += 2) {
+            final Object candidate = this.entries[i];
+            if (candidate == key || candidate != null && candidate.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
+    }
+
+    private Object writeReplace() {
+        final Map<String, Object> map = new HashMap<>(Math.max(16, (int) (size() / 0.75f) + 1));
+        for (int i = 0; i < this.entries.length; i += 2) {
+            final Object value = this.entries[i + 1];
+            map.put((String) this.entries[i], value instanceof ValueList ? new ArrayList<>((ValueList) value) : value);
+        }
+        return map;
+    }
+
+    /**
+     * Entries of the map, in the order of the map it was copied from.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return CompactAttributeMap.this.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new Iterator<>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < entries.length;
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final Map.Entry<String, Object> entry =
+                        new SimpleImmutableEntry<>((String) entries[this.index], entries[this.index + 1]);
+                    this.index += 2;
+                    return entry;
+                }
+            };
+        }
+    }
+
+    /**
+     * Immutable values of a multi-valued attribute.
+     */
+    static final class ValueList extends AbstractList<Object> implements RandomAccess, Serializable {
+
+        private static final long serialVersionUID = -2291638153826254870L;
+
+        private final Object[] values;
+
+        ValueList(final Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object get(final int index) {
+            return this.values[index];
+        }
+
+        @Override
+        public int size() {
+            return this.values.length;
+        }
+
+        private Object writeReplace() {
+            return new ArrayList<>(this);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.authentication;
+
+import org.apereo.cas.client.proxy.ProxyRetriever;
+import org.apereo.cas.client.util.CommonUtils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Principal decoding its attributes on the first call to {@link #getAttributes()} rather than when it is created.
+ * Until then, the principal only holds the decoder, typically a raw slice of the validation response, so that
+ * applications relying on the name alone never pay for building the attribute maps.
+ * <p>
+ * Attributes are decoded at most once, even when the principal is shared among concurrent requests; the decoder
+ * is released once it has run. The principal is serialized as an {@link AttributePrincipalImpl} with the decoded
+ * attributes.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class LazyAttributePrincipal extends AttributePrincipalImpl {
+
+    private static final long serialVersionUID = 7140231846290356715L;
+
+    private transient Supplier<Map<String, Object>> decoder;
+
+    private transient volatile Map<String, Object> attributes;
+
+    /**
+     * Constructs a new principal with the supplied name, attribute decoder, and proxying capabilities.
+     *
+     * @param name the unique identifier for the principal.
+     * @param decoder the function decoding the key/value pairs for this principal; it must not return null.
+     * @param proxyGrantingTicket the ticket associated with this principal.
+     * @param proxyRetriever the ProxyRetriever implementation to call back to the CAS server.
+     */
+    public LazyAttributePrincipal(final String name, final Supplier<Map<String, Object>> decoder,
+                                  final String proxyGrantingTicket, final ProxyRetriever proxyRetriever) {
+        super(name, Collections.<String, Object>emptyMap(), proxyGrantingTicket, proxyRetriever);
+        CommonUtils.assertNotNull(decoder, "decoder cannot be null.");
+        this.decoder = decoder;
+    }
+
+    private LazyAttributePrincipal(final LazyAttributePrincipal principal, final Supplier<Map<String, Object>> decoder) {
+        super(principal, Collections.<String, Object>emptyMap(), true);
+        this.decoder = decoder;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        Map<String, Object> result = this.attributes;
+        if (result == null) {
+            synchronized (this) {
+                result = this.attributes;
+                if (result == null) {
+                    result = this.decoder.get();
+                    CommonUtils.assertNotNull(result, "decoded attributes cannot be null.");
+                    this.attributes = result;
+                    this.decoder = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the attributes have been decoded.
+     */
+    public boolean isDecoded() {
+        return this.attributes != null;
+    }
+
+    /**
+     * Keeps the attributes undecoded; they are decoded when the principal is written.
+     */
+    @Override
+    public synchronized AttributePrincipalImpl withCompactSerialization() {
+        if (isCompactSerialization()) {
+            return this;
+        }
+        final Map<String, Object> decoded = this.attributes;
+        return new LazyAttributePrincipal(this, decoded != null ? () -> decoded : this.decoder);
+    }
+
+    private Object writeReplace() {
+        return withAttributes(getAttributes());
+    }
+}
@@ -24,6 +24,7 @@ import org.apereo.cas.client.authentication.DefaultGatewayResolverImpl;
 import org.apereo.cas.client.authentication.GatewayResolver;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorage;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorageImpl;
+import org.apereo.cas.client.session.SessionMappingStorage;
 import org.apereo.cas.client.validation.Cas20ServiceTicketValidator;
 
 import javax.net.ssl.HostnameVerifier;
@@ -55,6 +56,11 @@ public interface ConfigurationKeys {
     ConfigurationKey<Class<? extends GatewayResolver>> GATEWAY_STORAGE_CLASS =
         new ConfigurationKey<Class<? extends GatewayResolver>>("gatewayStorageClass", DefaultGatewayResolverImpl.class);
     ConfigurationKey<String> CAS_SERVER_URL_PREFIX = new ConfigurationKey<String>("casServerUrlPrefix", null);
+    ConfigurationKey<String> CAS_SERVER_URL_PREFIXES = new ConfigurationKey<String>("casServerUrlPrefixes", null);
+    ConfigurationKey<Boolean> HEDGING_ENABLED = new ConfigurationKey<Boolean>("hedgingEnabled", Boolean.FALSE);
+    ConfigurationKey<Integer> HEDGING_DELAY_PERCENTILE = new ConfigurationKey<Integer>("hedgingDelayPercentile", 95);
+    ConfigurationKey<Long> HEDGING_MIN_DELAY = new ConfigurationKey<Long>("hedgingMinDelay", 20L);
+    ConfigurationKey<Integer> HEDGING_MAX_RATIO = new ConfigurationKey<Integer>("hedgingMaxRatio", 10);
     ConfigurationKey<String> ENCODING = new ConfigurationKey<String>("encoding", null);
     ConfigurationKey<Long> TOLERANCE = new ConfigurationKey<Long>("tolerance", 1000L);
     ConfigurationKey<String> PRIVATE_KEY_PATH = new ConfigurationKey<String>("privateKeyPath", null);
@@ -70,9 +76,34 @@ public interface ConfigurationKeys {
     ConfigurationKey<String> IGNORE_URL_PATTERN_TYPE = new ConfigurationKey<String>("ignoreUrlPatternType", "REGEX");
     ConfigurationKey<Class<? extends HostnameVerifier>> HOSTNAME_VERIFIER = new ConfigurationKey<Class<? extends HostnameVerifier>>("hostnameVerifier", null);
     ConfigurationKey<String> HOSTNAME_VERIFIER_CONFIG = new ConfigurationKey<String>("hostnameVerifierConfig", null);
+
+    ConfigurationKey<Integer> CONNECT_TIMEOUT = new ConfigurationKey<Integer>("connectTimeout", 5000);
+
+    ConfigurationKey<Integer> READ_TIMEOUT = new ConfigurationKey<Integer>("readTimeout", 10000);
+
+    ConfigurationKey<Integer> MAX_CONCURRENT_CALLS = new ConfigurationKey<Integer>("maxConcurrentCalls", 0);
+
+    ConfigurationKey<Boolean> CIRCUIT_BREAKER_ENABLED = new ConfigurationKey<Boolean>("circuitBreakerEnabled", Boolean.FALSE);
+
+    ConfigurationKey<Integer> CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = new ConfigurationKey<Integer>("circuitBreakerFailureRateThreshold", 50);
+
+    ConfigurationKey<Long> CIRCUIT_BREAKER_SLOW_CALL_DURATION_THRESHOLD = new ConfigurationKey<Long>("circuitBreakerSlowCallDurationThreshold", 5000L);
+
+    ConfigurationKey<Long> CIRCUIT_BREAKER_OPEN_DURATION = new ConfigurationKey<Long>("circuitBreakerOpenDuration", 30000L);
+
+    ConfigurationKey<String> CIRCUIT_BREAKER_OPEN_RESPONSE = new ConfigurationKey<String>("circuitBreakerOpenResponse", null);
     ConfigurationKey<Boolean> EXCEPTION_ON_VALIDATION_FAILURE = new ConfigurationKey<Boolean>("exceptionOnValidationFailure", Boolean.TRUE);
     ConfigurationKey<Boolean> REDIRECT_AFTER_VALIDATION = new ConfigurationKey<Boolean>("redirectAfterValidation", Boolean.TRUE);
     ConfigurationKey<Boolean> USE_SESSION = new ConfigurationKey<Boolean>("useSession", Boolean.TRUE);
+    ConfigurationKey<Boolean> ASYNC_VALIDATION = new ConfigurationKey<Boolean>("asyncValidation", Boolean.FALSE);
+    ConfigurationKey<Integer> VALIDATION_THREADS = new ConfigurationKey<Integer>("validationThreads", 16);
+    ConfigurationKey<Integer> VALIDATION_QUEUE_CAPACITY = new ConfigurationKey<Integer>("validationQueueCapacity", 1000);
+    ConfigurationKey<Boolean> COALESCE_VALIDATIONS = new ConfigurationKey<Boolean>("coalesceValidations", Boolean.FALSE);
+    ConfigurationKey<Long> COALESCED_RESULT_TIME_TO_LIVE = new ConfigurationKey<Long>("coalescedResultTimeToLive", 0L);
+    ConfigurationKey<Long> MAX_RESPONSE_SIZE = new ConfigurationKey<Long>("maxResponseSize", 0L);
+    ConfigurationKey<Integer> ATTRIBUTE_VALUE_POOL_SIZE = new ConfigurationKey<Integer>("attributeValuePoolSize", 0);
+    ConfigurationKey<Boolean> COMPACT_SERIALIZATION = new ConfigurationKey<Boolean>("compactSerialization", Boolean.FALSE);
+    ConfigurationKey<Boolean> LAZY_ATTRIBUTES = new ConfigurationKey<Boolean>("lazyAttributes", Boolean.FALSE);
     ConfigurationKey<String> SECRET_KEY = new ConfigurationKey<String>("secretKey", null);
     ConfigurationKey<String> CIPHER_ALGORITHM = new ConfigurationKey<String>("cipherAlgorithm", "DESede");
     ConfigurationKey<String> PROXY_RECEPTOR_URL = new ConfigurationKey<String>("proxyReceptorUrl", null);
@@ -85,4 +116,13 @@ public interface ConfigurationKeys {
     ConfigurationKey<String> PROXY_CALLBACK_URL = new ConfigurationKey<String>("proxyCallbackUrl", null);
     ConfigurationKey<String> RELAY_STATE_PARAMETER_NAME = new ConfigurationKey<String>("relayStateParameterName", "RelayState");
     ConfigurationKey<String> LOGOUT_CALLBACK_PATH = new ConfigurationKey<String>("logoutCallbackPath", null);
+    ConfigurationKey<Class<? extends SessionMappingStorage>> SESSION_MAPPING_STORAGE_CLASS =
+        new ConfigurationKey<Class<? extends SessionMappingStorage>>("sessionMappingStorageClass", null);
+    ConfigurationKey<Integer> MAX_SESSION_MAPPINGS = new ConfigurationKey<Integer>("maxSessionMappings", 0);
+    ConfigurationKey<Boolean> WEAK_SESSION_REFERENCES = new ConfigurationKey<Boolean>("weakSessionReferences", Boolean.FALSE);
+    ConfigurationKey<Boolean> ASYNC_LOGOUT = new ConfigurationKey<Boolean>("asyncLogout", Boolean.FALSE);
+    ConfigurationKey<Integer> LOGOUT_QUEUE_CAPACITY = new ConfigurationKey<Integer>("logoutQueueCapacity", 10000);
+    ConfigurationKey<Integer> LOGOUT_WORKER_THREADS = new ConfigurationKey<Integer>("logoutWorkerThreads", 2);
+    ConfigurationKey<Long> MAX_LOGOUT_MESSAGE_SIZE = new ConfigurationKey<Long>("maxLogoutMessageSize", 65536L);
+    ConfigurationKey<Boolean> PRINCIPAL_LOGOUT = new ConfigurationKey<Boolean>("principalLogout", Boolean.FALSE);
 }
@@ -18,7 +18,11 @@
  */
 package org.apereo.cas.client.proxy;
 
+import org.apereo.cas.client.ssl.HttpTransport;
+import org.apereo.cas.client.ssl.HttpTransportRequest;
 import org.apereo.cas.client.ssl.HttpURLConnectionFactory;
+import org.apereo.cas.client.ssl.HttpURLConnectionTransport;
+import org.apereo.cas.client.ssl.HttpsURLConnectionFactory;
 import org.apereo.cas.client.util.CommonUtils;
 import org.apereo.cas.client.util.XmlUtils;
 
@@ -54,16 +58,16 @@ public final class Cas20ProxyRetriever implements ProxyRetriever {
 
     private final String encoding;
 
-    /** Url connection factory to use when communicating with the server **/
-    private final HttpURLConnectionFactory urlConnectionFactory;
+    /** Transport to use when communicating with the server **/
+    private final HttpTransport httpTransport;
 
     @Deprecated
     public Cas20ProxyRetriever(final String casServerUrl, final String encoding) {
-        this(casServerUrl, encoding, null);
+        this(casServerUrl, encoding, new HttpsURLConnectionFactory());
     }
 
     /**
-     * Main Constructor.
+     * Constructs a retriever communicating with the server through {@link java.net.HttpURLConnection} instances.
      *
      * @param casServerUrl the URL to the CAS server (i.e. http://localhost/cas/)
      * @param encoding the encoding to use.
@@ -71,10 +75,24 @@ public final class Cas20ProxyRetriever implements ProxyRetriever {
      */
     public Cas20ProxyRetriever(final String casServerUrl, final String encoding,
                                final HttpURLConnectionFactory urlFactory) {
+        this(casServerUrl, encoding, new HttpURLConnectionTransport(
+            urlFactory != null ? urlFactory : new HttpsURLConnectionFactory()));
+    }
+
+    /**
+     * Main Constructor.
+     *
+     * @param casServerUrl the URL to the CAS server (i.e. http://localhost/cas/)
+     * @param encoding the encoding to use.
+     * @param httpTransport transport used when retrieving proxy responses from the server
+     */
+    public Cas20ProxyRetriever(final String casServerUrl, final String encoding,
+                               final HttpTransport httpTransport) {
         CommonUtils.assertNotNull(casServerUrl, "casServerUrl cannot be null.");
+        CommonUtils.assertNotNull(httpTransport, "httpTransport cannot be null.");
         this.casServerUrl = casServerUrl;
         this.encoding = encoding;
-        this.urlConnectionFactory = urlFactory;
+        this.httpTransport = httpTransport;
     }
 
     @Override
@@ -83,13 +101,8 @@ public final class Cas20ProxyRetriever implements ProxyRetriever {
         CommonUtils.assertNotNull(targetService, "targetService cannot be null.");
 
         final URL url = constructUrl(proxyGrantingTicketId, targetService);
-        final String response;
-
-        if (this.urlConnectionFactory != null) {
-            response = CommonUtils.getResponseFromServer(url, this.urlConnectionFactory, this.encoding);
-        } else {
-            response = CommonUtils.getResponseFromServer(url, this.encoding);
-        }
+        final String response = CommonUtils.execute(HttpTransportRequest.get(url).asIdempotent(), this.httpTransport)
+            .getBodyAsString(CommonUtils.toCharset(this.encoding));
         final String error = XmlUtils.getTextForElement(response, "proxyFailure");
 
         if (CommonUtils.isNotEmpty(error)) {
@@ -102,6 +115,18 @@ public final class Cas20ProxyRetriever implements ProxyRetriever {
         return ticket;
     }
 
+    /**
+     * Instances serialized before the introduction of {@link HttpTransport} carry no transport.
+     *
+     * @return an instance with a usable transport.
+     */
+    private Object readResolve() {
+        if (this.httpTransport == null) {
+            return new Cas20ProxyRetriever(this.casServerUrl, this.encoding, new HttpsURLConnectionFactory());
+        }
+        return this;
+    }
+
     private URL constructUrl(final String proxyGrantingTicketId, final String targetService) {
         try {
             return new URL(this.casServerUrl + (this.casServerUrl.endsWith("/") ? "" : "/") + "proxy" + "?pgt="
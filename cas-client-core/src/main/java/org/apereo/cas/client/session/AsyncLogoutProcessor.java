@@ -0,0 +1,251 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Processes CAS logout requests on a pool of worker threads rather than on the threads serving the back-channel
+ * requests of the CAS server. Logout messages are queued in a bounded queue; workers drain it in batches, so that
+ * a burst of logouts costs them a single wake-up. When the queue is full, {@link #submit(String)} refuses the
+ * message and the caller processes it synchronously, which slows the CAS server down to the pace of the workers.
+ * Once {@link #shutdown()} has started, messages are refused too; those already queued are processed before it
+ * returns.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class AsyncLogoutProcessor {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final BlockingQueue<PendingLogout> queue;
+
+    private final Consumer<String> processor;
+
+    private final int batchSize;
+
+    private final Thread[] workers;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile long lastLagNanos;
+
+    /** Submissions hold the read lock while queueing, shutdown takes the write lock to stop admitting messages. */
+    private final ReadWriteLock admission = new ReentrantReadWriteLock();
+
+    /** Changed under the write lock of {@link #admission}. */
+    private volatile boolean running = true;
+
+    /**
+     * Creates a processor and starts its worker threads.
+     *
+     * @param processor the function processing a logout message.
+     * @param capacity the maximum number of queued logout messages.
+     * @param workerThreads the number of worker threads.
+     * @param batchSize the maximum number of logout messages a worker takes from the queue at once.
+     */
+    public AsyncLogoutProcessor(final Consumer<String> processor, final int capacity, final int workerThreads,
+                                final int batchSize) {
+        if (capacity <= 0 || workerThreads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity, workerThreads and batchSize must be positive");
+        }
+        this.processor = processor;
+        this.queue = new ArrayBlockingQueue<PendingLogout>(capacity);
+        this.batchSize = batchSize;
+        this.workers = new Thread[workerThreads];
+        for (int i = 0; i < workerThreads; i++) {
+            final Thread worker = new Thread(this::drain, "cas-logout-" + i);
+            worker.setDaemon(true);
+            this.workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues the given logout message.
+     *
+     * @param logoutMessage the logout message, as sent by the CAS server.
+     * @return true if the message was queued, false if the queue is full or the processor is shut down, in which
+     * case the caller should process the message itself.
+     */
+    public boolean submit(final String logoutMessage) {
+        final Lock lock = this.admission.readLock();
+        lock.lock();
+        try {
+            if (this.running && this.queue.offer(new PendingLogout(logoutMessage, System.nanoTime()))) {
+                this.submitted.incrementAndGet();
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        this.rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Stops admitting logout messages and waits for the worker threads to process the ones still queued. Should
+     * the workers not stop in time, they are left to finish the queue; otherwise whatever they left behind is
+     * processed on the calling thread.
+     */
+    public void shutdown() {
+        final Lock lock = this.admission.writeLock();
+        lock.lock();
+        try {
+            if (!this.running) {
+                return;
+            }
+            this.running = false;
+        } finally {
+            lock.unlock();
+        }
+        for (final Thread worker : this.workers) {
+            worker.interrupt();
+        }
+        boolean stopped = true;
+        for (final Thread worker : this.workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stopped &= !worker.isAlive();
+        }
+        if (!stopped) {
+            logger.warn("Logout workers did not stop within 5 seconds; {} queued logout requests are left to them",
+                this.queue.size());
+            return;
+        }
+        final List<PendingLogout> remaining = new ArrayList<PendingLogout>();
+        this.queue.drainTo(remaining);
+        process(remaining);
+    }
+
+    /**
+     * Processes queued messages until the processor is shut down and the queue is empty.
+     */
+    private void drain() {
+        final List<PendingLogout> batch = new ArrayList<PendingLogout>(this.batchSize);
+        while (true) {
+            if (this.running) {
+                try {
+                    batch.add(this.queue.take());
+                } catch (final InterruptedException e) {
+                    // woken up by shutdown, finish the queue
+                    continue;
+                }
+            } else {
+                final PendingLogout logout = this.queue.poll();
+                if (logout == null) {
+                    return;
+                }
+                batch.add(logout);
+            }
+            this.queue.drainTo(batch, this.batchSize - 1);
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    private void process(final List<PendingLogout> batch) {
+        for (final PendingLogout logout : batch) {
+            this.lastLagNanos = System.nanoTime() - logout.submittedAt;
+            try {
+                this.processor.accept(logout.message);
+                this.processed.incrementAndGet();
+            } catch (final RuntimeException e) {
+                this.failed.incrementAndGet();
+                logger.warn("Unable to process logout request: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of logout messages waiting in the queue.
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * @return the time in milliseconds the oldest queued logout message has been waiting, or 0 if there is none.
+     */
+    public long getLag() {
+        final PendingLogout oldest = this.queue.peek();
+        return oldest != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.submittedAt) : 0L;
+    }
+
+    /**
+     * @return the time in milliseconds the last processed logout message waited in the queue.
+     */
+    public long getLastLag() {
+        return TimeUnit.NANOSECONDS.toMillis(this.lastLagNanos);
+    }
+
+    public long getSubmittedCount() {
+        return this.submitted.get();
+    }
+
+    /**
+     * @return the number of logout messages refused because the queue was full or the processor shut down, and
+     * processed synchronously.
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    public long getProcessedCount() {
+        return this.processed.get();
+    }
+
+    public long getFailureCount() {
+        return this.failed.get();
+    }
+
+    private static final class PendingLogout {
+
+        private final String message;
+
+        private final long submittedAt;
+
+        PendingLogout(final String message, final long submittedAt) {
+            this.message = message;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
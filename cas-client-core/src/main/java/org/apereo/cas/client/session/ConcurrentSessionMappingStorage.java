@@ -0,0 +1,507 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SessionMappingStorage backed by concurrent maps, so that requests recording sessions and logout requests do not
+ * wait on a single lock. Updates of both directions of the mapping of a session are made under the lock of one of
+ * a fixed set of stripes, chosen by the session ID; lookups take no lock at all. Requests of different sessions
+ * thus only contend when their sessions hash to the same stripe.
+ * <p>
+ * Mappings do not outlive their sessions, even when {@link SingleSignOutHttpSessionListener} is not registered:
+ * mappings of sessions that were invalidated or have been inactive for longer than their maximum inactive interval
+ * are purged as new sessions are recorded. The number of mappings can be capped, in which case the mappings of the
+ * sessions inactive for the longest time are evicted first; logout requests for evicted sessions are ignored.
+ * Purges run on a background thread rather than on the requests recording sessions, so the cap may be exceeded
+ * briefly while one is under way.
+ * Sessions can also be held through weak references, so that sessions the container dropped, i.e. passivated
+ * ones, are not kept in memory by the storage; this requires the container to hand out the same object for a
+ * session as long as it is live, as most do.
+ * <p>
+ * Sessions associated with a principal are also indexed by principal name, so that all the sessions of a principal
+ * are found without going through the mappings of the other sessions.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class ConcurrentSessionMappingStorage implements SessionMappingStorage {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * Minimum number of sessions recorded between two purges of the mappings of expired sessions; at least a
+     * quarter of the mappings must have been recorded too, so that purges cost a few lookups per session.
+     */
+    private static final int PURGE_INTERVAL = 1024;
+
+    /**
+     * Maps the ID from the CAS server to the Session.
+     */
+    private final ConcurrentMap<String, Mapping> managedSessions = new ConcurrentHashMap<String, Mapping>();
+
+    /**
+     * Maps the Session ID to the key from the CAS Server.
+     */
+    private final ConcurrentMap<String, String> idToSessionKeyMapping = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Maps the principal name to the keys from the CAS Server of its sessions.
+     */
+    private final ConcurrentMap<String, Set<String>> principalToSessionKeys = new ConcurrentHashMap<String, Set<String>>();
+
+    private final Object[] stripes;
+
+    private final AtomicInteger additionsSincePurge = new AtomicInteger();
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    private final AtomicLong expirations = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Runs purges off the requests recording sessions; created on first use, guarded by this storage. */
+    private ThreadPoolExecutor purgeExecutor;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private volatile int maxSessions;
+
+    private volatile boolean weakReferences;
+
+    /**
+     * Creates a storage with 64 stripes.
+     */
+    public ConcurrentSessionMappingStorage() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates a storage with the given number of stripes, rounded up to a power of two.
+     *
+     * @param stripes the number of locks sessions are spread over.
+     */
+    public ConcurrentSessionMappingStorage(final int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public HttpSession removeSessionByMappingId(final String mappingId) {
+        while (true) {
+            final Mapping mapping = this.managedSessions.get(mappingId);
+            if (mapping == null) {
+                return null;
+            }
+            synchronized (stripeFor(mapping.sessionId)) {
+                if (this.managedSessions.remove(mappingId, mapping)) {
+                    this.idToSessionKeyMapping.remove(mapping.sessionId, mappingId);
+                    unindexPrincipal(mappingId, mapping);
+                    return mapping.getSession();
+                }
+            }
+            // the mapping changed meanwhile, look it up again
+        }
+    }
+
+    @Override
+    public void addPrincipalByMappingId(final String mappingId, final String principal) {
+        final Mapping mapping = this.managedSessions.get(mappingId);
+        if (mapping == null) {
+            return;
+        }
+        synchronized (stripeFor(mapping.sessionId)) {
+            if (this.managedSessions.get(mappingId) != mapping || principal.equals(mapping.principal)) {
+                return;
+            }
+            unindexPrincipal(mappingId, mapping);
+            mapping.principal = principal;
+            this.principalToSessionKeys.compute(principal, (name, keys) -> {
+                final Set<String> result = keys != null ? keys : ConcurrentHashMap.<String>newKeySet();
+                result.add(mappingId);
+                return result;
+            });
+        }
+    }
+
+    @Override
+    public String getPrincipalByMappingId(final String mappingId) {
+        final Mapping mapping = this.managedSessions.get(mappingId);
+        return mapping != null ? mapping.principal : null;
+    }
+
+    @Override
+    public List<HttpSession> removeSessionsByPrincipal(final String principal) {
+        final Set<String> keys = this.principalToSessionKeys.remove(principal);
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        final List<HttpSession> sessions = new ArrayList<HttpSession>(keys.size());
+        for (final String mappingId : keys) {
+            final Mapping mapping = this.managedSessions.get(mappingId);
+            // the key may have been taken over by a session of another principal meanwhile
+            if (mapping != null && principal.equals(mapping.principal) && remove(mappingId, mapping)) {
+                final HttpSession session = mapping.getSession();
+                if (session != null) {
+                    sessions.add(session);
+                }
+            }
+        }
+        return sessions;
+    }
+
+    @Override
+    public void removeBySessionById(final String sessionId) {
+        logger.debug("Attempting to remove Session=[{}]", sessionId);
+
+        final String key;
+        synchronized (stripeFor(sessionId)) {
+            key = this.idToSessionKeyMapping.remove(sessionId);
+            if (key != null) {
+                removeMapping(key, sessionId);
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            if (key != null) {
+                logger.debug("Found mapping for session.  Session Removed.");
+            } else {
+                logger.debug("No mapping for session found.  Ignoring.");
+            }
+        }
+    }
+
+    @Override
+    public void addSessionById(final String mappingId, final HttpSession session) {
+        final String sessionId = session.getId();
+        final Mapping mapping = new Mapping(sessionId, session, this.weakReferences);
+        synchronized (stripeFor(sessionId)) {
+            final String previousKey = this.idToSessionKeyMapping.put(sessionId, mappingId);
+            if (previousKey != null && !previousKey.equals(mappingId)) {
+                removeMapping(previousKey, sessionId);
+            }
+            final Mapping previous = this.managedSessions.put(mappingId, mapping);
+            if (previous != null && sessionId.equals(previous.sessionId)) {
+                mapping.principal = previous.principal;
+            } else if (previous != null) {
+                // the key is taken over from another session, whose own stripe may be held by another thread
+                this.idToSessionKeyMapping.remove(previous.sessionId, mappingId);
+                unindexPrincipal(mappingId, previous);
+            }
+        }
+
+        final int max = this.maxSessions;
+        final int additions = this.additionsSincePurge.incrementAndGet();
+        if (additions >= PURGE_INTERVAL && additions >= size() / 4 || max > 0 && size() > max) {
+            schedulePurge();
+        }
+    }
+
+    /**
+     * Removes the mappings of sessions that were invalidated, have expired or, with weak references, have been
+     * dropped by the container. This is done in the background as sessions are recorded; calling this method,
+     * which purges on the calling thread, is only useful to release memory sooner, i.e. from a timer.
+     */
+    public void purgeExpired() {
+        purge(System.currentTimeMillis());
+    }
+
+    /**
+     * Stops the thread purging mappings in the background. Mappings remain usable; should sessions be recorded
+     * afterwards, a new thread is started when they need purging.
+     */
+    public synchronized void destroy() {
+        if (this.purgeExecutor != null) {
+            this.purgeExecutor.shutdown();
+            this.purgeExecutor = null;
+        }
+    }
+
+    /**
+     * Purges on the calling thread, unless a purge is already under way.
+     */
+    void purge(final long now) {
+        if (!this.purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            purgeMappings(now);
+        } finally {
+            this.purging.set(false);
+        }
+    }
+
+    /**
+     * Hands a purge over to the background thread, unless a purge is already under way.
+     */
+    private void schedulePurge() {
+        if (!this.purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            purgeExecutor().execute(() -> {
+                try {
+                    purgeMappings(System.currentTimeMillis());
+                } finally {
+                    this.purging.set(false);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // destroyed meanwhile, the next session recorded schedules the purge again
+            this.purging.set(false);
+        }
+    }
+
+    private synchronized ThreadPoolExecutor purgeExecutor() {
+        if (this.purgeExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<Runnable>(), runnable -> {
+                    final Thread thread = new Thread(runnable, "cas-session-purge");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            executor.allowCoreThreadTimeOut(true);
+            this.purgeExecutor = executor;
+        }
+        return this.purgeExecutor;
+    }
+
+    /**
+     * Purges the mappings of expired sessions, then evicts the mappings of the sessions inactive for the longest
+     * time while there are more than the maximum. Only called by the thread that set the purging flag.
+     */
+    private void purgeMappings(final long now) {
+        this.additionsSincePurge.set(0);
+        final List<Candidate> live = new ArrayList<Candidate>();
+        for (final Map.Entry<String, Mapping> entry : this.managedSessions.entrySet()) {
+            final long lastAccessedTime = entry.getValue().getLastAccessedTime(now);
+            if (lastAccessedTime < 0) {
+                if (remove(entry.getKey(), entry.getValue())) {
+                    this.expirations.incrementAndGet();
+                }
+            } else {
+                live.add(new Candidate(entry.getKey(), entry.getValue(), lastAccessedTime));
+            }
+        }
+        final int max = this.maxSessions;
+        if (max > 0 && live.size() > max) {
+            // evict down to a little below the cap, so that the next sessions do not trigger another sort
+            final int target = max - max / 16;
+            live.sort(Comparator.comparingLong(candidate -> candidate.lastAccessedTime));
+            for (int i = 0; i < live.size() - target; i++) {
+                final Candidate candidate = live.get(i);
+                if (remove(candidate.mappingId, candidate.mapping)) {
+                    this.evictions.incrementAndGet();
+                    logger.debug("Evicted mapping of session [{}] to stay within {} sessions",
+                        candidate.mapping.sessionId, max);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of sessions currently mapped.
+     */
+    public int size() {
+        return this.managedSessions.size();
+    }
+
+    /**
+     * @return the number of principals with mapped sessions.
+     */
+    public int getPrincipalCount() {
+        return this.principalToSessionKeys.size();
+    }
+
+    /**
+     * @return the number of mappings purged because their session was invalidated, expired or dropped.
+     */
+    public long getExpirationCount() {
+        return this.expirations.get();
+    }
+
+    /**
+     * @return the number of mappings of live sessions evicted to stay within the maximum number of sessions.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    public int getMaxSessions() {
+        return this.maxSessions;
+    }
+
+    /**
+     * Sets the maximum number of sessions mapped. Once it is exceeded, the mappings of expired sessions are
+     * purged, then those of the sessions inactive for the longest time are evicted, in the background. Defaults
+     * to 0, unbounded.
+     *
+     * @param maxSessions the maximum number of sessions, or 0 for no maximum.
+     */
+    public void setMaxSessions(final int maxSessions) {
+        if (maxSessions < 0) {
+            throw new IllegalArgumentException("maxSessions cannot be negative");
+        }
+        this.maxSessions = maxSessions;
+    }
+
+    public boolean isWeakReferences() {
+        return this.weakReferences;
+    }
+
+    /**
+     * Sets whether sessions recorded from now on are held through weak references. Defaults to false.
+     *
+     * @param weakReferences whether sessions are weakly referenced.
+     */
+    public void setWeakReferences(final boolean weakReferences) {
+        this.weakReferences = weakReferences;
+    }
+
+    private boolean remove(final String mappingId, final Mapping mapping) {
+        synchronized (stripeFor(mapping.sessionId)) {
+            if (this.managedSessions.remove(mappingId, mapping)) {
+                this.idToSessionKeyMapping.remove(mapping.sessionId, mappingId);
+                unindexPrincipal(mappingId, mapping);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes the session mapped to the given key, unless the key has been taken over by another session.
+     * Sessions are compared by ID since containers may hand out several objects for the same session.
+     */
+    private void removeMapping(final String mappingId, final String sessionId) {
+        final Mapping mapping = this.managedSessions.get(mappingId);
+        if (mapping != null && sessionId.equals(mapping.sessionId) && this.managedSessions.remove(mappingId, mapping)) {
+            unindexPrincipal(mappingId, mapping);
+        }
+    }
+
+    /**
+     * Removes the key of a removed or replaced mapping from the sessions of its principal.
+     */
+    private void unindexPrincipal(final String mappingId, final Mapping mapping) {
+        final String principal = mapping.principal;
+        if (principal != null) {
+            this.principalToSessionKeys.computeIfPresent(principal, (name, keys) -> {
+                keys.remove(mappingId);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private Object stripeFor(final String sessionId) {
+        final int hash = sessionId.hashCode();
+        return this.stripes[(hash ^ hash >>> 16) & (this.stripes.length - 1)];
+    }
+
+    /**
+     * Session mapped to a key, held either strongly or through a weak reference, and its principal once known.
+     */
+    private static final class Mapping {
+
+        private final String sessionId;
+
+        private final Object session;
+
+        /** Guarded by the stripe of the session. */
+        private volatile String principal;
+
+        Mapping(final String sessionId, final HttpSession session, final boolean weak) {
+            this.sessionId = sessionId;
+            this.session = weak ? new WeakReference<HttpSession>(session) : session;
+        }
+
+        @SuppressWarnings("unchecked")
+        HttpSession getSession() {
+            if (this.session instanceof WeakReference) {
+                return ((WeakReference<HttpSession>) this.session).get();
+            }
+            return (HttpSession) this.session;
+        }
+
+        /**
+         * @return the last time the session was accessed, or -1 if it is no longer live.
+         */
+        long getLastAccessedTime(final long now) {
+            final HttpSession session = getSession();
+            if (session == null) {
+                return -1;
+            }
+            try {
+                final long lastAccessedTime = session.getLastAccessedTime();
+                final int maxInactiveInterval = session.getMaxInactiveInterval();
+                if (maxInactiveInterval > 0 && now - lastAccessedTime > maxInactiveInterval * 1000L) {
+                    return -1;
+                }
+                return lastAccessedTime;
+            } catch (final IllegalStateException e) {
+                // the session was invalidated
+                return -1;
+            }
+        }
+    }
+
+    private static final class Candidate {
+
+        private final String mappingId;
+
+        private final Mapping mapping;
+
+        private final long lastAccessedTime;
+
+        Candidate(final String mappingId, final Mapping mapping, final long lastAccessedTime) {
+            this.mappingId = mappingId;
+            this.mapping = mapping;
+            this.lastAccessedTime = lastAccessedTime;
+        }
+    }
+}
@@ -22,11 +22,18 @@ import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * HashMap backed implementation of SessionMappingStorage.
+ * HashMap backed implementation of SessionMappingStorage, indexing sessions by principal as well. Every method
+ * synchronizes on the storage; see {@link ConcurrentSessionMappingStorage}, the default, for an implementation
+ * that scales with concurrent requests and can bound the number of sessions it maps.
  *
  * @author Scott Battaglia
  * @version $Revision$ $Date$
@@ -45,6 +52,16 @@ public final class HashMapBackedSessionMappingStorage implements SessionMappingS
      */
     private final Map<String, String> ID_TO_SESSION_KEY_MAPPING = new HashMap<String, String>();
 
+    /**
+     * Maps the key from the CAS Server to the principal of its session.
+     */
+    private final Map<String, String> SESSION_KEY_TO_PRINCIPAL = new HashMap<String, String>();
+
+    /**
+     * Maps the principal to the keys from the CAS Server of its sessions.
+     */
+    private final Map<String, Set<String>> PRINCIPAL_TO_SESSION_KEYS = new HashMap<String, Set<String>>();
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Override
@@ -73,6 +90,7 @@ public final class HashMapBackedSessionMappingStorage implements SessionMappingS
         }
         MANAGED_SESSIONS.remove(key);
         ID_TO_SESSION_KEY_MAPPING.remove(sessionId);
+        unindexPrincipal(key);
     }
 
     @Override
@@ -81,4 +99,46 @@ public final class HashMapBackedSessionMappingStorage implements SessionMappingS
         MANAGED_SESSIONS.put(mappingId, session);
 
     }
+
+    @Override
+    public synchronized void addPrincipalByMappingId(final String mappingId, final String principal) {
+        if (!MANAGED_SESSIONS.containsKey(mappingId)) {
+            return;
+        }
+        unindexPrincipal(mappingId);
+        SESSION_KEY_TO_PRINCIPAL.put(mappingId, principal);
+        PRINCIPAL_TO_SESSION_KEYS.computeIfAbsent(principal, name -> new HashSet<String>()).add(mappingId);
+    }
+
+    @Override
+    public synchronized String getPrincipalByMappingId(final String mappingId) {
+        return SESSION_KEY_TO_PRINCIPAL.get(mappingId);
+    }
+
+    @Override
+    public synchronized List<HttpSession> removeSessionsByPrincipal(final String principal) {
+        final Set<String> keys = PRINCIPAL_TO_SESSION_KEYS.get(principal);
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        final List<HttpSession> sessions = new ArrayList<HttpSession>(keys.size());
+        for (final String key : new ArrayList<String>(keys)) {
+            final HttpSession session = removeSessionByMappingId(key);
+            if (session != null) {
+                sessions.add(session);
+            }
+        }
+        return sessions;
+    }
+
+    private void unindexPrincipal(final String mappingId) {
+        final String principal = SESSION_KEY_TO_PRINCIPAL.remove(mappingId);
+        if (principal != null) {
+            final Set<String> keys = PRINCIPAL_TO_SESSION_KEYS.get(principal);
+            keys.remove(mappingId);
+            if (keys.isEmpty()) {
+                PRINCIPAL_TO_SESSION_KEYS.remove(principal);
+            }
+        }
+    }
 }
@@ -0,0 +1,147 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.session;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses the base64-encoded, deflated logout messages CAS servers send through the front channel. Messages
+ * are inflated as they are read, straight into the parser, up to a maximum size; larger messages are rejected
+ * rather than truncated. Inflaters hold native memory, so a handful of them are pooled and shared by all threads.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+final class LogoutMessageInflater {
+
+    private static final int POOL_CAPACITY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<Inflater>(POOL_CAPACITY);
+
+    private volatile long maxSize;
+
+    LogoutMessageInflater(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Opens a stream inflating the given logout message. The stream must be closed to give its inflater back.
+     *
+     * @param compressedMessage the base64-encoded, deflated logout message.
+     * @return the stream of the inflated message.
+     * @throws IllegalArgumentException if the message is not base64-encoded.
+     */
+    InputStream open(final String compressedMessage) {
+        final byte[] input = Base64.getDecoder().decode(compressedMessage);
+        Inflater inflater = this.inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        inflater.setInput(input);
+        return new InflatingInputStream(inflater, this.maxSize);
+    }
+
+    long getMaxSize() {
+        return this.maxSize;
+    }
+
+    void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    int size() {
+        return this.inflaters.size();
+    }
+
+    private void release(final Inflater inflater) {
+        inflater.reset();
+        if (!this.inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    private final class InflatingInputStream extends InputStream {
+
+        private final long maxSize;
+
+        private Inflater inflater;
+
+        private long count;
+
+        InflatingInputStream(final Inflater inflater, final long maxSize) {
+            this.inflater = inflater;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (this.inflater == null) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    final int inflated = this.inflater.inflate(b, off, len);
+                    if (inflated > 0) {
+                        this.count += inflated;
+                        if (this.maxSize > 0 && this.count > this.maxSize) {
+                            throw new IOException("Logout message exceeds the maximum size of " + this.maxSize + " bytes");
+                        }
+                        return inflated;
+                    }
+                    if (this.inflater.finished()) {
+                        return -1;
+                    }
+                    if (this.inflater.needsInput()) {
+                        throw new EOFException("Unexpected end of the compressed logout message");
+                    }
+                    if (this.inflater.needsDictionary()) {
+                        throw new ZipException("Compressed logout message requires a preset dictionary");
+                    }
+                }
+            } catch (final DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (this.inflater != null) {
+                release(this.inflater);
+                this.inflater = null;
+            }
+        }
+    }
+}
@@ -20,6 +20,9 @@ package org.apereo.cas.client.session;
 
 import jakarta.servlet.http.HttpSession;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Stores the mapping between sessions and keys to be retrieved later.
  *
@@ -51,4 +54,34 @@ public interface SessionMappingStorage {
      */
     void addSessionById(String mappingId, HttpSession session);
 
+    /**
+     * Associates the session mapped to the given Id with the principal it was authenticated for, so that
+     * {@link #removeSessionsByPrincipal(String)} finds it. Storages not indexing principals ignore this call.
+     *
+     * @param mappingId the id the session is keyed under.
+     * @param principal the name of the principal.
+     */
+    default void addPrincipalByMappingId(final String mappingId, final String principal) {
+        // principals are not indexed
+    }
+
+    /**
+     * Get the principal the session mapped to the given Id was authenticated for.
+     *
+     * @param mappingId the id the session is keyed under.
+     * @return the name of the principal, or null if unknown or if the storage does not index principals.
+     */
+    default String getPrincipalByMappingId(final String mappingId) {
+        return null;
+    }
+
+    /**
+     * Remove the HttpSessions of the given principal.
+     *
+     * @param principal the name of the principal.
+     * @return the HttpSessions that were mapped to the principal; none if the storage does not index principals.
+     */
+    default List<HttpSession> removeSessionsByPrincipal(final String principal) {
+        return Collections.emptyList();
+    }
 }
@@ -20,6 +20,7 @@ package org.apereo.cas.client.session;
 
 import org.apereo.cas.client.configuration.ConfigurationKeys;
 import org.apereo.cas.client.util.AbstractConfigurationFilter;
+import org.apereo.cas.client.util.ReflectUtils;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.FilterConfig;
@@ -34,6 +35,18 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implements the Single Sign Out protocol.  It handles registering the session and destroying the session.
+ * <p>
+ * <code>sessionMappingStorageClass</code> replaces the default {@link ConcurrentSessionMappingStorage}. With
+ * the default storage, the <code>maxSessionMappings</code> init parameter caps the number of
+ * sessions mapped (default: 0, unbounded) and <code>weakSessionReferences</code> holds sessions through weak
+ * references (default: false). <code>asyncLogout</code> answers logout requests of the CAS server right away
+ * and processes them on <code>logoutWorkerThreads</code> threads (default: 2), queueing up to
+ * <code>logoutQueueCapacity</code> of them (default: 10000); see {@link AsyncLogoutProcessor}.
+ * <code>maxLogoutMessageSize</code> bounds the size of decompressed logout messages (default: 65536 bytes).
+ * <code>principalLogout</code> makes logout requests destroy every session of the principal they name (default:
+ * false); this requires the ticket validation filter to be mapped after this filter, so that it records the principal
+ * of each session it validates a ticket for. As logout requests are not authenticated, their principal
+ * is only trusted when one of the tickets they list belongs to a session of that principal.
  *
  * @author Scott Battaglia
  * @version $Revision$ $Date$
@@ -59,6 +72,22 @@ public final class SingleSignOutFilter extends AbstractConfigurationFilter {
             setLogoutCallbackPath(getString(ConfigurationKeys.LOGOUT_CALLBACK_PATH));
             HANDLER.setArtifactParameterOverPost(getBoolean(ConfigurationKeys.ARTIFACT_PARAMETER_OVER_POST));
             HANDLER.setEagerlyCreateSessions(getBoolean(ConfigurationKeys.EAGERLY_CREATE_SESSIONS));
+            HANDLER.setMaxLogoutMessageSize(getLong(ConfigurationKeys.MAX_LOGOUT_MESSAGE_SIZE));
+            HANDLER.setPrincipalLogout(getBoolean(ConfigurationKeys.PRINCIPAL_LOGOUT));
+            HANDLER.setAsyncLogout(getBoolean(ConfigurationKeys.ASYNC_LOGOUT));
+            HANDLER.setLogoutQueueCapacity(getInt(ConfigurationKeys.LOGOUT_QUEUE_CAPACITY));
+            HANDLER.setLogoutWorkerThreads(getInt(ConfigurationKeys.LOGOUT_WORKER_THREADS));
+            final Class<? extends SessionMappingStorage> storageClass =
+                getClass(ConfigurationKeys.SESSION_MAPPING_STORAGE_CLASS);
+            if (storageClass != null) {
+                setSessionMappingStorage(ReflectUtils.newInstance(storageClass));
+            }
+            final SessionMappingStorage storage = HANDLER.getSessionMappingStorage();
+            if (storage instanceof ConcurrentSessionMappingStorage) {
+                final ConcurrentSessionMappingStorage concurrentStorage = (ConcurrentSessionMappingStorage) storage;
+                concurrentStorage.setMaxSessions(getInt(ConfigurationKeys.MAX_SESSION_MAPPINGS));
+                concurrentStorage.setWeakReferences(getBoolean(ConfigurationKeys.WEAK_SESSION_REFERENCES));
+            }
         }
         HANDLER.init();
         handlerInitialized.set(true);
@@ -105,6 +134,8 @@ public final class SingleSignOutFilter extends AbstractConfigurationFilter {
 
     @Override
     public void destroy() {
-        // nothing to do
+        HANDLER.destroy();
+        // the handler is static: should the filter be initialized or used again, initialize it again
+        this.handlerInitialized.set(false);
     }
 }
@@ -20,8 +20,10 @@ package org.apereo.cas.client.session;
 
 import org.apereo.cas.client.Protocol;
 import org.apereo.cas.client.configuration.ConfigurationKeys;
+import org.apereo.cas.client.util.AbstractCasFilter;
 import org.apereo.cas.client.util.CommonUtils;
 import org.apereo.cas.client.util.XmlUtils;
+import org.apereo.cas.client.validation.Assertion;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -29,12 +31,18 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
 
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.zip.Inflater;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Performs CAS single sign-out operations in an API-agnostic fashion.
@@ -46,7 +54,11 @@ import java.util.zip.Inflater;
  */
 public final class SingleSignOutHandler {
 
-    private final static int DECOMPRESSION_FACTOR = 10;
+    private final static int LOGOUT_BATCH_SIZE = 64;
+
+    private final static String SESSION_INDEX = "SessionIndex";
+
+    private final static String NAME_ID = "NameID";
 
     /** Logger instance */
     private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -54,7 +66,7 @@ public final class SingleSignOutHandler {
     private final LogoutStrategy logoutStrategy = isServlet30() ? new Servlet30LogoutStrategy() : new Servlet25LogoutStrategy();
 
     /** Mapping of token IDs and session IDs to HTTP sessions */
-    private SessionMappingStorage sessionMappingStorage = new HashMapBackedSessionMappingStorage();
+    private SessionMappingStorage sessionMappingStorage = new ConcurrentSessionMappingStorage();
 
     /** The name of the artifact parameter.  This is used to capture the session identifier. */
     private String artifactParameterName = Protocol.CAS2.getArtifactParameterName();
@@ -74,6 +86,24 @@ public final class SingleSignOutHandler {
 
     private List<String> safeParameters;
 
+    /** Whether {@link #init()} ran since the handler was created or last destroyed, guarded by this handler. */
+    private boolean initialized;
+
+    private boolean asyncLogout = false;
+
+    private boolean principalLogout = false;
+
+    private int logoutQueueCapacity = ConfigurationKeys.LOGOUT_QUEUE_CAPACITY.getDefaultValue();
+
+    private int logoutWorkerThreads = ConfigurationKeys.LOGOUT_WORKER_THREADS.getDefaultValue();
+
+    /** Inflater of compressed logout messages, bounding their size */
+    private final LogoutMessageInflater logoutMessageInflater =
+        new LogoutMessageInflater(ConfigurationKeys.MAX_LOGOUT_MESSAGE_SIZE.getDefaultValue());
+
+    /** Processor of logout requests in async mode, null otherwise */
+    private volatile AsyncLogoutProcessor asyncLogoutProcessor;
+
     private static boolean isServlet30() {
         try {
             return HttpServletRequest.class.getMethod("logout") != null;
@@ -126,11 +156,70 @@ public final class SingleSignOutHandler {
         this.eagerlyCreateSessions = eagerlyCreateSessions;
     }
 
+    /**
+     * Sets whether logout requests are answered right away and processed on worker threads, see
+     * {@link AsyncLogoutProcessor}. Logout requests arriving while the queue is full are processed synchronously.
+     * Takes effect on {@link #init()}.
+     *
+     * @param asyncLogout whether logout requests are processed asynchronously.
+     */
+    public void setAsyncLogout(final boolean asyncLogout) {
+        this.asyncLogout = asyncLogout;
+    }
+
+    /**
+     * Sets whether a logout request destroys every session of the principal it names, besides the sessions of the
+     * tickets it lists. Sessions are associated with principals by {@link #recordPrincipal(String, Assertion)},
+     * which the ticket validation filter calls once it validated the ticket of a recorded session, in the storage's
+     * principal index. Both storages shipped with the client index principals; custom ones may not.
+     * <p>
+     * Logout requests are not authenticated, so the NameID they carry is only trusted when one of their
+     * SessionIndex elements names a session recorded for that principal; anyone able to post to the application
+     * could otherwise end all the sessions of any user. A request whose tickets are all unknown, i.e. already
+     * logged out, destroys no session by principal.
+     *
+     * @param principalLogout whether sessions are destroyed by principal.
+     */
+    public void setPrincipalLogout(final boolean principalLogout) {
+        this.principalLogout = principalLogout;
+    }
+
+    /**
+     * @param logoutQueueCapacity maximum number of logout requests waiting to be processed in async mode.
+     */
+    public void setLogoutQueueCapacity(final int logoutQueueCapacity) {
+        this.logoutQueueCapacity = logoutQueueCapacity;
+    }
+
+    /**
+     * @param logoutWorkerThreads number of threads processing logout requests in async mode.
+     */
+    public void setLogoutWorkerThreads(final int logoutWorkerThreads) {
+        this.logoutWorkerThreads = logoutWorkerThreads;
+    }
+
+    /**
+     * Sets the maximum size of decompressed logout messages. Larger messages are rejected, their session is not
+     * destroyed. Defaults to 65536 bytes.
+     *
+     * @param maxLogoutMessageSize the maximum size in bytes, or 0 for no maximum.
+     */
+    public void setMaxLogoutMessageSize(final long maxLogoutMessageSize) {
+        this.logoutMessageInflater.setMaxSize(maxLogoutMessageSize);
+    }
+
+    /**
+     * @return the processor of logout requests, exposing its queue depth and lag, or null unless in async mode.
+     */
+    public AsyncLogoutProcessor getAsyncLogoutProcessor() {
+        return this.asyncLogoutProcessor;
+    }
+
     /**
      * Initializes the component for use.
      */
     public synchronized void init() {
-        if (this.safeParameters == null) {
+        if (!this.initialized) {
             CommonUtils.assertNotNull(this.artifactParameterName, "artifactParameterName cannot be null.");
             CommonUtils.assertNotNull(this.logoutParameterName, "logoutParameterName cannot be null.");
             CommonUtils.assertNotNull(this.sessionMappingStorage, "sessionMappingStorage cannot be null.");
@@ -141,6 +230,28 @@ public final class SingleSignOutHandler {
             } else {
                 this.safeParameters = Collections.singletonList(this.logoutParameterName);
             }
+            if (this.asyncLogout) {
+                this.asyncLogoutProcessor = new AsyncLogoutProcessor(message -> destroySession(message, null),
+                    this.logoutQueueCapacity, this.logoutWorkerThreads, LOGOUT_BATCH_SIZE);
+            }
+            this.initialized = true;
+        }
+    }
+
+    /**
+     * Stops processing logout requests asynchronously, after processing the ones still queued, and stops the
+     * background thread of a {@link ConcurrentSessionMappingStorage}. A later {@link #init()} initializes the
+     * handler again.
+     */
+    public synchronized void destroy() {
+        this.initialized = false;
+        final AsyncLogoutProcessor processor = this.asyncLogoutProcessor;
+        if (processor != null) {
+            this.asyncLogoutProcessor = null;
+            processor.shutdown();
+        }
+        if (this.sessionMappingStorage instanceof ConcurrentSessionMappingStorage) {
+            ((ConcurrentSessionMappingStorage) this.sessionMappingStorage).destroy();
         }
     }
 
@@ -155,6 +266,11 @@ public final class SingleSignOutHandler {
         if (isTokenRequest(request)) {
             logger.trace("Received a token request");
             recordSession(request);
+            if (this.principalLogout) {
+                final String token = CommonUtils.safeGetParameter(request, this.artifactParameterName, this.safeParameters);
+                final Consumer<Assertion> principalRecorder = assertion -> recordPrincipal(token, assertion);
+                request.setAttribute(AbstractCasFilter.CONST_CAS_PRINCIPAL_RECORDER, principalRecorder);
+            }
             return true;
         }
 
@@ -236,6 +352,23 @@ public final class SingleSignOutHandler {
         return request.getServletPath() + CommonUtils.nullToEmpty(request.getPathInfo());
     }
 
+    /**
+     * Associates the session recorded for a token with the principal the token was validated for. When sessions
+     * are destroyed by principal, token requests carry a callback to this method in the
+     * {@link AbstractCasFilter#CONST_CAS_PRINCIPAL_RECORDER} request attribute, which the ticket validation filter
+     * invokes on successful validation, synchronous or not; it must therefore follow the single sign-out filter.
+     *
+     * @param token the token the session was recorded for.
+     * @param assertion the assertion the token was validated into.
+     */
+    public void recordPrincipal(final String token, final Assertion assertion) {
+        if (!this.principalLogout || CommonUtils.isBlank(token) || assertion == null || assertion.getPrincipal() == null) {
+            return;
+        }
+        logger.debug("Recording principal {} for token {}", assertion.getPrincipal().getName(), token);
+        this.sessionMappingStorage.addPrincipalByMappingId(token, assertion.getPrincipal().getName());
+    }
+
     /**
      * Associates a token request with the current HTTP session by recording the mapping
      * in the the configured {@link SessionMappingStorage} container.
@@ -262,68 +395,144 @@ public final class SingleSignOutHandler {
     }
 
     /**
-     * Uncompress a logout message (base64 + deflate).
+     * Reads the session indexes, and the principal if sessions are destroyed by principal, out of a logout message,
+     * inflating compressed messages (base64 + deflate) as they are parsed.
      *
-     * @param originalMessage the original logout message.
-     * @return the uncompressed logout message.
+     * @param logoutMessage the logout message, possibly compressed.
+     * @return the texts of the <code>SessionIndex</code> and <code>NameID</code> elements, or null if the message
+     * cannot be read.
      */
-    private String uncompressLogoutMessage(final String originalMessage) {
-        final byte[] binaryMessage = Base64.getDecoder().decode(originalMessage);
+    private Map<String, List<String>> readLogoutMessage(final String logoutMessage) {
+        final String[] elements = this.principalLogout ? new String[]{SESSION_INDEX, NAME_ID} : new String[]{SESSION_INDEX};
+        if (logoutMessage.contains(SESSION_INDEX)) {
+            logger.trace("Logout request:\n{}", logoutMessage);
+            return XmlUtils.getTextForElementsByName(new InputSource(new StringReader(logoutMessage)), elements);
+        }
 
-        Inflater decompresser = null;
+        logger.trace("Compressed logout request:\n{}", logoutMessage);
+        final InputStream message;
         try {
-            // decompress the bytes
-            decompresser = new Inflater();
-            decompresser.setInput(binaryMessage);
-            final byte[] result = new byte[binaryMessage.length * DECOMPRESSION_FACTOR];
-
-            final int resultLength = decompresser.inflate(result);
-
-            // decode the bytes into a String
-            return new String(result, 0, resultLength, "UTF-8");
-        } catch (final Exception e) {
-            logger.error("Unable to decompress logout message", e);
-            throw new RuntimeException(e);
+            message = this.logoutMessageInflater.open(logoutMessage);
+        } catch (final IllegalArgumentException e) {
+            logger.error("Unable to decode logout message", e);
+            return null;
+        }
+        try {
+            final InputSource source = new InputSource(message);
+            source.setEncoding("UTF-8");
+            return XmlUtils.getTextForElementsByName(source, elements);
         } finally {
-            if (decompresser != null) {
-                decompresser.end();
-            }
+            CommonUtils.closeQuietly(message);
         }
     }
 
     /**
-     * Destroys the current HTTP session for the given CAS logout request.
+     * Destroys the current HTTP session for the given CAS logout request, or queues the logout message in async mode.
      *
      * @param request HTTP request containing a CAS logout message.
      */
     private void destroySession(final HttpServletRequest request) {
-        String logoutMessage = CommonUtils.safeGetParameter(request, this.logoutParameterName, this.safeParameters);
+        final String logoutMessage = CommonUtils.safeGetParameter(request, this.logoutParameterName, this.safeParameters);
         if (CommonUtils.isBlank(logoutMessage)) {
             logger.error("Could not locate logout message of the request from {}", this.logoutParameterName);
             return;
         }
-
-        if (!logoutMessage.contains("SessionIndex")) {
-            logoutMessage = uncompressLogoutMessage(logoutMessage);
+        // reject malformed messages right away rather than letting them take up the logout queue
+        if (!logoutMessage.contains(SESSION_INDEX) && !isBase64(logoutMessage)) {
+            logger.error("Logout message of the request from {} is neither a logout request nor a compressed one",
+                this.logoutParameterName);
+            return;
         }
 
-        logger.trace("Logout request:\n{}", logoutMessage);
-        final String token = XmlUtils.getTextForElement(logoutMessage, "SessionIndex");
-        if (CommonUtils.isNotBlank(token)) {
-            final HttpSession session = this.sessionMappingStorage.removeSessionByMappingId(token);
+        final AsyncLogoutProcessor processor = this.asyncLogoutProcessor;
+        if (processor != null) {
+            if (processor.submit(logoutMessage)) {
+                return;
+            }
+            logger.debug("Logout queue is full, processing the logout request synchronously");
+        }
+        destroySession(logoutMessage, request);
+    }
 
-            if (session != null) {
-                final String sessionID = session.getId();
-                logger.debug("Invalidating session [{}] for token [{}]", sessionID, token);
+    /**
+     * Destroys the HTTP session the given CAS logout message refers to.
+     *
+     * @param logoutMessage the logout message, possibly compressed.
+     * @param request HTTP request containing the logout message, or null if it is processed asynchronously.
+     */
+    private void destroySession(final String logoutMessage, final HttpServletRequest request) {
+        final Map<String, List<String>> elements = readLogoutMessage(logoutMessage);
+        if (elements == null) {
+            return;
+        }
 
-                try {
-                    session.invalidate();
-                } catch (final IllegalStateException e) {
-                    logger.debug("Error invalidating session.", e);
+        final List<HttpSession> sessions = new ArrayList<HttpSession>();
+        final Set<String> matchedPrincipals = new HashSet<String>();
+        for (final String token : elements.get(SESSION_INDEX)) {
+            if (CommonUtils.isNotBlank(token)) {
+                if (this.principalLogout) {
+                    final String principal = this.sessionMappingStorage.getPrincipalByMappingId(token);
+                    if (principal != null) {
+                        matchedPrincipals.add(principal);
+                    }
+                }
+                final HttpSession session = this.sessionMappingStorage.removeSessionByMappingId(token);
+                if (session != null) {
+                    logger.debug("Invalidating session [{}] for token [{}]", session.getId(), token);
+                    sessions.add(session);
+                }
+            }
+        }
+        if (this.principalLogout) {
+            for (final String principal : elements.get(NAME_ID)) {
+                if (CommonUtils.isBlank(principal)) {
+                    continue;
+                }
+                // logout requests are not authenticated: only trust a NameID one of the listed tickets vouches for
+                if (!matchedPrincipals.contains(principal)) {
+                    logger.debug("Ignoring principal [{}] no session index of the logout request was issued for", principal);
+                    continue;
                 }
-                this.logoutStrategy.logout(request);
+                final List<HttpSession> principalSessions = this.sessionMappingStorage.removeSessionsByPrincipal(principal);
+                logger.debug("Invalidating {} sessions of principal [{}]", principalSessions.size(), principal);
+                sessions.addAll(principalSessions);
+            }
+        }
+
+        for (final HttpSession session : sessions) {
+            try {
+                session.invalidate();
+            } catch (final IllegalStateException e) {
+                logger.debug("Error invalidating session.", e);
+            }
+        }
+        if (!sessions.isEmpty() && request != null) {
+            this.logoutStrategy.logout(request);
+        }
+    }
+
+    /**
+     * Determines whether the given text may be decoded as base64, the encoding of compressed logout messages.
+     *
+     * @param text the text to check.
+     * @return true if the text only contains base64 characters, with padding at its end only.
+     */
+    private static boolean isBase64(final String text) {
+        final int length = text.length();
+        if (length % 4 != 0) {
+            return false;
+        }
+        int padding = 0;
+        while (padding < 2 && text.charAt(length - 1 - padding) == '=') {
+            padding++;
+        }
+        for (int i = 0; i < length - padding; i++) {
+            final char c = text.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/')) {
+                return false;
             }
         }
+        return true;
     }
 
     private boolean isMultipartRequest(final HttpServletRequest request) {
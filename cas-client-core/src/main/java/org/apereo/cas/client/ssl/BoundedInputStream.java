@@ -0,0 +1,139 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream failing with a {@link ResponseTooLargeException} as soon as more than a maximum number of bytes is read,
+ * so that oversized responses are aborted without being buffered.
+ * <p>
+ * Closing this stream does not close the underlying connection stream, which is left to the transport: readers
+ * such as XML parsers close their input when done, before the transport had a chance to consume the rest of it.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+final class BoundedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+
+    private final String source;
+
+    private long count;
+
+    private BoundedInputStream(final InputStream in, final long maxSize, final String source) {
+        super(in);
+        this.maxSize = maxSize;
+        this.source = source;
+    }
+
+    /**
+     * Bounds the stream.
+     *
+     * @param in the stream to bound.
+     * @param maxSize maximum number of bytes; zero or less means unlimited.
+     * @param source description of the stream origin, for error messages.
+     * @return the bounded stream.
+     */
+    static InputStream bound(final InputStream in, final long maxSize, final Object source) {
+        return new BoundedInputStream(in, maxSize, String.valueOf(source));
+    }
+
+    /**
+     * Fails early when the declared length of a response already exceeds the maximum size.
+     *
+     * @param contentLength the declared length, or a negative value if unknown.
+     * @param maxSize maximum number of bytes; zero or less means unlimited.
+     * @param source description of the response origin, for error messages.
+     * @throws ResponseTooLargeException if the declared length exceeds the maximum size.
+     */
+    static void checkContentLength(final long contentLength, final long maxSize, final Object source)
+        throws ResponseTooLargeException {
+        if (maxSize > 0 && contentLength > maxSize) {
+            throw tooLarge(maxSize, source);
+        }
+    }
+
+    /**
+     * Reads the stream fully.
+     *
+     * @param in the stream to read.
+     * @return the bytes read.
+     * @throws IOException if the stream cannot be read.
+     */
+    static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    static ResponseTooLargeException tooLarge(final long maxSize, final Object source) {
+        return new ResponseTooLargeException("Response from " + source + " exceeds the maximum size of " + maxSize + " bytes");
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // the underlying stream is closed by the transport
+    }
+
+    private void count(final long read) throws ResponseTooLargeException {
+        this.count += read;
+        if (this.maxSize > 0 && this.count > this.maxSize) {
+            throw tooLarge(this.maxSize, this.source);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import java.io.IOException;
+
+/**
+ * Raised when a call to the CAS server is rejected without being attempted, either because the
+ * {@link CircuitBreaker} is open or because the concurrency limit of a {@link ResilientHttpTransport} is reached.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class CallNotPermittedException extends IOException {
+
+    private static final long serialVersionUID = 6108302618766458170L;
+
+    public CallNotPermittedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.apereo.cas.client.util.CommonUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the CAS node to contact among several server url prefixes.
+ * <p>
+ * Each node tracks an exponentially weighted moving average (EWMA) of its response time and its number of
+ * outstanding requests. Selection uses the "power of two choices": two healthy nodes are drawn at random and the
+ * one with the lower {@code latency * (outstanding + 1)} cost wins, which spreads load while steering away from
+ * slow or busy nodes. A node failing {@code failureThreshold} consecutive calls is ejected for
+ * {@code ejectionDuration} milliseconds; once back, a single failure ejects it again until it succeeds.
+ * If every node is ejected, the one due back first is used.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class CasServerLoadBalancer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CasServerLoadBalancer.class);
+
+    /** Balancers shared by the filters of an application, keyed by their node prefixes, while referenced. */
+    private static final ConcurrentMap<List<String>, CasServerLoadBalancer> SHARED = new ConcurrentHashMap<>();
+
+    private final List<Node> nodes;
+
+    /** Key of this balancer in the shared map, or null if it is not shared. */
+    private List<String> sharedKey;
+
+    /** Number of callers holding this balancer from {@link #shared(List)}; guarded by the shared map. */
+    private int references;
+
+    private volatile double decay = 0.3;
+
+    private volatile int failureThreshold = 3;
+
+    private volatile long ejectionDuration = 30000L;
+
+    public CasServerLoadBalancer(final List<String> prefixes) {
+        CommonUtils.assertNotEmpty(prefixes, "at least one CAS server url prefix is required.");
+        final List<Node> list = new ArrayList<>(prefixes.size());
+        for (final String prefix : prefixes) {
+            list.add(new Node(CommonUtils.addTrailingSlash(prefix)));
+        }
+        this.nodes = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the balancer shared by all callers using the same prefixes, so that the validation filter and the
+     * authentication filter of an application see the same node health. Each call must be matched by a call to
+     * {@link #release()} once the caller is destroyed; the balancer is forgotten when the last caller releases it.
+     *
+     * @param prefixes the CAS server url prefixes.
+     * @return the shared balancer.
+     */
+    public static CasServerLoadBalancer shared(final List<String> prefixes) {
+        final List<String> list = new ArrayList<>(prefixes.size());
+        for (final String prefix : prefixes) {
+            list.add(CommonUtils.addTrailingSlash(prefix));
+        }
+        final List<String> key = Collections.unmodifiableList(list);
+        return SHARED.compute(key, (k, existing) -> {
+            final CasServerLoadBalancer balancer = existing != null ? existing : new CasServerLoadBalancer(k);
+            balancer.sharedKey = k;
+            balancer.references++;
+            return balancer;
+        });
+    }
+
+    /**
+     * Releases a balancer obtained from {@link #shared(List)}. Does nothing for a balancer that is not shared.
+     */
+    public void release() {
+        if (this.sharedKey != null) {
+            SHARED.computeIfPresent(this.sharedKey, (k, balancer) -> balancer != this || --balancer.references > 0 ? balancer : null);
+        }
+    }
+
+    /**
+     * Parses a list of prefixes separated by whitespace or commas.
+     *
+     * @param prefixes the prefixes, as configured.
+     * @return the prefixes, each ending with a slash.
+     */
+    public static List<String> parsePrefixes(final String prefixes) {
+        final List<String> list = new ArrayList<>();
+        if (prefixes != null) {
+            for (final String prefix : prefixes.trim().split("[\\s,]+")) {
+                if (CommonUtils.isNotBlank(prefix)) {
+                    list.add(CommonUtils.addTrailingSlash(prefix));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Selects the node to contact.
+     *
+     * @param excluded node to avoid, i.e. one that just failed, or null.
+     * @return the selected node, or null if the excluded node is the only one.
+     */
+    public Node select(final Node excluded) {
+        final long now = System.currentTimeMillis();
+        final List<Node> healthy = new ArrayList<>(this.nodes.size());
+        Node firstBack = null;
+        for (final Node node : this.nodes) {
+            if (node == excluded) {
+                continue;
+            }
+            if (node.ejectedUntil <= now) {
+                healthy.add(node);
+            } else if (firstBack == null || node.ejectedUntil < firstBack.ejectedUntil) {
+                firstBack = node;
+            }
+        }
+        if (healthy.isEmpty()) {
+            return firstBack;
+        }
+        if (healthy.size() == 1) {
+            return healthy.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(healthy.size());
+        int second = random.nextInt(healthy.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        final Node a = healthy.get(first);
+        final Node b = healthy.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    /**
+     * Selects a node at random among the nodes that are not ejected, for callers that cannot record the outcome
+     * of their calls, such as a redirect of the browser to the login page. Latency and load are not considered
+     * since only the calls recorded through this balancer feed them.
+     *
+     * @return the selected node.
+     */
+    public Node selectAvailable() {
+        final long now = System.currentTimeMillis();
+        final List<Node> healthy = new ArrayList<>(this.nodes.size());
+        for (final Node node : this.nodes) {
+            if (node.ejectedUntil <= now) {
+                healthy.add(node);
+            }
+        }
+        if (healthy.isEmpty()) {
+            return select(null);
+        }
+        return healthy.get(ThreadLocalRandom.current().nextInt(healthy.size()));
+    }
+
+    /**
+     * Records that a call to the node started.
+     *
+     * @param node the node.
+     */
+    public void onCallStarted(final Node node) {
+        node.outstanding.incrementAndGet();
+    }
+
+    /**
+     * Records a successful call to the node.
+     *
+     * @param node the node.
+     * @param durationNanos duration of the call in nanoseconds.
+     */
+    public void onCallSucceeded(final Node node, final long durationNanos) {
+        node.outstanding.decrementAndGet();
+        node.consecutiveFailures.set(0);
+        node.ejectedUntil = 0;
+        node.update(durationNanos, this.decay);
+    }
+
+    /**
+     * Records a failed call to the node, ejecting it after too many consecutive failures.
+     *
+     * @param node the node.
+     * @param durationNanos duration of the call in nanoseconds.
+     */
+    public void onCallFailed(final Node node, final long durationNanos) {
+        node.outstanding.decrementAndGet();
+        node.update(durationNanos, this.decay);
+        if (node.consecutiveFailures.incrementAndGet() >= this.failureThreshold) {
+            node.ejectedUntil = System.currentTimeMillis() + this.ejectionDuration;
+            LOGGER.warn("Ejecting CAS server node [{}] for {} ms after {} consecutive failures",
+                node.prefix, this.ejectionDuration, node.consecutiveFailures.get());
+        }
+    }
+
+    /**
+     * Records a call to the node that failed for a reason unrelated to the health of the node, such as an oversized
+     * or malformed response. It neither counts toward ejection nor resets the consecutive failures of the node.
+     *
+     * @param node the node.
+     * @param durationNanos duration of the call in nanoseconds.
+     */
+    public void onCallAborted(final Node node, final long durationNanos) {
+        node.outstanding.decrementAndGet();
+        node.update(durationNanos, this.decay);
+    }
+
+    public List<Node> getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * @param decay weight of the latest sample in the latency average, between 0 and 1.
+     */
+    public void setDecay(final double decay) {
+        this.decay = decay;
+    }
+
+    /**
+     * @param failureThreshold number of consecutive failures ejecting a node.
+     */
+    public void setFailureThreshold(final int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @param ejectionDuration milliseconds an ejected node is kept out of rotation.
+     */
+    public void setEjectionDuration(final long ejectionDuration) {
+        this.ejectionDuration = ejectionDuration;
+    }
+
+    /**
+     * A CAS server node and its statistics.
+     */
+    public static final class Node {
+
+        private final String prefix;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        private volatile double latencyEwma;
+
+        private volatile long ejectedUntil;
+
+        Node(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        private synchronized void update(final long durationNanos, final double decay) {
+            this.latencyEwma = this.latencyEwma == 0 ? durationNanos : this.latencyEwma + decay * (durationNanos - this.latencyEwma);
+        }
+
+        private double cost() {
+            return (this.latencyEwma + 1) * (this.outstanding.get() + 1);
+        }
+
+        public String getPrefix() {
+            return this.prefix;
+        }
+
+        public int getOutstanding() {
+            return this.outstanding.get();
+        }
+
+        public double getLatencyEwmaMillis() {
+            return this.latencyEwma / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        public boolean isEjected() {
+            return this.ejectedUntil > System.currentTimeMillis();
+        }
+
+        @Override
+        public String toString() {
+            return this.prefix;
+        }
+    }
+}
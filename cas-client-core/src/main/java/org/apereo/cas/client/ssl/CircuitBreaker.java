@@ -0,0 +1,298 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker guarding calls to the CAS server.
+ * <p>
+ * While {@link State#CLOSED closed}, the outcome of the last {@code windowSize} calls is recorded. Once at least
+ * {@code minimumNumberOfCalls} are recorded, the breaker opens when the share of failed calls reaches
+ * {@code failureRateThreshold} percent, or the share of calls slower than {@code slowCallDurationThreshold} reaches
+ * {@code slowCallRateThreshold} percent. While {@link State#OPEN open}, calls are rejected. After {@code openDuration}
+ * the breaker turns {@link State#HALF_OPEN half-open} and lets {@code permittedCallsInHalfOpenState} probes through:
+ * the breaker closes when they all succeed and opens again on the first failure or slow call.
+ * <p>
+ * Only the configuration is serialized; a deserialized breaker starts closed without listeners.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class CircuitBreaker implements Serializable {
+
+    private static final long serialVersionUID = -3358139411843593617L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /** States of the circuit breaker. */
+    public enum State {
+        /** Calls are permitted and their outcome recorded. */
+        CLOSED,
+        /** Calls are rejected. */
+        OPEN,
+        /** A limited number of probe calls is permitted. */
+        HALF_OPEN
+    }
+
+    private final String name;
+
+    private int windowSize = 20;
+
+    private int minimumNumberOfCalls = 10;
+
+    private int failureRateThreshold = 50;
+
+    private long slowCallDurationThreshold = 5000L;
+
+    private int slowCallRateThreshold = 100;
+
+    private long openDuration = 30000L;
+
+    private int permittedCallsInHalfOpenState = 3;
+
+    private transient List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<>();
+
+    private transient State state = State.CLOSED;
+
+    /** Ring of recorded outcomes: bit 0 marks a failure, bit 1 a slow call. */
+    private transient byte[] outcomes = new byte[this.windowSize];
+
+    private transient int recordedCalls;
+
+    private transient int nextOutcome;
+
+    private transient int failedCalls;
+
+    private transient int slowCalls;
+
+    private transient long openedAt;
+
+    private transient int halfOpenCallsInFlight;
+
+    private transient int halfOpenSuccesses;
+
+    public CircuitBreaker(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Asks for permission to perform a call. Callers granted permission must report the outcome with
+     * {@link #onSuccess(long)} or {@link #onError(long)}.
+     *
+     * @return true if the call may proceed.
+     */
+    public boolean tryAcquirePermission() {
+        final State from;
+        synchronized (this) {
+            from = this.state;
+            if (this.state == State.CLOSED) {
+                return true;
+            }
+            if (this.state == State.OPEN) {
+                if (System.currentTimeMillis() - this.openedAt < this.openDuration) {
+                    return false;
+                }
+                this.state = State.HALF_OPEN;
+                this.halfOpenCallsInFlight = 0;
+                this.halfOpenSuccesses = 0;
+            }
+            if (this.halfOpenCallsInFlight + this.halfOpenSuccesses >= this.permittedCallsInHalfOpenState) {
+                return false;
+            }
+            this.halfOpenCallsInFlight++;
+        }
+        if (from != State.HALF_OPEN) {
+            notifyListeners(from, State.HALF_OPEN);
+        }
+        return true;
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param durationNanos duration of the call in nanoseconds.
+     */
+    public void onSuccess(final long durationNanos) {
+        onResult(false, durationNanos);
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @param durationNanos duration of the call in nanoseconds.
+     */
+    public void onError(final long durationNanos) {
+        onResult(true, durationNanos);
+    }
+
+    private void onResult(final boolean failed, final long durationNanos) {
+        final boolean slow = TimeUnit.NANOSECONDS.toMillis(durationNanos) >= this.slowCallDurationThreshold;
+        final State from;
+        final State to;
+        synchronized (this) {
+            from = this.state;
+            if (this.state == State.HALF_OPEN) {
+                this.halfOpenCallsInFlight = Math.max(0, this.halfOpenCallsInFlight - 1);
+                if (failed || slow) {
+                    open();
+                } else if (++this.halfOpenSuccesses >= this.permittedCallsInHalfOpenState) {
+                    close();
+                }
+            } else if (this.state == State.CLOSED) {
+                record(failed, slow);
+                if (this.recordedCalls >= this.minimumNumberOfCalls
+                    && (this.failedCalls * 100 >= this.failureRateThreshold * this.recordedCalls
+                        || this.slowCalls * 100 >= this.slowCallRateThreshold * this.recordedCalls)) {
+                    open();
+                }
+            }
+            to = this.state;
+        }
+        if (from != to) {
+            notifyListeners(from, to);
+        }
+    }
+
+    private void record(final boolean failed, final boolean slow) {
+        if (this.recordedCalls == this.outcomes.length) {
+            final byte evicted = this.outcomes[this.nextOutcome];
+            this.failedCalls -= evicted & 1;
+            this.slowCalls -= (evicted >> 1) & 1;
+        } else {
+            this.recordedCalls++;
+        }
+        final byte outcome = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        this.outcomes[this.nextOutcome] = outcome;
+        this.nextOutcome = (this.nextOutcome + 1) % this.outcomes.length;
+        this.failedCalls += failed ? 1 : 0;
+        this.slowCalls += slow ? 1 : 0;
+    }
+
+    private void open() {
+        this.state = State.OPEN;
+        this.openedAt = System.currentTimeMillis();
+        resetWindow();
+    }
+
+    private void close() {
+        this.state = State.CLOSED;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        this.outcomes = new byte[this.windowSize];
+        this.recordedCalls = 0;
+        this.nextOutcome = 0;
+        this.failedCalls = 0;
+        this.slowCalls = 0;
+    }
+
+    private void notifyListeners(final State from, final State to) {
+        LOGGER.info("Circuit breaker [{}] changed state from {} to {}", this.name, from, to);
+        for (final CircuitBreakerListener listener : this.listeners) {
+            try {
+                listener.onStateTransition(this, from, to);
+            } catch (final RuntimeException e) {
+                LOGGER.warn("Circuit breaker listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    public void addListener(final CircuitBreakerListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(final CircuitBreakerListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * @param windowSize number of most recent calls whose outcome is considered.
+     */
+    public synchronized void setWindowSize(final int windowSize) {
+        this.windowSize = Math.max(1, windowSize);
+        resetWindow();
+    }
+
+    /**
+     * @param minimumNumberOfCalls number of calls to record before the failure rates are evaluated.
+     */
+    public void setMinimumNumberOfCalls(final int minimumNumberOfCalls) {
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+    }
+
+    /**
+     * @param failureRateThreshold percentage of failed calls that opens the breaker.
+     */
+    public void setFailureRateThreshold(final int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * @param slowCallDurationThreshold duration in milliseconds from which a call is considered slow.
+     */
+    public void setSlowCallDurationThreshold(final long slowCallDurationThreshold) {
+        this.slowCallDurationThreshold = slowCallDurationThreshold;
+    }
+
+    /**
+     * @param slowCallRateThreshold percentage of slow calls that opens the breaker.
+     */
+    public void setSlowCallRateThreshold(final int slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * @param openDuration milliseconds to reject calls before probing the server again.
+     */
+    public void setOpenDuration(final long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * @param permittedCallsInHalfOpenState number of probe calls that must succeed to close the breaker.
+     */
+    public void setPermittedCallsInHalfOpenState(final int permittedCallsInHalfOpenState) {
+        this.permittedCallsInHalfOpenState = Math.max(1, permittedCallsInHalfOpenState);
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.state = State.CLOSED;
+        this.outcomes = new byte[this.windowSize];
+    }
+}
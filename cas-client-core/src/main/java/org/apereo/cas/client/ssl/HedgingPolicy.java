@@ -0,0 +1,204 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a {@link LoadBalancingHttpTransport} sends a duplicate of a slow request to a second CAS node.
+ * <p>
+ * The hedge is sent once the request has been outstanding for longer than the configured percentile of recent
+ * response times (by default the 95th), but no sooner than {@code minDelay} milliseconds. Until {@code minSamples}
+ * responses are recorded, {@code initialDelay} is used. To bound the extra load on the server, hedges are limited
+ * to {@code maxHedgeRatio} percent of the requests. Only requests marked {@link HttpTransportRequest#isIdempotent()
+ * idempotent} are hedged.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class HedgingPolicy implements Serializable {
+
+    private static final long serialVersionUID = 7529960166310937473L;
+
+    private static final int WINDOW_SIZE = 256;
+
+    private int percentile = 95;
+
+    private long minDelay = 20L;
+
+    private long initialDelay = 500L;
+
+    private int minSamples = 20;
+
+    private int maxHedgeRatio = 10;
+
+    private transient long[] latencies = new long[WINDOW_SIZE];
+
+    private transient int recordedLatencies;
+
+    private transient int nextLatency;
+
+    private transient AtomicLong requests = new AtomicLong();
+
+    private transient AtomicLong hedges = new AtomicLong();
+
+    private transient volatile Executor executor;
+
+    /**
+     * Records the response time of a successful attempt.
+     *
+     * @param durationNanos the response time in nanoseconds.
+     */
+    public synchronized void recordLatency(final long durationNanos) {
+        this.latencies[this.nextLatency] = durationNanos;
+        this.nextLatency = (this.nextLatency + 1) % this.latencies.length;
+        this.recordedLatencies = Math.min(this.recordedLatencies + 1, this.latencies.length);
+    }
+
+    /**
+     * @return milliseconds to wait for a response before sending a hedge.
+     */
+    public long getDelay() {
+        final long[] sorted;
+        synchronized (this) {
+            if (this.recordedLatencies < this.minSamples) {
+                return this.initialDelay;
+            }
+            sorted = Arrays.copyOf(this.latencies, this.recordedLatencies);
+        }
+        Arrays.sort(sorted);
+        final int index = Math.max(0, (int) Math.ceil(this.percentile / 100.0 * sorted.length) - 1);
+        return Math.max(this.minDelay, TimeUnit.NANOSECONDS.toMillis(sorted[index]));
+    }
+
+    /**
+     * Records a request eligible for hedging.
+     */
+    public void onRequest() {
+        this.requests.incrementAndGet();
+    }
+
+    /**
+     * Takes a hedge from the budget.
+     *
+     * @return true if a hedge may be sent.
+     */
+    public boolean tryAcquireHedge() {
+        while (true) {
+            final long current = this.hedges.get();
+            if ((current + 1) * 100 > this.requests.get() * this.maxHedgeRatio) {
+                return false;
+            }
+            if (this.hedges.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a hedge taken from the budget that was not sent after all.
+     */
+    public void releaseHedge() {
+        this.hedges.decrementAndGet();
+    }
+
+    public long getRequestCount() {
+        return this.requests.get();
+    }
+
+    public long getHedgeCount() {
+        return this.hedges.get();
+    }
+
+    /**
+     * @return executor running transports that block while waiting for the server.
+     */
+    public Executor getExecutor() {
+        Executor result = this.executor;
+        if (result == null) {
+            synchronized (this) {
+                result = this.executor;
+                if (result == null) {
+                    final ExecutorService service = Executors.newCachedThreadPool(runnable -> {
+                        final Thread thread = new Thread(runnable, "cas-hedging");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.executor = service;
+                    result = service;
+                }
+            }
+        }
+        return result;
+    }
+
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param percentile percentile of recent response times after which a hedge is sent.
+     */
+    public void setPercentile(final int percentile) {
+        this.percentile = Math.max(1, Math.min(100, percentile));
+    }
+
+    /**
+     * @param minDelay minimum milliseconds to wait before sending a hedge.
+     */
+    public void setMinDelay(final long minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    /**
+     * @param initialDelay milliseconds to wait before sending a hedge while too few response times are known.
+     */
+    public void setInitialDelay(final long initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    /**
+     * @param minSamples number of response times to record before the percentile is used.
+     */
+    public void setMinSamples(final int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * @param maxHedgeRatio maximum percentage of requests that may be hedged.
+     */
+    public void setMaxHedgeRatio(final int maxHedgeRatio) {
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.latencies = new long[WINDOW_SIZE];
+        this.requests = new AtomicLong();
+        this.hedges = new AtomicLong();
+    }
+}
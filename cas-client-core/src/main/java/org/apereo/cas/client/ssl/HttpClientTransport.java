@@ -0,0 +1,587 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.apereo.cas.client.util.CommonUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link HttpTransport} built on top of a shared {@link HttpClient}. The client keeps a pool of
+ * persistent connections to the CAS server and negotiates HTTP/2 when the server supports it, so that
+ * subsequent validations do not pay for a new TCP and TLS handshake.
+ * <p>
+ * The underlying client is created lazily and is not serialized; a deserialized transport builds
+ * its own client on first use. The client is rebuilt whenever the {@link HttpsURLConnectionFactory}
+ * reloads its SSL context.
+ * <p>
+ * As with {@link java.net.HttpURLConnection}, redirects are only followed for requests without a body and to
+ * urls of the same protocol, and the read timeout bounds every read of a synchronous response, so that a server
+ * stalling in the middle of a body does not hold the calling thread.
+ * <p>
+ * {@link HttpClient} cannot be configured with a {@link javax.net.ssl.HostnameVerifier}. Deployments
+ * relying on a custom verifier or on {@code ignoreSslFailures} should use {@link HttpURLConnectionTransport}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class HttpClientTransport implements HttpTransport {
+
+    private static final long serialVersionUID = 4416472186364741282L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientTransport.class);
+
+    /** Maximum number of redirects followed for a request, as for {@link java.net.HttpURLConnection}. */
+    private static final int MAX_REDIRECTS = 20;
+
+    /**
+     * Maximum number of bytes read from what a reader left of a response to return the connection to the pool;
+     * beyond that the exchange is aborted instead.
+     */
+    private static final int MAX_DRAINED = 64 * 1024;
+
+    /** Source of the SSL configuration, i.e. client certificates. */
+    private final HttpsURLConnectionFactory sslContextFactory;
+
+    /** Connect timeout in milliseconds. Zero or less means no timeout. */
+    private int connectTimeout;
+
+    /** Read timeout in milliseconds. Zero or less means no timeout. */
+    private int readTimeout;
+
+    private HttpClient.Version httpVersion = HttpClient.Version.HTTP_2;
+
+    private transient volatile HttpClient httpClient;
+
+    /** SSL context the current client was built with; the client is rebuilt when the factory reloads it. */
+    private transient volatile SSLContext clientSSLContext;
+
+    public HttpClientTransport() {
+        this(new HttpsURLConnectionFactory());
+    }
+
+    public HttpClientTransport(final HttpsURLConnectionFactory sslContextFactory) {
+        this.sslContextFactory = sslContextFactory;
+    }
+
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.httpClient = null;
+    }
+
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public void setHttpVersion(final HttpClient.Version httpVersion) {
+        this.httpVersion = httpVersion;
+        this.httpClient = null;
+    }
+
+    @Override
+    public HttpTransportResponse execute(final HttpTransportRequest request) throws IOException {
+        return send(request, (response, body) -> new HttpTransportResponse(response.statusCode(),
+            contentType(response), BoundedInputStream.readAll(body)));
+    }
+
+    /**
+     * Hands the body over to the reader while it is received from the server; the body is never buffered
+     * as a whole by the transport.
+     */
+    @Override
+    public <T> T execute(final HttpTransportRequest request, final ResponseBodyReader<T> reader) throws IOException {
+        return send(request, (response, body) -> reader.read(body, contentType(response)));
+    }
+
+    /**
+     * Sends the request with {@link HttpClient#sendAsync}; no thread is held while waiting for the server,
+     * so the executor is not used. Cancelling the returned future aborts the exchange.
+     */
+    @Override
+    public CompletableFuture<HttpTransportResponse> executeAsync(final HttpTransportRequest request,
+                                                                 final Executor executor) {
+        final AtomicReference<CompletableFuture<?>> exchange = new AtomicReference<>();
+        final CompletableFuture<HttpTransportResponse> future = sendAsync(request, 0, exchange);
+        future.whenComplete((response, throwable) -> {
+            if (future.isCancelled()) {
+                exchange.get().cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<HttpTransportResponse> sendAsync(final HttpTransportRequest request, final int redirects,
+                                                               final AtomicReference<CompletableFuture<?>> exchange) {
+        final HttpRequest httpRequest;
+        try {
+            httpRequest = buildHttpRequest(request);
+        } catch (final IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final CompletableFuture<HttpResponse<byte[]>> sent = getHttpClient().sendAsync(httpRequest,
+            responseInfo -> isRedirect(request, responseInfo, redirects)
+                ? HttpResponse.BodySubscribers.replacing(new byte[0])
+                : new BoundedBodySubscriber(request, responseInfo));
+        exchange.set(sent);
+        return sent.thenCompose(response -> {
+            try {
+                final HttpTransportRequest redirect = redirectOf(request, response.statusCode(), response.headers(), redirects);
+                if (redirect != null) {
+                    return sendAsync(redirect, redirects + 1, exchange);
+                }
+                checkStatus(request, response.statusCode());
+                return CompletableFuture.completedFuture(
+                    new HttpTransportResponse(response.statusCode(), contentType(response), response.body()));
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private <T> T send(final HttpTransportRequest request, final StreamHandler<T> handler) throws IOException {
+        HttpTransportRequest current = request;
+        for (int redirects = 0; ; redirects++) {
+            final HttpResponse<InputStream> response = sendOnce(current);
+            final InputStream in = response.body();
+            try {
+                final HttpTransportRequest redirect = redirectOf(current, response.statusCode(), response.headers(), redirects);
+                if (redirect == null) {
+                    return handle(current, response, handler);
+                }
+                current = redirect;
+            } finally {
+                CommonUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    private HttpResponse<InputStream> sendOnce(final HttpTransportRequest request) throws IOException {
+        final HttpRequest httpRequest = buildHttpRequest(request);
+        try {
+            return getHttpClient().send(httpRequest, responseInfo -> new TimedBodySubscriber(this.readTimeout, request.getUrl()));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response from " + request.getUrl());
+        }
+    }
+
+    private static <T> T handle(final HttpTransportRequest request, final HttpResponse<InputStream> response,
+                                final StreamHandler<T> handler) throws IOException {
+        checkStatus(request, response.statusCode());
+        BoundedInputStream.checkContentLength(contentLength(response), request.getMaxResponseSize(), request.getUrl());
+        final InputStream body = BoundedInputStream.bound(response.body(), request.getMaxResponseSize(), request.getUrl());
+        final T result = handler.handle(response, body);
+        drain(body);
+        return result;
+    }
+
+    /**
+     * Consumes what the handler left of a small response so that the connection goes back to the pool. The result
+     * was already read: a remainder that is large, oversized or fails to arrive is left to the closing of the
+     * response, which aborts the exchange, rather than failing the request.
+     */
+    private static void drain(final InputStream body) {
+        final byte[] buffer = new byte[4096];
+        try {
+            long drained = 0;
+            int read;
+            while (drained < MAX_DRAINED && (read = body.read(buffer)) != -1) {
+                drained += read;
+            }
+        } catch (final IOException e) {
+            LOGGER.debug("Aborting the rest of the response instead of draining it", e);
+        }
+    }
+
+    private static boolean isRedirect(final HttpTransportRequest request, final HttpResponse.ResponseInfo responseInfo,
+                                      final int redirects) {
+        try {
+            return redirectOf(request, responseInfo.statusCode(), responseInfo.headers(), redirects) != null;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the request to send to follow the redirect the server answered with, or null if the response is
+     * not a redirect to follow.
+     */
+    private static HttpTransportRequest redirectOf(final HttpTransportRequest request, final int statusCode,
+                                                   final HttpHeaders headers, final int redirects) throws IOException {
+        if (statusCode != 301 && statusCode != 302 && statusCode != 303 && statusCode != 307 && statusCode != 308
+            || request.getBody() != null || redirects >= MAX_REDIRECTS) {
+            return null;
+        }
+        final String location = headers.firstValue("Location").orElse(null);
+        if (location == null) {
+            return null;
+        }
+        final URL target = new URL(request.getUrl(), location);
+        if (!target.getProtocol().equalsIgnoreCase(request.getUrl().getProtocol())) {
+            return null;
+        }
+        LOGGER.debug("Following redirect from {} to {}", request.getUrl(), target);
+        return request.withUrl(target);
+    }
+
+    private HttpRequest buildHttpRequest(final HttpTransportRequest request) throws IOException {
+        final HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.getUrl().toURI());
+        } catch (final URISyntaxException e) {
+            throw new IOException("Invalid url " + request.getUrl(), e);
+        }
+        if (this.readTimeout > 0) {
+            builder.timeout(Duration.ofMillis(this.readTimeout));
+        }
+        for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (request.getBody() != null) {
+            builder.method(request.getMethod(), HttpRequest.BodyPublishers.ofByteArray(request.getBody()));
+        } else {
+            builder.method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+
+    private static void checkStatus(final HttpTransportRequest request, final int statusCode) throws IOException {
+        if (statusCode >= 400) {
+            throw new HttpStatusException(statusCode, request.getUrl());
+        }
+    }
+
+    private static String contentType(final HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Type").orElse(null);
+    }
+
+    private static long contentLength(final HttpResponse<?> response) {
+        return response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+    }
+
+    /**
+     * Releases the underlying client. As of Java 21 the client is closed, waiting for the requests in flight;
+     * before that, its threads stop once it is no longer referenced. The transport stays usable and builds a new
+     * client on next use.
+     */
+    @Override
+    public void close() {
+        final HttpClient client;
+        synchronized (this) {
+            client = this.httpClient;
+            this.httpClient = null;
+            this.clientSSLContext = null;
+        }
+        if (client instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) client).close();
+            } catch (final Exception e) {
+                LOGGER.debug("Failed to close HTTP client", e);
+            }
+        }
+    }
+
+    private HttpClient getHttpClient() {
+        final SSLContext sslContext = this.sslContextFactory != null ? this.sslContextFactory.getSSLContext() : null;
+        HttpClient client = this.httpClient;
+        if (client == null || sslContext != this.clientSSLContext) {
+            synchronized (this) {
+                client = this.httpClient;
+                if (client == null || sslContext != this.clientSSLContext) {
+                    client = buildHttpClient(sslContext);
+                    this.clientSSLContext = sslContext;
+                    this.httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private HttpClient buildHttpClient(final SSLContext sslContext) {
+        final HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(this.httpVersion)
+            .followRedirects(HttpClient.Redirect.NEVER);
+        if (this.connectTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(this.connectTimeout));
+        }
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+        LOGGER.debug("Created HTTP client using {} with connect timeout {} ms", this.httpVersion, this.connectTimeout);
+        return builder.build();
+    }
+
+    /**
+     * Consumes the body of a response read from the connection.
+     */
+    @FunctionalInterface
+    private interface StreamHandler<T> {
+        T handle(HttpResponse<InputStream> response, InputStream body) throws IOException;
+    }
+
+    /**
+     * Hands the body of a synchronous response over as a stream whose reads fail once nothing was received from
+     * the server for the read timeout; {@link HttpRequest#timeout} only bounds the wait for the response headers.
+     * Closing the stream before the end of the body cancels the exchange.
+     */
+    private static final class TimedBodySubscriber extends InputStream implements HttpResponse.BodySubscriber<InputStream> {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+        private final long readTimeout;
+
+        private final Object source;
+
+        private volatile Flow.Subscription subscription;
+
+        private volatile boolean closed;
+
+        private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+
+        private ByteBuffer current;
+
+        private boolean ended;
+
+        private IOException failure;
+
+        TimedBodySubscriber(final long readTimeout, final Object source) {
+            this.readTimeout = readTimeout;
+            this.source = source;
+        }
+
+        @Override
+        public CompletionStage<InputStream> getBody() {
+            return CompletableFuture.completedFuture(this);
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> items) {
+            this.received.offer(items);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.received.offer(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.received.offer(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final ByteBuffer buffer = nextBuffer();
+            return buffer != null ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            final ByteBuffer buffer = nextBuffer();
+            if (buffer == null) {
+                return -1;
+            }
+            final int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return this.current != null ? this.current.remaining() : 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private ByteBuffer nextBuffer() throws IOException {
+            while (this.current == null || !this.current.hasRemaining()) {
+                if (this.buffers.hasNext()) {
+                    this.current = this.buffers.next();
+                    continue;
+                }
+                if (this.failure != null) {
+                    throw this.failure;
+                }
+                if (this.closed) {
+                    throw new IOException("Stream closed");
+                }
+                if (this.ended) {
+                    return null;
+                }
+                final Object item = poll();
+                if (item == END) {
+                    this.ended = true;
+                } else if (item instanceof Throwable) {
+                    this.failure = item instanceof IOException ? (IOException) item
+                        : new IOException("Failed to read response from " + this.source, (Throwable) item);
+                } else {
+                    this.buffers = ((List<ByteBuffer>) item).iterator();
+                    this.subscription.request(1);
+                }
+            }
+            return this.current;
+        }
+
+        private Object poll() throws IOException {
+            final Object item;
+            try {
+                item = this.readTimeout > 0 ? this.received.poll(this.readTimeout, TimeUnit.MILLISECONDS) : this.received.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new InterruptedIOException("Interrupted while reading response from " + this.source);
+            }
+            if (item == null) {
+                close();
+                throw new SocketTimeoutException("Read timed out after " + this.readTimeout + " ms reading response from "
+                                                 + this.source);
+            }
+            return item;
+        }
+
+        @Override
+        public void close() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            final Flow.Subscription active = this.subscription;
+            if (active != null && !this.ended && this.failure == null) {
+                active.cancel();
+            }
+        }
+    }
+
+    /**
+     * Collects the body of an asynchronous response, cancelling the exchange as soon as it grows
+     * beyond the maximum response size of the request.
+     */
+    private static final class BoundedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private final long maxResponseSize;
+
+        private final Object source;
+
+        private Flow.Subscription subscription;
+
+        BoundedBodySubscriber(final HttpTransportRequest request, final HttpResponse.ResponseInfo responseInfo) {
+            this.maxResponseSize = request.getMaxResponseSize();
+            this.source = request.getUrl();
+            if (responseInfo.statusCode() < 400) {
+                try {
+                    BoundedInputStream.checkContentLength(
+                        responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1L), this.maxResponseSize, this.source);
+                } catch (final IOException e) {
+                    this.result.completeExceptionally(e);
+                }
+            }
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return this.result;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.result.isDone()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> items) {
+            if (this.result.isDone()) {
+                return;
+            }
+            for (final ByteBuffer item : items) {
+                if (this.maxResponseSize > 0 && this.buffer.size() + (long) item.remaining() > this.maxResponseSize) {
+                    this.subscription.cancel();
+                    this.result.completeExceptionally(BoundedInputStream.tooLarge(this.maxResponseSize, this.source));
+                    return;
+                }
+                final byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                this.buffer.write(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.result.complete(this.buffer.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Raised when the CAS server answers with an error status code.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 2957305328740812914L;
+
+    private final int statusCode;
+
+    public HttpStatusException(final int statusCode, final URL url) {
+        super("Server returned HTTP response code: " + statusCode + " for URL: " + url);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+}
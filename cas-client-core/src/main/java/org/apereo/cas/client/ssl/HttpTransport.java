@@ -0,0 +1,97 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport used to exchange HTTP messages with the CAS server, i.e. for ticket validation
+ * and proxy ticket retrieval. Implementations are expected to be thread-safe and to reuse
+ * connections across calls whenever the underlying client allows it.
+ *
+ * @author agent
+ * @since 4.0.2
+ * @see HttpClientTransport
+ * @see HttpURLConnectionTransport
+ */
+public interface HttpTransport extends Serializable, Closeable {
+
+    /**
+     * Sends the request to the remote server and returns its response.
+     *
+     * @param request the request to send.
+     * @return the response received from the server.
+     * @throws IOException if the exchange fails or the server answers with an error status.
+     */
+    HttpTransportResponse execute(HttpTransportRequest request) throws IOException;
+
+    /**
+     * Sends the request to the remote server and reads the response body with the given reader.
+     * <p>
+     * The default implementation buffers the body with {@link #execute(HttpTransportRequest)};
+     * transports should override it to hand over the body while it is received.
+     *
+     * @param request the request to send.
+     * @param reader reader consuming the response body.
+     * @param <T> the type of the value read from the body.
+     * @return the value read from the body.
+     * @throws IOException if the exchange fails, the server answers with an error status or the body cannot be read.
+     */
+    default <T> T execute(final HttpTransportRequest request, final ResponseBodyReader<T> reader) throws IOException {
+        final HttpTransportResponse response = execute(request);
+        BoundedInputStream.checkContentLength(response.getBody().length, request.getMaxResponseSize(), request.getUrl());
+        return reader.read(new ByteArrayInputStream(response.getBody()), response.getContentType());
+    }
+
+    /**
+     * Sends the request to the remote server without blocking the calling thread.
+     * <p>
+     * The default implementation runs {@link #execute(HttpTransportRequest)} on the given executor, which should
+     * therefore be bounded and dedicated to such calls; transports backed by a non-blocking client should override it.
+     *
+     * @param request the request to send.
+     * @param executor executor to run blocking work on, if the transport needs one.
+     * @return a future completed with the response, or exceptionally with an {@link IOException}
+     * wrapped in a {@link CompletionException}.
+     */
+    default CompletableFuture<HttpTransportResponse> executeAsync(final HttpTransportRequest request,
+                                                                  final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return execute(request);
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Releases the connections and threads held by the transport. The default implementation does nothing.
+     */
+    @Override
+    default void close() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.apereo.cas.client.util.CommonUtils;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable description of an HTTP request sent through a {@link HttpTransport}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class HttpTransportRequest {
+
+    private final URL url;
+
+    private final String method;
+
+    private final Map<String, String> headers;
+
+    private final byte[] body;
+
+    /** Whether sending the request more than once is harmless, which allows transports to hedge or retry it. */
+    private final boolean idempotent;
+
+    /** Maximum number of bytes read from the response; zero or less means unlimited. */
+    private final long maxResponseSize;
+
+    private HttpTransportRequest(final URL url, final String method, final Map<String, String> headers,
+                                 final byte[] body, final boolean idempotent, final long maxResponseSize) {
+        CommonUtils.assertNotNull(url, "url cannot be null.");
+        this.url = url;
+        this.method = method;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+        this.idempotent = idempotent;
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /**
+     * Creates a GET request for the given url.
+     *
+     * @param url the url to contact.
+     * @return the request.
+     */
+    public static HttpTransportRequest get(final URL url) {
+        return new HttpTransportRequest(url, "GET", new LinkedHashMap<String, String>(), null, false, 0);
+    }
+
+    /**
+     * Creates a POST request for the given url and body.
+     *
+     * @param url the url to contact.
+     * @param body the request body.
+     * @return the request.
+     */
+    public static HttpTransportRequest post(final URL url, final byte[] body) {
+        CommonUtils.assertNotNull(body, "body cannot be null.");
+        return new HttpTransportRequest(url, "POST", new LinkedHashMap<String, String>(), body, false, 0);
+    }
+
+    /**
+     * Returns a copy of this request carrying the additional header.
+     *
+     * @param name the header name.
+     * @param value the header value.
+     * @return the new request.
+     */
+    public HttpTransportRequest withHeader(final String name, final String value) {
+        final Map<String, String> newHeaders = new LinkedHashMap<String, String>(this.headers);
+        newHeaders.put(name, value);
+        return new HttpTransportRequest(this.url, this.method, newHeaders, this.body, this.idempotent, this.maxResponseSize);
+    }
+
+    /**
+     * Returns a copy of this request sent to another url.
+     *
+     * @param newUrl the url to contact.
+     * @return the new request.
+     */
+    public HttpTransportRequest withUrl(final URL newUrl) {
+        return new HttpTransportRequest(newUrl, this.method, new LinkedHashMap<String, String>(this.headers), this.body,
+            this.idempotent, this.maxResponseSize);
+    }
+
+    /**
+     * Returns a copy of this request marked as idempotent: the server answers duplicates of it without side effects
+     * that matter to the caller, so transports may send it more than once. Ticket validations are not idempotent,
+     * since the server consumes the ticket.
+     *
+     * @return the new request.
+     */
+    public HttpTransportRequest asIdempotent() {
+        return new HttpTransportRequest(this.url, this.method, new LinkedHashMap<String, String>(this.headers), this.body,
+            true, this.maxResponseSize);
+    }
+
+    /**
+     * Returns a copy of this request whose response may not exceed the given size. Transports abort reading
+     * the response with a {@link ResponseTooLargeException} as soon as the limit is crossed.
+     *
+     * @param maxSize maximum number of bytes; zero or less means unlimited.
+     * @return the new request.
+     */
+    public HttpTransportRequest withMaxResponseSize(final long maxSize) {
+        return new HttpTransportRequest(this.url, this.method, new LinkedHashMap<String, String>(this.headers), this.body,
+            this.idempotent, maxSize);
+    }
+
+    public boolean isIdempotent() {
+        return this.idempotent;
+    }
+
+    public long getMaxResponseSize() {
+        return this.maxResponseSize;
+    }
+
+    public URL getUrl() {
+        return this.url;
+    }
+
+    public String getMethod() {
+        return this.method;
+    }
+
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    public byte[] getBody() {
+        return this.body;
+    }
+
+    @Override
+    public String toString() {
+        return this.method + " " + this.url;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+/**
+ * Response received through a {@link HttpTransport}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class HttpTransportResponse implements Serializable {
+
+    private static final long serialVersionUID = -2861750365934122707L;
+
+    private final int statusCode;
+
+    private final String contentType;
+
+    private final byte[] body;
+
+    public HttpTransportResponse(final int statusCode, final String contentType, final byte[] body) {
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.body = body == null ? new byte[0] : body;
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * @return the value of the {@code Content-Type} header, or null if the server did not send one.
+     */
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public byte[] getBody() {
+        return this.body;
+    }
+
+    /**
+     * Decodes the response body with the given character set.
+     *
+     * @param charset the character set to use.
+     * @return the body as a string.
+     */
+    public String getBodyAsString(final Charset charset) {
+        return new String(this.body, charset);
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.apereo.cas.client.util.CommonUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link HttpTransport} backed by {@link HttpURLConnection} instances prepared by a {@link HttpURLConnectionFactory}.
+ * Connections are not explicitly disconnected, so that the JVM keep-alive cache may reuse the underlying socket.
+ * <p>
+ * This transport honors every option of the connection factory, including custom hostname verifiers.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class HttpURLConnectionTransport implements HttpTransport {
+
+    private static final long serialVersionUID = -3361618412386549014L;
+
+    private final HttpURLConnectionFactory urlConnectionFactory;
+
+    /** Connect timeout in milliseconds. Zero or less means no timeout. */
+    private int connectTimeout;
+
+    /** Read timeout in milliseconds. Zero or less means no timeout. */
+    private int readTimeout;
+
+    public HttpURLConnectionTransport(final HttpURLConnectionFactory urlConnectionFactory) {
+        CommonUtils.assertNotNull(urlConnectionFactory, "urlConnectionFactory cannot be null.");
+        this.urlConnectionFactory = urlConnectionFactory;
+    }
+
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public HttpURLConnectionFactory getURLConnectionFactory() {
+        return this.urlConnectionFactory;
+    }
+
+    @Override
+    public HttpTransportResponse execute(final HttpTransportRequest request) throws IOException {
+        return readResponse(send(request), request);
+    }
+
+    @Override
+    public <T> T execute(final HttpTransportRequest request, final ResponseBodyReader<T> reader) throws IOException {
+        return read(send(request), request, reader);
+    }
+
+    /**
+     * Cancelling the returned future disconnects the connection, aborting an exchange that is still running.
+     */
+    @Override
+    public CompletableFuture<HttpTransportResponse> executeAsync(final HttpTransportRequest request,
+                                                                 final Executor executor) {
+        final CompletableFuture<HttpTransportResponse> future = new CompletableFuture<>();
+        final AtomicReference<HttpURLConnection> connection = new AtomicReference<>();
+        executor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                final HttpURLConnection conn = send(request);
+                connection.set(conn);
+                if (future.isCancelled()) {
+                    conn.disconnect();
+                    return;
+                }
+                future.complete(readResponse(conn, request));
+            } catch (final IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((response, throwable) -> {
+            final HttpURLConnection conn = connection.get();
+            if (future.isCancelled() && conn != null) {
+                conn.disconnect();
+            }
+        });
+        return future;
+    }
+
+    private HttpURLConnection send(final HttpTransportRequest request) throws IOException {
+        final HttpURLConnection conn = this.urlConnectionFactory.buildHttpURLConnection(request.getUrl().openConnection());
+        if (this.connectTimeout > 0) {
+            conn.setConnectTimeout(this.connectTimeout);
+        }
+        if (this.readTimeout > 0) {
+            conn.setReadTimeout(this.readTimeout);
+        }
+        conn.setRequestMethod(request.getMethod());
+        for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if (request.getBody() != null) {
+            conn.setUseCaches(false);
+            conn.setDoOutput(true);
+            final OutputStream out = conn.getOutputStream();
+            try {
+                out.write(request.getBody());
+            } finally {
+                CommonUtils.closeQuietly(out);
+            }
+        }
+        return conn;
+    }
+
+    private static HttpTransportResponse readResponse(final HttpURLConnection conn,
+                                                      final HttpTransportRequest request) throws IOException {
+        return read(conn, request, (body, contentType) ->
+            new HttpTransportResponse(conn.getResponseCode(), contentType, BoundedInputStream.readAll(body)));
+    }
+
+    private static <T> T read(final HttpURLConnection conn, final HttpTransportRequest request,
+                              final ResponseBodyReader<T> reader) throws IOException {
+        final int statusCode = conn.getResponseCode();
+        if (statusCode >= 400) {
+            CommonUtils.closeQuietly(conn.getErrorStream());
+            throw new HttpStatusException(statusCode, request.getUrl());
+        }
+        final InputStream in = conn.getInputStream();
+        try {
+            BoundedInputStream.checkContentLength(conn.getContentLengthLong(), request.getMaxResponseSize(), request.getUrl());
+            final InputStream body = BoundedInputStream.bound(in, request.getMaxResponseSize(), request.getUrl());
+            final T result = reader.read(body, conn.getContentType());
+            // consume what the reader left so that the connection can be kept alive
+            body.transferTo(OutputStream.nullOutputStream());
+            return result;
+        } finally {
+            CommonUtils.closeQuietly(in);
+        }
+    }
+}
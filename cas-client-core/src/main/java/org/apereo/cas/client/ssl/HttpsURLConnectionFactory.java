@@ -27,20 +27,24 @@ import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.URLConnection;
 import java.security.KeyStore;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.Properties;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An implementation of the {@link HttpURLConnectionFactory} whose responsible to configure
@@ -58,6 +62,8 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpsURLConnectionFactory.class);
 
+    private static final long DEFAULT_KEY_STORE_RELOAD_INTERVAL = 5000L;
+
     /**
      * Hostname verifier used when making an SSL request to the CAS server.
      * Defaults to {@link HttpsURLConnection#getDefaultHostnameVerifier()}
@@ -69,6 +75,12 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
      */
     private Properties sslConfiguration = new Properties();
 
+    /** SSL context shared by all connections; rebuilt in the background when the key store changes. */
+    private transient volatile CachedSSLContext cachedSSLContext;
+
+    /** Poller of the key store the current SSL context was loaded from, if any. */
+    private transient volatile KeyStorePoller keyStorePoller;
+
     public HttpsURLConnectionFactory() {
     }
 
@@ -79,6 +91,8 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
 
     public final void setSSLConfiguration(final Properties config) {
         this.sslConfiguration = config;
+        this.cachedSSLContext = null;
+        this.keyStorePoller = null;
     }
 
     /**
@@ -135,9 +149,9 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
     private HttpURLConnection configureHttpsConnectionIfNeeded(final URLConnection conn) {
         if (conn instanceof HttpsURLConnection) {
             final HttpsURLConnection httpsConnection = (HttpsURLConnection) conn;
-            final SSLSocketFactory socketFactory = this.createSSLSocketFactory();
-            if (socketFactory != null) {
-                httpsConnection.setSSLSocketFactory(socketFactory);
+            final SSLContext sslContext = this.getSSLContext();
+            if (sslContext != null) {
+                httpsConnection.setSSLSocketFactory(sslContext.getSocketFactory());
             }
 
             if (isIgnoreSslFailures()) {
@@ -154,7 +168,100 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
     }
 
     /**
-     * Creates a {@link SSLSocketFactory} based on the configuration specified
+     * Determines whether connections built by this factory rely on the standard hostname verification
+     * of the JVM, that is, neither a custom {@link HostnameVerifier} nor {@code ignoreSslFailures} are configured.
+     * Transports that cannot plug a {@link HostnameVerifier} use this to decide whether they can honor the configuration.
+     *
+     * @return true if the default hostname verification applies, false otherwise.
+     */
+    public boolean isDefaultHostnameVerification() {
+        return !isIgnoreSslFailures()
+               && (this.hostnameVerifier == null || this.hostnameVerifier == HttpsURLConnection.getDefaultHostnameVerifier());
+    }
+
+    /**
+     * Returns the {@link SSLContext} described by the SSL configuration of this factory.
+     * <p>
+     * The context is built on first call and shared by all connections, which lets TLS sessions be resumed
+     * across requests. When a {@code keyStorePath} is configured, a single daemon thread shared by all factories
+     * polls the key store file every {@code keyStoreReloadInterval} milliseconds (default: 5000, zero or less
+     * disables polling) and rebuilds the context once the file changes; callers always get the current context
+     * without waiting for a reload.
+     * <p>
+     * A context that fails to load is cached as missing too, so that callers do not retry one after the other;
+     * the poller loads it again once the key store file changes, and so does a new SSL configuration.
+     *
+     * @return the SSL context, or null if the configuration does not call for a custom context
+     * or it cannot be loaded.
+     */
+    public SSLContext getSSLContext() {
+        CachedSSLContext cached = this.cachedSSLContext;
+        if (cached == null) {
+            synchronized (this) {
+                cached = this.cachedSSLContext;
+                if (cached == null) {
+                    cached = loadSSLContext(getKeyStoreLastModified());
+                    this.cachedSSLContext = cached;
+                    final long reloadInterval = getKeyStoreReloadInterval();
+                    if (getKeyStoreFile() != null && reloadInterval > 0) {
+                        final KeyStorePoller poller = new KeyStorePoller(this);
+                        this.keyStorePoller = poller;
+                        poller.start(reloadInterval);
+                    }
+                }
+            }
+        }
+        return cached.sslContext;
+    }
+
+    private CachedSSLContext loadSSLContext(final long keyStoreLastModified) {
+        try {
+            return new CachedSSLContext(createSSLContext(), keyStoreLastModified);
+        } catch (final Exception e) {
+            LOGGER.error("Unable to load SSL context: {}", e.getMessage(), e);
+            return new CachedSSLContext(null, keyStoreLastModified);
+        }
+    }
+
+    /**
+     * Rebuilds the SSL context if the key store file changed since it was loaded. Only called by the poller thread.
+     */
+    private void reloadIfModified() {
+        final CachedSSLContext current = this.cachedSSLContext;
+        final long lastModified = getKeyStoreLastModified();
+        if (current == null || lastModified == current.keyStoreLastModified) {
+            return;
+        }
+        LOGGER.info("Key store {} has changed; reloading SSL context", this.sslConfiguration.getProperty("keyStorePath"));
+        final CachedSSLContext reloaded = loadSSLContext(lastModified);
+        if (reloaded.sslContext == null && current.sslContext != null) {
+            LOGGER.error("Keeping the current SSL context until the key store changes again");
+            current.keyStoreLastModified = lastModified;
+            return;
+        }
+        synchronized (this) {
+            if (this.cachedSSLContext == current) {
+                this.cachedSSLContext = reloaded;
+            }
+        }
+    }
+
+    private File getKeyStoreFile() {
+        final String keyStorePath = this.sslConfiguration.getProperty("keyStorePath");
+        return keyStorePath != null && !isIgnoreSslFailures() ? new File(keyStorePath) : null;
+    }
+
+    private long getKeyStoreLastModified() {
+        final File keyStoreFile = getKeyStoreFile();
+        return keyStoreFile != null ? keyStoreFile.lastModified() : 0L;
+    }
+
+    private long getKeyStoreReloadInterval() {
+        return CommonUtils.toLong(this.sslConfiguration.getProperty("keyStoreReloadInterval"), DEFAULT_KEY_STORE_RELOAD_INTERVAL);
+    }
+
+    /**
+     * Creates a {@link SSLContext} based on the configuration specified
      * <p>
      * Sample properties file:
      * <pre>
@@ -163,10 +270,12 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
      * keyStorePath=/var/secure/location/.keystore
      * keyStorePass=changeit
      * certificatePassword=aGoodPass
+     * keyStoreReloadInterval=5000
      * </pre>
-     * @return the {@link SSLSocketFactory}
+     * @return the {@link SSLContext}
+     * @throws Exception if the context cannot be created from the configuration
      */
-    private SSLSocketFactory createSSLSocketFactory() {
+    private SSLContext createSSLContext() throws Exception {
         InputStream keyStoreIS = null;
 
         try {
@@ -184,7 +293,7 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
                     }
                 }};
                 sslContext.init(null, trustAllCerts, new SecureRandom());
-                return sslContext.getSocketFactory();
+                return sslContext;
             }
 
             if (this.sslConfiguration.getProperty("keyStoreType") != null) {
@@ -198,13 +307,11 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
                             .getProperty("keyManagerType", "SunX509"));
                         keyManager.init(keyStore, this.sslConfiguration.getProperty("certificatePassword").toCharArray());
                         sslContext.init(keyManager.getKeyManagers(), null, null);
-                        return sslContext.getSocketFactory();
+                        return sslContext;
                     }
                 }
             }
 
-        } catch (final Exception e) {
-            LOGGER.error(e.getMessage(), e);
         } finally {
             CommonUtils.closeQuietly(keyStoreIS);
         }
@@ -232,4 +339,80 @@ public final class HttpsURLConnectionFactory implements HttpURLConnectionFactory
 
         this.sslConfiguration = (Properties) in.readObject();
     }
+
+    /**
+     * Snapshot of the SSL context, or of the failure to load it, along with the state of the key store it was
+     * built from.
+     */
+    private static final class CachedSSLContext {
+
+        private final SSLContext sslContext;
+
+        private volatile long keyStoreLastModified;
+
+        CachedSSLContext(final SSLContext sslContext, final long keyStoreLastModified) {
+            this.sslContext = sslContext;
+            this.keyStoreLastModified = keyStoreLastModified;
+        }
+    }
+
+    /**
+     * Polls the key store of a factory on the thread shared by all factories. The factory is only weakly
+     * referenced: polling stops once it is no longer used, or once its SSL configuration is replaced, which
+     * schedules a new poller on next use. The thread stops when no key store is polled anymore.
+     */
+    private static final class KeyStorePoller implements Runnable {
+
+        private static final ScheduledThreadPoolExecutor EXECUTOR = newExecutor();
+
+        private final WeakReference<HttpsURLConnectionFactory> factory;
+
+        private final String keyStorePath;
+
+        private volatile Future<?> future;
+
+        private volatile boolean done;
+
+        KeyStorePoller(final HttpsURLConnectionFactory factory) {
+            this.factory = new WeakReference<HttpsURLConnectionFactory>(factory);
+            this.keyStorePath = factory.sslConfiguration.getProperty("keyStorePath");
+        }
+
+        void start(final long interval) {
+            this.future = EXECUTOR.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+            if (this.done) {
+                this.future.cancel(false);
+            }
+        }
+
+        private static ScheduledThreadPoolExecutor newExecutor() {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "cas-ssl-context-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+        @Override
+        public void run() {
+            final HttpsURLConnectionFactory current = this.factory.get();
+            if (current == null || current.keyStorePoller != this) {
+                this.done = true;
+                final Future<?> scheduled = this.future;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+                return;
+            }
+            try {
+                current.reloadIfModified();
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to check key store {}", this.keyStorePath, e);
+            }
+        }
+    }
 }
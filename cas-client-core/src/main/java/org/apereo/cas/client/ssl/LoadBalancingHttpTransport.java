@@ -0,0 +1,434 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.apereo.cas.client.util.CommonUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HttpTransport} decorator spreading calls to the CAS server over several nodes.
+ * <p>
+ * Requests addressed to the configured CAS server url prefix, i.e. a virtual IP, are sent to the node picked by a
+ * {@link CasServerLoadBalancer} instead; other requests go through unchanged. When a node refuses the connection,
+ * the request never reached the server and is retried once on another node. No other failure is retried, since
+ * the server may already have consumed the ticket.
+ * <p>
+ * Only refused connections, timeouts and server errors count toward the ejection of a node; a response that is too
+ * large or fails to parse comes from a node that answered, and is a problem of the client.
+ * <p>
+ * With a {@link HedgingPolicy}, {@link HttpTransportRequest#isIdempotent() idempotent} requests that are slow
+ * to answer are duplicated to a second node, and the first response received without error wins. The body of
+ * that response is only read by the caller once it has won, so a response that fails to parse is not replaced
+ * by the one of the other node. The losing attempt is cancelled, which aborts its exchange when the decorated
+ * transport supports it.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class LoadBalancingHttpTransport implements HttpTransport {
+
+    private static final long serialVersionUID = -7104425961352291856L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadBalancingHttpTransport.class);
+
+    private final HttpTransport delegate;
+
+    private final String casServerUrlPrefix;
+
+    private final ArrayList<String> nodePrefixes;
+
+    private HedgingPolicy hedgingPolicy;
+
+    private transient volatile CasServerLoadBalancer loadBalancer;
+
+    /** Whether {@link #loadBalancer} was obtained from {@link CasServerLoadBalancer#shared(List)} and must be released. */
+    private transient boolean sharedLoadBalancer;
+
+    /**
+     * @param delegate the transport contacting the nodes.
+     * @param casServerUrlPrefix the prefix requests are addressed to.
+     * @param nodePrefixes the prefixes of the CAS server nodes.
+     */
+    public LoadBalancingHttpTransport(final HttpTransport delegate, final String casServerUrlPrefix,
+                                      final List<String> nodePrefixes) {
+        CommonUtils.assertNotNull(delegate, "delegate cannot be null.");
+        CommonUtils.assertNotNull(casServerUrlPrefix, "casServerUrlPrefix cannot be null.");
+        CommonUtils.assertNotEmpty(nodePrefixes, "nodePrefixes cannot be empty.");
+        this.delegate = delegate;
+        this.casServerUrlPrefix = CommonUtils.addTrailingSlash(casServerUrlPrefix);
+        this.nodePrefixes = new ArrayList<>(nodePrefixes);
+    }
+
+    @Override
+    public HttpTransportResponse execute(final HttpTransportRequest request) throws IOException {
+        return execute(request, this.delegate::execute, response -> response);
+    }
+
+    /**
+     * Streams the body from the selected node; hedged requests are buffered since either node may answer.
+     */
+    @Override
+    public <T> T execute(final HttpTransportRequest request, final ResponseBodyReader<T> reader) throws IOException {
+        return execute(request, r -> this.delegate.execute(r, reader),
+            response -> reader.read(new ByteArrayInputStream(response.getBody()), response.getContentType()));
+    }
+
+    private <T> T execute(final HttpTransportRequest request, final TransportCall<T> call,
+                          final HedgedResult<T> hedgedResult) throws IOException {
+        final String path = relativePath(request);
+        if (path == null) {
+            return call.call(request);
+        }
+        final CasServerLoadBalancer balancer = getLoadBalancer();
+        if (isHedged(request, balancer)) {
+            return hedgedResult.from(awaitHedged(new HedgedCall(balancer, request, path, this.hedgingPolicy.getExecutor()).start()));
+        }
+        final CasServerLoadBalancer.Node node = balancer.select(null);
+        try {
+            return execute(balancer, node, request, path, call);
+        } catch (final ConnectException e) {
+            final CasServerLoadBalancer.Node other = balancer.select(node);
+            if (other == null) {
+                throw e;
+            }
+            LOGGER.debug("Unable to connect to [{}], retrying on [{}]", node, other);
+            return execute(balancer, other, request, path, call);
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpTransportResponse> executeAsync(final HttpTransportRequest request,
+                                                                 final Executor executor) {
+        final String path = relativePath(request);
+        if (path == null) {
+            return this.delegate.executeAsync(request, executor);
+        }
+        final CasServerLoadBalancer balancer = getLoadBalancer();
+        if (isHedged(request, balancer)) {
+            return new HedgedCall(balancer, request, path, executor).start();
+        }
+        final CasServerLoadBalancer.Node node = balancer.select(null);
+        return executeAsync(balancer, node, request, path, executor).exceptionallyCompose(t -> {
+            final Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            final CasServerLoadBalancer.Node other = cause instanceof ConnectException ? balancer.select(node) : null;
+            if (other == null) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            LOGGER.debug("Unable to connect to [{}], retrying on [{}]", node, other);
+            return executeAsync(balancer, other, request, path, executor);
+        });
+    }
+
+    private <T> T execute(final CasServerLoadBalancer balancer, final CasServerLoadBalancer.Node node,
+                          final HttpTransportRequest request, final String path,
+                          final TransportCall<T> call) throws IOException {
+        final HttpTransportRequest nodeRequest = request.withUrl(new URL(node.getPrefix() + path));
+        balancer.onCallStarted(node);
+        final long start = System.nanoTime();
+        try {
+            final T result = call.call(nodeRequest);
+            balancer.onCallSucceeded(node, System.nanoTime() - start);
+            return result;
+        } catch (final IOException | RuntimeException e) {
+            recordFailure(balancer, node, start, e);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<HttpTransportResponse> executeAsync(final CasServerLoadBalancer balancer,
+                                                                  final CasServerLoadBalancer.Node node,
+                                                                  final HttpTransportRequest request,
+                                                                  final String path, final Executor executor) {
+        final HttpTransportRequest nodeRequest;
+        try {
+            nodeRequest = request.withUrl(new URL(node.getPrefix() + path));
+        } catch (final IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        balancer.onCallStarted(node);
+        final long start = System.nanoTime();
+        final CompletableFuture<HttpTransportResponse> call = this.delegate.executeAsync(nodeRequest, executor);
+        final CompletableFuture<HttpTransportResponse> future = new CompletableFuture<>();
+        call.whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                recordFailure(balancer, node, start, throwable);
+                future.completeExceptionally(throwable);
+            } else {
+                balancer.onCallSucceeded(node, System.nanoTime() - start);
+                future.complete(response);
+            }
+        });
+        // the call is recorded however it ends, and cancelling the returned future aborts it
+        future.whenComplete((response, throwable) -> {
+            if (future.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private static void recordFailure(final CasServerLoadBalancer balancer, final CasServerLoadBalancer.Node node,
+                                      final long start, final Throwable throwable) {
+        if (isNodeFailure(throwable)) {
+            balancer.onCallFailed(node, System.nanoTime() - start);
+        } else {
+            balancer.onCallAborted(node, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param throwable the failure of a call to a node.
+     * @return whether the failure shows the node is unhealthy: it refused the connection, timed out or answered
+     * with a server error.
+     */
+    static boolean isNodeFailure(final Throwable throwable) {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        if (cause instanceof HttpStatusException) {
+            return ((HttpStatusException) cause).getStatusCode() >= 500;
+        }
+        return cause instanceof ConnectException || cause instanceof SocketTimeoutException
+               || cause instanceof HttpTimeoutException;
+    }
+
+    private boolean isHedged(final HttpTransportRequest request, final CasServerLoadBalancer balancer) {
+        return this.hedgingPolicy != null && request.isIdempotent() && balancer.getNodes().size() > 1;
+    }
+
+    private static HttpTransportResponse awaitHedged(final CompletableFuture<HttpTransportResponse> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the CAS server");
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @return the part of the request url following the CAS server url prefix, or null if the request
+     * is not addressed to the CAS server.
+     */
+    private String relativePath(final HttpTransportRequest request) {
+        final String url = request.getUrl().toExternalForm();
+        return url.startsWith(this.casServerUrlPrefix) ? url.substring(this.casServerUrlPrefix.length()) : null;
+    }
+
+    public CasServerLoadBalancer getLoadBalancer() {
+        final CasServerLoadBalancer balancer = this.loadBalancer;
+        if (balancer != null) {
+            return balancer;
+        }
+        synchronized (this) {
+            if (this.loadBalancer == null) {
+                this.loadBalancer = CasServerLoadBalancer.shared(this.nodePrefixes);
+                this.sharedLoadBalancer = true;
+            }
+            return this.loadBalancer;
+        }
+    }
+
+    /**
+     * Uses the given balancer rather than the one shared by all transports with the same node prefixes.
+     *
+     * @param loadBalancer the load balancer.
+     */
+    public synchronized void setLoadBalancer(final CasServerLoadBalancer loadBalancer) {
+        releaseLoadBalancer();
+        this.loadBalancer = loadBalancer;
+    }
+
+    private synchronized void releaseLoadBalancer() {
+        if (this.sharedLoadBalancer) {
+            this.loadBalancer.release();
+            this.sharedLoadBalancer = false;
+        }
+        this.loadBalancer = null;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return this.hedgingPolicy;
+    }
+
+    /**
+     * @param hedgingPolicy policy for duplicating slow idempotent requests, or null to never hedge.
+     */
+    public void setHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    public HttpTransport getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Releases the shared load balancer and closes the decorated transport.
+     */
+    @Override
+    public void close() {
+        releaseLoadBalancer();
+        this.delegate.close();
+    }
+
+    /**
+     * A synchronous exchange with the delegate.
+     */
+    @FunctionalInterface
+    private interface TransportCall<T> {
+        T call(HttpTransportRequest request) throws IOException;
+    }
+
+    /**
+     * Turns the buffered response of a hedged call into the value expected by the caller.
+     */
+    @FunctionalInterface
+    private interface HedgedResult<T> {
+        T from(HttpTransportResponse response) throws IOException;
+    }
+
+    /**
+     * A request sent to a first node, and to a second one when the first is slow or refuses the connection.
+     */
+    private final class HedgedCall {
+
+        private final CasServerLoadBalancer balancer;
+
+        private final HttpTransportRequest request;
+
+        private final String path;
+
+        private final Executor executor;
+
+        private final CompletableFuture<HttpTransportResponse> result = new CompletableFuture<>();
+
+        /** Number of attempts still running; the call fails once all have failed. */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        /** Attempts sent so far, cancelled once the call completes. */
+        private final List<CompletableFuture<HttpTransportResponse>> attempts = new CopyOnWriteArrayList<>();
+
+        /** Whether the one extra attempt of the call, a hedge or a connection failover, was sent. */
+        private boolean hedged;
+
+        private CasServerLoadBalancer.Node primary;
+
+        HedgedCall(final CasServerLoadBalancer balancer, final HttpTransportRequest request, final String path,
+                   final Executor executor) {
+            this.balancer = balancer;
+            this.request = request;
+            this.path = path;
+            this.executor = executor;
+        }
+
+        CompletableFuture<HttpTransportResponse> start() {
+            final HedgingPolicy policy = LoadBalancingHttpTransport.this.hedgingPolicy;
+            policy.onRequest();
+            // the winner is already complete, so only the losing attempt is cancelled
+            this.result.whenComplete((response, throwable) -> this.attempts.forEach(attempt -> attempt.cancel(true)));
+            this.primary = this.balancer.select(null);
+            attempt(this.primary);
+            if (!this.result.isDone()) {
+                CompletableFuture.delayedExecutor(policy.getDelay(), TimeUnit.MILLISECONDS)
+                    .execute(() -> hedge(true));
+            }
+            return this.result;
+        }
+
+        private void attempt(final CasServerLoadBalancer.Node node) {
+            final long start = System.nanoTime();
+            final CompletableFuture<HttpTransportResponse> attempt = executeAsync(this.balancer, node, this.request,
+                this.path, this.executor);
+            this.attempts.add(attempt);
+            if (this.result.isDone()) {
+                attempt.cancel(true);
+            }
+            attempt.whenComplete((response, throwable) -> {
+                if (throwable == null) {
+                    LoadBalancingHttpTransport.this.hedgingPolicy.recordLatency(System.nanoTime() - start);
+                    this.result.complete(response);
+                    return;
+                }
+                final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+                if (cause instanceof ConnectException && node == this.primary) {
+                    hedge(false);
+                }
+                if (this.pending.decrementAndGet() == 0) {
+                    this.result.completeExceptionally(cause);
+                }
+            });
+        }
+
+        /**
+         * Sends the request to a second node, at most once per call.
+         *
+         * @param budgeted whether the hedge counts against the hedging budget; connection failover does not.
+         */
+        private synchronized void hedge(final boolean budgeted) {
+            if (this.result.isDone() || this.hedged) {
+                return;
+            }
+            final CasServerLoadBalancer.Node second = this.balancer.select(this.primary);
+            final HedgingPolicy policy = LoadBalancingHttpTransport.this.hedgingPolicy;
+            if (second == null || (budgeted && !policy.tryAcquireHedge())) {
+                // nothing was sent, a later connection failover may still use the extra attempt
+                return;
+            }
+            if (this.pending.getAndIncrement() == 0) {
+                // every attempt already failed and the call completed
+                this.pending.decrementAndGet();
+                if (budgeted) {
+                    policy.releaseHedge();
+                }
+                return;
+            }
+            this.hedged = true;
+            LOGGER.debug("Hedging request to [{}] on [{}]", this.primary, second);
+            attempt(second);
+        }
+    }
+}
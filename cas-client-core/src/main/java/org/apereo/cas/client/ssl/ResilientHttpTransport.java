@@ -0,0 +1,242 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.apereo.cas.client.util.CommonUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HttpTransport} decorator that protects the application from a degraded CAS server.
+ * <p>
+ * A bulkhead caps the number of concurrent calls; callers wait at most {@code maxWaitDuration} milliseconds
+ * for a slot. A {@link CircuitBreaker} tracks failures and slow calls and, while open, rejects calls without
+ * contacting the server. Rejected calls fail with a {@link CallNotPermittedException}, unless a fallback
+ * response is configured with {@link #setOpenCircuitResponse(HttpTransportResponse)}, e.g. a CAS
+ * authentication failure document so that validations are denied rather than erroring out.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class ResilientHttpTransport implements HttpTransport {
+
+    private static final long serialVersionUID = 2405712860931185324L;
+
+    private final HttpTransport delegate;
+
+    private final CircuitBreaker circuitBreaker;
+
+    /** Maximum number of concurrent calls. Zero or less means unlimited. */
+    private int maxConcurrentCalls;
+
+    /** Milliseconds to wait for a free slot when the bulkhead is full. */
+    private long maxWaitDuration;
+
+    private HttpTransportResponse openCircuitResponse;
+
+    private Semaphore bulkhead;
+
+    public ResilientHttpTransport(final HttpTransport delegate) {
+        this(delegate, new CircuitBreaker("cas-server"));
+    }
+
+    /**
+     * @param delegate the transport contacting the server.
+     * @param circuitBreaker the circuit breaker, or null to only apply the bulkhead.
+     */
+    public ResilientHttpTransport(final HttpTransport delegate, final CircuitBreaker circuitBreaker) {
+        CommonUtils.assertNotNull(delegate, "delegate cannot be null.");
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public HttpTransportResponse execute(final HttpTransportRequest request) throws IOException {
+        return call(request, this.delegate::execute, this::rejectOpenCircuit);
+    }
+
+    @Override
+    public <T> T execute(final HttpTransportRequest request, final ResponseBodyReader<T> reader) throws IOException {
+        return call(request, r -> this.delegate.execute(r, reader), r -> {
+            final HttpTransportResponse response = rejectOpenCircuit(r);
+            return reader.read(new ByteArrayInputStream(response.getBody()), response.getContentType());
+        });
+    }
+
+    private <T> T call(final HttpTransportRequest request, final TransportCall<T> call,
+                       final TransportCall<T> openCircuitFallback) throws IOException {
+        final Semaphore semaphore = acquireBulkhead(request);
+        try {
+            if (!tryAcquirePermission()) {
+                return openCircuitFallback.call(request);
+            }
+            final long start = System.nanoTime();
+            try {
+                final T result = call.call(request);
+                onResult(false, System.nanoTime() - start);
+                return result;
+            } catch (final IOException | RuntimeException e) {
+                onResult(true, System.nanoTime() - start);
+                throw e;
+            }
+        } finally {
+            releaseBulkhead(semaphore);
+        }
+    }
+
+    /**
+     * Asynchronous calls never wait for a bulkhead slot; they are rejected right away when none is free.
+     */
+    @Override
+    public CompletableFuture<HttpTransportResponse> executeAsync(final HttpTransportRequest request,
+                                                                 final Executor executor) {
+        final Semaphore semaphore = this.bulkhead;
+        if (semaphore != null && !semaphore.tryAcquire()) {
+            return CompletableFuture.failedFuture(bulkheadFull(request));
+        }
+        boolean started = false;
+        try {
+            if (!tryAcquirePermission()) {
+                return this.openCircuitResponse != null
+                    ? CompletableFuture.completedFuture(this.openCircuitResponse)
+                    : CompletableFuture.failedFuture(circuitOpen(request));
+            }
+            final long start = System.nanoTime();
+            final CompletableFuture<HttpTransportResponse> future = this.delegate.executeAsync(request, executor);
+            started = true;
+            return future.whenComplete((response, throwable) -> {
+                releaseBulkhead(semaphore);
+                onResult(throwable != null, System.nanoTime() - start);
+            });
+        } finally {
+            if (!started) {
+                releaseBulkhead(semaphore);
+            }
+        }
+    }
+
+    private boolean tryAcquirePermission() {
+        return this.circuitBreaker == null || this.circuitBreaker.tryAcquirePermission();
+    }
+
+    private void onResult(final boolean failed, final long durationNanos) {
+        if (this.circuitBreaker == null) {
+            return;
+        }
+        if (failed) {
+            this.circuitBreaker.onError(durationNanos);
+        } else {
+            this.circuitBreaker.onSuccess(durationNanos);
+        }
+    }
+
+    private Semaphore acquireBulkhead(final HttpTransportRequest request) throws IOException {
+        final Semaphore semaphore = this.bulkhead;
+        if (semaphore == null) {
+            return null;
+        }
+        try {
+            if (!semaphore.tryAcquire(this.maxWaitDuration, TimeUnit.MILLISECONDS)) {
+                throw bulkheadFull(request);
+            }
+            return semaphore;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to contact " + request.getUrl());
+        }
+    }
+
+    private static void releaseBulkhead(final Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    private HttpTransportResponse rejectOpenCircuit(final HttpTransportRequest request) throws CallNotPermittedException {
+        if (this.openCircuitResponse != null) {
+            return this.openCircuitResponse;
+        }
+        throw circuitOpen(request);
+    }
+
+    private CallNotPermittedException circuitOpen(final HttpTransportRequest request) {
+        return new CallNotPermittedException("Circuit breaker [" + this.circuitBreaker.getName()
+                                             + "] is open; not calling " + request.getUrl());
+    }
+
+    private CallNotPermittedException bulkheadFull(final HttpTransportRequest request) {
+        return new CallNotPermittedException("Maximum of " + this.maxConcurrentCalls
+                                             + " concurrent calls reached; not calling " + request.getUrl());
+    }
+
+    public HttpTransport getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Closes the decorated transport.
+     */
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+
+    /**
+     * @return the circuit breaker, or null if only the bulkhead is applied.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * @param maxConcurrentCalls maximum number of concurrent calls to the server; zero or less means unlimited.
+     */
+    public void setMaxConcurrentCalls(final int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkhead = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls) : null;
+    }
+
+    /**
+     * @param maxWaitDuration milliseconds a caller waits for a free slot before being rejected.
+     */
+    public void setMaxWaitDuration(final long maxWaitDuration) {
+        this.maxWaitDuration = maxWaitDuration;
+    }
+
+    /**
+     * @param openCircuitResponse response returned instead of failing while the circuit breaker is open.
+     */
+    public void setOpenCircuitResponse(final HttpTransportResponse openCircuitResponse) {
+        this.openCircuitResponse = openCircuitResponse;
+    }
+
+    /**
+     * A synchronous exchange with the delegate.
+     */
+    @FunctionalInterface
+    private interface TransportCall<T> {
+        T call(HttpTransportRequest request) throws IOException;
+    }
+}
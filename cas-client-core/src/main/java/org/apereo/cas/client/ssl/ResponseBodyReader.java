@@ -0,0 +1,43 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes the body of a response received through a {@link HttpTransport} while it is read from the connection.
+ *
+ * @param <T> the type of the value read from the body.
+ * @author agent
+ * @since 4.0.2
+ */
+@FunctionalInterface
+public interface ResponseBodyReader<T> {
+
+    /**
+     * Reads the response body. The stream is closed by the transport once this method returns.
+     *
+     * @param body the response body, limited to the maximum response size of the request.
+     * @param contentType the value of the {@code Content-Type} header, or null if the server did not send one.
+     * @return the value read from the body.
+     * @throws IOException if the body cannot be read, i.e. it exceeds the maximum response size.
+     */
+    T read(InputStream body, String contentType) throws IOException;
+}
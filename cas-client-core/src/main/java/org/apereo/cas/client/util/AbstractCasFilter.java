@@ -47,6 +47,12 @@ public abstract class AbstractCasFilter extends AbstractConfigurationFilter {
     /** Represents the constant for where the assertion will be located in memory. */
     public static final String CONST_CAS_ASSERTION = "_const_cas_assertion_";
 
+    /**
+     * Represents the constant for where a <code>Consumer&lt;Assertion&gt;</code> notified of the assertion of a
+     * successful ticket validation is located in the request, if the single sign-out filter records principals.
+     */
+    public static final String CONST_CAS_PRINCIPAL_RECORDER = "_const_cas_principal_recorder_";
+
     private final Protocol protocol;
 
     /** Sets where response.encodeUrl should be called on service urls when constructed. */
@@ -20,8 +20,14 @@ package org.apereo.cas.client.util;
 
 import org.apereo.cas.client.Protocol;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorage;
+import org.apereo.cas.client.ssl.HttpClientTransport;
+import org.apereo.cas.client.ssl.HttpTransport;
+import org.apereo.cas.client.ssl.HttpTransportRequest;
+import org.apereo.cas.client.ssl.HttpTransportResponse;
 import org.apereo.cas.client.ssl.HttpURLConnectionFactory;
+import org.apereo.cas.client.ssl.HttpURLConnectionTransport;
 import org.apereo.cas.client.ssl.HttpsURLConnectionFactory;
+import org.apereo.cas.client.ssl.ResponseBodyReader;
 import org.apereo.cas.client.validation.ProxyList;
 import org.apereo.cas.client.validation.ProxyListEditor;
 
@@ -33,16 +39,18 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.SSLException;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * Common utilities so that we don't need to include Commons Lang.
@@ -437,42 +445,135 @@ public final class CommonUtils {
      */
     public static String getResponseFromServer(final URL constructedUrl, final HttpURLConnectionFactory factory,
                                                final String encoding) {
+        return getResponseFromServer(constructedUrl, new HttpURLConnectionTransport(factory), encoding);
+    }
 
-        HttpURLConnection conn = null;
-        InputStreamReader in = null;
+    /**
+     * Contacts the remote URL and returns the response.
+     *
+     * @param constructedUrl the url to contact.
+     * @param transport the transport used to exchange messages with the server.
+     * @param encoding the encoding to use.
+     * @return the response.
+     */
+    public static String getResponseFromServer(final URL constructedUrl, final HttpTransport transport,
+                                               final String encoding) {
+        return execute(HttpTransportRequest.get(constructedUrl), transport).getBodyAsString(toCharset(encoding));
+    }
+
+    /**
+     * Creates a transport contacting the CAS server with connections prepared by the given factory. A pooled
+     * {@link HttpClientTransport} is used, unless the factory relies on hostname verification options that only
+     * {@link java.net.HttpURLConnection} can honor.
+     *
+     * @param factory the connection factory carrying the SSL configuration.
+     * @param connectTimeout connect timeout in milliseconds, zero or less for none.
+     * @param readTimeout read timeout in milliseconds, zero or less for none.
+     * @return the transport.
+     */
+    public static HttpTransport createHttpTransport(final HttpURLConnectionFactory factory, final int connectTimeout,
+                                                    final int readTimeout) {
+        if (factory instanceof HttpsURLConnectionFactory
+            && ((HttpsURLConnectionFactory) factory).isDefaultHostnameVerification()) {
+            final HttpClientTransport transport = new HttpClientTransport((HttpsURLConnectionFactory) factory);
+            transport.setConnectTimeout(connectTimeout);
+            transport.setReadTimeout(readTimeout);
+            return transport;
+        }
+        LOGGER.debug("Custom hostname verification is configured; using HttpURLConnection to contact the CAS server");
+        final HttpURLConnectionTransport transport = new HttpURLConnectionTransport(factory);
+        transport.setConnectTimeout(connectTimeout);
+        transport.setReadTimeout(readTimeout);
+        return transport;
+    }
+
+    /**
+     * Sends the request through the given transport, translating I/O failures into runtime exceptions.
+     *
+     * @param request the request to send.
+     * @param transport the transport used to exchange messages with the server.
+     * @return the response.
+     */
+    public static HttpTransportResponse execute(final HttpTransportRequest request, final HttpTransport transport) {
         try {
-            conn = factory.buildHttpURLConnection(constructedUrl.openConnection());
+            return transport.execute(request);
+        } catch (final IOException e) {
+            throw transportFailure(request.getUrl(), e);
+        }
+    }
 
-            if (CommonUtils.isEmpty(encoding)) {
-                in = new InputStreamReader(conn.getInputStream());
-            } else {
-                in = new InputStreamReader(conn.getInputStream(), encoding);
-            }
+    /**
+     * Sends the request through the given transport and reads the response body with the given reader,
+     * translating I/O failures into runtime exceptions.
+     *
+     * @param request the request to send.
+     * @param transport the transport used to exchange messages with the server.
+     * @param reader reader consuming the response body.
+     * @param <T> the type of the value read from the body.
+     * @return the value read from the body.
+     */
+    public static <T> T execute(final HttpTransportRequest request, final HttpTransport transport,
+                                final ResponseBodyReader<T> reader) {
+        try {
+            return transport.execute(request, reader);
+        } catch (final IOException e) {
+            throw transportFailure(request.getUrl(), e);
+        }
+    }
 
-            final StringBuilder builder = new StringBuilder(255);
-            int byteRead;
-            while ((byteRead = in.read()) != -1) {
-                builder.append((char) byteRead);
+    /**
+     * Sends the request through the given transport without blocking the calling thread. I/O failures
+     * are logged and translated into runtime exceptions, as {@link #execute(HttpTransportRequest, HttpTransport)} does.
+     *
+     * @param request the request to send.
+     * @param transport the transport used to exchange messages with the server.
+     * @param executor executor for transports that need to block.
+     * @return a future completed with the response.
+     */
+    public static CompletableFuture<HttpTransportResponse> executeAsync(final HttpTransportRequest request,
+                                                                        final HttpTransport transport,
+                                                                        final Executor executor) {
+        return transport.executeAsync(request, executor).exceptionally(t -> {
+            final Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            if (cause instanceof IOException) {
+                throw new CompletionException(transportFailure(request.getUrl(), (IOException) cause));
             }
+            throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+        });
+    }
+
+    /**
+     * Logs a failure to exchange a message with the server, or to read its response, and translates it into the
+     * runtime exception the transport helpers of this class fail with.
+     *
+     * @param url the url the request was sent to.
+     * @param e the failure.
+     * @return the runtime exception to throw.
+     */
+    public static RuntimeException transportFailure(final URL url, final IOException e) {
+        logTransportFailure(url, e);
+        return new RuntimeException(e);
+    }
 
-            return builder.toString();
-        } catch (final RuntimeException e) {
-            throw e;
-        } catch (final SSLException e) {
+    private static void logTransportFailure(final URL constructedUrl, final IOException e) {
+        if (e instanceof SSLException) {
             LOGGER.error("SSL error getting response from host: {} : Error Message: {}", constructedUrl.getHost(), e.getMessage(), e);
-            throw new RuntimeException(e);
-        } catch (final IOException e) {
+        } else {
             LOGGER.error("Error getting response from host: [{}] with path: [{}] and protocol: [{}] Error Message: {}",
                 constructedUrl.getHost(), constructedUrl.getPath(), constructedUrl.getProtocol(), e.getMessage(), e);
-            throw new RuntimeException(e);
-        } finally {
-            closeQuietly(in);
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
 
+    /**
+     * Resolves the character set for the given encoding, falling back to the platform default.
+     *
+     * @param encoding the encoding name, possibly blank.
+     * @return the character set.
+     */
+    public static Charset toCharset(final String encoding) {
+        return isEmpty(encoding) ? Charset.defaultCharset() : Charset.forName(encoding);
+    }
+
     public static ProxyList createProxyList(final String proxies) {
         if (CommonUtils.isBlank(proxies)) {
             return new ProxyList();
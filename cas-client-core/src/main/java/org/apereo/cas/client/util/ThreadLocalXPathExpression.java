@@ -27,7 +27,6 @@ import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 /**
  * Thread local XPath expression.
@@ -103,7 +102,7 @@ public class ThreadLocalXPathExpression extends ThreadLocal<XPathExpression> imp
     @Override
     protected XPathExpression initialValue() {
         try {
-            final XPath xPath = XPathFactory.newInstance().newXPath();
+            final XPath xPath = XmlUtils.newXPath();
             xPath.setNamespaceContext(context);
             return xPath.compile(expression);
         } catch (final XPathExpressionException e) {
@@ -0,0 +1,83 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of XML parsers. Parsers are not thread-safe, so each one is used by a single caller at a time and
+ * reset before going back to the pool. Unlike a thread local, the pool keeps a handful of parsers shared by all
+ * threads, which suits virtual threads that never reuse a thread local value.
+ *
+ * @param <T> the type of pooled parser.
+ * @author agent
+ * @since 4.0.2
+ */
+final class XmlParserPool<T> {
+
+    private static final int DEFAULT_CAPACITY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final BlockingQueue<T> parsers;
+
+    private final Supplier<T> factory;
+
+    private final Consumer<T> reset;
+
+    XmlParserPool(final Supplier<T> factory, final Consumer<T> reset) {
+        this(DEFAULT_CAPACITY, factory, reset);
+    }
+
+    XmlParserPool(final int capacity, final Supplier<T> factory, final Consumer<T> reset) {
+        this.parsers = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+        this.reset = reset;
+    }
+
+    /**
+     * Takes a parser from the pool, creating one if the pool is empty.
+     *
+     * @return a parser for the exclusive use of the caller.
+     */
+    T borrow() {
+        final T parser = this.parsers.poll();
+        return parser != null ? parser : this.factory.get();
+    }
+
+    /**
+     * Resets the parser and puts it back in the pool. Parsers that cannot be reset, or that do not fit
+     * in the pool, are discarded.
+     *
+     * @param parser the parser, no longer used by the caller.
+     */
+    void release(final T parser) {
+        try {
+            this.reset.accept(parser);
+        } catch (final RuntimeException e) {
+            return;
+        }
+        this.parsers.offer(parser);
+    }
+
+    int size() {
+        return this.parsers.size();
+    }
+}
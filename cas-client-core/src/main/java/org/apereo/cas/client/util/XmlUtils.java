@@ -28,9 +28,18 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -50,6 +59,18 @@ public final class XmlUtils {
      */
     private final static Logger LOGGER = LoggerFactory.getLogger(XmlUtils.class);
 
+    private static final SAXParserFactory SAX_PARSER_FACTORY = newSAXParserFactory();
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = newDocumentBuilderFactory();
+
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXMLInputFactory();
+
+    private static final XmlParserPool<SAXParser> SAX_PARSERS = new XmlParserPool<>(XmlUtils::newSAXParser, SAXParser::reset);
+
+    private static final XmlParserPool<DocumentBuilder> DOCUMENT_BUILDERS =
+        new XmlParserPool<>(XmlUtils::newDocumentBuilder, DocumentBuilder::reset);
 
     /**
      * Creates a new namespace-aware DOM document object by parsing the given XML.
@@ -59,33 +80,89 @@ public final class XmlUtils {
      * @return DOM document.
      */
     public static Document newDocument(final String xml) {
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        final Map<String, Boolean> features = new HashMap<String, Boolean>();
-        features.put(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-        features.put("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        features.put("http://apache.org/xml/features/disallow-doctype-decl", true);
-        for (final Map.Entry<String, Boolean> entry : features.entrySet()) {
-            try {
-                factory.setFeature(entry.getKey(), entry.getValue());
-            } catch (final ParserConfigurationException e) {
-                LOGGER.warn("Failed setting XML feature {}: {}", entry.getKey(), e);
-            }
-        }
-        factory.setExpandEntityReferences(false);
-        factory.setNamespaceAware(true);
         try {
-            return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+            return newDocument(new InputSource(new StringReader(xml)));
         } catch (final Exception e) {
             throw new RuntimeException("XML parsing error: " + e);
         }
     }
 
+    /**
+     * Creates a new namespace-aware DOM document object by parsing the XML read from the given source,
+     * with a pooled secure document builder.
+     *
+     * @param source XML content.
+     * @return DOM document.
+     * @throws IOException if the source cannot be read.
+     * @throws SAXException if the content is not well-formed XML.
+     */
+    public static Document newDocument(final InputSource source) throws IOException, SAXException {
+        final DocumentBuilder builder = DOCUMENT_BUILDERS.borrow();
+        try {
+            return builder.parse(source);
+        } finally {
+            DOCUMENT_BUILDERS.release(builder);
+        }
+    }
+
+    /**
+     * Parses the XML read from the given source with a pooled secure, namespace-aware SAX parser.
+     *
+     * @param source XML content.
+     * @param handler handler receiving the content and the errors of the document.
+     * @throws IOException if the source cannot be read.
+     * @throws SAXException if the content is not well-formed XML or the handler fails.
+     */
+    public static void parse(final InputSource source, final DefaultHandler handler) throws IOException, SAXException {
+        final SAXParser parser = SAX_PARSERS.borrow();
+        try {
+            final XMLReader reader = parser.getXMLReader();
+            reader.setContentHandler(handler);
+            reader.setErrorHandler(handler);
+            reader.parse(source);
+        } finally {
+            SAX_PARSERS.release(parser);
+        }
+    }
+
     /**
      * Get an instance of an XML reader from the XMLReaderFactory.
+     * Prefer {@link #parse(InputSource, DefaultHandler)}, which reuses pooled readers.
      *
      * @return the XMLReader.
      */
     public static XMLReader getXmlReader() {
+        try {
+            return newSAXParser().getXMLReader();
+        } catch (final SAXException e) {
+            throw new RuntimeException("Unable to create XMLReader", e);
+        }
+    }
+
+    /**
+     * Creates a StAX reader pulling events from the given XML, with a shared secure factory that supports
+     * neither DTDs nor external entities.
+     *
+     * @param xml XML content.
+     * @return the stream reader; closing it does not close the given reader.
+     * @throws XMLStreamException if the reader cannot be created.
+     */
+    public static XMLStreamReader createXMLStreamReader(final Reader xml) throws XMLStreamException {
+        return XML_INPUT_FACTORY.createXMLStreamReader(xml);
+    }
+
+    /**
+     * Creates a new XPath object from the shared factory.
+     *
+     * @return the XPath object.
+     */
+    public static XPath newXPath() {
+        synchronized (XPATH_FACTORY) {
+            return XPATH_FACTORY.newXPath();
+        }
+    }
+
+    private static SAXParserFactory newSAXParserFactory() {
         try {
             final SAXParserFactory factory = SAXParserFactory.newInstance();
             factory.setNamespaceAware(true);
@@ -94,12 +171,59 @@ public final class XmlUtils {
             factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
             factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
             factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            return factory.newSAXParser().getXMLReader();
+            return factory;
         } catch (final Exception e) {
-            throw new RuntimeException("Unable to create XMLReader", e);
+            throw new IllegalStateException("Unable to configure SAXParserFactory", e);
+        }
+    }
+
+    private static XMLInputFactory newXMLInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private static DocumentBuilderFactory newDocumentBuilderFactory() {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        final Map<String, Boolean> features = new HashMap<String, Boolean>();
+        features.put(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        features.put("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        features.put("http://apache.org/xml/features/disallow-doctype-decl", true);
+        for (final Map.Entry<String, Boolean> entry : features.entrySet()) {
+            try {
+                factory.setFeature(entry.getKey(), entry.getValue());
+            } catch (final ParserConfigurationException e) {
+                LOGGER.warn("Failed setting XML feature {}: {}", entry.getKey(), e);
+            }
         }
+        factory.setExpandEntityReferences(false);
+        factory.setNamespaceAware(true);
+        return factory;
     }
 
+    private static SAXParser newSAXParser() {
+        // factories are not guaranteed to be thread-safe
+        synchronized (SAX_PARSER_FACTORY) {
+            try {
+                return SAX_PARSER_FACTORY.newSAXParser();
+            } catch (final Exception e) {
+                throw new IllegalStateException("Unable to create SAXParser", e);
+            }
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder() {
+        synchronized (DOCUMENT_BUILDER_FACTORY) {
+            try {
+                return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            } catch (final ParserConfigurationException e) {
+                throw new IllegalStateException("Unable to create DocumentBuilder", e);
+            }
+        }
+    }
 
     /**
      * Retrieve the text for a group of elements. Each text element is an entry
@@ -112,7 +236,6 @@ public final class XmlUtils {
      */
     public static List<String> getTextForElements(final String xmlAsString, final String element) {
         final List<String> elements = new ArrayList<String>(2);
-        final XMLReader reader = getXmlReader();
 
         final DefaultHandler handler = new DefaultHandler() {
 
@@ -145,11 +268,8 @@ public final class XmlUtils {
             }
         };
 
-        reader.setContentHandler(handler);
-        reader.setErrorHandler(handler);
-
         try {
-            reader.parse(new InputSource(new StringReader(xmlAsString)));
+            parse(new InputSource(new StringReader(xmlAsString)), handler);
         } catch (final Exception e) {
             LOGGER.error(e.getMessage(), e);
             return null;
@@ -158,6 +278,61 @@ public final class XmlUtils {
         return elements;
     }
 
+    /**
+     * Retrieve the text of each occurrence of the given elements in a single pass over the xml.
+     *
+     * @param source   the xml response
+     * @param elements the local names of the elements to look for
+     * @return the texts of the occurrences of each element, in document order; elements that do not occur are
+     * mapped to an empty list. Null if the xml cannot be parsed.
+     */
+    public static Map<String, List<String>> getTextForElementsByName(final InputSource source, final String... elements) {
+        final Map<String, List<String>> texts = new HashMap<String, List<String>>(elements.length * 2);
+        for (final String element : elements) {
+            texts.put(element, new ArrayList<String>(1));
+        }
+
+        final DefaultHandler handler = new DefaultHandler() {
+
+            private List<String> foundElement;
+
+            private final StringBuilder buffer = new StringBuilder();
+
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                                     final Attributes attributes) throws SAXException {
+                if (this.foundElement == null) {
+                    this.foundElement = texts.get(localName);
+                }
+            }
+
+            @Override
+            public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+                if (this.foundElement != null && this.foundElement == texts.get(localName)) {
+                    this.foundElement.add(this.buffer.toString());
+                    this.foundElement = null;
+                    this.buffer.setLength(0);
+                }
+            }
+
+            @Override
+            public void characters(final char[] ch, final int start, final int length) throws SAXException {
+                if (this.foundElement != null) {
+                    this.buffer.append(ch, start, length);
+                }
+            }
+        };
+
+        try {
+            parse(source, handler);
+        } catch (final Exception e) {
+            LOGGER.error(e.getMessage(), e);
+            return null;
+        }
+
+        return texts;
+    }
+
     /**
      * Retrieve the text for a specific element (when we know there is only
      * one).
@@ -167,7 +342,18 @@ public final class XmlUtils {
      * @return the text value of the element.
      */
     public static String getTextForElement(final String xmlAsString, final String element) {
-        final XMLReader reader = getXmlReader();
+        return getTextForElement(new InputSource(new StringReader(xmlAsString)), element);
+    }
+
+    /**
+     * Retrieve the text for a specific element (when we know there is only
+     * one), parsing the xml as it is read from the given source.
+     *
+     * @param source  the xml response
+     * @param element the element to look for
+     * @return the text value of the element.
+     */
+    public static String getTextForElement(final InputSource source, final String element) {
         final StringBuilder builder = new StringBuilder();
 
         final DefaultHandler handler = new DefaultHandler() {
@@ -197,11 +383,8 @@ public final class XmlUtils {
             }
         };
 
-        reader.setContentHandler(handler);
-        reader.setErrorHandler(handler);
-
         try {
-            reader.parse(new InputSource(new StringReader(xmlAsString)));
+            parse(source, handler);
         } catch (final Exception e) {
             LOGGER.error(e.getMessage(), e);
             return null;
@@ -18,9 +18,12 @@
  */
 package org.apereo.cas.client.validation;
 
+import org.apereo.cas.client.ssl.HttpTransportRequest;
+import org.apereo.cas.client.ssl.HttpTransportResponse;
 import org.apereo.cas.client.util.CommonUtils;
 
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Abstract class that knows the protocol for validating a CAS ticket.
@@ -35,11 +38,29 @@ public abstract class AbstractCasProtocolUrlBasedTicketValidator extends Abstrac
         super(casServerUrlPrefix);
     }
 
+    /**
+     * Parses the response while it is read from the connection, aborting responses larger than the maximum size.
+     */
+    @Override
+    protected final Assertion retrieveAndParseResponseFromServer(final URL validationUrl, final String ticket)
+        throws TicketValidationException {
+        final HttpTransportRequest request = HttpTransportRequest.get(validationUrl).withMaxResponseSize(getMaxResponseSize());
+        return CommonUtils.execute(request, getHttpTransport(), newResponseBodyReader(getResponseCharset())).getAssertion();
+    }
+
     /**
      * Retrieves the response from the server by opening a connection and merely reading the response.
      */
     @Override
     protected final String retrieveResponseFromServer(final URL validationUrl, final String ticket) {
-        return CommonUtils.getResponseFromServer(validationUrl, getURLConnectionFactory(), getEncoding());
+        return CommonUtils.execute(HttpTransportRequest.get(validationUrl).withMaxResponseSize(getMaxResponseSize()),
+            getHttpTransport()).getBodyAsString(getResponseCharset());
+    }
+
+    @Override
+    protected final CompletableFuture<HttpTransportResponse> retrieveResponseFromServerAsync(final URL validationUrl,
+                                                                                             final String ticket) {
+        final HttpTransportRequest request = HttpTransportRequest.get(validationUrl).withMaxResponseSize(getMaxResponseSize());
+        return CommonUtils.executeAsync(request, getHttpTransport(), getValidationExecutor());
     }
 }
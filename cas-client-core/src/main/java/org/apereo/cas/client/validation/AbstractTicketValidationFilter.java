@@ -19,11 +19,25 @@
 package org.apereo.cas.client.validation;
 
 import org.apereo.cas.client.Protocol;
+import org.apereo.cas.client.authentication.AttributeValuePool;
 import org.apereo.cas.client.configuration.ConfigurationKeys;
+import org.apereo.cas.client.ssl.CasServerLoadBalancer;
+import org.apereo.cas.client.ssl.CircuitBreaker;
+import org.apereo.cas.client.ssl.HedgingPolicy;
+import org.apereo.cas.client.ssl.HttpClientTransport;
+import org.apereo.cas.client.ssl.HttpTransport;
+import org.apereo.cas.client.ssl.HttpTransportResponse;
+import org.apereo.cas.client.ssl.HttpsURLConnectionFactory;
+import org.apereo.cas.client.ssl.LoadBalancingHttpTransport;
+import org.apereo.cas.client.ssl.ResilientHttpTransport;
 import org.apereo.cas.client.util.AbstractCasFilter;
 import org.apereo.cas.client.util.CommonUtils;
 import org.apereo.cas.client.util.ReflectUtils;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.FilterConfig;
 import jakarta.servlet.ServletException;
@@ -35,7 +49,16 @@ import jakarta.servlet.http.HttpServletResponse;
 import javax.net.ssl.HostnameVerifier;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * The filter that handles all the work of validating ticket requests.
@@ -49,6 +72,47 @@ import java.util.Properties;
  * <li><code>useSession</code> - store any of the useful information in a session attribute. (default: true)</li>
  * <li><code>hostnameVerifier</code> - name of class implementing a {@link HostnameVerifier}.</li>
  * <li><code>hostnameVerifierConfig</code> - name of configuration class (constructor argument of verifier).</li>
+ * <li><code>connectTimeout</code> - milliseconds to wait for a connection to the CAS server. (default: 5000)</li>
+ * <li><code>readTimeout</code> - milliseconds to wait for a response from the CAS server. (default: 10000)</li>
+ * <li><code>casServerUrlPrefixes</code> - url prefixes of the individual CAS server nodes, separated by whitespace
+ * or commas. Calls addressed to <code>casServerUrlPrefix</code> are spread over these nodes,
+ * see {@link CasServerLoadBalancer}.</li>
+ * <li><code>hedgingEnabled</code> - with several CAS server nodes, send a duplicate of slow idempotent requests,
+ * i.e. proxy ticket requests, to a second node, see {@link HedgingPolicy}. (default: false)</li>
+ * <li><code>hedgingDelayPercentile</code> - percentile of recent response times after which a request is hedged. (default: 95)</li>
+ * <li><code>hedgingMinDelay</code> - minimum milliseconds to wait before hedging a request. (default: 20)</li>
+ * <li><code>hedgingMaxRatio</code> - maximum percentage of requests that may be hedged. (default: 10)</li>
+ * <li><code>maxConcurrentCalls</code> - maximum number of concurrent calls to the CAS server; further calls
+ * are rejected. (default: 0, unlimited)</li>
+ * <li><code>circuitBreakerEnabled</code> - stop calling the CAS server while it fails or responds slowly,
+ * see {@link CircuitBreaker}. (default: false)</li>
+ * <li><code>circuitBreakerFailureRateThreshold</code> - percentage of failed calls opening the circuit. (default: 50)</li>
+ * <li><code>circuitBreakerSlowCallDurationThreshold</code> - milliseconds from which a call counts as slow;
+ * the circuit opens when all recent calls are slow. (default: 5000)</li>
+ * <li><code>circuitBreakerOpenDuration</code> - milliseconds to reject calls before probing the server again. (default: 30000)</li>
+ * <li><code>circuitBreakerOpenResponse</code> - response body handed to the validator while the circuit is open,
+ * i.e. a CAS authentication failure document. If not set, validation fails with an error.</li>
+ * <li><code>asyncValidation</code> - validate tickets with {@link TicketValidator#validateAsync(String, String)}
+ * inside a servlet asynchronous request, releasing the container thread during the CAS round trip.
+ * The filter must be mapped with <code>async-supported</code> and the <code>ASYNC</code> dispatcher type. (default: false)</li>
+ * <li><code>validationThreads</code> - threads parsing the responses of asynchronous validations, and waiting for the
+ * CAS server with transports that block. (default: 16)</li>
+ * <li><code>validationQueueCapacity</code> - asynchronous validations waiting for a thread; further validations
+ * fail. (default: 1000)</li>
+ * <li><code>coalesceValidations</code> - share a single validation among concurrent requests presenting the same
+ * ticket for the same service, see {@link CoalescingTicketValidator}. (default: false)</li>
+ * <li><code>coalescedResultTimeToLive</code> - milliseconds a completed validation result is still handed to requests
+ * presenting the same ticket, from any session. This reopens the replay window of single-use tickets, so only
+ * concurrent validations are shared by default. (default: 0)</li>
+ * <li><code>maxResponseSize</code> - maximum size in bytes of validation responses; larger responses are aborted
+ * while they are read. (default: 0, unlimited)</li>
+ * <li><code>attributeValuePoolSize</code> - maximum number of attribute values shared among the principals of all
+ * sessions, see {@link AttributeValuePool}. (default: 0, values are not shared)</li>
+ * <li><code>compactSerialization</code> - write principals and assertions stored in sessions in a compact binary
+ * form, see {@link AssertionImpl#withCompactSerialization()}. Versions before 4.0.2 cannot read it, so
+ * only turn it on once every node sharing sessions is upgraded. (default: false)</li>
+ * <li><code>lazyAttributes</code> - parse the attributes of CAS 2.0/3.0 XML responses when the application first
+ * asks for them, see {@link Cas20ServiceTicketValidator#setLazyAttributes(boolean)}. (default: false)</li>
  * </ul>
  *
  * @author Scott Battaglia
@@ -57,6 +121,9 @@ import java.util.Properties;
  */
 public abstract class AbstractTicketValidationFilter extends AbstractCasFilter {
 
+    /** Request attribute carrying the outcome of an asynchronous validation into the re-dispatched request. */
+    private static final String ASYNC_VALIDATION_RESULT = AbstractTicketValidationFilter.class.getName() + ".asyncValidationResult";
+
     /** The TicketValidator we will use to validate tickets. */
     private TicketValidator ticketValidator;
 
@@ -76,6 +143,21 @@ public abstract class AbstractTicketValidationFilter extends AbstractCasFilter {
      */
     private boolean useSession = true;
 
+    /**
+     * Specify whether tickets are validated asynchronously, releasing the container thread
+     * while waiting for the CAS server.
+     */
+    private boolean asyncValidation = false;
+
+    /** Specify whether assertions are written in compact form, see {@link AssertionImpl#withCompactSerialization()}. */
+    private boolean compactSerialization = false;
+
+    /** Transports created by this filter, closed when it is destroyed. */
+    private final List<HttpTransport> httpTransports = new CopyOnWriteArrayList<>();
+
+    /** Executors created by this filter, shut down when it is destroyed. */
+    private final List<ExecutorService> validationExecutors = new CopyOnWriteArrayList<>();
+
     protected AbstractTicketValidationFilter(final Protocol protocol) {
         super(protocol);
     }
@@ -86,18 +168,41 @@ public abstract class AbstractTicketValidationFilter extends AbstractCasFilter {
         CommonUtils.assertNotNull(this.ticketValidator, "ticketValidator cannot be null.");
     }
 
+    @Override
+    public void destroy() {
+        super.destroy();
+        for (final HttpTransport transport : this.httpTransports) {
+            transport.close();
+        }
+        this.httpTransports.clear();
+        for (final ExecutorService executor : this.validationExecutors) {
+            executor.shutdown();
+        }
+        this.validationExecutors.clear();
+    }
+
     @Override
     protected void initInternal(final FilterConfig filterConfig) throws ServletException {
         setExceptionOnValidationFailure(getBoolean(ConfigurationKeys.EXCEPTION_ON_VALIDATION_FAILURE));
         setRedirectAfterValidation(getBoolean(ConfigurationKeys.REDIRECT_AFTER_VALIDATION));
         setUseSession(getBoolean(ConfigurationKeys.USE_SESSION));
+        setAsyncValidation(getBoolean(ConfigurationKeys.ASYNC_VALIDATION));
+        setCompactSerialization(getBoolean(ConfigurationKeys.COMPACT_SERIALIZATION));
 
         if (!this.useSession && this.redirectAfterValidation) {
             logger.warn("redirectAfterValidation parameter may not be true when useSession parameter is false. Resetting it to false in order to prevent infinite redirects.");
             setRedirectAfterValidation(false);
         }
 
-        setTicketValidator(getTicketValidator(filterConfig));
+        final TicketValidator validator = getTicketValidator(filterConfig);
+        if (validator != null && !(validator instanceof CoalescingTicketValidator)
+            && getBoolean(ConfigurationKeys.COALESCE_VALIDATIONS)) {
+            final CoalescingTicketValidator coalescingValidator = new CoalescingTicketValidator(validator);
+            coalescingValidator.setResultTimeToLive(getLong(ConfigurationKeys.COALESCED_RESULT_TIME_TO_LIVE));
+            setTicketValidator(coalescingValidator);
+        } else {
+            setTicketValidator(validator);
+        }
         super.initInternal(filterConfig);
     }
 
@@ -111,46 +216,171 @@ public abstract class AbstractTicketValidationFilter extends AbstractCasFilter {
 
         final HttpServletRequest request = (HttpServletRequest) servletRequest;
         final HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        if (request.getDispatcherType() == DispatcherType.ASYNC && request.getAttribute(ASYNC_VALIDATION_RESULT) != null) {
+            resumeAfterAsyncValidation(request, response, filterChain);
+            return;
+        }
+
         final String ticket = retrieveTicketFromRequest(request);
 
+        if (CommonUtils.isNotBlank(ticket) && this.asyncValidation && request.isAsyncSupported()) {
+            validateAsync(request, response, ticket);
+            return;
+        }
+
         if (CommonUtils.isNotBlank(ticket)) {
             logger.debug("Attempting to validate ticket: {}", ticket);
 
+            final String serviceUrl = constructServiceUrl(request, response);
             try {
-                final Assertion assertion = this.ticketValidator.validate(ticket,
-                    constructServiceUrl(request, response));
+                final Assertion assertion = this.ticketValidator.validate(ticket, serviceUrl);
+                if (!processValidationSuccess(request, response, assertion, serviceUrl)) {
+                    return;
+                }
+            } catch (final TicketValidationException e) {
+                processValidationFailure(request, response, e);
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
 
-                logger.debug("Successfully authenticated user: {}", assertion.getPrincipal().getName());
+    }
 
-                request.setAttribute(CONST_CAS_ASSERTION, assertion);
+    /**
+     * Records a successful validation on the request (and session) and notifies {@link #onSuccessfulValidation}.
+     *
+     * @return false if the response was redirected and the filter chain must not continue.
+     */
+    private boolean processValidationSuccess(final HttpServletRequest request, final HttpServletResponse response,
+                                             final Assertion validatedAssertion, final String serviceUrl) throws IOException {
+        final Assertion assertion = this.compactSerialization && validatedAssertion instanceof AssertionImpl
+            ? ((AssertionImpl) validatedAssertion).withCompactSerialization() : validatedAssertion;
+        logger.debug("Successfully authenticated user: {}", assertion.getPrincipal().getName());
 
-                if (this.useSession) {
-                    request.getSession().setAttribute(CONST_CAS_ASSERTION, assertion);
-                }
-                onSuccessfulValidation(request, response, assertion);
+        request.setAttribute(CONST_CAS_ASSERTION, assertion);
 
-                if (this.redirectAfterValidation) {
-                    logger.debug("Redirecting after successful ticket validation.");
-                    response.sendRedirect(constructServiceUrl(request, response));
-                    return;
-                }
-            } catch (final TicketValidationException e) {
-                logger.debug(e.getMessage(), e);
+        if (this.useSession) {
+            request.getSession().setAttribute(CONST_CAS_ASSERTION, assertion);
+        }
+        recordPrincipal(request, assertion);
+        onSuccessfulValidation(request, response, assertion);
+
+        if (this.redirectAfterValidation) {
+            logger.debug("Redirecting after successful ticket validation.");
+            response.sendRedirect(serviceUrl);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hands the assertion to the single sign-out filter when it records the principals of sessions.
+     */
+    @SuppressWarnings("unchecked")
+    private static void recordPrincipal(final HttpServletRequest request, final Assertion assertion) {
+        final Object principalRecorder = request.getAttribute(CONST_CAS_PRINCIPAL_RECORDER);
+        if (principalRecorder instanceof Consumer) {
+            request.removeAttribute(CONST_CAS_PRINCIPAL_RECORDER);
+            ((Consumer<Assertion>) principalRecorder).accept(assertion);
+        }
+    }
+
+    private void processValidationFailure(final HttpServletRequest request, final HttpServletResponse response,
+                                          final TicketValidationException e) throws IOException, ServletException {
+        logger.debug(e.getMessage(), e);
+
+        onFailedValidation(request, response);
+
+        if (this.exceptionOnValidationFailure) {
+            throw new ServletException(e);
+        }
 
-                onFailedValidation(request, response);
+        response.sendError(HttpServletResponse.SC_FORBIDDEN, e.getMessage());
+    }
 
-                if (this.exceptionOnValidationFailure) {
-                    throw new ServletException(e);
+    /**
+     * Starts an asynchronous request and validates the ticket without holding the container thread.
+     * The completion callback only records the outcome and dispatches the request again; the outcome is
+     * then handled by {@link #resumeAfterAsyncValidation} on a container thread, so that
+     * {@link #onSuccessfulValidation} and {@link #onFailedValidation} run on the same kind of thread as in
+     * the synchronous flow. If the asynchronous request times out or fails first, a late outcome is dropped.
+     */
+    private void validateAsync(final HttpServletRequest request, final HttpServletResponse response,
+                               final String ticket) {
+        logger.debug("Attempting to validate ticket asynchronously: {}", ticket);
+        final String serviceUrl = constructServiceUrl(request, response);
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        final AtomicBoolean completed = new AtomicBoolean();
+
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(final AsyncEvent event) {
+                completed.set(true);
+            }
+
+            @Override
+            public void onTimeout(final AsyncEvent event) {
+                if (completed.compareAndSet(false, true)) {
+                    logger.warn("Asynchronous validation of ticket [{}] timed out", ticket);
+                    request.setAttribute(ASYNC_VALIDATION_RESULT, new AsyncValidationResult(serviceUrl, null,
+                        new TicketValidationException("Asynchronous ticket validation timed out")));
+                    asyncContext.dispatch();
                 }
+            }
 
-                response.sendError(HttpServletResponse.SC_FORBIDDEN, e.getMessage());
+            @Override
+            public void onError(final AsyncEvent event) {
+                completed.set(true);
+            }
 
-                return;
+            @Override
+            public void onStartAsync(final AsyncEvent event) {
             }
+        });
+
+        CompletableFuture<Assertion> validation;
+        try {
+            validation = this.ticketValidator.validateAsync(ticket, serviceUrl);
+        } catch (final RuntimeException e) {
+            validation = CompletableFuture.failedFuture(e);
         }
 
-        filterChain.doFilter(request, response);
+        validation.whenComplete((assertion, throwable) -> {
+            if (!completed.compareAndSet(false, true)) {
+                logger.debug("Dropping outcome of asynchronous validation of ticket [{}]: request already completed", ticket);
+                return;
+            }
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+            request.setAttribute(ASYNC_VALIDATION_RESULT, new AsyncValidationResult(serviceUrl, assertion, cause));
+            try {
+                asyncContext.dispatch();
+            } catch (final IllegalStateException e) {
+                logger.warn("Unable to resume request after asynchronous ticket validation", e);
+            }
+        });
+    }
 
+    private void resumeAfterAsyncValidation(final HttpServletRequest request, final HttpServletResponse response,
+                                            final FilterChain filterChain) throws IOException, ServletException {
+        final AsyncValidationResult result = (AsyncValidationResult) request.getAttribute(ASYNC_VALIDATION_RESULT);
+        request.removeAttribute(ASYNC_VALIDATION_RESULT);
+
+        if (result.throwable instanceof TicketValidationException) {
+            processValidationFailure(request, response, (TicketValidationException) result.throwable);
+            return;
+        }
+        if (result.throwable instanceof RuntimeException) {
+            throw (RuntimeException) result.throwable;
+        }
+        if (result.throwable != null) {
+            throw new ServletException(result.throwable);
+        }
+        if (processValidationSuccess(request, response, result.assertion, result.serviceUrl)) {
+            filterChain.doFilter(request, response);
+        }
     }
 
     public final void setTicketValidator(final TicketValidator ticketValidator) {
@@ -169,6 +399,14 @@ public abstract class AbstractTicketValidationFilter extends AbstractCasFilter {
         this.useSession = useSession;
     }
 
+    public final void setAsyncValidation(final boolean asyncValidation) {
+        this.asyncValidation = asyncValidation;
+    }
+
+    public final void setCompactSerialization(final boolean compactSerialization) {
+        this.compactSerialization = compactSerialization;
+    }
+
     /**
      * Template method to return the appropriate validator.
      *
@@ -221,6 +459,99 @@ public abstract class AbstractTicketValidationFilter extends AbstractCasFilter {
         return null;
     }
 
+    /**
+     * Creates the transport used by ticket validators to contact the CAS server. A pooled
+     * {@link HttpClientTransport} is used, unless the connection factory relies on hostname verification
+     * options that only {@link java.net.HttpURLConnection} can honor. The transport is closed when the filter
+     * is destroyed.
+     *
+     * @param factory the connection factory carrying the SSL configuration.
+     * @return the transport.
+     */
+    protected HttpTransport createHttpTransport(final HttpsURLConnectionFactory factory) {
+        final HttpTransport transport = CommonUtils.createHttpTransport(factory,
+            getInt(ConfigurationKeys.CONNECT_TIMEOUT), getInt(ConfigurationKeys.READ_TIMEOUT));
+        final HttpTransport guarded = createResilientHttpTransport(createLoadBalancingHttpTransport(transport));
+        this.httpTransports.add(guarded);
+        return guarded;
+    }
+
+    /**
+     * Creates the executor of the asynchronous validations of a ticket validator, with
+     * <code>validationThreads</code> threads. The executor is shut down when the filter is destroyed.
+     *
+     * @return the executor.
+     */
+    protected Executor createValidationExecutor() {
+        final ExecutorService executor = AbstractUrlBasedTicketValidator.newValidationExecutor(
+            getInt(ConfigurationKeys.VALIDATION_THREADS), getInt(ConfigurationKeys.VALIDATION_QUEUE_CAPACITY));
+        this.validationExecutors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Spreads calls over the CAS server nodes, when several are configured.
+     *
+     * @param transport the transport contacting the CAS server.
+     * @return the load balancing transport, or the given one if no nodes are configured.
+     */
+    protected HttpTransport createLoadBalancingHttpTransport(final HttpTransport transport) {
+        final List<String> nodePrefixes = CasServerLoadBalancer.parsePrefixes(getString(ConfigurationKeys.CAS_SERVER_URL_PREFIXES));
+        final String casServerUrlPrefix = getString(ConfigurationKeys.CAS_SERVER_URL_PREFIX);
+        if (nodePrefixes.isEmpty() || casServerUrlPrefix == null) {
+            return transport;
+        }
+        logger.debug("Spreading calls to [{}] over CAS server nodes {}", casServerUrlPrefix, nodePrefixes);
+        final LoadBalancingHttpTransport loadBalancingTransport = new LoadBalancingHttpTransport(transport, casServerUrlPrefix, nodePrefixes);
+        if (getBoolean(ConfigurationKeys.HEDGING_ENABLED)) {
+            final HedgingPolicy hedgingPolicy = new HedgingPolicy();
+            hedgingPolicy.setPercentile(getInt(ConfigurationKeys.HEDGING_DELAY_PERCENTILE));
+            hedgingPolicy.setMinDelay(getLong(ConfigurationKeys.HEDGING_MIN_DELAY));
+            hedgingPolicy.setMaxHedgeRatio(getInt(ConfigurationKeys.HEDGING_MAX_RATIO));
+            loadBalancingTransport.setHedgingPolicy(hedgingPolicy);
+        }
+        return loadBalancingTransport;
+    }
+
+    /**
+     * Guards the transport with a bulkhead and a circuit breaker, when either is configured.
+     *
+     * @param transport the transport contacting the CAS server.
+     * @return the guarded transport, or the given one if no protection is configured.
+     */
+    protected HttpTransport createResilientHttpTransport(final HttpTransport transport) {
+        final int maxConcurrentCalls = getInt(ConfigurationKeys.MAX_CONCURRENT_CALLS);
+        final boolean circuitBreakerEnabled = getBoolean(ConfigurationKeys.CIRCUIT_BREAKER_ENABLED);
+        if (maxConcurrentCalls <= 0 && !circuitBreakerEnabled) {
+            return transport;
+        }
+        CircuitBreaker circuitBreaker = null;
+        if (circuitBreakerEnabled) {
+            circuitBreaker = new CircuitBreaker(getString(ConfigurationKeys.CAS_SERVER_URL_PREFIX));
+            circuitBreaker.setFailureRateThreshold(getInt(ConfigurationKeys.CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD));
+            circuitBreaker.setSlowCallDurationThreshold(getLong(ConfigurationKeys.CIRCUIT_BREAKER_SLOW_CALL_DURATION_THRESHOLD));
+            circuitBreaker.setOpenDuration(getLong(ConfigurationKeys.CIRCUIT_BREAKER_OPEN_DURATION));
+        }
+        final ResilientHttpTransport resilientTransport = new ResilientHttpTransport(transport, circuitBreaker);
+        resilientTransport.setMaxConcurrentCalls(maxConcurrentCalls);
+        final String openResponse = getString(ConfigurationKeys.CIRCUIT_BREAKER_OPEN_RESPONSE);
+        if (openResponse != null) {
+            resilientTransport.setOpenCircuitResponse(
+                new HttpTransportResponse(200, "text/xml", openResponse.getBytes(StandardCharsets.UTF_8)));
+        }
+        return resilientTransport;
+    }
+
+    /**
+     * Creates the pool sharing equal attribute values among principals, when one is configured.
+     *
+     * @return the pool, or null if attribute values are not shared.
+     */
+    protected AttributeValuePool createAttributeValuePool() {
+        final int poolSize = getInt(ConfigurationKeys.ATTRIBUTE_VALUE_POOL_SIZE);
+        return poolSize > 0 ? new AttributeValuePool(poolSize) : null;
+    }
+
     /**
      * Pre-process the request before the normal filter process starts.  This could be useful for pre-empting code.
      *
@@ -260,4 +591,19 @@ public abstract class AbstractTicketValidationFilter extends AbstractCasFilter {
     protected void onFailedValidation(final HttpServletRequest request, final HttpServletResponse response) {
         // nothing to do here.
     }
+
+    private static final class AsyncValidationResult {
+
+        private final String serviceUrl;
+
+        private final Assertion assertion;
+
+        private final Throwable throwable;
+
+        private AsyncValidationResult(final String serviceUrl, final Assertion assertion, final Throwable throwable) {
+            this.serviceUrl = serviceUrl;
+            this.assertion = assertion;
+            this.throwable = throwable;
+        }
+    }
 }
@@ -18,19 +18,36 @@
  */
 package org.apereo.cas.client.validation;
 
+import org.apereo.cas.client.authentication.AttributeValuePool;
+import org.apereo.cas.client.configuration.ConfigurationKeys;
+import org.apereo.cas.client.ssl.HttpTransport;
+import org.apereo.cas.client.ssl.HttpTransportResponse;
 import org.apereo.cas.client.ssl.HttpURLConnectionFactory;
 import org.apereo.cas.client.ssl.HttpsURLConnectionFactory;
+import org.apereo.cas.client.ssl.ResponseBodyReader;
 import org.apereo.cas.client.util.CommonUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract validator implementation for tickets that must be validated against a server.
@@ -40,6 +57,8 @@ import java.util.Map;
  */
 public abstract class AbstractUrlBasedTicketValidator implements TicketValidator {
 
+    private static final AtomicInteger VALIDATION_THREAD_COUNT = new AtomicInteger();
+
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
     /**
@@ -55,6 +74,22 @@ public abstract class AbstractUrlBasedTicketValidator implements TicketValidator
      */
     private HttpURLConnectionFactory urlConnectionFactory = new HttpsURLConnectionFactory();
 
+    /**
+     * Transport used to exchange messages with the CAS server, as set with {@link #setHttpTransport(HttpTransport)}.
+     */
+    private HttpTransport httpTransport;
+
+    /**
+     * Transport created from the connection factory on first use when none is set.
+     */
+    private HttpTransport defaultHttpTransport;
+
+    /** Connect timeout of the default transport, in milliseconds. */
+    private int connectTimeout = ConfigurationKeys.CONNECT_TIMEOUT.getDefaultValue();
+
+    /** Read timeout of the default transport, in milliseconds. */
+    private int readTimeout = ConfigurationKeys.READ_TIMEOUT.getDefaultValue();
+
     /**
      * Whether the request include a renew or not.
      */
@@ -67,6 +102,22 @@ public abstract class AbstractUrlBasedTicketValidator implements TicketValidator
 
     private String encoding;
 
+    /**
+     * Executor used by {@link #validateAsync(String, String)} to parse responses and to run blocking transports;
+     * created on first use when none is set.
+     */
+    private Executor validationExecutor;
+
+    /**
+     * Maximum size of CAS server responses in bytes. Zero or less means unlimited.
+     */
+    private long maxResponseSize;
+
+    /**
+     * Pool sharing equal attribute values among principals, or null not to share values.
+     */
+    private AttributeValuePool attributeValuePool;
+
     /**
      * Constructs a new TicketValidator with the casServerUrlPrefix.
      *
@@ -84,20 +135,49 @@ public abstract class AbstractUrlBasedTicketValidator implements TicketValidator
 
         try {
             logger.debug("Retrieving response from server.");
-            final String serverResponse = retrieveResponseFromServer(new URL(validationUrl), ticket);
-
-            if (serverResponse == null) {
-                throw new TicketValidationException("The CAS server returned no response.");
-            }
-
-            logger.debug("Server response: {}", serverResponse);
-
-            return parseResponseFromServer(serverResponse);
+            return retrieveAndParseResponseFromServer(new URL(validationUrl), ticket);
         } catch (final MalformedURLException e) {
             throw new TicketValidationException(e);
         }
     }
 
+    /**
+     * Validates the ticket without blocking the caller. The response is parsed on the validation executor with
+     * {@link #parseResponseFromServer(InputStream, Charset, String)}, as {@link #validate(String, String)} does;
+     * the transport bounds the response to the maximum response size.
+     * Failures, including runtime exceptions, complete the future exceptionally rather than being thrown.
+     */
+    @Override
+    public final CompletableFuture<Assertion> validateAsync(final String ticket, final String service) {
+        final URL url;
+        final CompletableFuture<HttpTransportResponse> response;
+        try {
+            final String validationUrl = constructValidationUrl(ticket, service);
+            logger.debug("Constructing validation url: {}", validationUrl);
+            logger.debug("Retrieving response from server asynchronously.");
+            url = new URL(validationUrl);
+            response = retrieveResponseFromServerAsync(url, ticket);
+        } catch (final MalformedURLException e) {
+            return CompletableFuture.failedFuture(new TicketValidationException(e));
+        } catch (final RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.thenApplyAsync(serverResponse -> {
+            try {
+                if (serverResponse == null) {
+                    throw new TicketValidationException("The CAS server returned no response.");
+                }
+                return newResponseBodyReader(getResponseCharset())
+                    .read(new ByteArrayInputStream(serverResponse.getBody()), serverResponse.getContentType())
+                    .getAssertion();
+            } catch (final TicketValidationException e) {
+                throw new CompletionException(e);
+            } catch (final IOException e) {
+                throw new CompletionException(CommonUtils.transportFailure(url, e));
+            }
+        }, getValidationExecutor());
+    }
+
     /**
      * Template method for ticket validators that need to provide additional parameters to the validation url.
      *
@@ -193,6 +273,81 @@ public abstract class AbstractUrlBasedTicketValidator implements TicketValidator
      */
     protected abstract Assertion parseResponseFromServer(final String response) throws TicketValidationException;
 
+    /**
+     * Parses the response from the server into a CAS Assertion while it is read from the connection.
+     * The default implementation reads the whole response and delegates to {@link #parseResponseFromServer(String)}.
+     *
+     * @param response the response body; it is bounded by the maximum response size.
+     * @param charset the character set of the response.
+     * @return the CAS assertion if one could be parsed from the response.
+     * @throws IOException if the response cannot be read.
+     * @throws TicketValidationException if an Assertion could not be created.
+     */
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset)
+        throws IOException, TicketValidationException {
+        final String serverResponse = new String(response.readAllBytes(), charset);
+        logger.debug("Server response: {}", serverResponse);
+        return parseResponseFromServer(serverResponse);
+    }
+
+    /**
+     * Parses the response from the server while it is read from the connection, given the content type the
+     * server reported. The default implementation ignores the content type and delegates to
+     * {@link #parseResponseFromServer(InputStream, Charset)}.
+     *
+     * @param response the response body; it is bounded by the maximum response size.
+     * @param charset the character set of the response.
+     * @param contentType the value of the Content-Type header, or null if the server sent none.
+     * @return the CAS assertion if one could be parsed from the response.
+     * @throws IOException if the response cannot be read.
+     * @throws TicketValidationException if an Assertion could not be created.
+     */
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset, final String contentType)
+        throws IOException, TicketValidationException {
+        return parseResponseFromServer(response, charset);
+    }
+
+    /**
+     * Creates a reader parsing response bodies with {@link #parseResponseFromServer(InputStream, Charset, String)}.
+     * Rejected tickets travel in the result rather than as I/O errors, so that transport decorators such as
+     * circuit breakers only see failures of the server.
+     *
+     * @param charset the character set of the response.
+     * @return the reader.
+     */
+    protected final ResponseBodyReader<ParsedResponse> newResponseBodyReader(final Charset charset) {
+        return (body, contentType) -> {
+            try {
+                return new ParsedResponse(parseResponseFromServer(body, charset, contentType), null);
+            } catch (final TicketValidationException e) {
+                return new ParsedResponse(null, e);
+            }
+        };
+    }
+
+    /**
+     * Contacts the CAS Server and parses its response. The default implementation retrieves the whole response
+     * with {@link #retrieveResponseFromServer(URL, String)}; subclasses may override it to parse the response
+     * with {@link #parseResponseFromServer(InputStream, Charset)} as it arrives.
+     *
+     * @param validationUrl the url to send the validation request to.
+     * @param ticket the ticket to validate.
+     * @return the CAS assertion if one could be parsed from the response.
+     * @throws TicketValidationException if an Assertion could not be created.
+     */
+    protected Assertion retrieveAndParseResponseFromServer(final URL validationUrl, final String ticket)
+        throws TicketValidationException {
+        final String serverResponse = retrieveResponseFromServer(validationUrl, ticket);
+
+        if (serverResponse == null) {
+            throw new TicketValidationException("The CAS server returned no response.");
+        }
+
+        logger.debug("Server response: {}", serverResponse);
+
+        return parseResponseFromServer(serverResponse);
+    }
+
     /**
      * Contacts the CAS Server to retrieve the response for the ticket validation.
      *
@@ -203,6 +358,30 @@ public abstract class AbstractUrlBasedTicketValidator implements TicketValidator
 
     protected abstract String retrieveResponseFromServer(URL validationUrl, String ticket);
 
+    /**
+     * Contacts the CAS Server to retrieve the response for the ticket validation without blocking the caller.
+     * The default implementation runs {@link #retrieveResponseFromServer(URL, String)} on the validation executor;
+     * subclasses should override it to use {@link HttpTransport#executeAsync}.
+     *
+     * @param validationUrl the url to send the validation request to.
+     * @param ticket the ticket to validate.
+     * @return a future completed with the response from the CAS server, or with null if there was none.
+     */
+    protected CompletableFuture<HttpTransportResponse> retrieveResponseFromServerAsync(final URL validationUrl,
+                                                                                       final String ticket) {
+        return CompletableFuture.supplyAsync(() -> {
+            final String response = retrieveResponseFromServer(validationUrl, ticket);
+            return response != null ? new HttpTransportResponse(200, null, response.getBytes(getResponseCharset())) : null;
+        }, getValidationExecutor());
+    }
+
+    /**
+     * @return the character set responses of the CAS server are read with.
+     */
+    protected Charset getResponseCharset() {
+        return CommonUtils.toCharset(this.encoding);
+    }
+
     protected final String getEncoding() {
         return this.encoding;
     }
@@ -235,7 +414,164 @@ public abstract class AbstractUrlBasedTicketValidator implements TicketValidator
         return this.urlConnectionFactory;
     }
 
+    /**
+     * Sets the connection factory the default transport is created from. A transport set with
+     * {@link #setHttpTransport(HttpTransport)} is kept.
+     *
+     * @param urlConnectionFactory the connection factory.
+     */
     public void setURLConnectionFactory(final HttpURLConnectionFactory urlConnectionFactory) {
         this.urlConnectionFactory = urlConnectionFactory;
+        resetDefaultHttpTransport();
+    }
+
+    /**
+     * Returns the transport used to contact the CAS server. Unless one was set, a transport is created on first use
+     * from the connection factory and timeouts with {@link CommonUtils#createHttpTransport}.
+     *
+     * @return the transport.
+     */
+    protected HttpTransport getHttpTransport() {
+        if (this.httpTransport != null) {
+            return this.httpTransport;
+        }
+        synchronized (this) {
+            if (this.defaultHttpTransport == null) {
+                this.defaultHttpTransport = CommonUtils.createHttpTransport(this.urlConnectionFactory,
+                    this.connectTimeout, this.readTimeout);
+            }
+            return this.defaultHttpTransport;
+        }
+    }
+
+    /**
+     * Sets the transport used to contact the CAS server. The caller remains responsible for closing it.
+     *
+     * @param httpTransport the transport, or null to create one from the connection factory.
+     */
+    public void setHttpTransport(final HttpTransport httpTransport) {
+        this.httpTransport = httpTransport;
+        resetDefaultHttpTransport();
+    }
+
+    /**
+     * @param connectTimeout connect timeout of the default transport in milliseconds, zero or less for none.
+     */
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        resetDefaultHttpTransport();
+    }
+
+    /**
+     * @param readTimeout read timeout of the default transport in milliseconds, zero or less for none.
+     */
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+        resetDefaultHttpTransport();
+    }
+
+    private synchronized void resetDefaultHttpTransport() {
+        if (this.defaultHttpTransport != null) {
+            this.defaultHttpTransport.close();
+            this.defaultHttpTransport = null;
+        }
+    }
+
+    protected final long getMaxResponseSize() {
+        return this.maxResponseSize;
+    }
+
+    /**
+     * Sets the maximum size of CAS server responses, in bytes. Larger responses are aborted while they are read.
+     *
+     * @param maxResponseSize the maximum size; zero or less means unlimited.
+     */
+    public final void setMaxResponseSize(final long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /**
+     * @return the pool sharing equal attribute values among principals, or null if values are not shared.
+     */
+    public final AttributeValuePool getAttributeValuePool() {
+        return this.attributeValuePool;
+    }
+
+    /**
+     * Sets the pool sharing equal attribute values among the principals created by this validator.
+     *
+     * @param attributeValuePool the pool, or null not to share values.
+     */
+    public final void setAttributeValuePool(final AttributeValuePool attributeValuePool) {
+        this.attributeValuePool = attributeValuePool;
+    }
+
+    /**
+     * @return the executor of asynchronous validations. Unless one was set, the validator creates its own on first
+     * use, with {@link ConfigurationKeys#VALIDATION_THREADS} daemon threads that stop once idle.
+     */
+    protected final synchronized Executor getValidationExecutor() {
+        if (this.validationExecutor == null) {
+            this.validationExecutor = newValidationExecutor(ConfigurationKeys.VALIDATION_THREADS.getDefaultValue(),
+                ConfigurationKeys.VALIDATION_QUEUE_CAPACITY.getDefaultValue());
+        }
+        return this.validationExecutor;
+    }
+
+    /**
+     * Sets the executor used to parse responses of asynchronous validations and to run transports that block while
+     * waiting for the CAS server. It should be bounded and dedicated to validations: blocked validations would
+     * otherwise hold the threads of unrelated tasks.
+     *
+     * @param validationExecutor the executor.
+     */
+    public final synchronized void setValidationExecutor(final Executor validationExecutor) {
+        CommonUtils.assertNotNull(validationExecutor, "validationExecutor cannot be null.");
+        this.validationExecutor = validationExecutor;
+    }
+
+    /**
+     * Creates an executor dedicated to asynchronous validations. Validations submitted while all threads are busy
+     * and the queue is full are rejected, so that they fail rather than pile up; idle threads stop after a minute.
+     *
+     * @param threads the maximum number of threads.
+     * @param queueCapacity the maximum number of validations waiting for a thread.
+     * @return the executor, to be shut down by its owner.
+     */
+    public static ExecutorService newValidationExecutor(final int threads, final int queueCapacity) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+                final Thread thread = new Thread(runnable, "cas-validation-" + VALIDATION_THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Outcome of parsing a response: either an assertion or the reason the ticket was rejected.
+     */
+    protected static final class ParsedResponse {
+
+        private final Assertion assertion;
+
+        private final TicketValidationException failure;
+
+        private ParsedResponse(final Assertion assertion, final TicketValidationException failure) {
+            this.assertion = assertion;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the parsed assertion.
+         * @throws TicketValidationException if the ticket was rejected.
+         */
+        public Assertion getAssertion() throws TicketValidationException {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            return this.assertion;
+        }
     }
 }
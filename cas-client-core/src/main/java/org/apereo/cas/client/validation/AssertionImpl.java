@@ -19,9 +19,16 @@
 package org.apereo.cas.client.validation;
 
 import org.apereo.cas.client.authentication.AttributePrincipal;
+import org.apereo.cas.client.authentication.AttributeMapCodec;
 import org.apereo.cas.client.authentication.AttributePrincipalImpl;
+import org.apereo.cas.client.authentication.CompactAttributeMap;
 import org.apereo.cas.client.util.CommonUtils;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.Date;
@@ -57,6 +64,9 @@ public final class AssertionImpl implements Assertion {
     /** The principal for which this assertion is valid for. */
     private final AttributePrincipal principal;
 
+    /** Whether the assertion is written in the compact form of {@link SerializedForm}. */
+    private final transient boolean compactSerialization;
+
     /**
      * Constructs a new Assertion with a Principal of the supplied name, a valid from date of now, no valid until date, and no attributes.
      *
@@ -106,7 +116,14 @@ public final class AssertionImpl implements Assertion {
     public AssertionImpl(final AttributePrincipal principal, final Date validFromDate, final Date validUntilDate,
                          final Date authenticationDate, final Map<String, Object> attributes,
                          final Map<String, ? extends Serializable> context) {
+        this(principal, validFromDate, validUntilDate, authenticationDate, attributes, context, false);
+    }
+
+    private AssertionImpl(final AttributePrincipal principal, final Date validFromDate, final Date validUntilDate,
+                          final Date authenticationDate, final Map<String, Object> attributes,
+                          final Map<String, ? extends Serializable> context, final boolean compactSerialization) {
         this.principal = principal;
+        this.compactSerialization = compactSerialization;
         this.validFromDate = validFromDate;
         this.validUntilDate = validUntilDate;
         this.attributes = attributes;
@@ -158,4 +175,121 @@ public final class AssertionImpl implements Assertion {
         return (this.validFromDate.before(now) || this.validFromDate.equals(now))
                && (this.validUntilDate == null || this.validUntilDate.after(now) || this.validUntilDate.equals(now));
     }
+
+    /**
+     * Creates an assertion like this one that is written, along with its principal when it is an
+     * {@link AttributePrincipalImpl}, in the compact form of {@link SerializedForm} rather than by default
+     * serialization. Both forms are always read.
+     *
+     * @return the assertion written in compact form.
+     */
+    public AssertionImpl withCompactSerialization() {
+        if (this.compactSerialization) {
+            return this;
+        }
+        final AttributePrincipal compactPrincipal = this.principal instanceof AttributePrincipalImpl
+            ? ((AttributePrincipalImpl) this.principal).withCompactSerialization() : this.principal;
+        return new AssertionImpl(compactPrincipal, this.validFromDate, this.validUntilDate, this.authenticationDate,
+            this.attributes, this.context, true);
+    }
+
+    /**
+     * @return whether the assertion is written in compact form, see {@link #withCompactSerialization()}.
+     */
+    public boolean isCompactSerialization() {
+        return this.compactSerialization;
+    }
+
+    /**
+     * Assertions are written in the compact form of {@link SerializedForm} when created by
+     * {@link #withCompactSerialization()}, by default serialization otherwise.
+     */
+    private Object writeReplace() {
+        return this.compactSerialization ? new SerializedForm(this) : this;
+    }
+
+    /**
+     * Compacts the attributes of assertions serialized as plain maps, i.e. by earlier versions.
+     */
+    private Object readResolve() {
+        if (this.attributes instanceof CompactAttributeMap) {
+            return this;
+        }
+        return new AssertionImpl(this.principal, this.validFromDate, this.validUntilDate, this.authenticationDate,
+            CompactAttributeMap.of(this.attributes), this.context);
+    }
+
+    /**
+     * Serialized form of an assertion: a format version, the principal, the dates as epoch milliseconds and the
+     * attributes and context encoded by {@link AttributeMapCodec}.
+     */
+    private static final class SerializedForm implements Externalizable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int VERSION = 1;
+
+        private static final int HAS_VALID_UNTIL_DATE = 1;
+
+        private static final int HAS_AUTHENTICATION_DATE = 2;
+
+        private AssertionImpl assertion;
+
+        public SerializedForm() {
+        }
+
+        SerializedForm(final AssertionImpl assertion) {
+            this.assertion = assertion;
+        }
+
+        @Override
+        public void writeExternal(final ObjectOutput out) throws IOException {
+            out.writeByte(VERSION);
+            out.writeObject(this.assertion.principal);
+            final Date validUntilDate = this.assertion.validUntilDate;
+            final Date authenticationDate = this.assertion.authenticationDate;
+            out.writeByte((validUntilDate != null ? HAS_VALID_UNTIL_DATE : 0)
+                          | (authenticationDate != null ? HAS_AUTHENTICATION_DATE : 0));
+            writeDate(out, this.assertion.validFromDate);
+            if (validUntilDate != null) {
+                writeDate(out, validUntilDate);
+            }
+            if (authenticationDate != null) {
+                writeDate(out, authenticationDate);
+            }
+            AttributeMapCodec.writeAttributes(out, this.assertion.attributes);
+            AttributeMapCodec.writeAttributes(out, this.assertion.context);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new InvalidObjectException("Unsupported assertion format version " + version);
+            }
+            final AttributePrincipal principal = (AttributePrincipal) in.readObject();
+            final int flags = in.readUnsignedByte();
+            final Date validFromDate = readDate(in);
+            final Date validUntilDate = (flags & HAS_VALID_UNTIL_DATE) != 0 ? readDate(in) : null;
+            final Date authenticationDate = (flags & HAS_AUTHENTICATION_DATE) != 0 ? readDate(in) : null;
+            final Map<String, Object> attributes = AttributeMapCodec.readAttributes(in);
+            final Map<String, ? extends Serializable> context = (Map) AttributeMapCodec.readAttributes(in);
+            // an assertion read from the compact form is written in that form again
+            this.assertion = new AssertionImpl(principal, validFromDate, validUntilDate, authenticationDate, attributes,
+                context, true);
+        }
+
+        private static void writeDate(final ObjectOutput out, final Date date) throws IOException {
+            AttributeMapCodec.writeVarLong(out, AttributeMapCodec.zigZag(date.getTime()));
+        }
+
+        private static Date readDate(final ObjectInput in) throws IOException {
+            return new Date(AttributeMapCodec.unZigZag(AttributeMapCodec.readVarLong(in)));
+        }
+
+        private Object readResolve() {
+            return this.assertion;
+        }
+    }
 }
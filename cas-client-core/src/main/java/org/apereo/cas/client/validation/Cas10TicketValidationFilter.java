@@ -20,7 +20,6 @@ package org.apereo.cas.client.validation;
 
 import org.apereo.cas.client.Protocol;
 import org.apereo.cas.client.configuration.ConfigurationKeys;
-import org.apereo.cas.client.ssl.HttpURLConnectionFactory;
 import org.apereo.cas.client.ssl.HttpsURLConnectionFactory;
 
 import jakarta.servlet.FilterConfig;
@@ -46,10 +45,13 @@ public class Cas10TicketValidationFilter extends AbstractTicketValidationFilter
         final Cas10TicketValidator validator = new Cas10TicketValidator(casServerUrlPrefix);
         validator.setRenew(getBoolean(ConfigurationKeys.RENEW));
 
-        final HttpURLConnectionFactory factory = new HttpsURLConnectionFactory(getHostnameVerifier(),
+        final HttpsURLConnectionFactory factory = new HttpsURLConnectionFactory(getHostnameVerifier(),
             getSSLConfig());
         validator.setURLConnectionFactory(factory);
+        validator.setHttpTransport(createHttpTransport(factory));
+        validator.setValidationExecutor(createValidationExecutor());
         validator.setEncoding(getString(ConfigurationKeys.ENCODING));
+        validator.setMaxResponseSize(getLong(ConfigurationKeys.MAX_RESPONSE_SIZE));
 
         return validator;
     }
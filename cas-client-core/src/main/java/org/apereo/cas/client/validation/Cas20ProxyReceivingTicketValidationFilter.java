@@ -25,7 +25,7 @@ import org.apereo.cas.client.proxy.Cas20ProxyRetriever;
 import org.apereo.cas.client.proxy.CleanUpTimerTask;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorage;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorageImpl;
-import org.apereo.cas.client.ssl.HttpURLConnectionFactory;
+import org.apereo.cas.client.ssl.HttpTransport;
 import org.apereo.cas.client.ssl.HttpsURLConnectionFactory;
 import org.apereo.cas.client.util.CommonUtils;
 import org.apereo.cas.client.util.PrivateKeyUtils;
@@ -69,11 +69,20 @@ public class Cas20ProxyReceivingTicketValidationFilter extends AbstractTicketVal
             ConfigurationKeys.ARTIFACT_PARAMETER_OVER_POST.getName(), ConfigurationKeys.EAGERLY_CREATE_SESSIONS.getName(), ConfigurationKeys.ENCODE_SERVICE_URL.getName(),
             ConfigurationKeys.SSL_CONFIG_FILE.getName(), ConfigurationKeys.ROLE_ATTRIBUTE.getName(), ConfigurationKeys.IGNORE_CASE.getName(),
             ConfigurationKeys.CAS_SERVER_LOGIN_URL.getName(), ConfigurationKeys.GATEWAY.getName(), ConfigurationKeys.AUTHENTICATION_REDIRECT_STRATEGY_CLASS.getName(),
-            ConfigurationKeys.GATEWAY_STORAGE_CLASS.getName(), ConfigurationKeys.CAS_SERVER_URL_PREFIX.getName(), ConfigurationKeys.ENCODING.getName(),
+            ConfigurationKeys.GATEWAY_STORAGE_CLASS.getName(), ConfigurationKeys.CAS_SERVER_URL_PREFIX.getName(), ConfigurationKeys.CAS_SERVER_URL_PREFIXES.getName(),
+            ConfigurationKeys.HEDGING_ENABLED.getName(), ConfigurationKeys.HEDGING_DELAY_PERCENTILE.getName(),
+            ConfigurationKeys.HEDGING_MIN_DELAY.getName(), ConfigurationKeys.HEDGING_MAX_RATIO.getName(),
+            ConfigurationKeys.ENCODING.getName(),
             ConfigurationKeys.TOLERANCE.getName(), ConfigurationKeys.IGNORE_PATTERN.getName(), ConfigurationKeys.IGNORE_URL_PATTERN_TYPE.getName(),
             ConfigurationKeys.HOSTNAME_VERIFIER.getName(), ConfigurationKeys.HOSTNAME_VERIFIER_CONFIG.getName(),
+            ConfigurationKeys.CONNECT_TIMEOUT.getName(), ConfigurationKeys.READ_TIMEOUT.getName(),
+            ConfigurationKeys.MAX_CONCURRENT_CALLS.getName(), ConfigurationKeys.CIRCUIT_BREAKER_ENABLED.getName(),
+            ConfigurationKeys.CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD.getName(), ConfigurationKeys.CIRCUIT_BREAKER_SLOW_CALL_DURATION_THRESHOLD.getName(),
+            ConfigurationKeys.CIRCUIT_BREAKER_OPEN_DURATION.getName(), ConfigurationKeys.CIRCUIT_BREAKER_OPEN_RESPONSE.getName(),
             ConfigurationKeys.EXCEPTION_ON_VALIDATION_FAILURE.getName(), ConfigurationKeys.REDIRECT_AFTER_VALIDATION.getName(), ConfigurationKeys.USE_SESSION.getName(),
-            ConfigurationKeys.SECRET_KEY.getName(), ConfigurationKeys.CIPHER_ALGORITHM.getName(), ConfigurationKeys.PROXY_RECEPTOR_URL.getName(),
+            ConfigurationKeys.ASYNC_VALIDATION.getName(), ConfigurationKeys.VALIDATION_THREADS.getName(),
+            ConfigurationKeys.VALIDATION_QUEUE_CAPACITY.getName(),
+            ConfigurationKeys.COALESCE_VALIDATIONS.getName(), ConfigurationKeys.COALESCED_RESULT_TIME_TO_LIVE.getName(), ConfigurationKeys.MAX_RESPONSE_SIZE.getName(), ConfigurationKeys.ATTRIBUTE_VALUE_POOL_SIZE.getName(), ConfigurationKeys.COMPACT_SERIALIZATION.getName(), ConfigurationKeys.LAZY_ATTRIBUTES.getName(), ConfigurationKeys.SECRET_KEY.getName(), ConfigurationKeys.CIPHER_ALGORITHM.getName(), ConfigurationKeys.PROXY_RECEPTOR_URL.getName(),
             ConfigurationKeys.PROXY_GRANTING_TICKET_STORAGE_CLASS.getName(), ConfigurationKeys.MILLIS_BETWEEN_CLEAN_UPS.getName(), ConfigurationKeys.ACCEPT_ANY_PROXY.getName(),
             ConfigurationKeys.ALLOWED_PROXY_CHAINS.getName(), ConfigurationKeys.TICKET_VALIDATOR_CLASS.getName(),
             ConfigurationKeys.PROXY_CALLBACK_URL.getName(), ConfigurationKeys.RELAY_STATE_PARAMETER_NAME.getName(), ConfigurationKeys.METHOD.getName(),
@@ -193,13 +202,19 @@ public class Cas20ProxyReceivingTicketValidationFilter extends AbstractTicketVal
         validator.setProxyCallbackUrl(getString(ConfigurationKeys.PROXY_CALLBACK_URL));
         validator.setProxyGrantingTicketStorage(this.proxyGrantingTicketStorage);
 
-        final HttpURLConnectionFactory factory = new HttpsURLConnectionFactory(getHostnameVerifier(),
+        final HttpsURLConnectionFactory factory = new HttpsURLConnectionFactory(getHostnameVerifier(),
             getSSLConfig());
         validator.setURLConnectionFactory(factory);
+        final HttpTransport transport = createHttpTransport(factory);
+        validator.setHttpTransport(transport);
+        validator.setValidationExecutor(createValidationExecutor());
 
-        validator.setProxyRetriever(new Cas20ProxyRetriever(casServerUrlPrefix, getString(ConfigurationKeys.ENCODING), factory));
+        validator.setProxyRetriever(new Cas20ProxyRetriever(casServerUrlPrefix, getString(ConfigurationKeys.ENCODING), transport));
         validator.setRenew(getBoolean(ConfigurationKeys.RENEW));
         validator.setEncoding(getString(ConfigurationKeys.ENCODING));
+        validator.setMaxResponseSize(getLong(ConfigurationKeys.MAX_RESPONSE_SIZE));
+        validator.setAttributeValuePool(createAttributeValuePool());
+        validator.setLazyAttributes(getBoolean(ConfigurationKeys.LAZY_ATTRIBUTES));
 
         final Map<String, String> additionalParameters = new HashMap<String, String>();
         final List<String> params = Arrays.asList(RESERVED_INIT_PARAMS);
@@ -18,10 +18,9 @@
  */
 package org.apereo.cas.client.validation;
 
-import org.apereo.cas.client.util.XmlUtils;
-
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Extension to the traditional Service Ticket validation that will validate service tickets and proxy tickets.
@@ -56,10 +55,26 @@ public class Cas20ProxyTicketValidator extends Cas20ServiceTicketValidator {
         return "proxyValidate";
     }
 
+    /**
+     * Proxies are only read when the proxy chain is checked.
+     */
     @Override
-    protected void customParseResponse(final String response, final Assertion assertion)
+    protected Set<ValidationResponseField> getRequiredResponseFields() {
+        final Set<ValidationResponseField> fields = super.getRequiredResponseFields();
+        if (!this.acceptAnyProxy) {
+            fields.add(ValidationResponseField.PROXIES);
+        }
+        return fields;
+    }
+
+    /**
+     * Checks the proxy chain read by {@link #parseProxiesFromResponse(String)}, then delegates to the deprecated
+     * {@link #customParseResponse(String, Assertion)}.
+     */
+    @Override
+    protected void customParseResponse(final TicketValidationXmlResponse response, final Assertion assertion)
         throws TicketValidationException {
-        final List<String> proxies = parseProxiesFromResponse(response);
+        final List<String> proxies = parseProxiesFromResponse(response.getText());
 
         if (proxies == null) {
             throw new InvalidProxyChainTicketValidationException(
@@ -67,6 +82,17 @@ public class Cas20ProxyTicketValidator extends Cas20ServiceTicketValidator {
                 + "This indicates a problem with CAS validation. Review logs/configuration to find the root cause."
             );
         }
+        checkProxyChain(proxies);
+        super.customParseResponse(response, assertion);
+    }
+
+    /**
+     * Checks the proxy chain of a validation response against the configured proxy chains.
+     *
+     * @param proxies the proxies from the response, the most recent first.
+     * @throws InvalidProxyChainTicketValidationException if the chain is not allowed.
+     */
+    protected final void checkProxyChain(final List<String> proxies) throws TicketValidationException {
         // this means there was nothing in the proxy chain, which is okay
         if (this.allowEmptyProxyChain && proxies.isEmpty()) {
             logger.debug("Found an empty proxy chain, permitted by client configuration");
@@ -92,8 +118,15 @@ public class Cas20ProxyTicketValidator extends Cas20ServiceTicketValidator {
         throw new InvalidProxyChainTicketValidationException("Invalid proxy chain: " + proxies.toString());
     }
 
+    /**
+     * @param response the response from the CAS server.
+     * @return the proxies named by the response.
+     * @deprecated the response is parsed in a single pass, see {@link TicketValidationXmlResponse#getProxies()}.
+     */
+    @Deprecated
     protected List<String> parseProxiesFromResponse(final String response) {
-        return XmlUtils.getTextForElements(response, "proxy");
+        final TicketValidationXmlResponse parsed = parsedResponse(response, ValidationResponseField.PROXIES);
+        return parsed != null ? parsed.getProxies() : null;
     }
 
     protected final boolean isAcceptAnyProxy() {
@@ -110,7 +143,7 @@ public class Cas20ProxyTicketValidator extends Cas20ServiceTicketValidator {
 
     /**
      * Set to determine whether empty proxy chains are allowed.
-     * @see #customParseResponse(String, Assertion)
+     * @see #customParseResponse(TicketValidationXmlResponse, Assertion)
      * @param allowEmptyProxyChain whether to allow empty proxy chains or not.  True if so, false otherwise.
      */
     public final void setAllowEmptyProxyChain(final boolean allowEmptyProxyChain) {
@@ -20,29 +20,31 @@ package org.apereo.cas.client.validation;
 
 import org.apereo.cas.client.authentication.AttributePrincipal;
 import org.apereo.cas.client.authentication.AttributePrincipalImpl;
+import org.apereo.cas.client.authentication.AttributeValuePool;
+import org.apereo.cas.client.authentication.CompactAttributeMap;
+import org.apereo.cas.client.authentication.LazyAttributePrincipal;
 import org.apereo.cas.client.proxy.Cas20ProxyRetriever;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorage;
 import org.apereo.cas.client.proxy.ProxyRetriever;
 import org.apereo.cas.client.util.CommonUtils;
-import org.apereo.cas.client.util.XmlUtils;
 
 import org.apache.commons.codec.binary.Base64;
-import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.DefaultHandler;
 
 import javax.crypto.Cipher;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import java.io.StringReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.security.PrivateKey;
-import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Implementation of the TicketValidator that will validate Service Tickets in compliance with the CAS 2.
@@ -56,6 +58,9 @@ public class Cas20ServiceTicketValidator extends AbstractCasProtocolUrlBasedTick
 
     private static final String PGTIOU_PREFIX = "PGTIOU-";
 
+    /** Response turned into an assertion on the current thread, read by the default hooks taking the raw response. */
+    private static final ThreadLocal<TicketValidationXmlResponse> CURRENT_RESPONSE = new ThreadLocal<>();
+
     /** The CAS 2.0 protocol proxy callback url. */
     private String proxyCallbackUrl;
 
@@ -68,6 +73,15 @@ public class Cas20ServiceTicketValidator extends AbstractCasProtocolUrlBasedTick
     /** Private key for decryption */
     private PrivateKey privateKey;
 
+    /** Parser reading the XML responses of the server. */
+    private ValidationResponseParser responseParser = new StaxValidationResponseParser();
+
+    /** Whether attributes are parsed when the application first asks for them. */
+    private boolean lazyAttributes;
+
+    /** Whether inline attributes take precedence over nested ones, as in {@link Cas30ServiceTicketValidator}. */
+    private final boolean inlineAttributes = this instanceof Cas30ServiceTicketValidator;
+
     /**
      * Constructs an instance of the CAS 2.0 Service Ticket Validator with the supplied
      * CAS server url prefix.
@@ -104,23 +118,106 @@ public class Cas20ServiceTicketValidator extends AbstractCasProtocolUrlBasedTick
 
     @Override
     protected Assertion parseResponseFromServer(final String response) throws TicketValidationException {
-        final String error = parseAuthenticationFailureFromResponse(response);
+        if (this.lazyAttributes) {
+            final RawAttributes rawAttributes = RawAttributes.parse(response);
+            if (rawAttributes != null) {
+                return parseResponseFromServer(rawAttributes.getResponse().withText(response), rawAttributes.getAttributes());
+            }
+        }
+        return parseResponseFromServer(this.responseParser.parse(response, getRequiredResponseFields()).withText(response));
+    }
+
+    /**
+     * Parses the response in a single pass while it is read from the connection, keeping a copy of its text for
+     * the deprecated hooks taking the raw response. With lazy attributes, the response is read whole first.
+     */
+    @Override
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset)
+        throws IOException, TicketValidationException {
+        if (this.lazyAttributes) {
+            return super.parseResponseFromServer(response, charset);
+        }
+        final CopyingInputStream copying = new CopyingInputStream(response);
+        final TicketValidationXmlResponse parsed = this.responseParser.parse(new InputStreamReader(copying, charset),
+            getRequiredResponseFields());
+        return parseResponseFromServer(parsed.withText(copying.getText(charset)));
+    }
+
+    /**
+     * Parts of the response this validator relies on; the response parser may skip the others.
+     *
+     * @return a new mutable set of fields.
+     */
+    protected Set<ValidationResponseField> getRequiredResponseFields() {
+        return EnumSet.of(ValidationResponseField.USER, ValidationResponseField.PROXY_GRANTING_TICKET,
+            ValidationResponseField.ATTRIBUTES);
+    }
+
+    /**
+     * Builds the assertion out of the parsed response from the server.
+     *
+     * @param response the parsed response; the hooks taking the raw response are given its
+     * {@link TicketValidationXmlResponse#getText() text}.
+     * @return the CAS assertion.
+     * @throws TicketValidationException if the response reports a failure or does not name the user.
+     */
+    protected Assertion parseResponseFromServer(final TicketValidationXmlResponse response) throws TicketValidationException {
+        return parseResponseFromServer(response, null);
+    }
+
+    /**
+     * Builds the assertion out of the parsed response from the server, leaving the attributes to be parsed out of
+     * the given slice of the response when the application first asks for them.
+     *
+     * @param response the parsed response.
+     * @param rawAttributes the attributes element of the response, see {@link RawAttributes}, or null to take the
+     * attributes from the parsed response.
+     * @return the CAS assertion.
+     * @throws TicketValidationException if the response reports a failure or does not name the user.
+     */
+    private Assertion parseResponseFromServer(final TicketValidationXmlResponse response, final String rawAttributes)
+        throws TicketValidationException {
+        CURRENT_RESPONSE.set(response);
+        try {
+            return buildAssertion(response, rawAttributes);
+        } finally {
+            CURRENT_RESPONSE.remove();
+        }
+    }
+
+    private Assertion buildAssertion(final TicketValidationXmlResponse response, final String rawAttributes)
+        throws TicketValidationException {
+        final String error = parseAuthenticationFailureFromResponse(response.getText());
 
         if (CommonUtils.isNotBlank(error)) {
             throw new TicketValidationException(error);
         }
 
-        final String principal = parsePrincipalFromResponse(response);
-        final String proxyGrantingTicket = retrieveProxyGrantingTicket(response);
+        final String principal = parsePrincipalFromResponse(response.getText());
+        final String proxyGrantingTicket = retrieveProxyGrantingTicket(response.getText());
 
         if (CommonUtils.isEmpty(principal)) {
             throw new TicketValidationException("No principal was found in the response from the CAS server.");
         }
 
         final Assertion assertion;
-        final Map<String, Object> attributes = extractCustomAttributes(response);
+        if (rawAttributes != null) {
+            final boolean hasProxyGrantingTicket = CommonUtils.isNotBlank(proxyGrantingTicket);
+            final Supplier<Map<String, Object>> decoder = attributeDecoder(this.responseParser, getAttributeValuePool(),
+                rawAttributes, this.inlineAttributes, hasProxyGrantingTicket);
+            assertion = new AssertionImpl(hasProxyGrantingTicket
+                ? new LazyAttributePrincipal(principal, decoder, proxyGrantingTicket, this.proxyRetriever)
+                : new LazyAttributePrincipal(principal, decoder, null, null));
+            customParseResponse(response, assertion);
+            return assertion;
+        }
+        Map<String, Object> customAttributes = extractCustomAttributes(response);
+        if (CommonUtils.isNotBlank(proxyGrantingTicket) && customAttributes.containsKey(PGT_ATTRIBUTE)) {
+            customAttributes = new HashMap<>(customAttributes);
+            customAttributes.remove(PGT_ATTRIBUTE);
+        }
+        final Map<String, Object> attributes = CompactAttributeMap.of(customAttributes, getAttributeValuePool());
         if (CommonUtils.isNotBlank(proxyGrantingTicket)) {
-            attributes.remove(PGT_ATTRIBUTE);
             final AttributePrincipal attributePrincipal = new AttributePrincipalImpl(principal, attributes,
                 proxyGrantingTicket, this.proxyRetriever);
             assertion = new AssertionImpl(attributePrincipal);
@@ -133,8 +230,59 @@ public class Cas20ServiceTicketValidator extends AbstractCasProtocolUrlBasedTick
         return assertion;
     }
 
+    /**
+     * Creates the decoder parsing the attributes left out of a response by lazy attribute parsing. The decoder is
+     * held by the principal, so it only keeps what it needs rather than the validator.
+     *
+     * @param parser the parser reading the attributes.
+     * @param pool the pool sharing attribute values, or null.
+     * @param rawAttributes the attributes element of the response.
+     * @param inlineAttributes whether inline attributes, when present, take precedence over nested ones.
+     * @param hasProxyGrantingTicket whether the proxy granting ticket was released as an attribute.
+     * @return the decoder of the compact map of attributes.
+     */
+    private static Supplier<Map<String, Object>> attributeDecoder(final ValidationResponseParser parser,
+                                                                  final AttributeValuePool pool,
+                                                                  final String rawAttributes,
+                                                                  final boolean inlineAttributes,
+                                                                  final boolean hasProxyGrantingTicket) {
+        return () -> {
+            final TicketValidationXmlResponse response;
+            try {
+                response = parser.parse(rawAttributes, EnumSet.of(ValidationResponseField.ATTRIBUTES));
+            } catch (final TicketValidationException e) {
+                throw new IllegalStateException("Unable to parse the attributes of the response from the CAS server.", e);
+            }
+            final Map<String, Object> attributes = inlineAttributes && !response.getInlineAttributes().isEmpty()
+                ? response.getInlineAttributes() : response.getAttributes();
+            if (hasProxyGrantingTicket) {
+                attributes.remove(PGT_ATTRIBUTE);
+            }
+            return CompactAttributeMap.of(attributes, pool);
+        };
+    }
+
+    /**
+     * Retrieves the proxy granting ticket named by the raw response. The default implementation hands the values
+     * of the response already parsed to {@link #retrieveProxyGrantingTicket(List)}.
+     *
+     * @param response the response from the CAS server.
+     * @return the proxy granting ticket, or null.
+     * @deprecated the response is parsed in a single pass; override {@link #retrieveProxyGrantingTicket(List)}.
+     */
+    @Deprecated
     protected String retrieveProxyGrantingTicket(final String response) {
-        final List<String> values = XmlUtils.getTextForElements(response, PGT_ATTRIBUTE);
+        final TicketValidationXmlResponse parsed = parsedResponse(response, ValidationResponseField.PROXY_GRANTING_TICKET);
+        return parsed != null ? retrieveProxyGrantingTicket(parsed.getProxyGrantingTickets()) : null;
+    }
+
+    /**
+     * Retrieves the proxy granting ticket out of the values the response holds for it.
+     *
+     * @param values the proxy granting ticket IOUs or encrypted tickets from the response.
+     * @return the proxy granting ticket, or null.
+     */
+    protected String retrieveProxyGrantingTicket(final List<String> values) {
         for (final String value : values) {
             if (value != null) {
                 if (value.startsWith(PGTIOU_PREFIX)) {
@@ -171,12 +319,42 @@ public class Cas20ServiceTicketValidator extends AbstractCasProtocolUrlBasedTick
         return null;
     }
 
+    /**
+     * @param response the response from the CAS server.
+     * @return the user named by the response.
+     * @deprecated the response is parsed in a single pass, see {@link TicketValidationXmlResponse#getUser()}.
+     */
+    @Deprecated
     protected String parsePrincipalFromResponse(final String response) {
-        return XmlUtils.getTextForElement(response, "user");
+        final TicketValidationXmlResponse parsed = parsedResponse(response, ValidationResponseField.USER);
+        return parsed != null ? parsed.getUser() : null;
     }
 
+    /**
+     * @param response the response from the CAS server.
+     * @return the authentication failure reported by the response.
+     * @deprecated the response is parsed in a single pass, see
+     * {@link TicketValidationXmlResponse#getAuthenticationFailure()}.
+     */
+    @Deprecated
     protected String parseAuthenticationFailureFromResponse(final String response) {
-        return XmlUtils.getTextForElement(response, "authenticationFailure");
+        final TicketValidationXmlResponse parsed = parsedResponse(response, ValidationResponseField.USER);
+        return parsed != null ? parsed.getAuthenticationFailure() : null;
+    }
+
+    /**
+     * Parses the attributes out of the raw response. The default implementation returns the attributes of the
+     * response already parsed.
+     *
+     * @param xml the XML to parse.
+     * @return the map of attributes.
+     * @deprecated the response is parsed in a single pass; override
+     * {@link #extractCustomAttributes(TicketValidationXmlResponse)}.
+     */
+    @Deprecated
+    protected Map<String, Object> extractCustomAttributes(final String xml) {
+        final TicketValidationXmlResponse parsed = parsedResponse(xml, ValidationResponseField.ATTRIBUTES);
+        return parsed != null ? parsed.getAttributes() : new HashMap<>();
     }
 
     /**
@@ -193,39 +371,70 @@ public class Cas20ServiceTicketValidator extends AbstractCasProtocolUrlBasedTick
      *
      * This code is here merely for sample/demonstration purposes for those wishing to modify the CAS2 protocol.  You'll
      * probably want a more robust implementation or to use SAML 1.1
+     * <p>
+     * The default implementation delegates to the deprecated {@link #extractCustomAttributes(String)}, which
+     * returns the attributes of the parsed response unless overridden.
      *
-     * @param xml the XML to parse.
+     * @param response the parsed response.
      * @return the map of attributes.
      */
-    protected Map<String, Object> extractCustomAttributes(final String xml) {
-        final SAXParserFactory spf = SAXParserFactory.newInstance();
-        spf.setNamespaceAware(true);
-        spf.setValidating(false);
-        try {
-            final SAXParser saxParser = spf.newSAXParser();
-            final XMLReader xmlReader = saxParser.getXMLReader();
-            final CustomAttributeHandler handler = new CustomAttributeHandler();
-            xmlReader.setContentHandler(handler);
-            xmlReader.parse(new InputSource(new StringReader(xml)));
-            return handler.getAttributes();
-        } catch (final Exception e) {
-            logger.error(e.getMessage(), e);
-            return Collections.emptyMap();
-        }
+    protected Map<String, Object> extractCustomAttributes(final TicketValidationXmlResponse response) {
+        return extractCustomAttributes(response.getText());
     }
 
     /**
-     * Template method if additional custom parsing (such as Proxying) needs to be done.
+     * Template method if additional custom parsing (such as Proxying) needs to be done. The default implementation
+     * delegates to the deprecated {@link #customParseResponse(String, Assertion)}.
+     *
+     * @param response the parsed response from the CAS server.
+     * @param assertion the partially constructed assertion.
+     * @throws TicketValidationException if there is a problem constructing the Assertion.
+     */
+    protected void customParseResponse(final TicketValidationXmlResponse response, final Assertion assertion)
+        throws TicketValidationException {
+        customParseResponse(response.getText(), assertion);
+    }
+
+    /**
+     * Template method if additional custom parsing needs to be done on the raw response. It is called by the default
+     * implementation of {@link #customParseResponse(TicketValidationXmlResponse, Assertion)}.
      *
      * @param response the original response from the CAS server.
      * @param assertion the partially constructed assertion.
      * @throws TicketValidationException if there is a problem constructing the Assertion.
+     * @deprecated the response is parsed in a single pass; override
+     * {@link #customParseResponse(TicketValidationXmlResponse, Assertion)}.
      */
+    @Deprecated
     protected void customParseResponse(final String response, final Assertion assertion)
         throws TicketValidationException {
         // nothing to do
     }
 
+    /**
+     * Gives the deprecated hooks taking the raw response the parsed form of that response.
+     *
+     * @param response the raw response given to a hook.
+     * @param field the part of the response the hook needs.
+     * @return the response turned into an assertion on this thread when it was parsed from the given text, else
+     * the given text parsed anew; null if it cannot be parsed.
+     */
+    final TicketValidationXmlResponse parsedResponse(final String response, final ValidationResponseField field) {
+        final TicketValidationXmlResponse current = CURRENT_RESPONSE.get();
+        if (current != null && current.getText() == response) {
+            return current;
+        }
+        if (response == null) {
+            return null;
+        }
+        try {
+            return this.responseParser.parse(response, EnumSet.of(field));
+        } catch (final TicketValidationException e) {
+            logger.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
     protected final String getProxyCallbackUrl() {
         return this.proxyCallbackUrl;
     }
@@ -250,66 +459,97 @@ public class Cas20ServiceTicketValidator extends AbstractCasProtocolUrlBasedTick
         this.proxyRetriever = proxyRetriever;
     }
 
-    private class CustomAttributeHandler extends DefaultHandler {
+    protected final boolean isLazyAttributes() {
+        return this.lazyAttributes;
+    }
 
-        private Map<String, Object> attributes;
+    /**
+     * Sets whether attributes are parsed when the application first asks for them rather than when the ticket is
+     * validated. Principals then hold the attributes element of the response until
+     * {@link AttributePrincipal#getAttributes()} is first called, so that applications only looking at the name
+     * of the user do not pay for the attributes. The response is then read in a single SAX pass recording where the
+     * attributes lie, see {@link RawAttributes}, and the response given to
+     * {@link #customParseResponse(TicketValidationXmlResponse, Assertion)} has no attributes. Neither variant of
+     * {@code extractCustomAttributes} is called: subclasses overriding one of them should leave this off.
+     * <p>
+     * The attributes element is cut out of a response that was parsed successfully, so parsing it again is not
+     * expected to fail; should it fail, {@link AttributePrincipal#getAttributes()} throws an
+     * {@link IllegalStateException} rather than returning partial attributes. Defaults to false.
+     *
+     * @param lazyAttributes whether attributes are parsed on first access.
+     */
+    public final void setLazyAttributes(final boolean lazyAttributes) {
+        this.lazyAttributes = lazyAttributes;
+    }
 
-        private boolean foundAttributes;
+    protected final ValidationResponseParser getResponseParser() {
+        return this.responseParser;
+    }
 
-        private String currentAttribute;
+    /**
+     * Sets the parser reading the XML responses of the server. Defaults to {@link StaxValidationResponseParser}.
+     *
+     * @param responseParser the parser.
+     */
+    public final void setResponseParser(final ValidationResponseParser responseParser) {
+        CommonUtils.assertNotNull(responseParser, "responseParser cannot be null.");
+        this.responseParser = responseParser;
+    }
 
-        private StringBuilder value;
+    /**
+     * Keeps a copy of the bytes read by the parser, so that the text of a streamed response is still available.
+     */
+    private static final class CopyingInputStream extends FilterInputStream {
 
-        @Override
-        public void startDocument() throws SAXException {
-            this.attributes = new HashMap<String, Object>();
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CopyingInputStream(final InputStream in) {
+            super(in);
         }
 
         @Override
-        public void startElement(final String namespaceURI, final String localName, final String qName,
-                                 final Attributes attributes) throws SAXException {
-            if ("attributes".equals(localName)) {
-                this.foundAttributes = true;
-            } else if (this.foundAttributes) {
-                this.value = new StringBuilder();
-                this.currentAttribute = localName;
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                this.copy.write(b);
             }
+            return b;
         }
 
         @Override
-        public void endElement(final String namespaceURI, final String localName, final String qName)
-            throws SAXException {
-            if ("attributes".equals(localName)) {
-                this.foundAttributes = false;
-                this.currentAttribute = null;
-            } else if (this.foundAttributes) {
-                final Object o = this.attributes.get(this.currentAttribute);
-
-                if (o == null) {
-                    this.attributes.put(this.currentAttribute, this.value.toString());
-                } else {
-                    final List<Object> items;
-                    if (o instanceof List) {
-                        items = (List<Object>) o;
-                    } else {
-                        items = new LinkedList<Object>();
-                        items.add(o);
-                        this.attributes.put(this.currentAttribute, items);
-                    }
-                    items.add(this.value.toString());
-                }
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                this.copy.write(b, off, n);
             }
+            return n;
         }
 
         @Override
-        public void characters(final char[] chars, final int start, final int length) throws SAXException {
-            if (this.currentAttribute != null) {
-                value.append(chars, start, length);
+        public long skip(final long n) throws IOException {
+            if (n <= 0) {
+                return 0;
             }
+            final int read = read(new byte[(int) Math.min(n, 8192)]);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * The parser may close its input once done; the rest of the response is still read by {@link #getText}.
+         */
+        @Override
+        public void close() {
+            // the transport closes the response
         }
 
-        public Map<String, Object> getAttributes() {
-            return this.attributes;
+        String getText(final Charset charset) throws IOException {
+            transferTo(OutputStream.nullOutputStream());
+            return this.copy.toString(charset);
         }
     }
 }
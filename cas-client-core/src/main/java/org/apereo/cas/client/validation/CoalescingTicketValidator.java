@@ -0,0 +1,216 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.util.CommonUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link TicketValidator} decorator that coalesces concurrent validations of the same ticket for the same service.
+ * <p>
+ * Retried requests and double submissions may present a ticket several times within milliseconds. Since CAS
+ * consumes a ticket on its first validation, every request but the first would otherwise fail. This validator
+ * shares a single in-flight validation among all callers presenting the same ticket and service.
+ * <p>
+ * The outcome can also be kept for {@link #setResultTimeToLive(long) a short period} after completion, so that
+ * late arrivals receive the same result. This is off by default: any caller presenting the ticket within that
+ * period, from any session, gets the assertion, which reopens the replay window single-use tickets close.
+ * Failures caused by the transport, as opposed to a {@link TicketValidationException}, are never kept.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class CoalescingTicketValidator implements TicketValidator {
+
+    /** Default number of milliseconds a validation result is kept after completion: only in-flight ones are shared. */
+    public static final long DEFAULT_RESULT_TIME_TO_LIVE = 0L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingTicketValidator.class);
+
+    private final TicketValidator delegate;
+
+    private final Map<ValidationKey, Validation> validations = new ConcurrentHashMap<>();
+
+    private volatile long resultTimeToLive = DEFAULT_RESULT_TIME_TO_LIVE;
+
+    private volatile long nextPurge;
+
+    public CoalescingTicketValidator(final TicketValidator delegate) {
+        CommonUtils.assertNotNull(delegate, "delegate cannot be null.");
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Assertion validate(final String ticket, final String service) throws TicketValidationException {
+        final Validation validation = new Validation();
+        final Validation existing = acquire(new ValidationKey(ticket, service), validation);
+        if (existing == validation) {
+            try {
+                validation.future.complete(this.delegate.validate(ticket, service));
+            } catch (final Throwable e) {
+                validation.future.completeExceptionally(e);
+            }
+        }
+        return await(existing.future);
+    }
+
+    @Override
+    public CompletableFuture<Assertion> validateAsync(final String ticket, final String service) {
+        final Validation validation = new Validation();
+        final Validation existing = acquire(new ValidationKey(ticket, service), validation);
+        if (existing == validation) {
+            try {
+                this.delegate.validateAsync(ticket, service).whenComplete((assertion, throwable) -> {
+                    if (throwable != null) {
+                        validation.future.completeExceptionally(unwrap(throwable));
+                    } else {
+                        validation.future.complete(assertion);
+                    }
+                });
+            } catch (final RuntimeException e) {
+                validation.future.completeExceptionally(e);
+            }
+        }
+        return existing.future.copy();
+    }
+
+    /**
+     * Registers the given validation unless one is already in flight, or recently completed, for the key.
+     *
+     * @return the validation callers should wait for; the given one if the caller must perform it.
+     */
+    private Validation acquire(final ValidationKey key, final Validation validation) {
+        purgeExpired();
+        final Validation[] winner = new Validation[1];
+        this.validations.compute(key, (k, current) -> {
+            winner[0] = current != null && !current.isExpired() ? current : validation;
+            return winner[0];
+        });
+        if (winner[0] == validation) {
+            validation.future.whenComplete((assertion, throwable) -> onComplete(key, validation, throwable));
+        } else {
+            LOGGER.debug("Joining validation already performed for ticket [{}]", key.ticket);
+        }
+        return winner[0];
+    }
+
+    private void onComplete(final ValidationKey key, final Validation validation, final Throwable throwable) {
+        final long ttl = this.resultTimeToLive;
+        if (ttl <= 0 || (throwable != null && !(throwable instanceof TicketValidationException))) {
+            this.validations.remove(key, validation);
+        } else {
+            validation.expiresAt = System.currentTimeMillis() + ttl;
+        }
+    }
+
+    private void purgeExpired() {
+        final long now = System.currentTimeMillis();
+        if (now < this.nextPurge) {
+            return;
+        }
+        this.nextPurge = now + Math.max(this.resultTimeToLive, 1000L);
+        this.validations.values().removeIf(Validation::isExpired);
+    }
+
+    private static Assertion await(final CompletableFuture<Assertion> future) throws TicketValidationException {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            final Throwable cause = unwrap(e);
+            if (cause instanceof TicketValidationException) {
+                throw (TicketValidationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TicketValidationException(cause);
+        }
+    }
+
+    private static Throwable unwrap(final Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    public final TicketValidator getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Number of milliseconds a completed validation is shared with later callers, whatever their session. Zero or
+     * less, the default, only shares validations that are still in flight.
+     *
+     * @param resultTimeToLive the time to live in milliseconds.
+     */
+    public final void setResultTimeToLive(final long resultTimeToLive) {
+        this.resultTimeToLive = resultTimeToLive;
+    }
+
+    private static final class Validation {
+
+        private final CompletableFuture<Assertion> future = new CompletableFuture<>();
+
+        /** Expiry of the completed result; zero while the validation is in flight. */
+        private volatile long expiresAt;
+
+        boolean isExpired() {
+            final long expiry = this.expiresAt;
+            return expiry != 0 && expiry <= System.currentTimeMillis();
+        }
+    }
+
+    private static final class ValidationKey {
+
+        private final String ticket;
+
+        private final String service;
+
+        ValidationKey(final String ticket, final String service) {
+            this.ticket = ticket;
+            this.service = service;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ValidationKey)) {
+                return false;
+            }
+            final ValidationKey other = (ValidationKey) o;
+            return Objects.equals(this.ticket, other.ticket) && Objects.equals(this.service, other.service);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.ticket, this.service);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.util.XmlUtils;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Reads a CAS 2.0/3.0 XML validation response but its attributes in a single SAX pass, and cuts the
+ * <code>attributes</code> element out of it so that attributes can be parsed later on. The positions of the tags
+ * are those reported by the parser while it reads them, so comments and CDATA sections holding markup are handled
+ * as the parser handles them. The element is wrapped in the start and end tags of the root element of the
+ * response, which keeps the namespace declarations it relies on; the result is a well-formed response holding
+ * nothing but the attributes.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+final class RawAttributes {
+
+    private final TicketValidationXmlResponse response;
+
+    private final String attributes;
+
+    private RawAttributes(final TicketValidationXmlResponse response, final String attributes) {
+        this.response = response;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Parses the given response, leaving its attributes out.
+     *
+     * @param response the XML response.
+     * @return the parsed response and its attributes element, or null if the parser does not report the positions
+     * of the tags or the response holds attributes outside of an <code>attributes</code> element; the response
+     * must then be parsed with its attributes.
+     * @throws TicketValidationException if the response is not well-formed XML.
+     */
+    static RawAttributes parse(final String response) throws TicketValidationException {
+        final LocatingHandler handler = new LocatingHandler(response);
+        try {
+            XmlUtils.parse(new InputSource(new StringReader(response)), handler);
+        } catch (final SAXException e) {
+            throw new TicketValidationException("Unable to parse the response from the CAS server: " + e.getMessage(), e);
+        } catch (final IOException e) {
+            throw new TicketValidationException(e);
+        }
+        if (handler.unsupported) {
+            return null;
+        }
+        return new RawAttributes(handler.toResponse(), handler.slice());
+    }
+
+    /**
+     * @return the response, without nested and inline attributes.
+     */
+    TicketValidationXmlResponse getResponse() {
+        return this.response;
+    }
+
+    /**
+     * @return the response reduced to its attributes, or null if it has none.
+     */
+    String getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * Records where the root start tag and the <code>attributes</code> element lie while the response is read.
+     */
+    private static final class LocatingHandler extends XmlValidationResponseParser.ResponseHandler {
+
+        private final String response;
+
+        private Locator locator;
+
+        /** Offsets at which the lines of the response start, computed on first use. */
+        private int[] lineStarts;
+
+        private int depth;
+
+        private int attributesDepth;
+
+        private int rootStart = -1;
+
+        private int rootStartTagEnd;
+
+        private String rootName;
+
+        private int attributesStart = -1;
+
+        private int attributesStartTagEnd;
+
+        private int attributesEnd = -1;
+
+        private boolean unsupported;
+
+        LocatingHandler(final String response) {
+            super(false);
+            this.response = response;
+        }
+
+        @Override
+        public void setDocumentLocator(final Locator locator) {
+            this.locator = locator;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                                 final Attributes attributes) throws SAXException {
+            super.startElement(uri, localName, qName, attributes);
+            this.depth++;
+            if (this.unsupported) {
+                return;
+            }
+            if (this.depth == 1) {
+                this.rootStartTagEnd = tagEnd();
+                this.rootStart = this.rootStartTagEnd < 0 ? -1 : this.response.lastIndexOf('<', this.rootStartTagEnd - 1);
+                this.rootName = qName;
+                this.unsupported = this.rootStart < 0;
+            } else if (this.attributesDepth == 0 && "attributes".equals(localName)) {
+                // a second attributes element would be left out of the slice
+                this.unsupported = this.attributesStart >= 0;
+                this.attributesDepth = this.depth;
+                this.attributesStartTagEnd = tagEnd();
+                this.attributesStart = this.attributesStartTagEnd < 0
+                    ? -1 : this.response.lastIndexOf('<', this.attributesStartTagEnd - 1);
+                this.unsupported |= this.attributesStart < 0;
+            } else if (this.attributesDepth == 0 && "attribute".equals(localName) && attributes.getValue("name") != null) {
+                // inline attribute outside of the attributes element
+                this.unsupported = true;
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            super.endElement(uri, localName, qName);
+            if (this.depth == this.attributesDepth) {
+                this.attributesDepth = 0;
+                this.attributesEnd = tagEnd();
+                this.unsupported |= this.attributesEnd < 0;
+            }
+            this.depth--;
+        }
+
+        /**
+         * @return the offset following the tag the parser just read, or -1 if the parser does not report it.
+         */
+        private int tagEnd() {
+            if (this.locator == null) {
+                return -1;
+            }
+            final int line = this.locator.getLineNumber();
+            final int column = this.locator.getColumnNumber();
+            if (this.lineStarts == null) {
+                this.lineStarts = lineStarts(this.response);
+            }
+            if (line < 1 || line > this.lineStarts.length || column < 1) {
+                return -1;
+            }
+            final int offset = this.lineStarts[line - 1] + column - 1;
+            return offset <= this.response.length() && this.response.charAt(offset - 1) == '>' ? offset : -1;
+        }
+
+        /**
+         * @return the offsets at which lines start, counting CR LF, CR and LF as line breaks as XML parsers do.
+         */
+        private static int[] lineStarts(final String response) {
+            int[] starts = new int[16];
+            int count = 1;
+            for (int i = 0; i < response.length(); i++) {
+                final char c = response.charAt(i);
+                if (c == '\n' || c == '\r' && (i + 1 == response.length() || response.charAt(i + 1) != '\n')) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            return Arrays.copyOf(starts, count);
+        }
+
+        String slice() {
+            if (this.attributesStart < 0 || this.attributesEnd == this.attributesStartTagEnd) {
+                // no attributes element, or an empty one such as <cas:attributes/>
+                return null;
+            }
+            return new StringBuilder(this.rootStartTagEnd - this.rootStart + this.attributesEnd - this.attributesStart
+                                     + this.rootName.length() + 3)
+                .append(this.response, this.rootStart, this.rootStartTagEnd)
+                .append(this.response, this.attributesStart, this.attributesEnd)
+                .append("</").append(this.rootName).append('>')
+                .toString();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.util.XmlUtils;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link ValidationResponseParser} pulling events with a StAX {@link XMLStreamReader}. Parsing stops as soon as an
+ * authentication failure is read, and the subtrees holding fields the caller did not ask for, such as
+ * <code>proxies</code>, are skipped without being collected.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class StaxValidationResponseParser implements ValidationResponseParser {
+
+    @Override
+    public TicketValidationXmlResponse parse(final Reader response, final Set<ValidationResponseField> fields)
+        throws IOException, TicketValidationException {
+        try {
+            final XMLStreamReader reader = XmlUtils.createXMLStreamReader(response);
+            try {
+                return read(reader, fields);
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            if (e.getNestedException() instanceof IOException) {
+                throw (IOException) e.getNestedException();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new TicketValidationException("Unable to parse the response from the CAS server: " + e.getMessage(), e);
+        }
+    }
+
+    private static TicketValidationXmlResponse read(final XMLStreamReader reader, final Set<ValidationResponseField> fields)
+        throws XMLStreamException {
+        final boolean readUser = fields.contains(ValidationResponseField.USER);
+        final boolean readProxyGrantingTicket = fields.contains(ValidationResponseField.PROXY_GRANTING_TICKET);
+        final boolean readProxies = fields.contains(ValidationResponseField.PROXIES);
+        final boolean readAttributes = fields.contains(ValidationResponseField.ATTRIBUTES);
+
+        final List<String> proxyGrantingTickets = new ArrayList<String>(1);
+        final List<String> proxies = new ArrayList<String>(2);
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        final Map<String, Object> inlineAttributes = new HashMap<String, Object>();
+        StringBuilder user = null;
+        int depth = 0;
+        int attributesDepth = 0;
+
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == attributesDepth) {
+                    attributesDepth = 0;
+                }
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            depth++;
+            final String name = reader.getLocalName();
+            // every branch but the ones entering a subtree consumes the whole element
+            if ("attribute".equals(name) && reader.getAttributeValue(null, "name") != null) {
+                if (readAttributes) {
+                    final String value = reader.getAttributeValue(null, "value");
+                    XmlValidationResponseParser.addValue(inlineAttributes, reader.getAttributeValue(null, "name"),
+                        value != null ? value : "");
+                }
+                skipElement(reader);
+                depth--;
+            } else if (attributesDepth > 0) {
+                final boolean proxyGrantingTicket = readProxyGrantingTicket && "proxyGrantingTicket".equals(name);
+                if (readAttributes || proxyGrantingTicket) {
+                    final String value = readText(reader);
+                    if (readAttributes) {
+                        XmlValidationResponseParser.addValue(attributes, name, value);
+                    }
+                    if (proxyGrantingTicket) {
+                        proxyGrantingTickets.add(value);
+                    }
+                } else {
+                    skipElement(reader);
+                }
+                depth--;
+            } else if ("attributes".equals(name)) {
+                if (readAttributes || readProxyGrantingTicket) {
+                    attributesDepth = depth;
+                } else {
+                    skipElement(reader);
+                    depth--;
+                }
+            } else if ("authenticationFailure".equals(name)) {
+                final String code = reader.getAttributeValue(null, "code");
+                final String failure = readText(reader);
+                return new TicketValidationXmlResponse(failure, code, null, new ArrayList<String>(0),
+                    new ArrayList<String>(0), new HashMap<String, Object>(), new HashMap<String, Object>());
+            } else if ("user".equals(name) && readUser) {
+                user = user == null ? new StringBuilder(readText(reader)) : user.append(readText(reader));
+                depth--;
+            } else if ("proxyGrantingTicket".equals(name) && readProxyGrantingTicket) {
+                proxyGrantingTickets.add(readText(reader));
+                depth--;
+            } else if ("proxy".equals(name) && readProxies) {
+                proxies.add(readText(reader));
+                depth--;
+            } else if ("user".equals(name) || "proxyGrantingTicket".equals(name) || "proxy".equals(name)
+                       || "proxies".equals(name) && !readProxies) {
+                skipElement(reader);
+                depth--;
+            }
+        }
+        return new TicketValidationXmlResponse(null, null, user != null ? user.toString() : null,
+            proxyGrantingTickets, proxies, attributes, inlineAttributes);
+    }
+
+    /**
+     * Reads the text of the current element and its descendants, leaving the reader on its end tag.
+     */
+    private static String readText(final XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int level = 1;
+        while (level > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    level++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    level--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Skips the current element and its descendants, leaving the reader on its end tag.
+     */
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int level = 1;
+        while (level > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            }
+        }
+    }
+}
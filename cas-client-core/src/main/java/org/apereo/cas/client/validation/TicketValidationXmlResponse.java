@@ -0,0 +1,142 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structured content of a CAS 2.0/3.0 XML validation response, as read by a {@link ValidationResponseParser}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class TicketValidationXmlResponse {
+
+    private final String authenticationFailure;
+
+    private final String authenticationFailureCode;
+
+    private final String user;
+
+    private final List<String> proxyGrantingTickets;
+
+    private final List<String> proxies;
+
+    private final Map<String, Object> attributes;
+
+    private final Map<String, Object> inlineAttributes;
+
+    private final String text;
+
+    TicketValidationXmlResponse(final String authenticationFailure, final String authenticationFailureCode,
+                                final String user, final List<String> proxyGrantingTickets, final List<String> proxies,
+                                final Map<String, Object> attributes, final Map<String, Object> inlineAttributes) {
+        this(authenticationFailure, authenticationFailureCode, user, Collections.unmodifiableList(proxyGrantingTickets),
+            Collections.unmodifiableList(proxies), attributes, inlineAttributes, null);
+    }
+
+    private TicketValidationXmlResponse(final String authenticationFailure, final String authenticationFailureCode,
+                                        final String user, final List<String> proxyGrantingTickets,
+                                        final List<String> proxies, final Map<String, Object> attributes,
+                                        final Map<String, Object> inlineAttributes, final String text) {
+        this.authenticationFailure = authenticationFailure;
+        this.authenticationFailureCode = authenticationFailureCode;
+        this.user = user;
+        this.proxyGrantingTickets = proxyGrantingTickets;
+        this.proxies = proxies;
+        this.attributes = attributes;
+        this.inlineAttributes = inlineAttributes;
+        this.text = text;
+    }
+
+    /**
+     * @param text the XML the response was parsed from.
+     * @return the same content, along with the XML it was parsed from.
+     */
+    TicketValidationXmlResponse withText(final String text) {
+        return new TicketValidationXmlResponse(this.authenticationFailure, this.authenticationFailureCode, this.user,
+            this.proxyGrantingTickets, this.proxies, this.attributes, this.inlineAttributes, text);
+    }
+
+    /**
+     * @return the text of the <code>authenticationFailure</code> element, or null if the response has none.
+     */
+    public String getAuthenticationFailure() {
+        return this.authenticationFailure;
+    }
+
+    /**
+     * @return the <code>code</code> of the <code>authenticationFailure</code> element, or null if the response has none.
+     */
+    public String getAuthenticationFailureCode() {
+        return this.authenticationFailureCode;
+    }
+
+    /**
+     * @return the authenticated user, or null if the response has none.
+     */
+    public String getUser() {
+        return this.user;
+    }
+
+    /**
+     * @return the values of the <code>proxyGrantingTicket</code> elements, in document order.
+     */
+    public List<String> getProxyGrantingTickets() {
+        return this.proxyGrantingTickets;
+    }
+
+    /**
+     * @return the proxies the ticket went through, in document order.
+     */
+    public List<String> getProxies() {
+        return this.proxies;
+    }
+
+    /**
+     * Attributes released as children of the <code>attributes</code> element, i.e.
+     * <code>&lt;cas:attributes&gt;&lt;cas:mail&gt;value&lt;/cas:mail&gt;&lt;/cas:attributes&gt;</code>.
+     * Multi-valued attributes are mapped to a list.
+     *
+     * @return the mutable map of attributes.
+     */
+    public Map<String, Object> getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * Attributes released inline, i.e. <code>&lt;cas:attribute name="mail" value="value"/&gt;</code>.
+     * Multi-valued attributes are mapped to a list.
+     *
+     * @return the mutable map of attributes.
+     */
+    public Map<String, Object> getInlineAttributes() {
+        return this.inlineAttributes;
+    }
+
+    /**
+     * @return the XML the response was parsed from, as handed to the deprecated validator hooks taking the raw
+     * response, or null if it was not kept.
+     */
+    public String getText() {
+        return this.text;
+    }
+}
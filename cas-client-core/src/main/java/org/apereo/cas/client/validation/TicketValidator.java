@@ -18,6 +18,8 @@
  */
 package org.apereo.cas.client.validation;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Contract for a validator that will confirm the validity of a supplied ticket.
  * <p>
@@ -39,4 +41,24 @@ public interface TicketValidator {
      *
      */
     Assertion validate(String ticket, String service) throws TicketValidationException;
+
+    /**
+     * Attempts to validate a ticket for the provided service without blocking the calling thread.
+     * <p>
+     * The default implementation delegates to {@link #validate(String, String)} on the calling thread;
+     * validators that talk to a remote server should override it.
+     *
+     * @param ticket the ticket to attempt to validate.
+     * @param service the service this ticket is valid for.
+     * @return a future completed with the assertion, or exceptionally with a {@link TicketValidationException}
+     * if the ticket cannot be validated or with the runtime exception the validation failed with.
+     * @since 4.0.2
+     */
+    default CompletableFuture<Assertion> validateAsync(final String ticket, final String service) {
+        try {
+            return CompletableFuture.completedFuture(validate(ticket, service));
+        } catch (final TicketValidationException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
@@ -0,0 +1,41 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+/**
+ * Parts of a CAS validation response a validator relies on. Parsers may skip the parts that were not requested;
+ * the authentication failure is always read.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public enum ValidationResponseField {
+
+    /** The authenticated user. */
+    USER,
+
+    /** The proxy granting ticket IOU or encrypted ticket. */
+    PROXY_GRANTING_TICKET,
+
+    /** The proxies the ticket went through. */
+    PROXIES,
+
+    /** The nested and inline attributes. */
+    ATTRIBUTES
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Set;
+
+/**
+ * Reads CAS 2.0/3.0 XML validation responses into a {@link TicketValidationXmlResponse}.
+ *
+ * @author agent
+ * @since 4.0.2
+ * @see StaxValidationResponseParser
+ * @see XmlValidationResponseParser
+ */
+public interface ValidationResponseParser {
+
+    /**
+     * Parses the response while it is read from the given reader.
+     *
+     * @param response the XML response.
+     * @param fields the parts of the response the caller needs; others may be left out of the result.
+     * @return the content of the response.
+     * @throws IOException if the response cannot be read.
+     * @throws TicketValidationException if the response is not well-formed XML.
+     */
+    TicketValidationXmlResponse parse(Reader response, Set<ValidationResponseField> fields)
+        throws IOException, TicketValidationException;
+
+    /**
+     * Parses the given response.
+     *
+     * @param response the XML response.
+     * @param fields the parts of the response the caller needs; others may be left out of the result.
+     * @return the content of the response.
+     * @throws TicketValidationException if the response is not well-formed XML.
+     */
+    default TicketValidationXmlResponse parse(final String response, final Set<ValidationResponseField> fields)
+        throws TicketValidationException {
+        try {
+            return parse(new StringReader(response), fields);
+        } catch (final IOException e) {
+            throw new TicketValidationException(e);
+        }
+    }
+}
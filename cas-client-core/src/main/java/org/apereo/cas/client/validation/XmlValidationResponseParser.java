@@ -0,0 +1,204 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.util.XmlUtils;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link ValidationResponseParser} reading the whole response in a single SAX pass, collecting the authentication
+ * failure, the user, the proxy granting tickets, the proxies and both nested and inline attributes.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class XmlValidationResponseParser implements ValidationResponseParser {
+
+    /**
+     * Parses the given response.
+     *
+     * @param response the XML response.
+     * @return the content of the response.
+     * @throws TicketValidationException if the response is not well-formed XML.
+     */
+    public TicketValidationXmlResponse parse(final String response) throws TicketValidationException {
+        return parse(response, EnumSet.allOf(ValidationResponseField.class));
+    }
+
+    /**
+     * Reads every field of the response, whichever were requested.
+     */
+    @Override
+    public TicketValidationXmlResponse parse(final Reader response, final Set<ValidationResponseField> fields)
+        throws IOException, TicketValidationException {
+        final ResponseHandler handler = new ResponseHandler(true);
+        try {
+            XmlUtils.parse(new InputSource(response), handler);
+        } catch (final SAXException e) {
+            throw new TicketValidationException("Unable to parse the response from the CAS server: " + e.getMessage(), e);
+        }
+        return handler.toResponse();
+    }
+
+    static void addValue(final Map<String, Object> attributes, final String name, final String value) {
+        final Object existing = attributes.get(name);
+        if (existing == null) {
+            attributes.put(name, value);
+        } else if (existing instanceof List) {
+            ((List<Object>) existing).add(value);
+        } else {
+            final List<Object> items = new LinkedList<Object>();
+            items.add(existing);
+            items.add(value);
+            attributes.put(name, items);
+        }
+    }
+
+    /**
+     * Collects the fields of the response; subclasses must call the overridden methods.
+     */
+    static class ResponseHandler extends DefaultHandler {
+
+        private final List<String> proxyGrantingTickets = new ArrayList<String>(1);
+
+        private final List<String> proxies = new ArrayList<String>(2);
+
+        private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+        private final Map<String, Object> inlineAttributes = new HashMap<String, Object>();
+
+        private StringBuilder authenticationFailure;
+
+        private String authenticationFailureCode;
+
+        private StringBuilder user;
+
+        private int depth;
+
+        /** Depth of the enclosing <code>attributes</code> element, or zero outside of it. */
+        private int attributesDepth;
+
+        /** Depth of the element whose text is collected, or zero when no text is collected. */
+        private int captureDepth;
+
+        private boolean captureAttribute;
+
+        private final StringBuilder text = new StringBuilder();
+
+        /** Whether nested and inline attributes are collected; the proxy granting ticket always is. */
+        private final boolean readAttributes;
+
+        ResponseHandler(final boolean readAttributes) {
+            this.readAttributes = readAttributes;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                                 final Attributes attributes) throws SAXException {
+            this.depth++;
+            if (this.captureDepth > 0) {
+                return;
+            }
+            if ("attribute".equals(localName) && attributes.getValue("name") != null) {
+                if (this.readAttributes) {
+                    final String value = attributes.getValue("value");
+                    addValue(this.inlineAttributes, attributes.getValue("name"), value != null ? value : "");
+                }
+            } else if (this.attributesDepth > 0) {
+                if (this.depth == this.attributesDepth + 1
+                    && (this.readAttributes || "proxyGrantingTicket".equals(localName))) {
+                    startCapture(true);
+                }
+            } else if ("attributes".equals(localName)) {
+                this.attributesDepth = this.depth;
+            } else if ("authenticationFailure".equals(localName)) {
+                this.authenticationFailureCode = attributes.getValue("code");
+                startCapture(false);
+            } else if ("user".equals(localName) || "proxyGrantingTicket".equals(localName) || "proxy".equals(localName)) {
+                startCapture(false);
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            if (this.depth == this.captureDepth) {
+                final String value = this.text.toString();
+                if (this.captureAttribute) {
+                    if (this.readAttributes) {
+                        addValue(this.attributes, localName, value);
+                    }
+                    if ("proxyGrantingTicket".equals(localName)) {
+                        this.proxyGrantingTickets.add(value);
+                    }
+                } else if ("authenticationFailure".equals(localName)) {
+                    this.authenticationFailure = append(this.authenticationFailure, value);
+                } else if ("user".equals(localName)) {
+                    this.user = append(this.user, value);
+                } else if ("proxyGrantingTicket".equals(localName)) {
+                    this.proxyGrantingTickets.add(value);
+                } else {
+                    this.proxies.add(value);
+                }
+                this.captureDepth = 0;
+            } else if (this.depth == this.attributesDepth) {
+                this.attributesDepth = 0;
+            }
+            this.depth--;
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            if (this.captureDepth > 0) {
+                this.text.append(ch, start, length);
+            }
+        }
+
+        private void startCapture(final boolean attribute) {
+            this.captureDepth = this.depth;
+            this.captureAttribute = attribute;
+            this.text.setLength(0);
+        }
+
+        private static StringBuilder append(final StringBuilder builder, final String value) {
+            return builder == null ? new StringBuilder(value) : builder.append(value);
+        }
+
+        TicketValidationXmlResponse toResponse() {
+            return new TicketValidationXmlResponse(
+                this.authenticationFailure != null ? this.authenticationFailure.toString() : null,
+                this.authenticationFailureCode,
+                this.user != null ? this.user.toString() : null,
+                this.proxyGrantingTickets, this.proxies, this.attributes, this.inlineAttributes);
+        }
+    }
+}
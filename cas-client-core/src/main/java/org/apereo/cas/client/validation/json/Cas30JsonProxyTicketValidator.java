@@ -22,8 +22,10 @@ import org.apereo.cas.client.validation.Assertion;
 import org.apereo.cas.client.validation.Cas30ProxyTicketValidator;
 import org.apereo.cas.client.validation.TicketValidationException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.Collections;
-import java.util.List;
 
 /**
  * This is {@link Cas30JsonProxyTicketValidator} that attempts to parse the CAS validation response
@@ -32,6 +34,11 @@ import java.util.List;
  * @author Misagh Moayyed
  */
 public class Cas30JsonProxyTicketValidator extends Cas30ProxyTicketValidator {
+
+    private JsonValidationResponseParser jsonParser = JsonValidationResponseParser.DATA_BINDING;
+
+    private final ResponseFormatDetector formatDetector = new ResponseFormatDetector();
+
     public Cas30JsonProxyTicketValidator(final String casServerUrlPrefix) {
         super(casServerUrlPrefix);
         setCustomParameters(Collections.singletonMap("format", "JSON"));
@@ -39,23 +46,64 @@ public class Cas30JsonProxyTicketValidator extends Cas30ProxyTicketValidator {
 
     @Override
     protected Assertion parseResponseFromServer(final String response) throws TicketValidationException {
+        return parseResponseFromServer(response, null);
+    }
+
+    /**
+     * The body is read as a whole, so that the XML fallback remains possible.
+     */
+    @Override
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset)
+        throws IOException, TicketValidationException {
+        return parseResponseFromServer(response, charset, null);
+    }
+
+    @Override
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset, final String contentType)
+        throws IOException, TicketValidationException {
+        return parseResponseFromServer(new String(response.readAllBytes(), charset), contentType);
+    }
+
+    private Assertion parseResponseFromServer(final String response, final String contentType) throws TicketValidationException {
+        if (this.formatDetector.detect(contentType, response) == ResponseFormatDetector.Format.XML) {
+            try {
+                return super.parseResponseFromServer(response);
+            } catch (final TicketValidationException e) {
+                if (!this.formatDetector.isMismatch(contentType, response, ResponseFormatDetector.Format.XML)) {
+                    throw e;
+                }
+            }
+        }
+        final TicketValidationJsonResponse json;
         try {
-            final TicketValidationJsonResponse json = new JsonValidationResponseParser().parse(response);
-            return json.getAssertion(getProxyGrantingTicketStorage(), getProxyRetriever());
+            json = this.jsonParser.parse(response);
         } catch (final Exception e) {
+            this.formatDetector.isMismatch(contentType, response, ResponseFormatDetector.Format.JSON);
             logger.warn("Unable parse the JSON response");
             return super.parseResponseFromServer(response);
         }
+        final Assertion assertion = json.getAssertion(getProxyGrantingTicketStorage(), getProxyRetriever(), getAttributeValuePool());
+        checkProxyChain(json.getProxies());
+        return assertion;
     }
 
-    @Override
-    protected List<String> parseProxiesFromResponse(final String response) {
-        try {
-            final TicketValidationJsonResponse json = new JsonValidationResponseParser().parse(response);
-            return json.getServiceResponse().getAuthenticationSuccess().getProxies();
-        } catch (final Exception e) {
-            logger.warn("Unable to locate proxies from the JSON response", e);
-            return super.parseProxiesFromResponse(response);
-        }
+    /**
+     * Sets whether JSON responses are read token by token rather than bound to objects. Both produce the same
+     * assertion; the streaming mode does less work per response and ignores unknown properties.
+     *
+     * @param streaming whether to stream JSON responses.
+     */
+    public void setStreaming(final boolean streaming) {
+        this.jsonParser = streaming ? JsonValidationResponseParser.STREAMING : JsonValidationResponseParser.DATA_BINDING;
+    }
+
+    /**
+     * Sets whether the validator remembers the format the CAS server answers with, and parses later responses
+     * in that format without detecting it again. A response that does not match makes the validator learn anew.
+     *
+     * @param learnResponseFormat whether to learn the response format.
+     */
+    public void setLearnResponseFormat(final boolean learnResponseFormat) {
+        this.formatDetector.setLearning(learnResponseFormat);
     }
 }
@@ -21,12 +21,18 @@ package org.apereo.cas.client.validation.json;
 import org.apereo.cas.client.validation.Assertion;
 import org.apereo.cas.client.validation.Cas30ServiceTicketValidator;
 import org.apereo.cas.client.validation.TicketValidationException;
+import org.apereo.cas.client.validation.TicketValidationXmlResponse;
+import org.apereo.cas.client.validation.ValidationResponseField;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This is {@link Cas30JsonServiceTicketValidator} that attempts to parse the CAS validation response
@@ -38,6 +44,10 @@ import java.util.Map;
  */
 public class Cas30JsonServiceTicketValidator extends Cas30ServiceTicketValidator {
 
+    private JsonValidationResponseParser jsonParser = JsonValidationResponseParser.DATA_BINDING;
+
+    private final ResponseFormatDetector formatDetector = new ResponseFormatDetector();
+
     public Cas30JsonServiceTicketValidator(final String casServerUrlPrefix) {
         super(casServerUrlPrefix);
         setCustomParameters(Collections.singletonMap("format", "JSON"));
@@ -45,10 +55,39 @@ public class Cas30JsonServiceTicketValidator extends Cas30ServiceTicketValidator
 
     @Override
     protected Assertion parseResponseFromServer(final String response) throws TicketValidationException {
+        return parseResponseFromServer(response, null);
+    }
+
+    /**
+     * The body is read as a whole, so that the XML fallback remains possible.
+     */
+    @Override
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset)
+        throws IOException, TicketValidationException {
+        return parseResponseFromServer(response, charset, null);
+    }
+
+    @Override
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset, final String contentType)
+        throws IOException, TicketValidationException {
+        return parseResponseFromServer(new String(response.readAllBytes(), charset), contentType);
+    }
+
+    private Assertion parseResponseFromServer(final String response, final String contentType) throws TicketValidationException {
+        if (this.formatDetector.detect(contentType, response) == ResponseFormatDetector.Format.XML) {
+            try {
+                return super.parseResponseFromServer(response);
+            } catch (final TicketValidationException e) {
+                if (!this.formatDetector.isMismatch(contentType, response, ResponseFormatDetector.Format.XML)) {
+                    throw e;
+                }
+            }
+        }
         try {
-            final TicketValidationJsonResponse json = new JsonValidationResponseParser().parse(response);
-            return json.getAssertion(getProxyGrantingTicketStorage(), getProxyRetriever());
+            final TicketValidationJsonResponse json = this.jsonParser.parse(response);
+            return json.getAssertion(getProxyGrantingTicketStorage(), getProxyRetriever(), getAttributeValuePool());
         } catch (final JsonProcessingException e) {
+            this.formatDetector.isMismatch(contentType, response, ResponseFormatDetector.Format.JSON);
             logger.warn("Unable parse the JSON response. Falling back to XML", e);
             return super.parseResponseFromServer(response);
         } catch (final IOException e) {
@@ -57,7 +96,34 @@ public class Cas30JsonServiceTicketValidator extends Cas30ServiceTicketValidator
     }
 
     @Override
-    protected Map<String, Object> extractCustomAttributes(final String xml) {
-        return Collections.emptyMap();
+    protected Set<ValidationResponseField> getRequiredResponseFields() {
+        final Set<ValidationResponseField> fields = super.getRequiredResponseFields();
+        fields.remove(ValidationResponseField.ATTRIBUTES);
+        return fields;
+    }
+
+    @Override
+    protected Map<String, Object> extractCustomAttributes(final TicketValidationXmlResponse response) {
+        return new HashMap<>();
+    }
+
+    /**
+     * Sets whether JSON responses are read token by token rather than bound to objects. Both produce the same
+     * assertion; the streaming mode does less work per response and ignores unknown properties.
+     *
+     * @param streaming whether to stream JSON responses.
+     */
+    public void setStreaming(final boolean streaming) {
+        this.jsonParser = streaming ? JsonValidationResponseParser.STREAMING : JsonValidationResponseParser.DATA_BINDING;
+    }
+
+    /**
+     * Sets whether the validator remembers the format the CAS server answers with, and parses later responses
+     * in that format without detecting it again. A response that does not match makes the validator learn anew.
+     *
+     * @param learnResponseFormat whether to learn the response format.
+     */
+    public void setLearnResponseFormat(final boolean learnResponseFormat) {
+        this.formatDetector.setLearning(learnResponseFormat);
     }
 }
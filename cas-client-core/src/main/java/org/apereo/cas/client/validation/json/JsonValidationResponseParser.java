@@ -21,21 +21,42 @@ package org.apereo.cas.client.validation.json;
 import org.apereo.cas.client.util.CommonUtils;
 import org.apereo.cas.client.validation.TicketValidationException;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This is {@link JsonValidationResponseParser}.
+ * <p>
+ * Responses are bound with a single {@link ObjectReader} shared by all parsers; it is immutable, so modules are
+ * looked up once per class loader rather than once per response. In streaming mode the response is read token by
+ * token into a {@link TicketValidationJsonResponse}, without data binding.
  *
  * @author Misagh Moayyed
  */
 final class JsonValidationResponseParser {
-    private final ObjectMapper objectMapper;
 
-    public JsonValidationResponseParser() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.findAndRegisterModules();
+    /** Parser binding responses with the shared {@link ObjectReader}. */
+    static final JsonValidationResponseParser DATA_BINDING = new JsonValidationResponseParser(false);
+
+    /** Parser reading responses token by token. */
+    static final JsonValidationResponseParser STREAMING = new JsonValidationResponseParser(true);
+
+    private static final ObjectReader READER = new ObjectMapper().findAndRegisterModules()
+        .readerFor(TicketValidationJsonResponse.class);
+
+    private final boolean streaming;
+
+    private JsonValidationResponseParser(final boolean streaming) {
+        this.streaming = streaming;
     }
 
     public TicketValidationJsonResponse parse(final String response) throws TicketValidationException, IOException {
@@ -43,7 +64,7 @@ final class JsonValidationResponseParser {
             throw new TicketValidationException("Invalid JSON response; The response is empty");
         }
 
-        final TicketValidationJsonResponse json = this.objectMapper.readValue(response, TicketValidationJsonResponse.class);
+        final TicketValidationJsonResponse json = this.streaming ? read(response) : READER.readValue(response);
 
         final TicketValidationJsonResponse.CasServiceResponseAuthentication serviceResponse = json.getServiceResponse();
         if (serviceResponse.getAuthenticationFailure() != null
@@ -64,4 +85,120 @@ final class JsonValidationResponseParser {
         }
         return json;
     }
+
+    private static TicketValidationJsonResponse read(final String response) throws IOException {
+        try (JsonParser parser = READER.getFactory().createParser(response)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            TicketValidationJsonResponse.CasServiceResponseAuthentication serviceResponse = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                if ("serviceResponse".equals(name) && token == JsonToken.START_OBJECT) {
+                    serviceResponse = readServiceResponse(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new TicketValidationJsonResponse(serviceResponse);
+        }
+    }
+
+    private static TicketValidationJsonResponse.CasServiceResponseAuthentication readServiceResponse(final JsonParser parser)
+        throws IOException {
+        TicketValidationJsonResponse.CasServiceResponseAuthenticationFailure failure = null;
+        TicketValidationJsonResponse.CasServiceResponseAuthenticationSuccess success = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if ("authenticationSuccess".equals(name) && token == JsonToken.START_OBJECT) {
+                success = readSuccess(parser);
+            } else if ("authenticationFailure".equals(name) && token == JsonToken.START_OBJECT) {
+                failure = readFailure(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new TicketValidationJsonResponse.CasServiceResponseAuthentication(failure, success);
+    }
+
+    private static TicketValidationJsonResponse.CasServiceResponseAuthenticationSuccess readSuccess(final JsonParser parser)
+        throws IOException {
+        final TicketValidationJsonResponse.CasServiceResponseAuthenticationSuccess success =
+            new TicketValidationJsonResponse.CasServiceResponseAuthenticationSuccess();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("user".equals(name)) {
+                success.setUser(parser.getValueAsString());
+            } else if ("proxyGrantingTicket".equals(name)) {
+                success.setProxyGrantingTicket(parser.getValueAsString());
+            } else if ("proxies".equals(name)) {
+                success.setProxies((List) readValue(parser));
+            } else if ("attributes".equals(name)) {
+                success.setAttributes((Map) readValue(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return success;
+    }
+
+    private static TicketValidationJsonResponse.CasServiceResponseAuthenticationFailure readFailure(final JsonParser parser)
+        throws IOException {
+        final TicketValidationJsonResponse.CasServiceResponseAuthenticationFailure failure =
+            new TicketValidationJsonResponse.CasServiceResponseAuthenticationFailure();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("code".equals(name)) {
+                failure.setCode(parser.getValueAsString());
+            } else if ("description".equals(name)) {
+                failure.setDescription(parser.getValueAsString());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Reads the current value the way untyped data binding does: objects become maps, arrays become lists.
+     */
+    private static Object readValue(final JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                final Map<String, Object> map = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String name = parser.getCurrentName();
+                    parser.nextToken();
+                    map.put(name, readValue(parser));
+                }
+                return map;
+            case START_ARRAY:
+                final List<Object> list = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readValue(parser));
+                }
+                return list;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new JsonParseException(parser, "Unexpected token " + parser.currentToken());
+        }
+    }
+
+    private static void expect(final JsonParser parser, final JsonToken actual, final JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation.json;
+
+import java.util.Locale;
+
+/**
+ * Tells JSON validation responses from XML ones before either parser runs, so that servers ignoring the
+ * {@code format=JSON} parameter do not cost a failed JSON parse on every validation.
+ * <p>
+ * The first character of the body other than white space or a byte order mark decides; the Content-Type
+ * header is consulted when the body does not. In learning mode, the format of the first recognized response is
+ * remembered and later responses skip detection, until a response turns out not to match.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+final class ResponseFormatDetector {
+
+    /**
+     * Formats of validation responses.
+     */
+    enum Format {
+        JSON,
+        XML
+    }
+
+    private volatile boolean learning;
+
+    private volatile Format learnedFormat;
+
+    void setLearning(final boolean learning) {
+        this.learning = learning;
+        this.learnedFormat = null;
+    }
+
+    /**
+     * Determines the format of a response. Responses whose format cannot be told are treated as JSON, so
+     * that the parser falls back to XML as before.
+     *
+     * @param contentType the value of the Content-Type header, or null.
+     * @param body the response body.
+     * @return the format of the response.
+     */
+    Format detect(final String contentType, final String body) {
+        final Format learned = this.learnedFormat;
+        if (learned != null) {
+            return learned;
+        }
+        final Format format = sniff(contentType, body);
+        if (format == null) {
+            return Format.JSON;
+        }
+        if (this.learning) {
+            this.learnedFormat = format;
+        }
+        return format;
+    }
+
+    /**
+     * Checks, after the parser for the given format rejected a response, whether the response is recognizably
+     * of the other format. A learned format is replaced by the recognized one.
+     *
+     * @param contentType the value of the Content-Type header, or null.
+     * @param body the response body.
+     * @param attempted the format the response was parsed as.
+     * @return true if the response is of the other format.
+     */
+    boolean isMismatch(final String contentType, final String body, final Format attempted) {
+        final Format format = sniff(contentType, body);
+        if (format == null || format == attempted) {
+            return false;
+        }
+        if (this.learning) {
+            this.learnedFormat = format;
+        }
+        return true;
+    }
+
+    static Format sniff(final String contentType, final String body) {
+        if (body != null) {
+            for (int i = 0; i < body.length(); i++) {
+                final char c = body.charAt(i);
+                if (c == '{' || c == '[') {
+                    return Format.JSON;
+                }
+                if (c == '<') {
+                    return Format.XML;
+                }
+                if (!Character.isWhitespace(c) && c != '\uFEFF') {
+                    break;
+                }
+            }
+        }
+        if (contentType != null) {
+            final String mediaType = contentType.toLowerCase(Locale.ROOT);
+            if (mediaType.contains("json")) {
+                return Format.JSON;
+            }
+            if (mediaType.contains("xml")) {
+                return Format.XML;
+            }
+        }
+        return null;
+    }
+}
@@ -20,6 +20,8 @@ package org.apereo.cas.client.validation.json;
 
 import org.apereo.cas.client.authentication.AttributePrincipal;
 import org.apereo.cas.client.authentication.AttributePrincipalImpl;
+import org.apereo.cas.client.authentication.AttributeValuePool;
+import org.apereo.cas.client.authentication.CompactAttributeMap;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorage;
 import org.apereo.cas.client.proxy.ProxyRetriever;
 import org.apereo.cas.client.util.CommonUtils;
@@ -29,6 +31,8 @@ import org.apereo.cas.client.validation.AssertionImpl;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -139,8 +143,23 @@ final class TicketValidationJsonResponse {
         }
     }
 
+    /**
+     * @return the proxies of a successful response, the most recent first; empty if there are none.
+     */
+    List<String> getProxies() {
+        final List<?> proxies = getServiceResponse().getAuthenticationSuccess().getProxies();
+        if (proxies == null) {
+            return Collections.emptyList();
+        }
+        final List<String> values = new ArrayList<>(proxies.size());
+        for (final Object proxy : proxies) {
+            values.add(String.valueOf(proxy));
+        }
+        return values;
+    }
+
     Assertion getAssertion(final ProxyGrantingTicketStorage proxyGrantingTicketStorage,
-                           final ProxyRetriever proxyRetriever) {
+                           final ProxyRetriever proxyRetriever, final AttributeValuePool attributeValuePool) {
         final String proxyGrantingTicketIou = getServiceResponse().getAuthenticationSuccess().getProxyGrantingTicket();
         final String proxyGrantingTicket;
         if (CommonUtils.isBlank(proxyGrantingTicketIou) || proxyGrantingTicketStorage == null) {
@@ -150,7 +169,8 @@ final class TicketValidationJsonResponse {
         }
 
         final Assertion assertion;
-        final Map<String, Object> attributes = getServiceResponse().getAuthenticationSuccess().getAttributes();
+        final Map<String, Object> responseAttributes = getServiceResponse().getAuthenticationSuccess().getAttributes();
+        final Map<String, Object> attributes = responseAttributes != null ? CompactAttributeMap.of(responseAttributes, attributeValuePool) : null;
         final String principal = getServiceResponse().getAuthenticationSuccess().getUser();
         if (CommonUtils.isNotBlank(proxyGrantingTicket)) {
             final AttributePrincipal attributePrincipal = new AttributePrincipalImpl(principal, attributes,
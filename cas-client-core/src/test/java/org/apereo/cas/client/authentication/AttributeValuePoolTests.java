@@ -0,0 +1,95 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.authentication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link AttributeValuePool}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class AttributeValuePoolTests {
+
+    private static Map<String, Object> newAttributes(final String uid) {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("uid", uid);
+        attributes.put("affiliation", new String("staff"));
+        attributes.put("memberOf", new ArrayList<>(Arrays.asList(new String("cn=admins"), new String("cn=users"))));
+        return attributes;
+    }
+
+    @Test
+    public void verifyValuesShared() {
+        final AttributeValuePool pool = new AttributeValuePool(100);
+        final Map<String, Object> first = CompactAttributeMap.of(newAttributes("1"), pool);
+        final Map<String, Object> second = CompactAttributeMap.of(newAttributes("2"), pool);
+
+        assertSame(first.get("affiliation"), second.get("affiliation"));
+        assertSame(first.get("memberOf"), second.get("memberOf"));
+        assertNotSame(first.get("uid"), second.get("uid"));
+        assertEquals(Arrays.asList("cn=admins", "cn=users"), second.get("memberOf"));
+
+        // affiliation, both groups and the list itself
+        assertEquals(4, pool.getHitCount());
+        assertEquals(6, pool.getMissCount());
+        assertEquals(0.4, pool.getHitRate(), 0.001);
+        assertTrue(pool.getEstimatedBytesSaved() > 0);
+    }
+
+    @Test
+    public void verifyMutableValuesNotShared() {
+        final AttributeValuePool pool = new AttributeValuePool(100);
+        final Set<String> roles = new HashSet<>(Arrays.asList("admin"));
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("roles", roles);
+        assertSame(roles, CompactAttributeMap.of(attributes, pool).get("roles"));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void verifyPoolBounded() {
+        final AttributeValuePool pool = new AttributeValuePool(16);
+        final List<Map<String, Object>> principals = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final Map<String, Object> attributes = new HashMap<>();
+            attributes.put("uid", "user" + i);
+            principals.add(CompactAttributeMap.of(attributes, pool));
+        }
+        assertTrue(pool.size() <= 16);
+        assertEquals(1000, principals.size());
+        assertEquals("user999", principals.get(999).get("uid"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyPositiveSize() {
+        new AttributeValuePool(0);
+    }
+}
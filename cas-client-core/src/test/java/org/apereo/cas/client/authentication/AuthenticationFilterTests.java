@@ -28,6 +28,7 @@ import jakarta.servlet.ServletResponse;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockFilterConfig;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
@@ -82,6 +83,25 @@ public final class AuthenticationFilterTests {
         doRedirectTest();
     }
 
+    @Test
+    public void testRedirectWithCasServerPrefixesConfig() throws Exception {
+        this.filter = new AuthenticationFilter();
+        final MockFilterConfig config = new MockFilterConfig();
+        config.addInitParameter("casServerUrlPrefixes", CAS_PREFIX + ", https://localhost:9443/cas");
+        config.addInitParameter("service", CAS_SERVICE_URL);
+        this.filter.init(config);
+
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        request.setSession(new MockHttpSession());
+        this.filter.doFilter(request, response, new MockFilterChain());
+
+        final String redirectedUrl = response.getRedirectedUrl();
+        final String query = "/login?service=" + URLEncoder.encode(CAS_SERVICE_URL, "UTF-8");
+        assertTrue(redirectedUrl, redirectedUrl.equals(CAS_PREFIX + query)
+                                  || redirectedUrl.equals("https://localhost:9443/cas" + query));
+    }
+
     @Test
     public void testRedirectWithQueryString() throws Exception {
         final MockHttpSession session = new MockHttpSession();
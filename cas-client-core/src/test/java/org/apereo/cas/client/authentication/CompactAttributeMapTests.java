@@ -0,0 +1,127 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.authentication;
+
+import org.apereo.cas.client.validation.AssertionImpl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link CompactAttributeMap}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class CompactAttributeMapTests {
+
+    private static Map<String, Object> newAttributes() {
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("uid", "12345");
+        attributes.put("memberOf", new LinkedList<>(Arrays.asList("staff", "faculty")));
+        attributes.put("age", 42);
+        attributes.put("nickname", null);
+        return attributes;
+    }
+
+    @Test
+    public void verifyMapContract() {
+        final Map<String, Object> attributes = newAttributes();
+        final Map<String, Object> compact = CompactAttributeMap.of(attributes);
+
+        assertEquals(attributes, compact);
+        assertEquals(compact, attributes);
+        assertEquals(attributes.hashCode(), compact.hashCode());
+        assertEquals(new ArrayList<>(attributes.keySet()), new ArrayList<>(compact.keySet()));
+        assertEquals("12345", compact.get(new String("uid")));
+        assertTrue(compact.containsKey("nickname"));
+        assertNull(compact.get("unknown"));
+        assertEquals(Arrays.asList("staff", "faculty"), compact.get("memberOf"));
+        assertSame(compact, CompactAttributeMap.of(compact));
+        assertTrue(CompactAttributeMap.of(new HashMap<>()).isEmpty());
+    }
+
+    @Test
+    public void verifyKeysAreInterned() {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put(new String("email"), "casuser@example.org");
+        assertSame("email", CompactAttributeMap.of(attributes).keySet().iterator().next());
+    }
+
+    @Test
+    public void verifyImmutable() {
+        final Map<String, Object> compact = CompactAttributeMap.of(newAttributes());
+        try {
+            compact.put("uid", "other");
+            fail("Expected an immutable map");
+        } catch (final UnsupportedOperationException e) {
+            assertEquals("12345", compact.get("uid"));
+        }
+        try {
+            ((List<?>) compact.get("memberOf")).clear();
+            fail("Expected an immutable list");
+        } catch (final UnsupportedOperationException e) {
+            assertEquals(2, ((List<?>) compact.get("memberOf")).size());
+        }
+    }
+
+    @Test
+    public void verifySerializedAsPlainCollections() throws Exception {
+        final Object copy = roundTrip(CompactAttributeMap.of(newAttributes()));
+        assertEquals(HashMap.class, copy.getClass());
+        assertEquals(ArrayList.class, ((Map<?, ?>) copy).get("memberOf").getClass());
+        assertEquals(newAttributes(), copy);
+    }
+
+    @Test
+    public void verifyPrincipalAndAssertionCompactedWhenRead() throws Exception {
+        final AttributePrincipalImpl principal = new AttributePrincipalImpl("casuser", newAttributes());
+        final AssertionImpl assertion = new AssertionImpl(principal, new HashMap<>(newAttributes()));
+
+        final AssertionImpl copy = (AssertionImpl) roundTrip(assertion);
+        assertTrue(copy.getAttributes() instanceof CompactAttributeMap);
+        assertTrue(copy.getPrincipal().getAttributes() instanceof CompactAttributeMap);
+        assertEquals("casuser", copy.getPrincipal().getName());
+        assertEquals(newAttributes(), copy.getPrincipal().getAttributes());
+        assertEquals(assertion.getValidFromDate(), copy.getValidFromDate());
+    }
+
+    private static Object roundTrip(final Object object) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+}
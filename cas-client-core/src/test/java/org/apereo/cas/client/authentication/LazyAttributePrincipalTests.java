@@ -0,0 +1,112 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.authentication;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LazyAttributePrincipal}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class LazyAttributePrincipalTests {
+
+    @Test
+    public void verifyAttributesDecodedOnFirstAccess() {
+        final AtomicInteger decodings = new AtomicInteger();
+        final LazyAttributePrincipal principal = new LazyAttributePrincipal("casuser", () -> {
+            decodings.incrementAndGet();
+            return Collections.<String, Object>singletonMap("mail", "casuser@example.org");
+        }, null, null);
+
+        assertEquals("casuser", principal.getName());
+        assertFalse(principal.isDecoded());
+        assertEquals(0, decodings.get());
+
+        assertEquals("casuser@example.org", principal.getAttributes().get("mail"));
+        assertSame(principal.getAttributes(), principal.getAttributes());
+        assertTrue(principal.isDecoded());
+        assertEquals(1, decodings.get());
+    }
+
+    @Test
+    public void verifyConcurrentAccessDecodesOnce() throws Exception {
+        final AtomicInteger decodings = new AtomicInteger();
+        final LazyAttributePrincipal principal = new LazyAttributePrincipal("casuser", () -> {
+            decodings.incrementAndGet();
+            return Collections.<String, Object>singletonMap("mail", "casuser@example.org");
+        }, null, null);
+
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final Future<?>[] results = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                results[i] = executor.submit(() -> {
+                    start.await();
+                    return principal.getAttributes();
+                });
+            }
+            start.countDown();
+            final Object first = results[0].get(10, TimeUnit.SECONDS);
+            for (final Future<?> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, decodings.get());
+    }
+
+    @Test
+    public void verifySerializedWithDecodedAttributes() throws Exception {
+        final LazyAttributePrincipal principal = new LazyAttributePrincipal("casuser",
+            () -> CompactAttributeMap.of(Collections.<String, Object>singletonMap("mail", "casuser@example.org")),
+            null, null);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(principal);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final AttributePrincipal read = (AttributePrincipal) in.readObject();
+            assertSame(AttributePrincipalImpl.class, read.getClass());
+            assertEquals("casuser", read.getName());
+            final Map<String, Object> attributes = read.getAttributes();
+            assertEquals(Collections.singletonMap("mail", "casuser@example.org"), attributes);
+        }
+    }
+}
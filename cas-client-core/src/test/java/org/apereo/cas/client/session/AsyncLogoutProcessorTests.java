@@ -0,0 +1,187 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.session;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link AsyncLogoutProcessor}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class AsyncLogoutProcessorTests {
+
+    @Test
+    public void verifyQueuedMessagesProcessed() throws Exception {
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+        final CountDownLatch done = new CountDownLatch(3);
+        final AsyncLogoutProcessor processor = new AsyncLogoutProcessor(message -> {
+            messages.add(message);
+            done.countDown();
+        }, 10, 1, 2);
+        try {
+            assertTrue(processor.submit("first"));
+            assertTrue(processor.submit("second"));
+            assertTrue(processor.submit("third"));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            processor.shutdown();
+        }
+        assertEquals(3, messages.size());
+        assertEquals(3, processor.getSubmittedCount());
+        assertEquals(3, processor.getProcessedCount());
+        assertEquals(0, processor.getQueueDepth());
+        assertEquals(0, processor.getLag());
+    }
+
+    @Test
+    public void verifyMessagesRefusedWhenQueueFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+        final AsyncLogoutProcessor processor = new AsyncLogoutProcessor(message -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(message);
+        }, 1, 1, 1);
+
+        assertTrue(processor.submit("processing"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(processor.submit("queued"));
+        assertFalse(processor.submit("refused"));
+        assertEquals(1, processor.getQueueDepth());
+        assertEquals(1, processor.getRejectedCount());
+
+        release.countDown();
+        processor.shutdown();
+        assertTrue(messages.contains("processing"));
+        assertTrue(messages.contains("queued"));
+        assertFalse(messages.contains("refused"));
+        assertFalse(processor.submit("after shutdown"));
+    }
+
+    @Test
+    public void verifyNoAcceptedMessageLostOnShutdown() throws Exception {
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+        final AsyncLogoutProcessor processor = new AsyncLogoutProcessor(messages::add, 100, 2, 8);
+        final ExecutorService submitters = Executors.newFixedThreadPool(4);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<Integer>> accepted = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                accepted.add(submitters.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    for (int i = 0; i < 10000; i++) {
+                        if (processor.submit(thread + "-" + i)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+            Thread.sleep(5);
+            processor.shutdown();
+            int total = 0;
+            for (final Future<Integer> result : accepted) {
+                total += result.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(total, messages.size());
+            assertEquals(total, processor.getProcessedCount());
+            assertFalse(processor.submit("after shutdown"));
+        } finally {
+            submitters.shutdownNow();
+        }
+    }
+
+    @Test
+    public void verifyBusyWorkerLeftToFinishQueue() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean shutdownReturned = new AtomicBoolean();
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+        final List<Boolean> processedAfterShutdown = new CopyOnWriteArrayList<Boolean>();
+        final AsyncLogoutProcessor processor = new AsyncLogoutProcessor(message -> {
+            started.countDown();
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (final InterruptedException e) {
+                    // a worker busy with a logout request is not stopped by shutdown
+                }
+            }
+            processedAfterShutdown.add(shutdownReturned.get());
+            messages.add(message);
+        }, 10, 1, 1);
+
+        assertTrue(processor.submit("processing"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(processor.submit("queued"));
+        processor.shutdown();
+        shutdownReturned.set(true);
+        assertTrue(messages.isEmpty());
+
+        release.countDown();
+        for (int i = 0; i < 500 && messages.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, messages.size());
+        assertFalse(processedAfterShutdown.contains(Boolean.FALSE));
+    }
+
+    @Test
+    public void verifyFailuresCounted() throws Exception {
+        final CountDownLatch done = new CountDownLatch(2);
+        final AsyncLogoutProcessor processor = new AsyncLogoutProcessor(message -> {
+            done.countDown();
+            if ("bad".equals(message)) {
+                throw new IllegalStateException("bad message");
+            }
+        }, 10, 1, 10);
+        try {
+            processor.submit("bad");
+            processor.submit("good");
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            processor.shutdown();
+        }
+        assertEquals(1, processor.getFailureCount());
+        assertEquals(1, processor.getProcessedCount());
+    }
+}
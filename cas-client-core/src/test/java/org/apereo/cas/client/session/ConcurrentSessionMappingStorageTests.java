@@ -0,0 +1,271 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.session;
+
+import org.junit.After;
+import org.junit.Test;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ConcurrentSessionMappingStorage}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class ConcurrentSessionMappingStorageTests {
+
+    private final ConcurrentSessionMappingStorage storage = new ConcurrentSessionMappingStorage();
+
+    @After
+    public void tearDown() {
+        storage.destroy();
+    }
+
+    @Test
+    public void verifyMappingRemovedByEitherSide() {
+        final MockHttpSession first = new MockHttpSession();
+        final MockHttpSession second = new MockHttpSession();
+        storage.addSessionById("ST-1", first);
+        storage.addSessionById("ST-2", second);
+        assertEquals(2, storage.size());
+
+        assertSame(first, storage.removeSessionByMappingId("ST-1"));
+        assertNull(storage.removeSessionByMappingId("ST-1"));
+
+        storage.removeBySessionById(second.getId());
+        assertNull(storage.removeSessionByMappingId("ST-2"));
+        assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void verifySessionMappedAgain() {
+        final MockHttpSession session = new MockHttpSession();
+        storage.addSessionById("ST-1", session);
+        storage.addSessionById("ST-2", session);
+
+        assertNull(storage.removeSessionByMappingId("ST-1"));
+        assertSame(session, storage.removeSessionByMappingId("ST-2"));
+        assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void verifyKeyTakenOverBySession() {
+        final MockHttpSession first = new MockHttpSession();
+        final MockHttpSession second = new MockHttpSession();
+        storage.addSessionById("ST-1", first);
+        storage.addSessionById("ST-1", second);
+
+        storage.removeBySessionById(first.getId());
+        assertSame(second, storage.removeSessionByMappingId("ST-1"));
+    }
+
+    @Test
+    public void verifySessionObjectsComparedById() {
+        final MockHttpSession session = new MockHttpSession(null, "session");
+        storage.addSessionById("ST-1", session);
+        storage.addSessionById("ST-1", new MockHttpSession(null, "session"));
+
+        storage.removeBySessionById("session");
+        assertNull(storage.removeSessionByMappingId("ST-1"));
+        assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void verifyMappingsOfDeadSessionsPurged() {
+        final MockHttpSession invalidated = new MockHttpSession();
+        final MockHttpSession expired = new MockHttpSession();
+        expired.setMaxInactiveInterval(1);
+        final MockHttpSession live = new MockHttpSession();
+        live.setMaxInactiveInterval(60);
+        storage.addSessionById("ST-1", invalidated);
+        storage.addSessionById("ST-2", expired);
+        storage.addSessionById("ST-3", live);
+        invalidated.invalidate();
+
+        storage.purge(System.currentTimeMillis() + 2000);
+        assertEquals(1, storage.size());
+        assertEquals(2, storage.getExpirationCount());
+        assertSame(live, storage.removeSessionByMappingId("ST-3"));
+    }
+
+    @Test
+    public void verifyLeastRecentlyAccessedSessionsEvicted() throws Exception {
+        storage.setMaxSessions(2);
+        final MockHttpSession first = new MockHttpSession();
+        final MockHttpSession second = new MockHttpSession();
+        final MockHttpSession third = new MockHttpSession();
+        storage.addSessionById("ST-1", first);
+        storage.addSessionById("ST-2", second);
+        Thread.sleep(5);
+        first.access();
+        storage.addSessionById("ST-3", third);
+
+        awaitEvictions(1);
+        assertEquals(2, storage.size());
+        assertEquals(1, storage.getEvictionCount());
+        assertNull(storage.removeSessionByMappingId("ST-2"));
+        assertSame(first, storage.removeSessionByMappingId("ST-1"));
+        assertSame(third, storage.removeSessionByMappingId("ST-3"));
+    }
+
+    @Test
+    public void verifyEvictionRunsInBackground() throws Exception {
+        storage.setMaxSessions(1);
+        final AtomicReference<String> purgingThread = new AtomicReference<String>();
+        final MockHttpSession first = new MockHttpSession() {
+            @Override
+            public long getLastAccessedTime() {
+                purgingThread.set(Thread.currentThread().getName());
+                return super.getLastAccessedTime();
+            }
+        };
+        storage.addSessionById("ST-1", first);
+        storage.addSessionById("ST-2", new MockHttpSession());
+
+        awaitEvictions(1);
+        assertEquals("cas-session-purge", purgingThread.get());
+        assertEquals(1, storage.size());
+
+        // a destroyed storage starts a new thread when sessions need purging again
+        storage.destroy();
+        storage.addSessionById("ST-3", new MockHttpSession());
+        awaitEvictions(2);
+        assertEquals(1, storage.size());
+    }
+
+    @Test
+    public void verifyWeaklyReferencedSessionsReleased() throws Exception {
+        storage.setWeakReferences(true);
+        MockHttpSession session = new MockHttpSession(null, "released");
+        storage.addSessionById("ST-1", session);
+        final MockHttpSession kept = new MockHttpSession();
+        storage.addSessionById("ST-2", kept);
+        session = null;
+
+        for (int i = 0; i < 50 && storage.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+            storage.purgeExpired();
+        }
+        assertEquals(1, storage.size());
+        assertSame(kept, storage.removeSessionByMappingId("ST-2"));
+    }
+
+    @Test
+    public void verifySessionsRemovedByPrincipal() {
+        final MockHttpSession first = new MockHttpSession();
+        final MockHttpSession second = new MockHttpSession();
+        final MockHttpSession other = new MockHttpSession();
+        storage.addSessionById("ST-1", first);
+        storage.addSessionById("ST-2", second);
+        storage.addSessionById("ST-3", other);
+        storage.addPrincipalByMappingId("ST-1", "casuser");
+        storage.addPrincipalByMappingId("ST-2", "casuser");
+        storage.addPrincipalByMappingId("ST-3", "other");
+        storage.addPrincipalByMappingId("ST-unknown", "casuser");
+        assertEquals(2, storage.getPrincipalCount());
+        assertEquals("other", storage.getPrincipalByMappingId("ST-3"));
+        assertNull(storage.getPrincipalByMappingId("ST-unknown"));
+
+        final List<HttpSession> sessions = storage.removeSessionsByPrincipal("casuser");
+        assertEquals(2, sessions.size());
+        assertTrue(sessions.contains(first));
+        assertTrue(sessions.contains(second));
+        assertEquals(1, storage.size());
+        assertEquals(1, storage.getPrincipalCount());
+        assertTrue(storage.removeSessionsByPrincipal("casuser").isEmpty());
+    }
+
+    @Test
+    public void verifyPrincipalIndexFollowsMappings() {
+        final MockHttpSession first = new MockHttpSession();
+        final MockHttpSession second = new MockHttpSession();
+        storage.addSessionById("ST-1", first);
+        storage.addPrincipalByMappingId("ST-1", "casuser");
+        storage.removeBySessionById(first.getId());
+        assertEquals(0, storage.getPrincipalCount());
+
+        storage.addSessionById("ST-2", first);
+        storage.addPrincipalByMappingId("ST-2", "casuser");
+        // the session is recorded again under the same ticket, it keeps its principal
+        storage.addSessionById("ST-2", first);
+        assertEquals(1, storage.getPrincipalCount());
+        // the ticket is taken over by a session of another principal
+        storage.addSessionById("ST-2", second);
+        assertEquals(0, storage.getPrincipalCount());
+        assertNull(storage.getPrincipalByMappingId("ST-2"));
+        assertTrue(storage.removeSessionsByPrincipal("casuser").isEmpty());
+        assertSame(second, storage.removeSessionByMappingId("ST-2"));
+    }
+
+    @Test
+    public void verifyConcurrentLoginsAndLogouts() throws Exception {
+        final int threads = 8;
+        final int sessionsPerThread = 2000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> results = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < sessionsPerThread; i++) {
+                        final MockHttpSession session = new MockHttpSession(null, thread + "-" + i);
+                        // as SingleSignOutHandler records a session
+                        storage.removeBySessionById(session.getId());
+                        storage.addSessionById("ST-" + thread + "-" + i, session);
+                        if (i % 2 == 0) {
+                            assertSame(session, storage.removeSessionByMappingId("ST-" + thread + "-" + i));
+                        } else {
+                            storage.removeBySessionById(session.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, storage.size());
+    }
+
+    private void awaitEvictions(final long evictions) throws InterruptedException {
+        for (int i = 0; i < 500 && storage.getEvictionCount() < evictions; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(evictions, storage.getEvictionCount());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.session;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogoutMessageInflater}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class LogoutMessageInflaterTests {
+
+    private final LogoutMessageInflater inflater = new LogoutMessageInflater(4096);
+
+    @Test
+    public void verifyMessageInflated() throws Exception {
+        final String message = LogoutMessageGenerator.generateBackChannelLogoutMessage("ST-1");
+        final InputStream in = inflater.open(LogoutMessageGenerator.generateFrontChannelLogoutMessage("ST-1"));
+        try {
+            assertEquals(message, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } finally {
+            in.close();
+        }
+        assertEquals(1, inflater.size());
+
+        // the pooled inflater serves the next message
+        final InputStream next = inflater.open(LogoutMessageGenerator.generateFrontChannelLogoutMessage("ST-2"));
+        assertEquals(0, inflater.size());
+        assertTrue(new String(next.readAllBytes(), StandardCharsets.UTF_8).contains("ST-2"));
+        next.close();
+        assertEquals(1, inflater.size());
+    }
+
+    @Test
+    public void verifyHighlyCompressedMessageNotTruncated() throws Exception {
+        final StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            padding.append('a');
+        }
+        final String message = "<LogoutRequest><NameID>" + padding + "</NameID><SessionIndex>ST-1</SessionIndex></LogoutRequest>";
+        final String compressed = compress(message);
+        assertTrue(message.length() > Base64.getDecoder().decode(compressed).length * 10);
+
+        try (InputStream in = inflater.open(compressed)) {
+            assertEquals(message, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void verifyMessageLargerThanMaximumRejected() throws Exception {
+        final StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            message.append('a');
+        }
+        try (InputStream in = inflater.open(compress(message.toString()))) {
+            in.readAllBytes();
+            fail("IOException expected due to the size of the message");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage().contains("4096"));
+        }
+    }
+
+    @Test
+    public void verifyTruncatedMessageRejected() throws Exception {
+        final byte[] compressed = Base64.getDecoder().decode(LogoutMessageGenerator.generateFrontChannelLogoutMessage("ST-1"));
+        final byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        try (InputStream in = inflater.open(Base64.getEncoder().encodeToString(truncated))) {
+            in.readAllBytes();
+            fail("EOFException expected due to the truncated message");
+        } catch (final EOFException e) {
+            // expected
+        }
+    }
+
+    private static String compress(final String message) {
+        final Deflater deflater = new Deflater();
+        deflater.setInput(message.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[512];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.session;
+
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockServletContext;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Measures the throughput of {@link HashMapBackedSessionMappingStorage} and {@link ConcurrentSessionMappingStorage}
+ * under contention: every thread records sessions and removes them, half by ticket as logout
+ * requests do and half by session ID as session listeners do, over a storage shared by all threads and kept at
+ * a steady number of live sessions. Not run as part of the build:
+ * <pre>
+ * mvn -pl cas-client-core test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.apereo.cas.client.session.SessionMappingStorageBenchmark
+ * </pre>
+ * Throughput only diverges with as many cores as threads; on a single core both storages serialize anyway.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class SessionMappingStorageBenchmark {
+
+    private static final int LIVE_SESSIONS_PER_THREAD = 4096;
+
+    private static final long WARMUP_MILLIS = 2000;
+
+    private static final long MEASURED_MILLIS = 3000;
+
+    private SessionMappingStorageBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d available processors%n", cores);
+        for (final int threads : new int[]{1, 2, 4, 8, 16, 32}) {
+            final double synchronizedRate = run(HashMapBackedSessionMappingStorage::new, threads);
+            final double concurrentRate = run(ConcurrentSessionMappingStorage::new, threads);
+            System.out.printf("%2d threads: synchronized %,12.0f ops/s, concurrent %,12.0f ops/s (x%.2f)%n",
+                threads, synchronizedRate, concurrentRate, concurrentRate / synchronizedRate);
+        }
+    }
+
+    private static double run(final Supplier<SessionMappingStorage> storages, final int threads) throws Exception {
+        final SessionMappingStorage storage = storages.get();
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(storage, i, start, operations);
+            workers[i].start();
+        }
+        start.countDown();
+        Thread.sleep(WARMUP_MILLIS);
+        final long before = operations.get();
+        final long startNanos = System.nanoTime();
+        Thread.sleep(MEASURED_MILLIS);
+        final long done = operations.get() - before;
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        for (final Worker worker : workers) {
+            worker.interrupt();
+        }
+        for (final Worker worker : workers) {
+            worker.join();
+        }
+        return done * 1e9 / elapsedNanos;
+    }
+
+    private static final class Worker extends Thread {
+
+        private final SessionMappingStorage storage;
+
+        private final String prefix;
+
+        private final CountDownLatch start;
+
+        private final AtomicLong operations;
+
+        /** Sessions are created up front and recorded again under new tickets, so that only the storage is measured. */
+        private final MockHttpSession[] sessions = new MockHttpSession[LIVE_SESSIONS_PER_THREAD];
+
+        Worker(final SessionMappingStorage storage, final int index, final CountDownLatch start,
+               final AtomicLong operations) {
+            this.storage = storage;
+            this.prefix = "ST-" + index + "-";
+            this.start = start;
+            this.operations = operations;
+            final MockServletContext servletContext = new MockServletContext();
+            for (int i = 0; i < LIVE_SESSIONS_PER_THREAD; i++) {
+                this.sessions[i] = new MockHttpSession(servletContext, this.prefix + "session-" + i);
+            }
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.start.await();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            long count = 0;
+            for (long i = 0; !isInterrupted(); i++) {
+                final int slot = (int) (i % LIVE_SESSIONS_PER_THREAD);
+                final MockHttpSession session = this.sessions[slot];
+                if (i >= LIVE_SESSIONS_PER_THREAD) {
+                    if ((i & 1) == 0) {
+                        this.storage.removeSessionByMappingId(this.prefix + (i - LIVE_SESSIONS_PER_THREAD));
+                    } else {
+                        this.storage.removeBySessionById(session.getId());
+                    }
+                }
+                this.storage.addSessionById(this.prefix + i, session);
+                count += 2;
+                if ((count & 1023) == 0) {
+                    this.operations.addAndGet(1024);
+                }
+            }
+        }
+    }
+}
@@ -111,4 +111,58 @@ public class SingleSignOutFilterTests {
         filter.doFilter(request, response, filterChain);
         assertNull(SingleSignOutFilter.getSingleSignOutHandler().getSessionMappingStorage().removeSessionByMappingId(TICKET));
     }
+
+    @Test
+    public void concurrentSessionMappingStorageIsDefault() throws ServletException {
+        final MockFilterConfig filterConfig = new MockFilterConfig();
+        filterConfig.addInitParameter(ConfigurationKeys.MAX_SESSION_MAPPINGS.getName(), "1");
+        final SingleSignOutFilter configuredFilter = new SingleSignOutFilter();
+        try {
+            configuredFilter.init(filterConfig);
+            final SessionMappingStorage storage = SingleSignOutFilter.getSingleSignOutHandler().getSessionMappingStorage();
+            assertTrue(storage instanceof ConcurrentSessionMappingStorage);
+            assertEquals(1, ((ConcurrentSessionMappingStorage) storage).getMaxSessions());
+        } finally {
+            configuredFilter.setSessionMappingStorage(new ConcurrentSessionMappingStorage());
+        }
+    }
+
+    @Test
+    public void handlerInitializedAgainAfterDestroy() throws IOException, ServletException {
+        final MockFilterConfig filterConfig = new MockFilterConfig();
+        filterConfig.addInitParameter(ConfigurationKeys.ASYNC_LOGOUT.getName(), "true");
+        final SingleSignOutFilter configuredFilter = new SingleSignOutFilter();
+        final SingleSignOutHandler handler = SingleSignOutFilter.getSingleSignOutHandler();
+        try {
+            configuredFilter.init(filterConfig);
+            configuredFilter.destroy();
+            assertNull(handler.getAsyncLogoutProcessor());
+            configuredFilter.init(filterConfig);
+            assertNotNull(handler.getAsyncLogoutProcessor());
+
+            // filters that are not initialized by the container initialize the handler on first use
+            configuredFilter.destroy();
+            configuredFilter.doFilter(request, response, filterChain);
+            assertNotNull(handler.getAsyncLogoutProcessor());
+        } finally {
+            configuredFilter.destroy();
+            handler.setAsyncLogout(false);
+            handler.init();
+        }
+    }
+
+    @Test
+    public void sessionMappingStorageClassReplacesDefault() throws ServletException {
+        final MockFilterConfig filterConfig = new MockFilterConfig();
+        filterConfig.addInitParameter(ConfigurationKeys.SESSION_MAPPING_STORAGE_CLASS.getName(),
+            HashMapBackedSessionMappingStorage.class.getName());
+        final SingleSignOutFilter configuredFilter = new SingleSignOutFilter();
+        try {
+            configuredFilter.init(filterConfig);
+            assertTrue(SingleSignOutFilter.getSingleSignOutHandler().getSessionMappingStorage()
+                instanceof HashMapBackedSessionMappingStorage);
+        } finally {
+            configuredFilter.setSessionMappingStorage(new ConcurrentSessionMappingStorage());
+        }
+    }
 }
@@ -18,12 +18,18 @@
  */
 package org.apereo.cas.client.session;
 
+import org.apereo.cas.client.util.AbstractCasFilter;
+import org.apereo.cas.client.validation.Assertion;
+import org.apereo.cas.client.validation.AssertionImpl;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockHttpSession;
 
+import java.util.function.Consumer;
+
 import static org.junit.Assert.*;
 
 /**
@@ -122,6 +128,135 @@ public final class SingleSignOutHandlerTests {
         assertTrue(session.isInvalid());
     }
 
+    @Test
+    public void backChannelLogoutWithSeveralSessionIndexes() {
+        final MockHttpSession first = new MockHttpSession();
+        final MockHttpSession second = new MockHttpSession();
+        handler.getSessionMappingStorage().addSessionById("ST-1", first);
+        handler.getSessionMappingStorage().addSessionById("ST-2", second);
+        request.setParameter(LOGOUT_PARAMETER_NAME, generateLogoutMessage("@NOT_USED@", "ST-1", "ST-2"));
+        request.setMethod("POST");
+
+        assertFalse(handler.process(request, response));
+        assertTrue(first.isInvalid());
+        assertTrue(second.isInvalid());
+    }
+
+    @Test
+    public void backChannelLogoutDestroysSessionsOfPrincipal() {
+        handler = new SingleSignOutHandler();
+        handler.setLogoutParameterName(LOGOUT_PARAMETER_NAME);
+        handler.setArtifactParameterName(ARTIFACT_PARAMETER_NAME);
+        handler.setPrincipalLogout(true);
+        handler.init();
+        final MockHttpSession first = loginAs("casuser", "ST-1");
+        final MockHttpSession second = loginAs("casuser", "ST-2");
+        final MockHttpSession other = loginAs("other", "ST-3");
+
+        request = new MockHttpServletRequest();
+        request.setParameter(LOGOUT_PARAMETER_NAME, generateLogoutMessage("casuser", "ST-1"));
+        request.setMethod("POST");
+        assertFalse(handler.process(request, response));
+        assertTrue(first.isInvalid());
+        assertTrue(second.isInvalid());
+        assertFalse(other.isInvalid());
+    }
+
+    @Test
+    public void backChannelLogoutDestroysSessionsOfPrincipalWithHashMapStorage() {
+        handler = new SingleSignOutHandler();
+        handler.setLogoutParameterName(LOGOUT_PARAMETER_NAME);
+        handler.setArtifactParameterName(ARTIFACT_PARAMETER_NAME);
+        handler.setPrincipalLogout(true);
+        handler.setSessionMappingStorage(new HashMapBackedSessionMappingStorage());
+        handler.init();
+        final MockHttpSession first = loginAs("casuser", "ST-1");
+        final MockHttpSession second = loginAs("casuser", "ST-2");
+        final MockHttpSession other = loginAs("other", "ST-3");
+
+        request = new MockHttpServletRequest();
+        request.setParameter(LOGOUT_PARAMETER_NAME, generateLogoutMessage("casuser", "ST-1"));
+        request.setMethod("POST");
+        assertFalse(handler.process(request, response));
+        assertTrue(first.isInvalid());
+        assertTrue(second.isInvalid());
+        assertFalse(other.isInvalid());
+        assertNull(handler.getSessionMappingStorage().getPrincipalByMappingId("ST-2"));
+        assertEquals("other", handler.getSessionMappingStorage().getPrincipalByMappingId("ST-3"));
+    }
+
+    @Test
+    public void principalOfLogoutRequestIsOnlyTrustedForItsOwnTickets() {
+        handler = new SingleSignOutHandler();
+        handler.setLogoutParameterName(LOGOUT_PARAMETER_NAME);
+        handler.setArtifactParameterName(ARTIFACT_PARAMETER_NAME);
+        handler.setPrincipalLogout(true);
+        handler.init();
+        final MockHttpSession victim = loginAs("casuser", "ST-1");
+        final MockHttpSession attacker = loginAs("other", "ST-2");
+
+        request = new MockHttpServletRequest();
+        request.setParameter(LOGOUT_PARAMETER_NAME, generateLogoutMessage("casuser", "ST-2", "ST-unknown"));
+        request.setMethod("POST");
+        assertFalse(handler.process(request, response));
+        assertTrue(attacker.isInvalid());
+        assertFalse(victim.isInvalid());
+    }
+
+    @Test
+    public void backChannelLogoutProcessedAsynchronously() throws Exception {
+        handler = new SingleSignOutHandler();
+        handler.setLogoutParameterName(LOGOUT_PARAMETER_NAME);
+        handler.setAsyncLogout(true);
+        handler.init();
+        try {
+            final MockHttpSession session = doBackChannelLogout();
+            assertFalse(handler.process(request, response));
+            for (int i = 0; i < 500 && !session.isInvalid(); i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(session.isInvalid());
+            assertEquals(1, handler.getAsyncLogoutProcessor().getProcessedCount());
+        } finally {
+            handler.destroy();
+        }
+        assertNull(handler.getAsyncLogoutProcessor());
+    }
+
+    @Test
+    public void handlerInitializedAgainAfterDestroy() {
+        handler = new SingleSignOutHandler();
+        handler.setLogoutParameterName(LOGOUT_PARAMETER_NAME);
+        handler.setAsyncLogout(true);
+        handler.init();
+        final AsyncLogoutProcessor first = handler.getAsyncLogoutProcessor();
+        handler.destroy();
+        handler.init();
+        try {
+            assertNotNull(handler.getAsyncLogoutProcessor());
+            assertNotSame(first, handler.getAsyncLogoutProcessor());
+            assertFalse(first.submit("after destroy"));
+        } finally {
+            handler.destroy();
+        }
+    }
+
+    @Test
+    public void malformedLogoutMessageIsNotQueued() {
+        handler = new SingleSignOutHandler();
+        handler.setLogoutParameterName(LOGOUT_PARAMETER_NAME);
+        handler.setAsyncLogout(true);
+        handler.init();
+        try {
+            request.setParameter(LOGOUT_PARAMETER_NAME, "<samlp:LogoutRequest>not base64!</samlp:LogoutRequest>");
+            request.setMethod("POST");
+            assertFalse(handler.process(request, response));
+            assertEquals(0, handler.getAsyncLogoutProcessor().getSubmittedCount());
+        } finally {
+            handler.destroy();
+        }
+    }
+
     @Test
     public void backChannelLogoutDoesNotRunIfPathIsNotEligibleForLogout() {
         handler.setLogoutCallbackPath("/logout");
@@ -190,6 +325,31 @@ public final class SingleSignOutHandlerTests {
         assertTrue(session.isInvalid());
     }
 
+    private MockHttpSession loginAs(final String principal, final String ticket) {
+        final MockHttpSession session = new MockHttpSession();
+        final MockHttpServletRequest tokenRequest = new MockHttpServletRequest();
+        tokenRequest.setSession(session);
+        tokenRequest.setParameter(ARTIFACT_PARAMETER_NAME, ticket);
+        tokenRequest.setQueryString(ARTIFACT_PARAMETER_NAME + "=" + ticket);
+        assertTrue(handler.process(tokenRequest, response));
+        // as notified by the ticket validation filter further down the chain
+        @SuppressWarnings("unchecked")
+        final Consumer<Assertion> principalRecorder =
+            (Consumer<Assertion>) tokenRequest.getAttribute(AbstractCasFilter.CONST_CAS_PRINCIPAL_RECORDER);
+        principalRecorder.accept(new AssertionImpl(principal));
+        return session;
+    }
+
+    private static String generateLogoutMessage(final String principal, final String... sessionIndexes) {
+        final StringBuilder message = new StringBuilder("<samlp:LogoutRequest xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\" "
+            + "ID=\"00000001\" Version=\"2.0\"><saml:NameID xmlns:saml=\"urn:oasis:names:tc:SAML:2.0:assertion\">")
+            .append(principal).append("</saml:NameID>");
+        for (final String sessionIndex : sessionIndexes) {
+            message.append("<samlp:SessionIndex>").append(sessionIndex).append("</samlp:SessionIndex>");
+        }
+        return message.append("</samlp:LogoutRequest>").toString();
+    }
+
     private MockHttpSession doBackChannelLogout() {
         final String logoutMessage = LogoutMessageGenerator.generateBackChannelLogoutMessage(TICKET);
         request.setParameter(LOGOUT_PARAMETER_NAME, logoutMessage);
@@ -0,0 +1,242 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.apereo.cas.client.PublicTestHttpServer;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link HttpClientTransport}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class HttpClientTransportTests {
+
+    private static final PublicTestHttpServer server = PublicTestHttpServer.instance(8093);
+
+    @Test
+    public void verifyResponseIsReadAcrossCalls() throws Exception {
+        server.content = "<cas:serviceResponse/>".getBytes(server.encoding);
+        final HttpClientTransport transport = new HttpClientTransport();
+        transport.setConnectTimeout(2000);
+        transport.setReadTimeout(2000);
+
+        for (int i = 0; i < 3; i++) {
+            final HttpTransportResponse response = transport.execute(HttpTransportRequest.get(new URL("http://localhost:8093/serviceValidate")));
+            assertEquals(200, response.getStatusCode());
+            assertEquals("text/plain", response.getContentType());
+            assertEquals("<cas:serviceResponse/>", response.getBodyAsString(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void verifySerializedTransportIsUsable() throws Exception {
+        server.content = "test".getBytes(server.encoding);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(new HttpClientTransport());
+        oos.close();
+
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        final HttpTransport transport = (HttpTransport) ois.readObject();
+        final HttpTransportResponse response = transport.execute(HttpTransportRequest.get(new URL("http://localhost:8093")));
+        assertEquals("test", response.getBodyAsString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void verifyResponseIsStreamedToReader() throws Exception {
+        server.content = "<cas:serviceResponse/>".getBytes(server.encoding);
+        final HttpClientTransport transport = new HttpClientTransport();
+
+        final String body = transport.execute(HttpTransportRequest.get(new URL("http://localhost:8093/serviceValidate")),
+            (in, contentType) -> contentType + ":" + new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        assertEquals("text/plain:<cas:serviceResponse/>", body);
+    }
+
+    @Test
+    public void verifyRedirectsAreOnlyFollowedWithoutBody() throws Exception {
+        final HttpServer redirectingServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        redirectingServer.createContext("/redirect", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Location", "/target");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        redirectingServer.createContext("/target", exchange -> {
+            final byte[] body = "target".getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        redirectingServer.start();
+        final HttpClientTransport transport = new HttpClientTransport();
+        try {
+            final URL url = new URL("http://localhost:" + redirectingServer.getAddress().getPort() + "/redirect");
+            assertEquals("target", transport.execute(HttpTransportRequest.get(url)).getBodyAsString(StandardCharsets.US_ASCII));
+            assertEquals("target", transport.executeAsync(HttpTransportRequest.get(url), Runnable::run).join()
+                .getBodyAsString(StandardCharsets.US_ASCII));
+            assertEquals(302, transport.execute(HttpTransportRequest.post(url, new byte[]{1})).getStatusCode());
+        } finally {
+            transport.close();
+            redirectingServer.stop(0);
+        }
+    }
+
+    @Test
+    public void verifyClosedTransportIsUsable() throws Exception {
+        server.content = "test".getBytes(server.encoding);
+        final HttpClientTransport transport = new HttpClientTransport();
+        transport.execute(HttpTransportRequest.get(new URL("http://localhost:8093")));
+        transport.close();
+        assertEquals("test", transport.execute(HttpTransportRequest.get(new URL("http://localhost:8093")))
+            .getBodyAsString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void verifyStalledBodyTimesOut() throws Exception {
+        final HttpServer stallingServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stallingServer.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            final OutputStream out = exchange.getResponseBody();
+            out.write("<cas:serviceResponse>".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            try {
+                Thread.sleep(5000);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        stallingServer.start();
+        final HttpClientTransport transport = new HttpClientTransport();
+        transport.setReadTimeout(300);
+        try {
+            final long start = System.nanoTime();
+            try {
+                transport.execute(HttpTransportRequest.get(new URL("http://localhost:" + stallingServer.getAddress().getPort())));
+                fail("SocketTimeoutException expected");
+            } catch (final SocketTimeoutException e) {
+                // expected
+            }
+            assertTrue(System.nanoTime() - start < 3_000_000_000L);
+        } finally {
+            transport.close();
+            stallingServer.stop(0);
+        }
+    }
+
+    @Test
+    public void verifyCancelledExchangeIsAborted() throws Exception {
+        final CountDownLatch responding = new CountDownLatch(1);
+        final CountDownLatch aborted = new CountDownLatch(1);
+        final HttpServer tricklingServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        tricklingServer.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            final OutputStream out = exchange.getResponseBody();
+            responding.countDown();
+            try {
+                for (int i = 0; i < 100; i++) {
+                    out.write(new byte[64]);
+                    out.flush();
+                    Thread.sleep(50);
+                }
+            } catch (final IOException e) {
+                aborted.countDown();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        tricklingServer.start();
+        final HttpClientTransport transport = new HttpClientTransport();
+        try {
+            final CompletableFuture<HttpTransportResponse> future = transport.executeAsync(
+                HttpTransportRequest.get(new URL("http://localhost:" + tricklingServer.getAddress().getPort())),
+                (Executor) Runnable::run);
+            assertTrue(responding.await(5, TimeUnit.SECONDS));
+            future.cancel(true);
+            assertTrue(aborted.await(4, TimeUnit.SECONDS));
+        } finally {
+            transport.close();
+            tricklingServer.stop(0);
+        }
+    }
+
+    @Test
+    public void verifyRemainderOfReadResponseIsNotDrainedPastLimit() throws Exception {
+        final HttpServer chunkedServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        chunkedServer.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write(new byte[8192]);
+            exchange.close();
+        });
+        chunkedServer.start();
+        final HttpClientTransport transport = new HttpClientTransport();
+        try {
+            final HttpTransportRequest request = HttpTransportRequest.get(
+                new URL("http://localhost:" + chunkedServer.getAddress().getPort())).withMaxResponseSize(1024);
+            assertEquals(16, transport.execute(request, (in, contentType) -> in.readNBytes(16).length).intValue());
+        } finally {
+            transport.close();
+            chunkedServer.stop(0);
+        }
+    }
+
+    @Test
+    public void verifyOversizedResponseIsAborted() throws Exception {
+        server.content = new byte[8192];
+        final HttpClientTransport transport = new HttpClientTransport();
+        final HttpTransportRequest request = HttpTransportRequest.get(new URL("http://localhost:8093/serviceValidate"))
+            .withMaxResponseSize(1024);
+
+        try {
+            transport.execute(request);
+            fail("ResponseTooLargeException expected");
+        } catch (final ResponseTooLargeException e) {
+            // expected
+        }
+        try {
+            transport.executeAsync(request, Runnable::run).join();
+            fail("ResponseTooLargeException expected");
+        } catch (final CompletionException e) {
+            assertTrue(e.getCause() instanceof ResponseTooLargeException);
+        }
+    }
+}
@@ -21,10 +21,15 @@ package org.apereo.cas.client.ssl;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.net.ssl.SSLContext;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.ObjectOutputStream;
+import java.security.KeyStore;
+import java.util.Properties;
 
 import static org.junit.Assert.*;
 
@@ -55,4 +60,104 @@ public final class HttpsURLConnectionFactoryTests {
         final HttpsURLConnectionFactory deserializedObject = (HttpsURLConnectionFactory) ois.readObject();
         assertEquals(this.httpsURLConnectionFactory, deserializedObject);
     }
+
+    @Test
+    public void sslContextIsBuiltOnce() {
+        final Properties config = new Properties();
+        config.setProperty("protocol", "TLS");
+        config.setProperty("ignoreSslFailures", "true");
+        this.httpsURLConnectionFactory.setSSLConfiguration(config);
+
+        final SSLContext sslContext = this.httpsURLConnectionFactory.getSSLContext();
+        assertNotNull(sslContext);
+        assertSame(sslContext, this.httpsURLConnectionFactory.getSSLContext());
+    }
+
+    @Test
+    public void sslContextIsReloadedWhenKeyStoreChanges() throws Exception {
+        final File keyStoreFile = File.createTempFile("cas-client", ".p12");
+        keyStoreFile.deleteOnExit();
+        writeEmptyKeyStore(keyStoreFile);
+
+        final Properties config = new Properties();
+        config.setProperty("protocol", "TLS");
+        config.setProperty("keyStoreType", "PKCS12");
+        config.setProperty("keyStorePath", keyStoreFile.getAbsolutePath());
+        config.setProperty("keyStorePass", "changeit");
+        config.setProperty("certificatePassword", "changeit");
+        config.setProperty("keyStoreReloadInterval", "1");
+        this.httpsURLConnectionFactory.setSSLConfiguration(config);
+
+        final SSLContext original = this.httpsURLConnectionFactory.getSSLContext();
+        assertNotNull(original);
+
+        writeEmptyKeyStore(keyStoreFile);
+        assertTrue(keyStoreFile.setLastModified(keyStoreFile.lastModified() + 10000));
+
+        SSLContext reloaded = original;
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (reloaded == original && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            reloaded = this.httpsURLConnectionFactory.getSSLContext();
+        }
+        assertNotSame(original, reloaded);
+        assertNotNull(reloaded);
+    }
+
+    @Test
+    public void failedSslContextIsReloadedInBackground() throws Exception {
+        final File keyStoreFile = File.createTempFile("cas-client", ".p12");
+        keyStoreFile.deleteOnExit();
+        assertTrue(keyStoreFile.delete());
+
+        final Properties config = new Properties();
+        config.setProperty("protocol", "TLS");
+        config.setProperty("keyStoreType", "PKCS12");
+        config.setProperty("keyStorePath", keyStoreFile.getAbsolutePath());
+        config.setProperty("keyStorePass", "changeit");
+        config.setProperty("certificatePassword", "changeit");
+        config.setProperty("keyStoreReloadInterval", "1");
+        this.httpsURLConnectionFactory.setSSLConfiguration(config);
+        assertNull(this.httpsURLConnectionFactory.getSSLContext());
+
+        writeEmptyKeyStore(keyStoreFile);
+        SSLContext reloaded = null;
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (reloaded == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            reloaded = this.httpsURLConnectionFactory.getSSLContext();
+        }
+        assertNotNull(reloaded);
+    }
+
+    @Test
+    public void failedSslContextIsCached() throws Exception {
+        final File keyStoreFile = File.createTempFile("cas-client", ".p12");
+        keyStoreFile.deleteOnExit();
+        assertTrue(keyStoreFile.delete());
+
+        final Properties config = new Properties();
+        config.setProperty("protocol", "TLS");
+        config.setProperty("keyStoreType", "PKCS12");
+        config.setProperty("keyStorePath", keyStoreFile.getAbsolutePath());
+        config.setProperty("keyStorePass", "changeit");
+        config.setProperty("certificatePassword", "changeit");
+        config.setProperty("keyStoreReloadInterval", "0");
+        this.httpsURLConnectionFactory.setSSLConfiguration(config);
+        assertNull(this.httpsURLConnectionFactory.getSSLContext());
+
+        // a key store appearing is only noticed by the poller, disabled here
+        writeEmptyKeyStore(keyStoreFile);
+        assertNull(this.httpsURLConnectionFactory.getSSLContext());
+        this.httpsURLConnectionFactory.setSSLConfiguration(config);
+        assertNotNull(this.httpsURLConnectionFactory.getSSLContext());
+    }
+
+    private static void writeEmptyKeyStore(final File file) throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            keyStore.store(out, "changeit".toCharArray());
+        }
+    }
 }
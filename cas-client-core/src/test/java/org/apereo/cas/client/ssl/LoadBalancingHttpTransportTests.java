@@ -0,0 +1,363 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link LoadBalancingHttpTransport} and {@link CasServerLoadBalancer}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class LoadBalancingHttpTransportTests {
+
+    private static final String VIP = "https://cas.example.com/cas/";
+
+    private static final List<String> NODES = Arrays.asList("https://cas1.example.com/cas/", "https://cas2.example.com/cas/");
+
+    private static final HttpTransportResponse OK = new HttpTransportResponse(200, "text/plain", "ok".getBytes());
+
+    @Test
+    public void requestsAreSentToNodes() throws Exception {
+        final List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        final LoadBalancingHttpTransport transport = newTransport(request -> {
+            urls.add(request.getUrl().toExternalForm());
+            return OK;
+        });
+
+        for (int i = 0; i < 50; i++) {
+            transport.execute(HttpTransportRequest.get(new URL(VIP + "p3/serviceValidate?ticket=ST-" + i)));
+        }
+        transport.execute(HttpTransportRequest.get(new URL("https://other.example.com/callback")));
+
+        for (int i = 0; i < 50; i++) {
+            final String url = urls.get(i);
+            assertTrue(url, url.equals(NODES.get(0) + "p3/serviceValidate?ticket=ST-" + i)
+                            || url.equals(NODES.get(1) + "p3/serviceValidate?ticket=ST-" + i));
+        }
+        assertEquals("https://other.example.com/callback", urls.get(50));
+    }
+
+    @Test
+    public void refusedConnectionIsRetriedOnAnotherNode() throws Exception {
+        final List<String> urls = new ArrayList<>();
+        final LoadBalancingHttpTransport transport = newTransport(request -> {
+            urls.add(request.getUrl().toExternalForm());
+            if (request.getUrl().getHost().equals("cas1.example.com")) {
+                throw new ConnectException("Connection refused");
+            }
+            return OK;
+        });
+        // refused connections fail as fast as the other node answers, so pin the latencies to have the failing node
+        // picked until it is ejected rather than depend on the timing of the calls
+        final CasServerLoadBalancer balancer = transport.getLoadBalancer();
+        balancer.setDecay(0);
+        seed(balancer, 0, 1_000L);
+        seed(balancer, 1, 1_000_000_000L);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(OK, transport.execute(HttpTransportRequest.get(new URL(VIP + "proxy"))));
+            assertSame(OK, transport.executeAsync(HttpTransportRequest.get(new URL(VIP + "proxy")), Runnable::run).get());
+        }
+        final CasServerLoadBalancer.Node failing = balancer.getNodes().get(0);
+        assertEquals(3, urls.stream().filter(url -> url.startsWith(NODES.get(0))).count());
+        assertTrue(failing.isEjected());
+        assertEquals(0, failing.getOutstanding());
+    }
+
+    @Test
+    public void otherFailuresAreNotRetried() throws Exception {
+        final List<String> urls = new ArrayList<>();
+        final LoadBalancingHttpTransport transport = newTransport(request -> {
+            urls.add(request.getUrl().toExternalForm());
+            throw new HttpStatusException(500, request.getUrl());
+        });
+        try {
+            transport.execute(HttpTransportRequest.get(new URL(VIP + "p3/serviceValidate")));
+            fail("IOException expected");
+        } catch (final IOException e) {
+            assertEquals(1, urls.size());
+        }
+    }
+
+    @Test
+    public void onlyNodeFailuresCountTowardEjection() throws Exception {
+        final List<IOException> failures = new ArrayList<>(Arrays.asList(
+            new ResponseTooLargeException("Response exceeds 1024 bytes"),
+            new HttpStatusException(404, new URL(VIP)),
+            new IOException("Unexpected end of stream")));
+        final LoadBalancingHttpTransport transport = newTransport(request -> {
+            if (failures.isEmpty()) {
+                return OK;
+            }
+            throw failures.remove(0);
+        });
+        final CasServerLoadBalancer balancer = transport.getLoadBalancer();
+        balancer.setFailureThreshold(1);
+
+        for (int i = 0; i < 4; i++) {
+            try {
+                transport.execute(HttpTransportRequest.get(new URL(VIP + "p3/serviceValidate")), (in, contentType) -> {
+                    throw new IllegalArgumentException("Malformed response");
+                });
+                fail("Exception expected");
+            } catch (final IOException | IllegalArgumentException e) {
+                // expected
+            }
+        }
+        for (final CasServerLoadBalancer.Node node : balancer.getNodes()) {
+            assertFalse(node.isEjected());
+            assertEquals(0, node.getOutstanding());
+        }
+
+        failures.add(new HttpStatusException(503, new URL(VIP)));
+        try {
+            transport.execute(HttpTransportRequest.get(new URL(VIP + "p3/serviceValidate")));
+            fail("IOException expected");
+        } catch (final HttpStatusException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertTrue(balancer.getNodes().stream().anyMatch(CasServerLoadBalancer.Node::isEjected));
+    }
+
+    @Test
+    public void slowerNodeReceivesLessTraffic() {
+        final CasServerLoadBalancer balancer = new CasServerLoadBalancer(NODES);
+        final CasServerLoadBalancer.Node fast = balancer.getNodes().get(0);
+        final CasServerLoadBalancer.Node slow = balancer.getNodes().get(1);
+        balancer.onCallStarted(fast);
+        balancer.onCallSucceeded(fast, 1_000_000L);
+        balancer.onCallStarted(slow);
+        balancer.onCallSucceeded(slow, 100_000_000L);
+
+        for (int i = 0; i < 20; i++) {
+            assertSame(fast, balancer.select(null));
+        }
+        assertSame(slow, balancer.select(fast));
+    }
+
+    @Test
+    public void slowIdempotentRequestIsHedged() throws Exception {
+        final HttpTransportResponse fast = new HttpTransportResponse(200, "text/plain", "fast".getBytes());
+        final LoadBalancingHttpTransport transport = newTransport(request -> {
+            if (request.getUrl().getHost().equals("cas1.example.com")) {
+                sleep(2000);
+                return OK;
+            }
+            return fast;
+        });
+        final CasServerLoadBalancer.Node slow = transport.getLoadBalancer().getNodes().get(0);
+        final CasServerLoadBalancer.Node other = transport.getLoadBalancer().getNodes().get(1);
+        // make the slow node look attractive so that it is picked first
+        transport.getLoadBalancer().onCallStarted(other);
+        final HedgingPolicy policy = new HedgingPolicy();
+        policy.setInitialDelay(20);
+        policy.setMaxHedgeRatio(100);
+        transport.setHedgingPolicy(policy);
+
+        final long start = System.currentTimeMillis();
+        final HttpTransportResponse response = transport.execute(HttpTransportRequest.get(new URL(VIP + "proxy")).asIdempotent());
+        assertSame(fast, response);
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertEquals(1, policy.getHedgeCount());
+        // the losing attempt is cancelled rather than left running
+        for (int i = 0; i < 100 && slow.getOutstanding() > 0; i++) {
+            sleep(10);
+        }
+        assertEquals(0, slow.getOutstanding());
+        assertFalse(slow.isEjected());
+    }
+
+    @Test
+    public void losingAttemptIsCancelled() throws Exception {
+        final Map<String, CompletableFuture<HttpTransportResponse>> calls = new ConcurrentHashMap<>();
+        final LoadBalancingHttpTransport transport = newTransport(new HttpTransport() {
+            @Override
+            public HttpTransportResponse execute(final HttpTransportRequest request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<HttpTransportResponse> executeAsync(final HttpTransportRequest request,
+                                                                         final Executor executor) {
+                final CompletableFuture<HttpTransportResponse> call = new CompletableFuture<>();
+                calls.put(request.getUrl().getHost(), call);
+                return call;
+            }
+        });
+        transport.getLoadBalancer().onCallStarted(transport.getLoadBalancer().getNodes().get(1));
+        final HedgingPolicy policy = new HedgingPolicy();
+        policy.setInitialDelay(20);
+        policy.setMaxHedgeRatio(100);
+        transport.setHedgingPolicy(policy);
+
+        final CompletableFuture<HttpTransportResponse> result =
+            transport.executeAsync(HttpTransportRequest.get(new URL(VIP + "proxy")).asIdempotent(), Runnable::run);
+        for (int i = 0; i < 100 && calls.size() < 2; i++) {
+            sleep(10);
+        }
+        assertEquals(2, calls.size());
+        assertEquals(1, policy.getHedgeCount());
+        calls.get("cas2.example.com").complete(OK);
+
+        assertSame(OK, result.get());
+        assertTrue(calls.get("cas1.example.com").isCancelled());
+    }
+
+    @Test
+    public void hedgeIsOnlyChargedWhenSent() throws Exception {
+        final LoadBalancingHttpTransport transport = newTransport(request -> OK);
+        final HedgingPolicy policy = new HedgingPolicy();
+        policy.setInitialDelay(20);
+        policy.setMaxHedgeRatio(100);
+        transport.setHedgingPolicy(policy);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(OK, transport.execute(HttpTransportRequest.get(new URL(VIP + "proxy")).asIdempotent()));
+        }
+        sleep(100);
+        assertEquals(10, policy.getRequestCount());
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void refusedHedgeDoesNotPreventFailover() throws Exception {
+        final LoadBalancingHttpTransport transport = newTransport(request -> {
+            if (request.getUrl().getHost().equals("cas1.example.com")) {
+                sleep(200);
+                throw new ConnectException("Connection refused");
+            }
+            return OK;
+        });
+        transport.getLoadBalancer().onCallStarted(transport.getLoadBalancer().getNodes().get(1));
+        final HedgingPolicy policy = new HedgingPolicy();
+        policy.setInitialDelay(20);
+        policy.setMaxHedgeRatio(0);
+        transport.setHedgingPolicy(policy);
+
+        assertSame(OK, transport.execute(HttpTransportRequest.get(new URL(VIP + "proxy")).asIdempotent()));
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void validationRequestsAreNotHedged() throws Exception {
+        final List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        final LoadBalancingHttpTransport transport = newTransport(request -> {
+            urls.add(request.getUrl().toExternalForm());
+            sleep(100);
+            return OK;
+        });
+        final HedgingPolicy policy = new HedgingPolicy();
+        policy.setInitialDelay(10);
+        policy.setMaxHedgeRatio(100);
+        transport.setHedgingPolicy(policy);
+
+        transport.execute(HttpTransportRequest.get(new URL(VIP + "p3/serviceValidate")));
+        assertEquals(1, urls.size());
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void hedgingDelayFollowsPercentile() {
+        final HedgingPolicy policy = new HedgingPolicy();
+        policy.setPercentile(90);
+        policy.setMinDelay(1);
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency(i * 1_000_000L);
+        }
+        assertEquals(90, policy.getDelay());
+
+        policy.setMaxHedgeRatio(10);
+        for (int i = 0; i < 20; i++) {
+            policy.onRequest();
+        }
+        assertTrue(policy.tryAcquireHedge());
+        assertTrue(policy.tryAcquireHedge());
+        assertFalse(policy.tryAcquireHedge());
+    }
+
+    @Test
+    public void sharedBalancerIsForgottenOnceReleased() {
+        final List<String> nodes = Arrays.asList("https://cas1.example.org/cas", "https://cas2.example.org/cas");
+        final CasServerLoadBalancer first = CasServerLoadBalancer.shared(nodes);
+        final LoadBalancingHttpTransport transport = new LoadBalancingHttpTransport(request -> OK, VIP, nodes);
+        assertSame(first, transport.getLoadBalancer());
+
+        first.release();
+        assertSame(first, CasServerLoadBalancer.shared(nodes));
+        first.release();
+        transport.close();
+        final CasServerLoadBalancer second = CasServerLoadBalancer.shared(nodes);
+        assertNotSame(first, second);
+        second.release();
+    }
+
+    @Test
+    public void availableNodeSkipsEjectedNodes() {
+        final CasServerLoadBalancer balancer = new CasServerLoadBalancer(NODES);
+        balancer.setFailureThreshold(1);
+        final CasServerLoadBalancer.Node ejected = balancer.getNodes().get(0);
+        balancer.onCallStarted(ejected);
+        balancer.onCallFailed(ejected, 1_000L);
+
+        for (int i = 0; i < 20; i++) {
+            assertSame(balancer.getNodes().get(1), balancer.selectAvailable());
+        }
+    }
+
+    @Test
+    public void parsesPrefixes() {
+        assertEquals(NODES, CasServerLoadBalancer.parsePrefixes(" https://cas1.example.com/cas,\nhttps://cas2.example.com/cas/ "));
+        assertTrue(CasServerLoadBalancer.parsePrefixes(null).isEmpty());
+    }
+
+    private static void seed(final CasServerLoadBalancer balancer, final int node, final long durationNanos) {
+        balancer.onCallStarted(balancer.getNodes().get(node));
+        balancer.onCallSucceeded(balancer.getNodes().get(node), durationNanos);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static LoadBalancingHttpTransport newTransport(final HttpTransport delegate) {
+        final LoadBalancingHttpTransport transport = new LoadBalancingHttpTransport(delegate, VIP, NODES);
+        transport.setLoadBalancer(new CasServerLoadBalancer(NODES));
+        return transport;
+    }
+}
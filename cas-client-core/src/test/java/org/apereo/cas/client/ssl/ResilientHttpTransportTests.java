@@ -0,0 +1,183 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.ssl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link ResilientHttpTransport} and {@link CircuitBreaker}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class ResilientHttpTransportTests {
+
+    private static final HttpTransportResponse OK = new HttpTransportResponse(200, "text/plain", "ok".getBytes());
+
+    @Test
+    public void circuitOpensOnFailuresAndRecovers() throws Exception {
+        final AtomicBoolean failing = new AtomicBoolean(true);
+        final AtomicInteger calls = new AtomicInteger();
+        final HttpTransport delegate = request -> {
+            calls.incrementAndGet();
+            if (failing.get()) {
+                throw new IOException("connection refused");
+            }
+            return OK;
+        };
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test");
+        circuitBreaker.setWindowSize(4);
+        circuitBreaker.setMinimumNumberOfCalls(4);
+        circuitBreaker.setOpenDuration(50);
+        circuitBreaker.setPermittedCallsInHalfOpenState(1);
+        final List<CircuitBreaker.State> transitions = new ArrayList<>();
+        circuitBreaker.addListener((breaker, from, to) -> transitions.add(to));
+        final ResilientHttpTransport transport = new ResilientHttpTransport(delegate, circuitBreaker);
+
+        for (int i = 0; i < 4; i++) {
+            try {
+                transport.execute(newRequest());
+                fail("IOException expected");
+            } catch (final IOException e) {
+                assertFalse(e instanceof CallNotPermittedException);
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        try {
+            transport.execute(newRequest());
+            fail("CallNotPermittedException expected");
+        } catch (final CallNotPermittedException e) {
+            assertEquals(4, calls.get());
+        }
+
+        Thread.sleep(100);
+        failing.set(false);
+        assertSame(OK, transport.execute(newRequest()));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), transitions);
+    }
+
+    @Test
+    public void failedProbeReopensCircuit() throws Exception {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test");
+        circuitBreaker.setWindowSize(2);
+        circuitBreaker.setMinimumNumberOfCalls(2);
+        circuitBreaker.setOpenDuration(10);
+        circuitBreaker.onError(0);
+        circuitBreaker.onError(0);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        Thread.sleep(50);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onError(0);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void slowCallsOpenCircuit() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test");
+        circuitBreaker.setWindowSize(3);
+        circuitBreaker.setMinimumNumberOfCalls(3);
+        circuitBreaker.setSlowCallDurationThreshold(100);
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(200));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void openCircuitReturnsConfiguredResponse() throws Exception {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("test");
+        circuitBreaker.setWindowSize(1);
+        circuitBreaker.setMinimumNumberOfCalls(1);
+        circuitBreaker.onError(0);
+        final HttpTransportResponse fallback = new HttpTransportResponse(200, "text/xml", "<failure/>".getBytes());
+        final ResilientHttpTransport transport = new ResilientHttpTransport(request -> OK, circuitBreaker);
+        transport.setOpenCircuitResponse(fallback);
+
+        assertSame(fallback, transport.execute(newRequest()));
+        assertSame(fallback, transport.executeAsync(newRequest(), Runnable::run).get());
+    }
+
+    @Test
+    public void bulkheadRejectsExcessCalls() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ResilientHttpTransport transport = new ResilientHttpTransport(request -> {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return OK;
+        }, null);
+        transport.setMaxConcurrentCalls(1);
+
+        final Thread inFlight = new Thread(() -> {
+            try {
+                transport.execute(newRequest());
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        inFlight.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        try {
+            transport.execute(newRequest());
+            fail("CallNotPermittedException expected");
+        } catch (final CallNotPermittedException e) {
+            // expected
+        }
+        try {
+            transport.executeAsync(newRequest(), Runnable::run).get();
+            fail("CallNotPermittedException expected");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof CallNotPermittedException);
+        }
+
+        release.countDown();
+        inFlight.join(5000);
+        assertSame(OK, transport.execute(newRequest()));
+    }
+
+    private static HttpTransportRequest newRequest() {
+        try {
+            return HttpTransportRequest.get(new URL("https://cas.example.com/serviceValidate"));
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.util;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link XmlUtils}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class XmlUtilsTests {
+
+    private static final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'>"
+                                           + "<cas:authenticationSuccess><cas:user>%s</cas:user>"
+                                           + "<cas:proxies><cas:proxy>proxy1</cas:proxy><cas:proxy>proxy2</cas:proxy></cas:proxies>"
+                                           + "</cas:authenticationSuccess></cas:serviceResponse>";
+
+    @Test
+    public void verifyTextIsReadWithPooledParsers() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final String user = "user" + i;
+                results.add(executor.submit(() -> XmlUtils.getTextForElement(String.format(RESPONSE, user), "user")));
+            }
+            for (int i = 0; i < 200; i++) {
+                assertEquals("user" + i, results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        final List<String> proxies = XmlUtils.getTextForElements(String.format(RESPONSE, "user"), "proxy");
+        assertEquals(2, proxies.size());
+        assertEquals("proxy2", proxies.get(1));
+    }
+
+    @Test
+    public void verifyTextOfSeveralElementsReadInOnePass() {
+        final Map<String, List<String>> texts = XmlUtils.getTextForElementsByName(
+            new InputSource(new StringReader(String.format(RESPONSE, "user"))), "user", "proxy", "proxyGrantingTicket");
+        assertEquals(Collections.singletonList("user"), texts.get("user"));
+        assertEquals(Arrays.asList("proxy1", "proxy2"), texts.get("proxy"));
+        assertTrue(texts.get("proxyGrantingTicket").isEmpty());
+        assertNull(XmlUtils.getTextForElementsByName(new InputSource(new StringReader("<user>")), "user"));
+    }
+
+    @Test
+    public void verifyParserIsReusableAfterError() {
+        assertNull(XmlUtils.getTextForElement("<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'>", "user"));
+        assertEquals("user", XmlUtils.getTextForElement(String.format(RESPONSE, "user"), "user"));
+        final Document document = XmlUtils.newDocument(String.format(RESPONSE, "user"));
+        assertEquals("user", document.getElementsByTagNameNS("http://www.yale.edu/tp/cas", "user").item(0).getTextContent());
+    }
+
+    @Test
+    public void verifyDoctypeIsRejected() {
+        final String xml = "<?xml version=\"1.0\"?><!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+                           + "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:user>&xxe;</cas:user></cas:serviceResponse>";
+        assertNull(XmlUtils.getTextForElement(xml, "user"));
+    }
+
+    @Test
+    public void verifyPoolIsBounded() {
+        final AtomicInteger created = new AtomicInteger();
+        final XmlParserPool<Object> pool = new XmlParserPool<>(2, () -> {
+            created.incrementAndGet();
+            return new Object();
+        }, parser -> { });
+        final Object first = pool.borrow();
+        final Object second = pool.borrow();
+        final Object third = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(3, created.get());
+        assertEquals(2, pool.size());
+        assertSame(first, pool.borrow());
+    }
+}
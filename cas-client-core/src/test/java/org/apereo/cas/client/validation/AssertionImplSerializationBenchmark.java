@@ -0,0 +1,118 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.authentication.AttributePrincipalImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the serialized size and round-trip time of assertions written by default serialization with those
+ * written in the compact form of {@link AssertionImpl#withCompactSerialization()}. Not run as part of the build:
+ * <pre>
+ * mvn -pl cas-client-core test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.apereo.cas.client.validation.AssertionImplSerializationBenchmark
+ * </pre>
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class AssertionImplSerializationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+
+    private static final int MEASURED_ITERATIONS = 100_000;
+
+    private AssertionImplSerializationBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        for (final int attributeCount : new int[]{5, 20, 50}) {
+            final AssertionImpl assertion = newAssertion(attributeCount);
+            report(attributeCount, "default", assertion);
+            report(attributeCount, "compact", assertion.withCompactSerialization());
+        }
+    }
+
+    /**
+     * Builds an assertion shaped like a typical LDAP-backed CAS 3.0 response: single-valued identifiers
+     * plus a few multi-valued group memberships.
+     */
+    private static AssertionImpl newAssertion(final int attributeCount) {
+        final Map<String, Object> attributes = new HashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            if (i % 5 == 0) {
+                final List<String> values = new ArrayList<>();
+                for (int j = 0; j < 4; j++) {
+                    values.add("cn=group" + j + ",ou=groups,dc=example,dc=org");
+                }
+                attributes.put("memberOf" + i, values);
+            } else {
+                attributes.put("attribute" + i, "value-" + i + "@example.org");
+            }
+        }
+        final Map<String, Object> assertionAttributes = new HashMap<>();
+        assertionAttributes.put("authenticationMethod", "LdapAuthenticationHandler");
+        assertionAttributes.put("isFromNewLogin", "true");
+        final long now = System.currentTimeMillis();
+        return new AssertionImpl(new AttributePrincipalImpl("casuser", attributes), new Date(now),
+            new Date(now + 3600000L), new Date(now), assertionAttributes);
+    }
+
+    private static void report(final int attributeCount, final String form, final AssertionImpl assertion) throws Exception {
+        final int size = serialize(assertion).length;
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            checksum += roundTrip(assertion);
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            checksum += roundTrip(assertion);
+        }
+        final long nanosPerRoundTrip = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+        System.out.printf("%3d attributes, %s: %6d bytes, %7d ns/round trip (%d)%n",
+            attributeCount, form, size, nanosPerRoundTrip, checksum);
+    }
+
+    /** Serializes and reads back the assertion, touching the attributes so lazily decoded forms pay their cost. */
+    private static int roundTrip(final AssertionImpl assertion) throws Exception {
+        final byte[] bytes = serialize(assertion);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            final AssertionImpl copy = (AssertionImpl) in.readObject();
+            return copy.getPrincipal().getAttributes().size();
+        }
+    }
+
+    private static byte[] serialize(final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+}
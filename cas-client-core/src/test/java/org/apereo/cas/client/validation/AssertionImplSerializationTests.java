@@ -0,0 +1,186 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.authentication.AttributePrincipal;
+import org.apereo.cas.client.authentication.AttributePrincipalImpl;
+import org.apereo.cas.client.authentication.CompactAttributeMap;
+import org.apereo.cas.client.proxy.ProxyRetriever;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for the serialized form of {@link AssertionImpl}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class AssertionImplSerializationTests {
+
+    /** The assertion of {@link #newAssertion()}, as written by the default serialization of earlier versions. */
+    private static final String EARLIER_ASSERTION = ""
+        + "rO0ABXNyAC5vcmcuYXBlcmVvLmNhcy5jbGllbnQudmFsaWRhdGlvbi5Bc3NlcnRpb25JbXBslDK4J+GIWssCAAZMAAphdHRyaWJ1"
+        + "dGVzdAAPTGphdmEvdXRpbC9NYXA7TAASYXV0aGVudGljYXRpb25EYXRldAAQTGphdmEvdXRpbC9EYXRlO0wAB2NvbnRleHRxAH4A"
+        + "AUwACXByaW5jaXBhbHQAOUxvcmcvYXBlcmVvL2Nhcy9jbGllbnQvYXV0aGVudGljYXRpb24vQXR0cmlidXRlUHJpbmNpcGFsO0wA"
+        + "DXZhbGlkRnJvbURhdGVxAH4AAkwADnZhbGlkVW50aWxEYXRlcQB+AAJ4cHNyABFqYXZhLnV0aWwuSGFzaE1hcAUH2sHDFmDRAwAC"
+        + "RgAKbG9hZEZhY3RvckkACXRocmVzaG9sZHhwP0AAAAAAAAx3CAAAABAAAAACdAAOaXNGcm9tTmV3TG9naW50AAR0cnVldAAUYXV0"
+        + "aGVudGljYXRpb25NZXRob2R0ABlMZGFwQXV0aGVudGljYXRpb25IYW5kbGVyeHNyAA5qYXZhLnV0aWwuRGF0ZWhqgQFLWXQZAwAA"
+        + "eHB3CAAAAYvP5WgAeHNxAH4ABT9AAAAAAAAAdwgAAAAQAAAAAHhzcgA7b3JnLmFwZXJlby5jYXMuY2xpZW50LmF1dGhlbnRpY2F0"
+        + "aW9uLkF0dHJpYnV0ZVByaW5jaXBhbEltcGzr+MkKRSs6LQIAA0wACmF0dHJpYnV0ZXNxAH4AAUwAE3Byb3h5R3JhbnRpbmdUaWNr"
+        + "ZXR0ABJMamF2YS9sYW5nL1N0cmluZztMAA5wcm94eVJldHJpZXZlcnQALExvcmcvYXBlcmVvL2Nhcy9jbGllbnQvcHJveHkvUHJv"
+        + "eHlSZXRyaWV2ZXI7eHIANG9yZy5hcGVyZW8uY2FzLmNsaWVudC5hdXRoZW50aWNhdGlvbi5TaW1wbGVQcmluY2lwYWyxp6mH/b8I"
+        + "RwIAAUwABG5hbWVxAH4AD3hwdAAHY2FzdXNlcnNxAH4ABT9AAAAAAAAMdwgAAAAQAAAABHQAA3VpZHQABTEyMzQ1dAAEbWFpbHQA"
+        + "E2Nhc3VzZXJAZXhhbXBsZS5vcmd0ABRlZHVQZXJzb25BZmZpbGlhdGlvbnNyABRqYXZhLnV0aWwuTGlua2VkTGlzdAwpU11KYIgi"
+        + "AwAAeHB3BAAAAAJ0AAVzdGFmZnQABm1lbWJlcnh0AAhtZW1iZXJPZnNxAH4AGncEAAAAAnQAJGNuPXN0YWZmLG91PWdyb3Vwcyxk"
+        + "Yz1leGFtcGxlLGRjPW9yZ3QAJGNuPXVzZXJzLG91PWdyb3VwcyxkYz1leGFtcGxlLGRjPW9yZ3h4cHBzcQB+AAt3CAAAAYvP5WgA"
+        + "eHNxAH4AC3cIAAABi9AcVoB4";
+
+    private static AssertionImpl newAssertion() {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("uid", "12345");
+        attributes.put("mail", "casuser@example.org");
+        attributes.put("memberOf", new LinkedList<>(Arrays.asList("cn=staff,ou=groups,dc=example,dc=org",
+            "cn=users,ou=groups,dc=example,dc=org")));
+        attributes.put("eduPersonAffiliation", new LinkedList<>(Arrays.asList("staff", "member")));
+        final Map<String, Object> assertionAttributes = new HashMap<>();
+        assertionAttributes.put("authenticationMethod", "LdapAuthenticationHandler");
+        assertionAttributes.put("isFromNewLogin", "true");
+        return new AssertionImpl(new AttributePrincipalImpl("casuser", attributes), new Date(1700000000000L),
+            new Date(1700003600000L), new Date(1700000000000L), assertionAttributes);
+    }
+
+    @Test
+    public void verifyDefaultFormatUnlessEnabled() throws Exception {
+        final AssertionImpl assertion = newAssertion();
+        assertFalse(assertion.isCompactSerialization());
+        final byte[] bytes = serialize(assertion);
+        final String stream = new String(bytes, StandardCharsets.ISO_8859_1);
+        assertFalse(stream.contains("SerializedForm"));
+        assertFalse(stream.contains(CompactAttributeMap.class.getName()));
+        assertTrue(stream.contains("java.util.HashMap"));
+
+        final Assertion copy = (Assertion) deserialize(bytes);
+        assertEquals(assertion.getPrincipal().getAttributes(), copy.getPrincipal().getAttributes());
+        assertEquals(assertion.getAttributes(), copy.getAttributes());
+    }
+
+    @Test
+    public void verifyRoundTrip() throws Exception {
+        final AssertionImpl assertion = newAssertion().withCompactSerialization();
+        final Assertion copy = (Assertion) deserialize(serialize(assertion));
+        assertEquals(assertion.getPrincipal(), copy.getPrincipal());
+        assertEquals(assertion.getPrincipal().getAttributes(), copy.getPrincipal().getAttributes());
+        assertEquals(assertion.getAttributes(), copy.getAttributes());
+        assertEquals(assertion.getValidFromDate(), copy.getValidFromDate());
+        assertEquals(assertion.getValidUntilDate(), copy.getValidUntilDate());
+        assertEquals(assertion.getAuthenticationDate(), copy.getAuthenticationDate());
+        assertTrue(copy.getPrincipal().getAttributes() instanceof CompactAttributeMap);
+    }
+
+    @Test
+    public void verifyCompactFormRetained() throws Exception {
+        final AssertionImpl assertion = newAssertion().withCompactSerialization();
+        assertTrue(((AttributePrincipalImpl) assertion.getPrincipal()).isCompactSerialization());
+        assertSame(assertion, assertion.withCompactSerialization());
+
+        final byte[] bytes = serialize(assertion);
+        final AssertionImpl copy = (AssertionImpl) deserialize(bytes);
+        assertTrue(copy.isCompactSerialization());
+        assertEquals(bytes.length, serialize(copy).length);
+    }
+
+    @Test
+    public void verifyValueTypesAndProxyingPreserved() throws Exception {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("count", -42);
+        attributes.put("since", 1700000000000L);
+        attributes.put("active", Boolean.TRUE);
+        attributes.put("nickname", null);
+        attributes.put("birthday", new Date(0L));
+        attributes.put("custom:attribute", "ü");
+        final AttributePrincipal principal = new AttributePrincipalImpl("casuser", attributes, "PGT-1", new TestProxyRetriever());
+        final Map<String, String> context = new HashMap<>();
+        context.put("service", "https://example.org");
+        final AssertionImpl assertion = new AssertionImpl(principal, new Date(-1000L), null, null, new HashMap<>(), context)
+            .withCompactSerialization();
+
+        final Assertion copy = (Assertion) deserialize(serialize(assertion));
+        assertEquals(attributes, copy.getPrincipal().getAttributes());
+        assertEquals("PT-1-PGT-1", copy.getPrincipal().getProxyTicketFor("https://example.org"));
+        assertEquals(new Date(-1000L), copy.getValidFromDate());
+        assertNull(copy.getValidUntilDate());
+        assertNull(copy.getAuthenticationDate());
+        assertEquals(context, copy.getContext());
+    }
+
+    @Test
+    public void verifyEarlierFormatReadable() throws Exception {
+        final Assertion copy = (Assertion) deserialize(Base64.getDecoder().decode(EARLIER_ASSERTION));
+        final AssertionImpl expected = newAssertion();
+        assertEquals(expected.getPrincipal(), copy.getPrincipal());
+        assertEquals(expected.getPrincipal().getAttributes(), copy.getPrincipal().getAttributes());
+        assertEquals(expected.getAttributes(), copy.getAttributes());
+        assertEquals(expected.getValidUntilDate(), copy.getValidUntilDate());
+        assertTrue(copy.getPrincipal().getAttributes() instanceof CompactAttributeMap);
+    }
+
+    @Test
+    public void verifySmallerThanEarlierFormat() throws Exception {
+        final int earlierSize = Base64.getDecoder().decode(EARLIER_ASSERTION).length;
+        assertTrue(serialize(newAssertion().withCompactSerialization()).length * 2 < earlierSize);
+    }
+
+    private static byte[] serialize(final Object object) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static final class TestProxyRetriever implements ProxyRetriever {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String getProxyTicketIdFor(final String proxyGrantingTicketId, final String targetService) {
+            return "PT-1-" + proxyGrantingTicketId;
+        }
+    }
+}
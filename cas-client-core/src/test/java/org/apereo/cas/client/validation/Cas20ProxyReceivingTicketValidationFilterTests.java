@@ -21,15 +21,26 @@ package org.apereo.cas.client.validation;
 import org.apereo.cas.client.proxy.CleanUpTimerTask;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorage;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorageImpl;
+import org.apereo.cas.client.session.SingleSignOutHandler;
+import org.apereo.cas.client.util.AbstractCasFilter;
 import org.apereo.cas.client.util.MethodFlag;
 
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
 import junit.framework.TestCase;
 import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.mock.web.MockServletContext;
 
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Unit test for {@link Cas20ProxyReceivingTicketValidationFilter}
@@ -218,6 +229,151 @@ public class Cas20ProxyReceivingTicketValidationFilterTests extends TestCase {
         assertTrue(((AbstractUrlBasedTicketValidator) validator).isRenew());
     }
 
+    public void testAsyncValidationResumesChain() throws Exception {
+        final CompletableFuture<Assertion> result = new CompletableFuture<>();
+        final Cas20ProxyReceivingTicketValidationFilter filter = newAsyncFilter(result);
+        final MockHttpServletRequest request = newTicketRequest();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        final MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertTrue(request.isAsyncStarted());
+        assertNull(chain.getRequest());
+
+        result.complete(new AssertionImpl("user"));
+        assertNull(request.getAttribute(AbstractCasFilter.CONST_CAS_ASSERTION));
+        assertNotNull(((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        final MockFilterChain resumedChain = new MockFilterChain();
+        filter.doFilter(request, response, resumedChain);
+        assertNotNull(request.getAttribute(AbstractCasFilter.CONST_CAS_ASSERTION));
+        assertSame(request, resumedChain.getRequest());
+    }
+
+    public void testAsyncValidationRecordsPrincipalForSingleSignOut() throws Exception {
+        final SingleSignOutHandler handler = new SingleSignOutHandler();
+        handler.setArtifactParameterName("ticket");
+        handler.setPrincipalLogout(true);
+        handler.init();
+        final CompletableFuture<Assertion> result = new CompletableFuture<>();
+        final Cas20ProxyReceivingTicketValidationFilter filter = newAsyncFilter(result);
+        final MockHttpServletRequest request = newTicketRequest();
+        request.setSession(new MockHttpSession());
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // the single sign-out filter precedes the validation filter
+        assertTrue(handler.process(request, response));
+        filter.doFilter(request, response, new MockFilterChain());
+        assertTrue(request.isAsyncStarted());
+        assertNull(handler.getSessionMappingStorage().getPrincipalByMappingId("ST-1-abc"));
+
+        result.complete(new AssertionImpl("user"));
+        request.setDispatcherType(DispatcherType.ASYNC);
+        filter.doFilter(request, response, new MockFilterChain());
+        assertEquals("user", handler.getSessionMappingStorage().getPrincipalByMappingId("ST-1-abc"));
+        assertNull(request.getAttribute(AbstractCasFilter.CONST_CAS_PRINCIPAL_RECORDER));
+        handler.destroy();
+    }
+
+    public void testAsyncValidationFailureSendsForbidden() throws Exception {
+        final CompletableFuture<Assertion> result = new CompletableFuture<>();
+        final Cas20ProxyReceivingTicketValidationFilter filter = newAsyncFilter(result);
+        final MockHttpServletRequest request = newTicketRequest();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        final MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        result.completeExceptionally(new TicketValidationException("INVALID_TICKET"));
+        assertEquals(200, response.getStatus());
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        filter.doFilter(request, response, chain);
+        assertEquals(403, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    public void testAsyncValidationThrowingSynchronouslyIsResumed() throws Exception {
+        final Cas20ProxyReceivingTicketValidationFilter filter = newAsyncFilter(new TicketValidator() {
+            @Override
+            public Assertion validate(final String ticket, final String service) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Assertion> validateAsync(final String ticket, final String service) {
+                throw new IllegalStateException("validator is closed");
+            }
+        });
+        final MockHttpServletRequest request = newTicketRequest();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+        assertNotNull(((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        try {
+            filter.doFilter(request, response, new MockFilterChain());
+            fail("Synchronous validator failure must be rethrown on resume");
+        } catch (final IllegalStateException e) {
+            assertEquals("validator is closed", e.getMessage());
+        }
+    }
+
+    public void testAsyncValidationCompletingAfterTimeoutIsDropped() throws Exception {
+        final CompletableFuture<Assertion> result = new CompletableFuture<>();
+        final Cas20ProxyReceivingTicketValidationFilter filter = newAsyncFilter(result);
+        final MockHttpServletRequest request = newTicketRequest();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+        final MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        for (final AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        request.setDispatcherType(DispatcherType.ASYNC);
+        filter.doFilter(request, response, new MockFilterChain());
+        assertEquals(403, response.getStatus());
+
+        result.complete(new AssertionImpl("user"));
+        assertNull(request.getAttribute(AbstractCasFilter.CONST_CAS_ASSERTION));
+    }
+
+    private static Cas20ProxyReceivingTicketValidationFilter newAsyncFilter(final CompletableFuture<Assertion> result) throws Exception {
+        return newAsyncFilter(new TicketValidator() {
+            @Override
+            public Assertion validate(final String ticket, final String service) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Assertion> validateAsync(final String ticket, final String service) {
+                return result;
+            }
+        });
+    }
+
+    private static Cas20ProxyReceivingTicketValidationFilter newAsyncFilter(final TicketValidator validator) throws Exception {
+        final Cas20ProxyReceivingTicketValidationFilter filter = new Cas20ProxyReceivingTicketValidationFilter();
+        final MockFilterConfig config = new MockFilterConfig();
+        config.addInitParameter("casServerUrlPrefix", "https://cas.example.com");
+        config.addInitParameter("service", "http://www.jasig.org");
+        config.addInitParameter("asyncValidation", "true");
+        config.addInitParameter("redirectAfterValidation", "false");
+        config.addInitParameter("exceptionOnValidationFailure", "false");
+        filter.init(config);
+        filter.setTicketValidator(validator);
+        return filter;
+    }
+
+    private static MockHttpServletRequest newTicketRequest() {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app");
+        request.setAsyncSupported(true);
+        request.setQueryString("ticket=ST-1-abc");
+        request.addParameter("ticket", "ST-1-abc");
+        return request;
+    }
+
     /**
      * construct a working {@link Cas20ProxyReceivingTicketValidationFilter}
      */
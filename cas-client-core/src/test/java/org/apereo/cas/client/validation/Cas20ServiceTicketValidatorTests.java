@@ -20,16 +20,31 @@ package org.apereo.cas.client.validation;
 
 import org.apereo.cas.client.PublicTestHttpServer;
 import org.apereo.cas.client.authentication.AttributePrincipalImpl;
+import org.apereo.cas.client.authentication.LazyAttributePrincipal;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorage;
 import org.apereo.cas.client.proxy.ProxyGrantingTicketStorageImpl;
 import org.apereo.cas.client.proxy.ProxyRetriever;
+import org.apereo.cas.client.ssl.HttpClientTransport;
+import org.apereo.cas.client.ssl.HttpTransport;
+import org.apereo.cas.client.ssl.HttpURLConnectionTransport;
+import org.apereo.cas.client.ssl.HttpsURLConnectionFactory;
+import org.apereo.cas.client.ssl.ResponseTooLargeException;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.*;
 
@@ -89,6 +104,21 @@ public final class Cas20ServiceTicketValidatorTests extends AbstractTicketValida
         }
     }
 
+    @Test
+    public void testTransportIsCreatedFromConnectionFactoryUnlessSet() {
+        final HttpTransport transport = new HttpURLConnectionTransport(new HttpsURLConnectionFactory());
+        this.ticketValidator.setHttpTransport(transport);
+        this.ticketValidator.setURLConnectionFactory(new HttpsURLConnectionFactory());
+        assertSame(transport, this.ticketValidator.getHttpTransport());
+
+        this.ticketValidator.setHttpTransport(null);
+        final HttpTransport defaultTransport = this.ticketValidator.getHttpTransport();
+        assertTrue(defaultTransport instanceof HttpClientTransport);
+        assertSame(defaultTransport, this.ticketValidator.getHttpTransport());
+        this.ticketValidator.setURLConnectionFactory(url -> (HttpURLConnection) url);
+        assertTrue(this.ticketValidator.getHttpTransport() instanceof HttpURLConnectionTransport);
+    }
+
     @Test
     public void testYesResponseButNoPgtiou() throws TicketValidationException, UnsupportedEncodingException {
         final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
@@ -100,6 +130,111 @@ public final class Cas20ServiceTicketValidatorTests extends AbstractTicketValida
 
     }
 
+    @Test
+    public void testResponseLargerThanMaxResponseSize() throws UnsupportedEncodingException {
+        final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME + "</cas:user></cas:authenticationSuccess></cas:serviceResponse>";
+        server.content = RESPONSE.getBytes(server.encoding);
+        this.ticketValidator.setMaxResponseSize(64);
+
+        try {
+            this.ticketValidator.validate("test", "test");
+            fail("RuntimeException expected due to oversized response");
+        } catch (final Exception e) {
+            assertTrue(e.getCause() instanceof ResponseTooLargeException);
+        }
+    }
+
+    @Test
+    public void testYesResponseAsync() throws Exception {
+        final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME + "</cas:user></cas:authenticationSuccess></cas:serviceResponse>";
+        server.content = RESPONSE.getBytes(server.encoding);
+
+        final Assertion assertion = this.ticketValidator.validateAsync("test", "test").get();
+        assertEquals(USERNAME, assertion.getPrincipal().getName());
+    }
+
+    @Test
+    public void testAsyncResponseIsParsedAsSyncResponse() throws Exception {
+        final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME + "</cas:user></cas:authenticationSuccess></cas:serviceResponse>";
+        server.content = RESPONSE.getBytes(server.encoding);
+        final List<String> contentTypes = new ArrayList<>();
+        final Cas20ServiceTicketValidator validator = new Cas20ServiceTicketValidator(CONST_CAS_SERVER_URL_PREFIX + "8088") {
+            @Override
+            protected Assertion parseResponseFromServer(final InputStream response, final Charset charset,
+                                                        final String contentType) throws IOException, TicketValidationException {
+                contentTypes.add(contentType);
+                return super.parseResponseFromServer(response, charset, contentType);
+            }
+        };
+
+        assertEquals(USERNAME, validator.validate("test", "test").getPrincipal().getName());
+        assertEquals(USERNAME, validator.validateAsync("test", "test").get().getPrincipal().getName());
+        assertEquals(Arrays.asList("text/plain", "text/plain"), contentTypes);
+    }
+
+    @Test
+    public void testAsyncValidationRunsOnDedicatedExecutor() throws Exception {
+        final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME + "</cas:user></cas:authenticationSuccess></cas:serviceResponse>";
+        server.content = RESPONSE.getBytes(server.encoding);
+        final List<String> threads = new ArrayList<>();
+        final Cas20ServiceTicketValidator validator = new Cas20ServiceTicketValidator(CONST_CAS_SERVER_URL_PREFIX + "8088") {
+            @Override
+            protected Assertion parseResponseFromServer(final InputStream response, final Charset charset,
+                                                        final String contentType) throws IOException, TicketValidationException {
+                threads.add(Thread.currentThread().getName());
+                return super.parseResponseFromServer(response, charset, contentType);
+            }
+        };
+        validator.setHttpTransport(new HttpURLConnectionTransport(new HttpsURLConnectionFactory()));
+
+        assertEquals(USERNAME, validator.validateAsync("test", "test").get().getPrincipal().getName());
+        assertEquals(1, threads.size());
+        assertTrue(threads.get(0).startsWith("cas-validation-"));
+    }
+
+    @Test
+    public void testAsyncReadFailureIsMappedAsSyncReadFailure() throws Exception {
+        server.content = "<cas:serviceResponse/>".getBytes(server.encoding);
+        final Cas20ServiceTicketValidator validator = new Cas20ServiceTicketValidator(CONST_CAS_SERVER_URL_PREFIX + "8088") {
+            @Override
+            protected Assertion parseResponseFromServer(final InputStream response, final Charset charset,
+                                                        final String contentType) throws IOException {
+                throw new IOException("unreadable");
+            }
+        };
+
+        try {
+            validator.validate("test", "test");
+            fail("RuntimeException expected");
+        } catch (final RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            validator.validateAsync("test", "test").get();
+            fail("RuntimeException expected");
+        } catch (final ExecutionException e) {
+            assertEquals(RuntimeException.class, e.getCause().getClass());
+            assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testNoResponseAsync() throws Exception {
+        final String RESPONSE =
+            "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationFailure code=\"INVALID_TICKET\">Ticket ST-1856339-aA5Yuvrxzpv8Tau1cYQ7 not recognized</cas:authenticationFailure></cas:serviceResponse>";
+        server.content = RESPONSE.getBytes(server.encoding);
+        try {
+            this.ticketValidator.validateAsync("test", "test").get();
+            fail("ValidationException expected due to 'no' response");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof TicketValidationException);
+        }
+    }
+
     @Test
     public void testYesResponseWithPgtiou() throws TicketValidationException, UnsupportedEncodingException, IllegalAccessException {
         final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
@@ -140,6 +275,89 @@ public final class Cas20ServiceTicketValidatorTests extends AbstractTicketValida
         assertEquals(PGT, proxyGrantingTicketField.get(principal));
     }
 
+    @Test
+    public void testDeprecatedHooksReceiveRawResponse() throws TicketValidationException, UnsupportedEncodingException {
+        final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME
+                                + "</cas:user><cas:attributes><cas:eduPersonId>id</cas:eduPersonId></cas:attributes>"
+                                + "</cas:authenticationSuccess></cas:serviceResponse>";
+        final List<String> rawResponses = new ArrayList<>();
+        final Cas20ServiceTicketValidator validator = new Cas20ServiceTicketValidator(CONST_CAS_SERVER_URL_PREFIX + "8088") {
+            @Override
+            protected String parsePrincipalFromResponse(final String response) {
+                return super.parsePrincipalFromResponse(response).toUpperCase();
+            }
+
+            @Override
+            protected void customParseResponse(final String response, final Assertion assertion) {
+                rawResponses.add(response);
+            }
+        };
+
+        server.content = RESPONSE.getBytes(server.encoding);
+        final Assertion assertion = validator.validate("test", "test");
+        assertEquals(USERNAME.toUpperCase(), assertion.getPrincipal().getName());
+        assertEquals("id", assertion.getPrincipal().getAttributes().get("eduPersonId"));
+        assertEquals(Arrays.asList(RESPONSE), rawResponses);
+    }
+
+    @Test
+    public void testOverriddenHookReplacesDeprecatedOne() throws TicketValidationException, UnsupportedEncodingException {
+        final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME
+                                + "</cas:user><cas:attributes><cas:eduPersonId>id</cas:eduPersonId></cas:attributes>"
+                                + "</cas:authenticationSuccess></cas:serviceResponse>";
+        final List<String> calls = new ArrayList<>();
+        final Cas20ServiceTicketValidator validator = new Cas20ServiceTicketValidator(CONST_CAS_SERVER_URL_PREFIX + "8088") {
+            @Override
+            protected void customParseResponse(final TicketValidationXmlResponse response, final Assertion assertion) {
+                calls.add("parsed");
+            }
+
+            @Override
+            protected void customParseResponse(final String response, final Assertion assertion) {
+                calls.add("raw");
+            }
+
+            @Override
+            protected Map<String, Object> extractCustomAttributes(final TicketValidationXmlResponse response) {
+                return Collections.singletonMap("eduPersonId", "other");
+            }
+
+            @Override
+            protected Map<String, Object> extractCustomAttributes(final String xml) {
+                throw new AssertionError("replaced hook called");
+            }
+        };
+
+        server.content = RESPONSE.getBytes(server.encoding);
+        final Assertion assertion = validator.validate("test", "test");
+        assertEquals("other", assertion.getPrincipal().getAttributes().get("eduPersonId"));
+        assertEquals(Arrays.asList("parsed"), calls);
+    }
+
+    @Test
+    public void testGetAttributesLazily() throws TicketValidationException, UnsupportedEncodingException, IllegalAccessException {
+        final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME
+                                + "</cas:user><cas:attributes><cas:proxyGrantingTicket>"
+                                + ENCRYPTED_PGT
+                                + "</cas:proxyGrantingTicket><cas:eduPersonId>id</cas:eduPersonId><cas:multivaluedAttribute>value1</cas:multivaluedAttribute><cas:multivaluedAttribute>value2</cas:multivaluedAttribute></cas:attributes></cas:authenticationSuccess></cas:serviceResponse>";
+
+        server.content = RESPONSE.getBytes(server.encoding);
+        this.ticketValidator.setLazyAttributes(true);
+        final Assertion assertion = this.ticketValidator.validate("test", "test");
+        final LazyAttributePrincipal principal = (LazyAttributePrincipal) assertion.getPrincipal();
+        assertEquals(USERNAME, principal.getName());
+        assertEquals(PGT, proxyGrantingTicketField.get(principal));
+        assertFalse(principal.isDecoded());
+
+        assertEquals(2, principal.getAttributes().size());
+        assertEquals("id", principal.getAttributes().get("eduPersonId"));
+        assertEquals(Arrays.asList("value1", "value2"), principal.getAttributes().get("multivaluedAttribute"));
+        assertTrue(principal.isDecoded());
+    }
+
     @Test
     public void testYesResponseWithEncryptedPgt() throws TicketValidationException, UnsupportedEncodingException, IllegalAccessException {
         final String RESPONSE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
@@ -153,6 +153,23 @@ public final class Cas30ServiceTicketValidatorTests extends AbstractTicketValida
         //assertEquals(PGT, assertion.getProxyGrantingTicketId());
     }
 
+    @Test
+    public void testGetInlinedAttributesLazily() throws TicketValidationException, UnsupportedEncodingException {
+        final String USERNAME = "username";
+        final String RESPONSE = "<?xml version='1.0' encoding='UTF-8'?><cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess><cas:user>"
+                                + USERNAME
+                                + "</cas:user><cas:attributes><cas:attribute name=\"urn:oid:0.9.2342\" value=\"value1\"/><cas:attribute name=\"urn:oid:0.9.2342\" value=\"value2\"/><cas:attribute name=\"longAttribute\" value=\"test1&#10;&#10;test\"/></cas:attributes></cas:authenticationSuccess></cas:serviceResponse>";
+
+        server.content = RESPONSE.getBytes(server.encoding);
+        this.ticketValidator.setLazyAttributes(true);
+        final Assertion assertion = this.ticketValidator.validate("test", "test");
+        assertEquals(USERNAME, assertion.getPrincipal().getName());
+        assertEquals(2, assertion.getPrincipal().getAttributes().size());
+        assertEquals("test1\n\ntest", assertion.getPrincipal().getAttributes().get("longAttribute"));
+        final List<?> multivalued = (List<?>) assertion.getPrincipal().getAttributes().get("urn:oid:0.9.2342");
+        assertArrayEquals(new String[]{"value1", "value2"}, multivalued.toArray());
+    }
+
     @Test
     public void testInvalidResponse() throws Exception {
         final String RESPONSE = "<root />";
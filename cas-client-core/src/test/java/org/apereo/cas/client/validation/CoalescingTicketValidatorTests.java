@@ -0,0 +1,179 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link CoalescingTicketValidator}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class CoalescingTicketValidatorTests {
+
+    @Test
+    public void concurrentValidationsShareOneCall() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingValidator delegate = new CountingValidator(release);
+        final CoalescingTicketValidator validator = new CoalescingTicketValidator(delegate);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Assertion>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> validator.validate("ST-1", "https://app")));
+            }
+            assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            release.countDown();
+
+            final Assertion first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (final Future<Assertion> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, delegate.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void defaultAsyncValidationFailsInsteadOfThrowing() {
+        final TicketValidator failing = (ticket, service) -> {
+            throw new IllegalStateException("broken validator");
+        };
+        final CompletableFuture<Assertion> future = failing.validateAsync("ST-1", "https://app");
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void resultIsKeptForTimeToLive() throws Exception {
+        final CountingValidator delegate = new CountingValidator(new CountDownLatch(0));
+        final CoalescingTicketValidator validator = new CoalescingTicketValidator(delegate);
+        validator.setResultTimeToLive(5000);
+
+        final Assertion assertion = validator.validateAsync("ST-1", "https://app").get();
+        assertSame(assertion, validator.validate("ST-1", "https://app"));
+        assertEquals(1, delegate.calls.get());
+
+        validator.validate("ST-1", "https://other");
+        assertEquals(2, delegate.calls.get());
+    }
+
+    @Test
+    public void resultIsNotKeptByDefault() throws Exception {
+        final CountingValidator delegate = new CountingValidator(new CountDownLatch(0));
+        final CoalescingTicketValidator validator = new CoalescingTicketValidator(delegate);
+
+        validator.validate("ST-1", "https://app");
+        validator.validate("ST-1", "https://app");
+        assertEquals(2, delegate.calls.get());
+    }
+
+    @Test
+    public void transportFailuresAreNotKept() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CoalescingTicketValidator validator = new CoalescingTicketValidator(new TicketValidator() {
+            @Override
+            public Assertion validate(final String ticket, final String service) {
+                calls.incrementAndGet();
+                throw new IllegalStateException("connection refused");
+            }
+        });
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                validator.validate("ST-1", "https://app");
+                fail("IllegalStateException expected");
+            } catch (final IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void validationFailuresAreShared() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CoalescingTicketValidator validator = new CoalescingTicketValidator(new TicketValidator() {
+            @Override
+            public Assertion validate(final String ticket, final String service) throws TicketValidationException {
+                calls.incrementAndGet();
+                throw new TicketValidationException("INVALID_TICKET");
+            }
+
+            @Override
+            public CompletableFuture<Assertion> validateAsync(final String ticket, final String service) {
+                return CompletableFuture.supplyAsync(() -> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException("unexpected");
+                });
+            }
+        });
+        validator.setResultTimeToLive(5000);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                validator.validate("ST-1", "https://app");
+                fail("TicketValidationException expected");
+            } catch (final TicketValidationException e) {
+                // expected
+            }
+        }
+        assertEquals(1, calls.get());
+    }
+
+    private static final class CountingValidator implements TicketValidator {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch release;
+
+        CountingValidator(final CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Assertion validate(final String ticket, final String service) {
+            this.calls.incrementAndGet();
+            this.started.countDown();
+            try {
+                this.release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new AssertionImpl("user");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RawAttributes}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class RawAttributesTests {
+
+    @Test
+    public void verifyAttributesExtractedWithRootElement() throws Exception {
+        final String response = "<?xml version='1.0'?><!-- comment --><c:serviceResponse xmlns:c='http://www.yale.edu/tp/cas'>"
+                                + "<c:authenticationSuccess><c:user>casuser</c:user><c:attributes>"
+                                + "<c:mail>casuser@example.org</c:mail><c:attributes>nested</c:attributes><c:attribute name='a' value='b'/>"
+                                + "</c:attributes ></c:authenticationSuccess></c:serviceResponse>";
+        assertEquals("<c:serviceResponse xmlns:c='http://www.yale.edu/tp/cas'><c:attributes>"
+                     + "<c:mail>casuser@example.org</c:mail><c:attributes>nested</c:attributes><c:attribute name='a' value='b'/>"
+                     + "</c:attributes ></c:serviceResponse>", extract(response));
+    }
+
+    @Test
+    public void verifyNoAttributes() throws Exception {
+        assertNull(extract("<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>"
+                           + "<cas:user>casuser</cas:user></cas:authenticationSuccess></cas:serviceResponse>"));
+        assertNull(extract("<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>"
+                           + "<cas:user>casuser</cas:user><cas:attributes/></cas:authenticationSuccess></cas:serviceResponse>"));
+        assertNull(extract("<root/>"));
+    }
+
+    @Test
+    public void verifyExtractedAttributesParse() throws Exception {
+        final String response = "<serviceResponse><authenticationSuccess><user>casuser</user>"
+                                + "<attributes><mail>casuser@example.org</mail><memberOf>a</memberOf><memberOf>b</memberOf></attributes>"
+                                + "</authenticationSuccess></serviceResponse>";
+        final TicketValidationXmlResponse parsed = new StaxValidationResponseParser().parse(extract(response),
+            EnumSet.of(ValidationResponseField.ATTRIBUTES));
+        assertEquals("casuser@example.org", parsed.getAttributes().get("mail"));
+        assertEquals(Arrays.asList("a", "b"), parsed.getAttributes().get("memberOf"));
+        assertNull(parsed.getUser());
+    }
+
+    @Test
+    public void verifyMarkupInCommentsAndCdataIgnored() throws Exception {
+        final String response = "<!-- <c:attributes><c:mail>a</c:mail></c:attributes> -->\r\n"
+                                + "<c:serviceResponse xmlns:c='http://www.yale.edu/tp/cas'>\r\n <c:authenticationSuccess>\n"
+                                + "<c:user>casuser</c:user><c:attributes><!-- </c:attributes> -->\r"
+                                + "<c:note><![CDATA[</c:attributes><c:mail>b</c:mail>]]></c:note><c:mail>casuser@example.org</c:mail>\n"
+                                + "</c:attributes></c:authenticationSuccess></c:serviceResponse>";
+        final RawAttributes rawAttributes = RawAttributes.parse(response);
+        assertEquals("casuser", rawAttributes.getResponse().getUser());
+        assertTrue(rawAttributes.getResponse().getAttributes().isEmpty());
+
+        final TicketValidationXmlResponse parsed = new StaxValidationResponseParser().parse(rawAttributes.getAttributes(),
+            EnumSet.of(ValidationResponseField.ATTRIBUTES));
+        assertEquals("</c:attributes><c:mail>b</c:mail>", parsed.getAttributes().get("note"));
+        assertEquals("casuser@example.org", parsed.getAttributes().get("mail"));
+    }
+
+    @Test
+    public void verifyProxyGrantingTicketReadFromAttributes() throws Exception {
+        final RawAttributes rawAttributes = RawAttributes.parse("<serviceResponse><authenticationSuccess><user>casuser</user>"
+                                                                + "<attributes><proxyGrantingTicket>PGTIOU-1</proxyGrantingTicket>"
+                                                                + "</attributes></authenticationSuccess></serviceResponse>");
+        assertEquals(Arrays.asList("PGTIOU-1"), rawAttributes.getResponse().getProxyGrantingTickets());
+        assertNotNull(rawAttributes.getAttributes());
+    }
+
+    private static String extract(final String response) throws TicketValidationException {
+        return RawAttributes.parse(response).getAttributes();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link StaxValidationResponseParser}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class StaxValidationResponseParserTests {
+
+    private static final String SUCCESS = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>"
+                                          + "<cas:user>username</cas:user>"
+                                          + "<cas:attributes><cas:password>foo</cas:password>"
+                                          + "<cas:longAttribute>1</cas:longAttribute><cas:longAttribute>2</cas:longAttribute>"
+                                          + "<cas:attribute name='mail' value='user@example.org'/></cas:attributes>"
+                                          + "<cas:proxyGrantingTicket>PGTIOU-1-test</cas:proxyGrantingTicket>"
+                                          + "<cas:proxies><cas:proxy>proxy1</cas:proxy><cas:proxy>proxy2</cas:proxy></cas:proxies>"
+                                          + "</cas:authenticationSuccess></cas:serviceResponse>";
+
+    private final StaxValidationResponseParser parser = new StaxValidationResponseParser();
+
+    @Test
+    public void verifySameResultAsSaxParser() throws Exception {
+        final TicketValidationXmlResponse stax = this.parser.parse(SUCCESS, EnumSet.allOf(ValidationResponseField.class));
+        final TicketValidationXmlResponse sax = new XmlValidationResponseParser().parse(SUCCESS);
+
+        assertEquals(sax.getUser(), stax.getUser());
+        assertEquals(sax.getProxyGrantingTickets(), stax.getProxyGrantingTickets());
+        assertEquals(sax.getProxies(), stax.getProxies());
+        assertEquals(sax.getAttributes(), stax.getAttributes());
+        assertEquals(sax.getInlineAttributes(), stax.getInlineAttributes());
+        assertEquals(Arrays.asList("1", "2"), stax.getAttributes().get("longAttribute"));
+        assertEquals("user@example.org", stax.getInlineAttributes().get("mail"));
+    }
+
+    @Test
+    public void verifyUnrequestedFieldsAreSkipped() throws Exception {
+        final TicketValidationXmlResponse response = this.parser.parse(SUCCESS, EnumSet.of(ValidationResponseField.USER));
+
+        assertEquals("username", response.getUser());
+        assertTrue(response.getProxies().isEmpty());
+        assertTrue(response.getProxyGrantingTickets().isEmpty());
+        assertTrue(response.getAttributes().isEmpty());
+        assertTrue(response.getInlineAttributes().isEmpty());
+    }
+
+    @Test
+    public void verifyParsingStopsOnFailure() throws Exception {
+        final String response = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'>"
+                                + "<cas:authenticationFailure code=\"INVALID_TICKET\">Ticket ST-1 not recognized</cas:authenticationFailure>";
+        final TicketValidationXmlResponse parsed = this.parser.parse(new StringReader(response + "<unterminated"),
+            EnumSet.allOf(ValidationResponseField.class));
+        assertEquals("INVALID_TICKET", parsed.getAuthenticationFailureCode());
+        assertEquals("Ticket ST-1 not recognized", parsed.getAuthenticationFailure());
+        assertNull(parsed.getUser());
+    }
+
+    @Test(expected = TicketValidationException.class)
+    public void verifyDoctypeIsRejected() throws Exception {
+        this.parser.parse("<?xml version=\"1.0\"?><!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+                          + "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>"
+                          + "<cas:user>&xxe;</cas:user></cas:authenticationSuccess></cas:serviceResponse>",
+            EnumSet.allOf(ValidationResponseField.class));
+    }
+
+    @Test(expected = IOException.class)
+    public void verifyReadFailuresAreNotValidationFailures() throws Exception {
+        this.parser.parse(new Reader() {
+            @Override
+            public int read(final char[] buffer, final int offset, final int length) throws IOException {
+                throw new IOException("Connection reset");
+            }
+
+            @Override
+            public void close() {
+            }
+        }, EnumSet.allOf(ValidationResponseField.class));
+    }
+}
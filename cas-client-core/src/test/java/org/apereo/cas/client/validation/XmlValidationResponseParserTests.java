@@ -0,0 +1,93 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link XmlValidationResponseParser}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public class XmlValidationResponseParserTests {
+
+    private final XmlValidationResponseParser parser = new XmlValidationResponseParser();
+
+    @Test
+    public void verifySuccessIsReadInOnePass() throws Exception {
+        final String response = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>"
+                                + "<cas:user>username</cas:user>"
+                                + "<cas:attributes><cas:password>foo</cas:password><cas:eduPersonId>id</cas:eduPersonId>"
+                                + "<cas:longAttribute>1</cas:longAttribute><cas:longAttribute>2</cas:longAttribute></cas:attributes>"
+                                + "<cas:proxyGrantingTicket>PGTIOU-1-test</cas:proxyGrantingTicket>"
+                                + "<cas:proxies><cas:proxy>proxy1</cas:proxy><cas:proxy>proxy2</cas:proxy></cas:proxies>"
+                                + "</cas:authenticationSuccess></cas:serviceResponse>";
+
+        final TicketValidationXmlResponse parsed = this.parser.parse(response);
+        assertNull(parsed.getAuthenticationFailure());
+        assertEquals("username", parsed.getUser());
+        assertEquals(Arrays.asList("PGTIOU-1-test"), parsed.getProxyGrantingTickets());
+        assertEquals(Arrays.asList("proxy1", "proxy2"), parsed.getProxies());
+        assertEquals("foo", parsed.getAttributes().get("password"));
+        assertEquals("id", parsed.getAttributes().get("eduPersonId"));
+        assertEquals(Arrays.asList("1", "2"), parsed.getAttributes().get("longAttribute"));
+        assertTrue(parsed.getInlineAttributes().isEmpty());
+    }
+
+    @Test
+    public void verifyInlineAttributes() throws Exception {
+        final String response = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>"
+                                + "<cas:user>username</cas:user>"
+                                + "<cas:attribute name='urn:oid:0.9.2342' value='foo'/>"
+                                + "<cas:attribute name='urn:oid:0.9.2342' value='bar'/>"
+                                + "<cas:attribute name='mail' value='user@example.org'/>"
+                                + "</cas:authenticationSuccess></cas:serviceResponse>";
+
+        final TicketValidationXmlResponse parsed = this.parser.parse(response);
+        assertEquals("username", parsed.getUser());
+        assertEquals(Arrays.asList("foo", "bar"), parsed.getInlineAttributes().get("urn:oid:0.9.2342"));
+        assertEquals("user@example.org", parsed.getInlineAttributes().get("mail"));
+        assertTrue(parsed.getAttributes().isEmpty());
+    }
+
+    @Test
+    public void verifyFailureAndCode() throws Exception {
+        final String response = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'>"
+                                + "<cas:authenticationFailure code=\"INVALID_TICKET\">Ticket ST-1 not recognized</cas:authenticationFailure>"
+                                + "</cas:serviceResponse>";
+
+        final TicketValidationXmlResponse parsed = this.parser.parse(response);
+        assertEquals("INVALID_TICKET", parsed.getAuthenticationFailureCode());
+        assertEquals("Ticket ST-1 not recognized", parsed.getAuthenticationFailure());
+        assertNull(parsed.getUser());
+        final List<String> proxies = parsed.getProxies();
+        assertTrue(proxies.isEmpty());
+    }
+
+    @Test(expected = TicketValidationException.class)
+    public void verifyMalformedResponse() throws Exception {
+        this.parser.parse("<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>");
+    }
+}
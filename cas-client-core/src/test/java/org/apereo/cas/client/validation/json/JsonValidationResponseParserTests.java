@@ -0,0 +1,102 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation.json;
+
+import org.apereo.cas.client.validation.Assertion;
+import org.apereo.cas.client.validation.InvalidProxyChainTicketValidationException;
+import org.apereo.cas.client.validation.ProxyList;
+import org.apereo.cas.client.validation.TicketValidationException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link JsonValidationResponseParser}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class JsonValidationResponseParserTests {
+
+    private static final String SUCCESS = "{ \"serviceResponse\" : { \"authenticationSuccess\" : {"
+        + " \"user\" : \"casuser\", \"proxyGrantingTicket\" : \"PGTIOU-84678-8a9d\","
+        + " \"proxies\" : [ \"https://proxy2\", \"https://proxy1\" ],"
+        + " \"attributes\" : { \"cn\" : [ \"Name\" ], \"age\" : 42, \"ratio\" : 0.5, \"active\" : true,"
+        + " \"nickname\" : null, \"address\" : { \"city\" : \"Paris\", \"zip\" : [ 75001 ] } } } } }";
+
+    private static final String FAILURE = "{ \"serviceResponse\" : { \"authenticationFailure\" : {"
+        + " \"code\" : \"INVALID_TICKET\", \"description\" : \"Description\" } } }";
+
+    @Test
+    public void verifyStreamingMatchesDataBinding() throws Exception {
+        final TicketValidationJsonResponse bound = JsonValidationResponseParser.DATA_BINDING.parse(SUCCESS);
+        final TicketValidationJsonResponse streamed = JsonValidationResponseParser.STREAMING.parse(SUCCESS);
+
+        final TicketValidationJsonResponse.CasServiceResponseAuthenticationSuccess expected =
+            bound.getServiceResponse().getAuthenticationSuccess();
+        final TicketValidationJsonResponse.CasServiceResponseAuthenticationSuccess actual =
+            streamed.getServiceResponse().getAuthenticationSuccess();
+        assertEquals("casuser", actual.getUser());
+        assertEquals(expected.getProxyGrantingTicket(), actual.getProxyGrantingTicket());
+        assertEquals(expected.getProxies(), actual.getProxies());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        assertEquals(Arrays.asList("https://proxy2", "https://proxy1"), streamed.getProxies());
+    }
+
+    @Test
+    public void verifyFailure() throws Exception {
+        for (final JsonValidationResponseParser parser
+            : Arrays.asList(JsonValidationResponseParser.DATA_BINDING, JsonValidationResponseParser.STREAMING)) {
+            try {
+                parser.parse(FAILURE);
+                fail("Expected a validation failure");
+            } catch (final TicketValidationException e) {
+                assertEquals("INVALID_TICKET - Description", e.getMessage());
+            }
+        }
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void verifyStreamingRejectsXml() throws Exception {
+        JsonValidationResponseParser.STREAMING.parse("<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'/>");
+    }
+
+    @Test
+    public void verifyProxyChainIsChecked() throws Exception {
+        final Cas30JsonProxyTicketValidator validator = new Cas30JsonProxyTicketValidator("https://localhost/cas");
+        validator.setAllowEmptyProxyChain(false);
+        validator.setAllowedProxyChains(new ProxyList(Collections.singletonList(new String[] {"https://proxy2", "https://proxy1"})));
+        validator.setStreaming(true);
+        final Assertion assertion = validator.parseResponseFromServer(SUCCESS);
+        assertEquals("casuser", assertion.getPrincipal().getName());
+
+        validator.setAllowedProxyChains(new ProxyList(Collections.singletonList(new String[] {"https://other"})));
+        try {
+            validator.parseResponseFromServer(SUCCESS);
+            fail("Expected an invalid proxy chain");
+        } catch (final InvalidProxyChainTicketValidationException e) {
+            assertTrue(e.getMessage().contains("https://proxy2"));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link ResponseFormatDetector}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class ResponseFormatDetectorTests {
+
+    private static final String JSON = "{ \"serviceResponse\" : { } }";
+
+    private static final String XML = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'/>";
+
+    @Test
+    public void verifyBodyDecides() {
+        assertEquals(ResponseFormatDetector.Format.JSON, ResponseFormatDetector.sniff(null, "﻿ \n" + JSON));
+        assertEquals(ResponseFormatDetector.Format.XML, ResponseFormatDetector.sniff(null, "\n  " + XML));
+        assertEquals(ResponseFormatDetector.Format.XML, ResponseFormatDetector.sniff("application/json", XML));
+    }
+
+    @Test
+    public void verifyContentTypeDecidesAmbiguousBodies() {
+        assertEquals(ResponseFormatDetector.Format.JSON, ResponseFormatDetector.sniff("application/json;charset=UTF-8", "null"));
+        assertEquals(ResponseFormatDetector.Format.XML, ResponseFormatDetector.sniff("TEXT/XML", ""));
+        assertNull(ResponseFormatDetector.sniff("text/plain", "yes"));
+    }
+
+    @Test
+    public void verifyUnknownFormatIsParsedAsJson() {
+        assertEquals(ResponseFormatDetector.Format.JSON, new ResponseFormatDetector().detect(null, "yes"));
+    }
+
+    @Test
+    public void verifyLearnedFormat() {
+        final ResponseFormatDetector detector = new ResponseFormatDetector();
+        detector.setLearning(true);
+        assertEquals(ResponseFormatDetector.Format.XML, detector.detect("text/xml", XML));
+        assertEquals(ResponseFormatDetector.Format.XML, detector.detect(null, JSON));
+
+        assertTrue(detector.isMismatch(null, JSON, ResponseFormatDetector.Format.XML));
+        assertEquals(ResponseFormatDetector.Format.JSON, detector.detect(null, XML));
+        assertFalse(detector.isMismatch(null, JSON, ResponseFormatDetector.Format.JSON));
+    }
+
+    @Test
+    public void verifyLearnedXmlResponseSwitchingToJson() throws Exception {
+        final Cas30JsonServiceTicketValidator validator = new Cas30JsonServiceTicketValidator("https://localhost/cas");
+        validator.setLearnResponseFormat(true);
+        assertEquals("xmluser", validator.parseResponseFromServer("<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'>"
+            + "<cas:authenticationSuccess><cas:user>xmluser</cas:user></cas:authenticationSuccess></cas:serviceResponse>")
+            .getPrincipal().getName());
+        assertEquals("jsonuser", validator.parseResponseFromServer(
+            "{ \"serviceResponse\" : { \"authenticationSuccess\" : { \"user\" : \"jsonuser\", \"attributes\" : { } } } }").getPrincipal().getName());
+    }
+}
@@ -19,7 +19,6 @@
 package org.apereo.cas.client.validation;
 
 import org.apereo.cas.client.Protocol;
-import org.apereo.cas.client.ssl.HttpURLConnectionFactory;
 
 import jakarta.servlet.FilterConfig;
 
@@ -50,10 +49,14 @@ public class Saml11TicketValidationFilter extends AbstractTicketValidationFilter
         validator.setTolerance(tolerance);
         validator.setRenew(getBoolean(ConfigurationKeys.RENEW));
 
-        final HttpURLConnectionFactory factory = new HttpsURLConnectionFactory(getHostnameVerifier(), getSSLConfig());
+        final HttpsURLConnectionFactory factory = new HttpsURLConnectionFactory(getHostnameVerifier(), getSSLConfig());
         validator.setURLConnectionFactory(factory);
+        validator.setHttpTransport(createHttpTransport(factory));
+        validator.setValidationExecutor(createValidationExecutor());
 
         validator.setEncoding(getString(ConfigurationKeys.ENCODING));
+        validator.setMaxResponseSize(getLong(ConfigurationKeys.MAX_RESPONSE_SIZE));
+        validator.setAttributeValuePool(createAttributeValuePool());
         return validator;
     }
 }
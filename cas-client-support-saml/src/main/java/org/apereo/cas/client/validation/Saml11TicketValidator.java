@@ -19,15 +19,17 @@
 package org.apereo.cas.client.validation;
 
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apereo.cas.client.authentication.AttributePrincipalImpl;
+import org.apereo.cas.client.authentication.CompactAttributeMap;
+import org.apereo.cas.client.ssl.HttpTransportRequest;
+import org.apereo.cas.client.ssl.HttpTransportResponse;
 import org.apereo.cas.client.util.CommonUtils;
 import org.apereo.cas.client.util.IOUtils;
 import org.apereo.cas.client.util.MapNamespaceContext;
@@ -53,8 +55,8 @@ public final class Saml11TicketValidator extends AbstractUrlBasedTicketValidator
     /** Authentication attribute containing SAML AuthenticationMethod attribute value. */
     public static final String AUTH_METHOD_ATTRIBUTE = "samlAuthenticationStatement::authMethod";
 
-    /** SAML 1.1 request template. */
-    private static final String SAML_REQUEST_TEMPLATE;
+    /** SAML 1.1 request template, split into its constant segments. */
+    private static final Saml11RequestEncoder SAML_REQUEST_ENCODER;
 
     /** SAML 1.1. namespace context. */
     private static final NamespaceContext NS_CONTEXT = new MapNamespaceContext(
@@ -82,19 +84,21 @@ public final class Saml11TicketValidator extends AbstractUrlBasedTicketValidator
     private static final ThreadLocalXPathExpression XPATH_ATTRIBUTES =
             new ThreadLocalXPathExpression("//sa:AttributeStatement/sa:Attribute", NS_CONTEXT);
 
-    private static final String HEX_CHARS = "0123456789abcdef";
-
     /** Time tolerance to allow for time drifting. */
     private long tolerance = 1000L;
 
-    private final Random random;
+    /** Whether samlValidate requests may be sent more than once, i.e. hedged to a second CAS node. */
+    private boolean hedgeRequests;
+
+    /** Whether responses are read in a single streaming pass rather than into a DOM queried with XPath. */
+    private boolean streaming = true;
 
 
     /** Class initializer. */
     static {
         try {
-            SAML_REQUEST_TEMPLATE = IOUtils.readString(
-                    Saml11TicketValidator.class.getResourceAsStream("/META-INF/cas/samlRequestTemplate.xml"));
+            SAML_REQUEST_ENCODER = new Saml11RequestEncoder(IOUtils.readString(
+                    Saml11TicketValidator.class.getResourceAsStream("/META-INF/cas/samlRequestTemplate.xml")));
         } catch (final IOException e) {
             throw new IllegalStateException("Cannot load SAML request template from classpath", e);
         }
@@ -103,12 +107,6 @@ public final class Saml11TicketValidator extends AbstractUrlBasedTicketValidator
 
     public Saml11TicketValidator(final String casServerUrlPrefix) {
         super(casServerUrlPrefix);
-
-        try {
-            random = SecureRandom.getInstance("SHA1PRNG");
-        } catch (final NoSuchAlgorithmException e) {
-            throw new IllegalStateException("Cannot find required SHA1PRNG algorithm");
-        }
     }
 
     @Override
@@ -126,29 +124,23 @@ public final class Saml11TicketValidator extends AbstractUrlBasedTicketValidator
 
     @Override
     protected Assertion parseResponseFromServer(final String response) throws TicketValidationException {
+        if (this.streaming) {
+            try {
+                return toAssertion(new Saml11ValidationResponseParser().parse(new StringReader(response)));
+            } catch (final IOException e) {
+                throw new TicketValidationException("Error processing SAML response", e);
+            }
+        }
         try {
             final Document document = XmlUtils.newDocument(response);
-            final Date assertionValidityStart = SamlUtils.parseUtcDate(
-                    XPATH_ASSERTION_DATE_START.evaluateAsString(document));
-            final Date assertionValidityEnd = SamlUtils.parseUtcDate(
-                    XPATH_ASSERTION_DATE_END.evaluateAsString(document));
-            if (!isValidAssertion(assertionValidityStart, assertionValidityEnd)) {
-                throw new TicketValidationException("Invalid SAML assertion");
-            }
-            final String nameId = XPATH_NAME_ID.evaluateAsString(document);
-            if (nameId == null) {
-                throw new TicketValidationException("SAML assertion does not contain NameIdentifier element");
-            }
-            final String authMethod = XPATH_AUTH_METHOD.evaluateAsString(document);
+            final Map<String, Object> principalAttributes = new HashMap<String, Object>();
             final NodeList attributes = XPATH_ATTRIBUTES.evaluateAsNodeList(document);
-            final Map<String, Object> principalAttributes = new HashMap<String, Object>(attributes.getLength());
             Element attribute;
             NodeList values;
             String name;
             for (int i = 0; i < attributes.getLength(); i++) {
                 attribute = (Element) attributes.item(i);
                 name = attribute.getAttribute("AttributeName");
-                logger.trace("Processing attribute {}", name);
                 values = attribute.getElementsByTagNameNS("*", "AttributeValue");
                 if (values.getLength() == 1) {
                     principalAttributes.put(name, values.item(0).getTextContent());
@@ -160,12 +152,66 @@ public final class Saml11TicketValidator extends AbstractUrlBasedTicketValidator
                     principalAttributes.put(name, items);
                 }
             }
+            return toAssertion(new Saml11ValidationResponse(
+                    XPATH_ASSERTION_DATE_START.evaluateAsString(document),
+                    XPATH_ASSERTION_DATE_END.evaluateAsString(document),
+                    XPATH_NAME_ID.evaluateAsString(document),
+                    XPATH_AUTH_METHOD.evaluateAsString(document),
+                    principalAttributes));
+        } catch (final TicketValidationException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new TicketValidationException("Error processing SAML response", e);
+        }
+    }
+
+    /**
+     * Parses the response while it is read from the connection, unless DOM parsing is configured.
+     */
+    @Override
+    protected Assertion parseResponseFromServer(final InputStream response, final Charset charset)
+        throws IOException, TicketValidationException {
+        if (!this.streaming) {
+            return super.parseResponseFromServer(response, charset);
+        }
+        return toAssertion(new Saml11ValidationResponseParser().parse(new InputStreamReader(response, charset)));
+    }
+
+    /**
+     * Hands the response over to the parser while it is read from the connection.
+     */
+    @Override
+    protected Assertion retrieveAndParseResponseFromServer(final URL validationUrl, final String ticket)
+        throws TicketValidationException {
+        final Charset charset = getResponseCharset();
+        try {
+            return getHttpTransport().execute(createSamlRequest(validationUrl, ticket, charset),
+                newResponseBodyReader(charset)).getAssertion();
+        } catch (final IOException e) {
+            throw new RuntimeException("IO error sending HTTP request to /samlValidate", e);
+        }
+    }
+
+    private Assertion toAssertion(final Saml11ValidationResponse response) throws TicketValidationException {
+        try {
+            final Date assertionValidityStart = SamlUtils.parseUtcDate(response.getNotBefore());
+            final Date assertionValidityEnd = SamlUtils.parseUtcDate(response.getNotOnOrAfter());
+            if (!isValidAssertion(assertionValidityStart, assertionValidityEnd)) {
+                throw new TicketValidationException("Invalid SAML assertion");
+            }
+            final String nameId = response.getNameIdentifier();
+            if (nameId == null) {
+                throw new TicketValidationException("SAML assertion does not contain NameIdentifier element");
+            }
+            logger.trace("Processing attributes {}", response.getAttributes().keySet());
             return new AssertionImpl(
-                    new AttributePrincipalImpl(nameId, principalAttributes),
+                    new AttributePrincipalImpl(nameId, CompactAttributeMap.of(response.getAttributes(), getAttributeValuePool())),
                     assertionValidityStart,
                     assertionValidityEnd,
                     new Date(),
-                    Collections.singletonMap(AUTH_METHOD_ATTRIBUTE, (Object) authMethod));
+                    Collections.singletonMap(AUTH_METHOD_ATTRIBUTE, (Object) response.getAuthenticationMethod()));
+        } catch (final TicketValidationException e) {
+            throw e;
         } catch (final Exception e) {
             throw new TicketValidationException("Error processing SAML response", e);
         }
@@ -197,48 +243,66 @@ public final class Saml11TicketValidator extends AbstractUrlBasedTicketValidator
 
     @Override
     protected String retrieveResponseFromServer(final URL validationUrl, final String ticket) {
-        final String request = String.format(
-                SAML_REQUEST_TEMPLATE,
-                generateId(),
-                SamlUtils.formatForUtcTime(new Date()),
-                ticket);
-        HttpURLConnection conn = null;
+        final Charset charset = getResponseCharset();
         try {
-            conn = this.getURLConnectionFactory().buildHttpURLConnection(validationUrl.openConnection());
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "text/xml");
-            conn.setRequestProperty("SOAPAction", "http://www.oasis-open.org/committees/security");
-            conn.setUseCaches(false);
-            conn.setDoInput(true);
-            conn.setDoOutput(true);
-
-
-            final Charset charset = CommonUtils.isNotBlank(getEncoding()) ?
-                    Charset.forName(getEncoding()) : IOUtils.UTF8;
-            conn.getOutputStream().write(request.getBytes(charset));
-            return IOUtils.readString(conn.getInputStream(), charset);
+            return getHttpTransport().execute(createSamlRequest(validationUrl, ticket, charset)).getBodyAsString(charset);
         } catch (final IOException e) {
             throw new RuntimeException("IO error sending HTTP request to /samlValidate", e);
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
 
+    @Override
+    protected CompletableFuture<HttpTransportResponse> retrieveResponseFromServerAsync(final URL validationUrl,
+                                                                                       final String ticket) {
+        return getHttpTransport().executeAsync(createSamlRequest(validationUrl, ticket, getResponseCharset()), getValidationExecutor())
+            .handle((response, t) -> {
+                if (t != null) {
+                    final Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                    throw new CompletionException(new RuntimeException("IO error sending HTTP request to /samlValidate", cause));
+                }
+                return response;
+            });
+    }
+
+    private HttpTransportRequest createSamlRequest(final URL validationUrl, final String ticket, final Charset charset) {
+        final HttpTransportRequest httpRequest = HttpTransportRequest
+                .post(validationUrl, SAML_REQUEST_ENCODER.encode(ticket, charset))
+                .withHeader("Content-Type", "text/xml")
+                .withHeader("SOAPAction", "http://www.oasis-open.org/committees/security")
+                .withMaxResponseSize(getMaxResponseSize());
+        return this.hedgeRequests ? httpRequest.asIdempotent() : httpRequest;
+    }
+
+    /**
+     * SAML responses are read as UTF-8 unless an encoding is set.
+     */
+    @Override
+    protected Charset getResponseCharset() {
+        return CommonUtils.isNotBlank(getEncoding()) ? Charset.forName(getEncoding()) : IOUtils.UTF8;
+    }
+
     public void setTolerance(final long tolerance) {
         this.tolerance = tolerance;
     }
 
-    private String generateId() {
-        final byte[] data = new byte[16];
-        random.nextBytes(data);
-        final StringBuilder id = new StringBuilder(33);
-        id.append('_');
-        for (int i = 0; i < data.length; i++) {
-            id.append(HEX_CHARS.charAt((data[i] & 0xF0) >> 4));
-            id.append(HEX_CHARS.charAt(data[i] & 0x0F));
-        }
-        return id.toString();
+    /**
+     * Sets whether responses are read in a single streaming pass, which is the default. When false, responses are
+     * parsed into a DOM and queried with XPath expressions.
+     *
+     * @param streaming whether to stream responses.
+     */
+    public void setStreaming(final boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Allows a transport configured with a {@link org.apereo.cas.client.ssl.HedgingPolicy} to send samlValidate
+     * requests to a second CAS node when the first is slow. Only enable this when the CAS server answers a repeated
+     * samlValidate for the same artifact consistently; otherwise the duplicate fails and only adds load.
+     *
+     * @param hedgeRequests true to allow hedging.
+     */
+    public void setHedgeRequests(final boolean hedgeRequests) {
+        this.hedgeRequests = hedgeRequests;
     }
 }
@@ -0,0 +1,84 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import java.util.Map;
+
+/**
+ * Fields of a SAML 1.1 validation response, as read by {@link Saml11ValidationResponseParser}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class Saml11ValidationResponse {
+
+    private final String notBefore;
+
+    private final String notOnOrAfter;
+
+    private final String nameIdentifier;
+
+    private final String authenticationMethod;
+
+    private final Map<String, Object> attributes;
+
+    Saml11ValidationResponse(final String notBefore, final String notOnOrAfter, final String nameIdentifier,
+                             final String authenticationMethod, final Map<String, Object> attributes) {
+        this.notBefore = notBefore;
+        this.notOnOrAfter = notOnOrAfter;
+        this.nameIdentifier = nameIdentifier;
+        this.authenticationMethod = authenticationMethod;
+        this.attributes = attributes;
+    }
+
+    /**
+     * @return the <code>NotBefore</code> attribute of the assertion conditions, or an empty string.
+     */
+    public String getNotBefore() {
+        return this.notBefore;
+    }
+
+    /**
+     * @return the <code>NotOnOrAfter</code> attribute of the assertion conditions, or an empty string.
+     */
+    public String getNotOnOrAfter() {
+        return this.notOnOrAfter;
+    }
+
+    /**
+     * @return the <code>NameIdentifier</code> of the authentication statement subject, or an empty string.
+     */
+    public String getNameIdentifier() {
+        return this.nameIdentifier;
+    }
+
+    /**
+     * @return the <code>AuthenticationMethod</code> of the authentication statement, or an empty string.
+     */
+    public String getAuthenticationMethod() {
+        return this.authenticationMethod;
+    }
+
+    /**
+     * @return the attribute statement values; multi-valued attributes are mapped to a collection.
+     */
+    public Map<String, Object> getAttributes() {
+        return this.attributes;
+    }
+}
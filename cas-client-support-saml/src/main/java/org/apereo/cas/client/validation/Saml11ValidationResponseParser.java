@@ -0,0 +1,175 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.util.XmlUtils;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the fields of a SAML 1.1 validation response in a single StAX pass, without building a DOM.
+ * Fields are matched as the XPath expressions used by {@link Saml11TicketValidator} in DOM mode would:
+ * the first <code>Assertion/Conditions</code>, the first <code>AuthenticationStatement</code> with its
+ * <code>Subject/NameIdentifier</code>, and every <code>AttributeStatement/Attribute</code>.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class Saml11ValidationResponseParser {
+
+    private static final String SAML_ASSERTION_NS = "urn:oasis:names:tc:SAML:1.0:assertion";
+
+    /**
+     * Parses the response while it is read from the given reader.
+     *
+     * @param response the SOAP envelope holding the SAML response.
+     * @return the fields of the response.
+     * @throws IOException if the response cannot be read.
+     * @throws TicketValidationException if the response is not well-formed XML.
+     */
+    public Saml11ValidationResponse parse(final Reader response) throws IOException, TicketValidationException {
+        try {
+            final XMLStreamReader reader = XmlUtils.createXMLStreamReader(response);
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            if (e.getNestedException() instanceof IOException) {
+                throw (IOException) e.getNestedException();
+            }
+            throw new TicketValidationException("Error processing SAML response", e);
+        }
+    }
+
+    private static Saml11ValidationResponse read(final XMLStreamReader reader) throws XMLStreamException {
+        String notBefore = null;
+        String notOnOrAfter = null;
+        String nameIdentifier = null;
+        String authenticationMethod = null;
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        // local names of the enclosing SAML assertion elements, null for elements of other namespaces
+        final Deque<String> path = new ArrayDeque<String>();
+
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                path.pop();
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            final String name = SAML_ASSERTION_NS.equals(reader.getNamespaceURI()) ? reader.getLocalName() : "";
+            final String parent = path.peek();
+
+            if ("Conditions".equals(name) && "Assertion".equals(parent)) {
+                if (notBefore == null) {
+                    notBefore = reader.getAttributeValue(null, "NotBefore");
+                }
+                if (notOnOrAfter == null) {
+                    notOnOrAfter = reader.getAttributeValue(null, "NotOnOrAfter");
+                }
+            } else if ("AuthenticationStatement".equals(name) && authenticationMethod == null) {
+                authenticationMethod = reader.getAttributeValue(null, "AuthenticationMethod");
+            } else if ("NameIdentifier".equals(name) && nameIdentifier == null && "Subject".equals(parent)
+                       && path.size() > 1 && "AuthenticationStatement".equals(secondFromTop(path))) {
+                nameIdentifier = readText(reader);
+                continue;
+            } else if ("Attribute".equals(name) && "AttributeStatement".equals(parent)) {
+                readAttribute(reader, attributes);
+                continue;
+            }
+            path.push(name);
+        }
+        return new Saml11ValidationResponse(emptyIfNull(notBefore), emptyIfNull(notOnOrAfter), emptyIfNull(nameIdentifier),
+            emptyIfNull(authenticationMethod), attributes);
+    }
+
+    private static String secondFromTop(final Deque<String> path) {
+        final Iterator<String> iterator = path.iterator();
+        iterator.next();
+        return iterator.next();
+    }
+
+    /**
+     * Reads the values of the current <code>Attribute</code> element, leaving the reader on its end tag.
+     */
+    private static void readAttribute(final XMLStreamReader reader, final Map<String, Object> attributes)
+        throws XMLStreamException {
+        final String name = reader.getAttributeValue(null, "AttributeName");
+        final List<Object> values = new ArrayList<Object>(1);
+        int level = 1;
+        while (level > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("AttributeValue".equals(reader.getLocalName())) {
+                    values.add(readText(reader));
+                } else {
+                    level++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            }
+        }
+        attributes.put(name != null ? name : "", values.size() == 1 ? values.get(0) : values);
+    }
+
+    /**
+     * Reads the text of the current element and its descendants, leaving the reader on its end tag.
+     */
+    private static String readText(final XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int level = 1;
+        while (level > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    level++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    level--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    private static String emptyIfNull(final String value) {
+        return value != null ? value : "";
+    }
+}
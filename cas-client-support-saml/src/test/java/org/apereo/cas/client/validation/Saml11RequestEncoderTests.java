@@ -0,0 +1,83 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.util.IOUtils;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link Saml11RequestEncoder}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class Saml11RequestEncoderTests {
+
+    private static final Pattern REQUEST_ID = Pattern.compile("RequestID=\"(_[0-9a-f]{32})\"");
+
+    private final String template;
+
+    private final Saml11RequestEncoder encoder;
+
+    public Saml11RequestEncoderTests() throws Exception {
+        this.template = IOUtils.readString(getClass().getResourceAsStream("/META-INF/cas/samlRequestTemplate.xml"));
+        this.encoder = new Saml11RequestEncoder(this.template);
+    }
+
+    @Test
+    public void verifyEncodingMatchesTemplate() {
+        for (final Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1}) {
+            final byte[] encoded = this.encoder.encode("_0123", "2008-06-19T14:34:44Z", "ST-1-é", charset);
+            assertArrayEquals(String.format(this.template, "_0123", "2008-06-19T14:34:44Z", "ST-1-é").getBytes(charset), encoded);
+        }
+    }
+
+    @Test
+    public void verifyGeneratedIds() {
+        final Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            final String request = new String(this.encoder.encode("ST-" + i, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            final Matcher matcher = REQUEST_ID.matcher(request);
+            assertTrue(matcher.find());
+            assertTrue(ids.add(matcher.group(1)));
+            assertTrue(request.contains("<AssertionArtifact>ST-" + i + "</AssertionArtifact>"));
+        }
+    }
+
+    @Test
+    public void verifyGeneratedIdInNonAsciiCharset() {
+        final String request = new String(this.encoder.encode("ST-1", StandardCharsets.UTF_16), StandardCharsets.UTF_16);
+        assertTrue(REQUEST_ID.matcher(request).find());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyTemplateWithoutPlaceholders() {
+        new Saml11RequestEncoder("<Request/>");
+    }
+}
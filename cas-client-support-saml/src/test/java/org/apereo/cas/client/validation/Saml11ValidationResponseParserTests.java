@@ -0,0 +1,118 @@
+/**
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apereo.cas.client.validation;
+
+import org.apereo.cas.client.util.SamlUtils;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link Saml11ValidationResponseParser}.
+ *
+ * @author agent
+ * @since 4.0.2
+ */
+public final class Saml11ValidationResponseParserTests {
+
+    private static final String NOT_BEFORE = "2008-06-19T14:34:44.426Z";
+
+    private static final String NOT_ON_OR_AFTER = "2108-06-19T14:34:44.426Z";
+
+    private static final String OPENSAML_RESPONSE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><soap11:Envelope xmlns:soap11=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap11:Body>"
+        + "<saml1p:Response xmlns:saml1p=\"urn:oasis:names:tc:SAML:1.0:protocol\" MajorVersion=\"1\" MinorVersion=\"1\">"
+        + "<saml1p:Status><saml1p:StatusCode Value=\"saml1p:Success\"/></saml1p:Status>"
+        + "<saml1:Assertion xmlns:saml1=\"urn:oasis:names:tc:SAML:1.0:assertion\" Issuer=\"localhost\" MajorVersion=\"1\" MinorVersion=\"1\">"
+        + "<saml1:Conditions NotBefore=\"" + NOT_BEFORE + "\" NotOnOrAfter=\"" + NOT_ON_OR_AFTER + "\">"
+        + "<saml1:AudienceRestrictionCondition><saml1:Audience>https://example.com/test-client/secure/</saml1:Audience>"
+        + "</saml1:AudienceRestrictionCondition></saml1:Conditions>"
+        + "<saml1:AuthenticationStatement AuthenticationInstant=\"" + NOT_BEFORE
+        + "\" AuthenticationMethod=\"urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport\">"
+        + "<saml1:Subject><saml1:NameIdentifier>testPrincipal</saml1:NameIdentifier>"
+        + "<saml1:SubjectConfirmation><saml1:ConfirmationMethod>urn:oasis:names:tc:SAML:1.0:cm:artifact</saml1:ConfirmationMethod></saml1:SubjectConfirmation>"
+        + "</saml1:Subject></saml1:AuthenticationStatement>"
+        + "<saml1:AttributeStatement><saml1:Subject><saml1:NameIdentifier>otherPrincipal</saml1:NameIdentifier></saml1:Subject>"
+        + "<saml1:Attribute AttributeName=\"uid\"><saml1:AttributeValue xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:type=\"xs:string\">12345</saml1:AttributeValue></saml1:Attribute>"
+        + "<saml1:Attribute AttributeName=\"accountState\"><saml1:AttributeValue>ACTIVE</saml1:AttributeValue></saml1:Attribute>"
+        + "<saml1:Attribute AttributeName=\"eduPersonAffiliation\">"
+        + "<saml1:AttributeValue>employee</saml1:AttributeValue><saml1:AttributeValue>staff</saml1:AttributeValue>"
+        + "<saml1:AttributeValue>student</saml1:AttributeValue></saml1:Attribute>"
+        + "</saml1:AttributeStatement></saml1:Assertion></saml1p:Response></soap11:Body></soap11:Envelope>";
+
+    private static final String DEFAULT_NAMESPACE_RESPONSE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Header/><SOAP-ENV:Body>"
+        + "<Response xmlns=\"urn:oasis:names:tc:SAML:1.0:protocol\" MajorVersion=\"1\" MinorVersion=\"1\"><Status><StatusCode Value=\"samlp:Success\"></StatusCode></Status>"
+        + "<Assertion xmlns=\"urn:oasis:names:tc:SAML:1.0:assertion\" Issuer=\"testIssuer\" MajorVersion=\"1\" MinorVersion=\"1\">"
+        + "<Conditions NotBefore=\"" + NOT_BEFORE + "\" NotOnOrAfter=\"" + NOT_ON_OR_AFTER + "\"><AudienceRestrictionCondition><Audience>test</Audience></AudienceRestrictionCondition></Conditions>"
+        + "<AuthenticationStatement AuthenticationInstant=\"" + NOT_BEFORE + "\" AuthenticationMethod=\"urn:ietf:rfc:2246\">"
+        + "<Subject><NameIdentifier>testPrincipal</NameIdentifier></Subject></AuthenticationStatement>"
+        + "</Assertion></Response></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    private final Saml11ValidationResponseParser parser = new Saml11ValidationResponseParser();
+
+    @Test
+    public void verifyOpenSamlGeneratedResponse() throws Exception {
+        final Saml11ValidationResponse response = this.parser.parse(new StringReader(OPENSAML_RESPONSE));
+        assertEquals(NOT_BEFORE, response.getNotBefore());
+        assertEquals(NOT_ON_OR_AFTER, response.getNotOnOrAfter());
+        assertEquals("testPrincipal", response.getNameIdentifier());
+        assertEquals("urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport", response.getAuthenticationMethod());
+        assertEquals("12345", response.getAttributes().get("uid"));
+        assertEquals("ACTIVE", response.getAttributes().get("accountState"));
+        assertEquals(3, ((Collection<?>) response.getAttributes().get("eduPersonAffiliation")).size());
+    }
+
+    @Test
+    public void verifyDefaultNamespaceWithoutAttributes() throws Exception {
+        final Saml11ValidationResponse response = this.parser.parse(new StringReader(DEFAULT_NAMESPACE_RESPONSE));
+        assertEquals("testPrincipal", response.getNameIdentifier());
+        assertEquals("urn:ietf:rfc:2246", response.getAuthenticationMethod());
+        assertTrue(response.getAttributes().isEmpty());
+    }
+
+    @Test(expected = TicketValidationException.class)
+    public void verifyMalformedResponse() throws Exception {
+        this.parser.parse(new StringReader("<Envelope><Body>"));
+    }
+
+    @Test
+    public void verifyStreamingMatchesDom() throws Exception {
+        final String now = SamlUtils.formatForUtcTime(new Date());
+        final String later = SamlUtils.formatForUtcTime(Date.from(ZonedDateTime.now(ZoneOffset.UTC).plusDays(1).toInstant()));
+        final String xml = OPENSAML_RESPONSE.replace(NOT_BEFORE, now).replace(NOT_ON_OR_AFTER, later);
+
+        final Saml11TicketValidator validator = new Saml11TicketValidator("https://localhost/cas");
+        validator.setTolerance(1000L);
+        final Assertion streamed = validator.parseResponseFromServer(xml);
+        validator.setStreaming(false);
+        final Assertion parsed = validator.parseResponseFromServer(xml);
+
+        assertEquals(parsed.getPrincipal().getName(), streamed.getPrincipal().getName());
+        assertEquals(parsed.getPrincipal().getAttributes(), streamed.getPrincipal().getAttributes());
+        assertEquals(parsed.getAttributes(), streamed.getAttributes());
+        assertEquals(parsed.getValidFromDate(), streamed.getValidFromDate());
+        assertEquals(parsed.getValidUntilDate(), streamed.getValidUntilDate());
+    }
+}
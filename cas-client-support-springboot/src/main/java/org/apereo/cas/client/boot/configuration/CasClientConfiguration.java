@@ -29,6 +29,7 @@ import org.apereo.cas.client.validation.Cas20ProxyReceivingTicketValidationFilte
 import org.apereo.cas.client.validation.Cas30ProxyReceivingTicketValidationFilter;
 import org.apereo.cas.client.validation.Saml11TicketValidationFilter;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -122,6 +123,11 @@ public class CasClientConfiguration {
             validationFilter.getInitParameters().put(ConfigurationKeys.REDIRECT_AFTER_VALIDATION.getName(),
                 String.valueOf(this.configProps.getRedirectAfterValidation()));
         }
+        if (Boolean.TRUE.equals(this.configProps.getAsyncValidation())) {
+            validationFilter.getInitParameters().put(ConfigurationKeys.ASYNC_VALIDATION.getName(), "true");
+            validationFilter.setAsyncSupported(true);
+            validationFilter.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        }
 
         if (this.configProps.getHostnameVerifier() != null) {
             validationFilter.getInitParameters().put(ConfigurationKeys.HOSTNAME_VERIFIER.getName(), this.configProps.getHostnameVerifier());
@@ -92,6 +92,11 @@ public class CasClientConfigurationProperties {
      */
     private Boolean redirectAfterValidation = Boolean.TRUE;
 
+    /**
+     * Validation filter asyncValidation parameter.
+     */
+    private Boolean asyncValidation;
+
     /**
      * Cas20ProxyReceivingTicketValidationFilter acceptAnyProxy parameter.
      */
@@ -222,6 +227,14 @@ public class CasClientConfigurationProperties {
         this.redirectAfterValidation = redirectAfterValidation;
     }
 
+    public Boolean getAsyncValidation() {
+        return asyncValidation;
+    }
+
+    public void setAsyncValidation(final Boolean asyncValidation) {
+        this.asyncValidation = asyncValidation;
+    }
+
     public List<String> getAssertionThreadLocalUrlPatterns() {
         return assertionThreadLocalUrlPatterns;
     }